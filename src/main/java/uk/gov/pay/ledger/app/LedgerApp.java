@@ -1,5 +1,7 @@
 package uk.gov.pay.ledger.app;
 
+import com.fasterxml.jackson.jaxrs.cbor.JacksonCBORProvider;
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import io.dropwizard.Application;
@@ -15,16 +17,25 @@ import org.jdbi.v3.core.Jdbi;
 import uk.gov.pay.ledger.event.resource.EventResource;
 import uk.gov.pay.ledger.exception.BadRequestExceptionMapper;
 import uk.gov.pay.ledger.exception.JerseyViolationExceptionMapper;
+import uk.gov.pay.ledger.filters.ApiTokenAuthenticationFilter;
+import uk.gov.pay.ledger.filters.ConcurrencyLimitFeature;
+import uk.gov.pay.ledger.filters.ConcurrencyLimitReleaseListener;
 import uk.gov.pay.ledger.filters.LoggingMDCRequestFilter;
 import uk.gov.pay.ledger.filters.LoggingMDCResponseFilter;
 import uk.gov.pay.ledger.healthcheck.DependentResourceWaitCommand;
 import uk.gov.pay.ledger.healthcheck.HealthCheckResource;
 import uk.gov.pay.ledger.healthcheck.SQSHealthCheck;
 import uk.gov.pay.ledger.payout.resource.PayoutResource;
+import uk.gov.pay.ledger.projection.command.ProjectionRebuildCommand;
+import uk.gov.pay.ledger.projection.managed.ReprojectionQueueScheduler;
+import uk.gov.pay.ledger.projection.managed.StaleProjectionSweepScheduler;
 import uk.gov.pay.ledger.queue.managed.QueueMessageReceiver;
 import uk.gov.pay.ledger.report.resource.PerformanceReportResource;
 import uk.gov.pay.ledger.report.resource.ReportResource;
+import uk.gov.pay.ledger.retention.managed.RetentionPurgeScheduler;
 import uk.gov.pay.ledger.transaction.resource.TransactionResource;
+import uk.gov.pay.ledger.util.serialiser.MappedStreamingOutputWriter;
+import uk.gov.pay.ledger.util.serialiser.ResponseMappers;
 import uk.gov.pay.logging.GovUkPayDropwizardRequestJsonLogLayoutFactory;
 import uk.gov.pay.logging.LoggingFilter;
 import uk.gov.pay.logging.LogstashConsoleAppenderFactory;
@@ -54,6 +65,7 @@ public class LedgerApp extends Application<LedgerConfig> {
 
         bootstrap.addBundle(new JdbiExceptionsBundle());
         bootstrap.addCommand(new DependentResourceWaitCommand());
+        bootstrap.addCommand(new ProjectionRebuildCommand(this));
         bootstrap.getObjectMapper().getSubtypeResolver().registerSubtypes(LogstashConsoleAppenderFactory.class);
         bootstrap.getObjectMapper().getSubtypeResolver().registerSubtypes(GovUkPayDropwizardRequestJsonLogLayoutFactory.class);
     }
@@ -75,15 +87,38 @@ public class LedgerApp extends Application<LedgerConfig> {
                 .addMappingForUrlPatterns(of(REQUEST), true, "/v1/*");
         environment.jersey().register(injector.getInstance(LoggingMDCRequestFilter.class));
         environment.jersey().register(injector.getInstance(LoggingMDCResponseFilter.class));
+        environment.jersey().register(injector.getInstance(ApiTokenAuthenticationFilter.class));
+
+        if (config.getConcurrencyLimitConfig().isEnabled()) {
+            environment.jersey().register(injector.getInstance(ConcurrencyLimitFeature.class));
+            environment.jersey().register(new ConcurrencyLimitReleaseListener());
+        }
 
         environment.jersey().register(new BadRequestExceptionMapper());
         environment.jersey().register(new JerseyViolationExceptionMapper());
+
+        ResponseMappers responseMappers = injector.getInstance(ResponseMappers.class);
+        environment.jersey().register(new JacksonCBORProvider(responseMappers.getCborMapper()));
+        environment.jersey().register(new JacksonSmileProvider(responseMappers.getSmileMapper()));
+        environment.jersey().register(new MappedStreamingOutputWriter(responseMappers));
         environment.healthChecks().register("sqsQueue", injector.getInstance(SQSHealthCheck.class));
 
         if(config.getQueueMessageReceiverConfig().isBackgroundProcessingEnabled()) {
             environment.lifecycle().manage(injector.getInstance(QueueMessageReceiver.class));
         }
 
+        if (config.getProjectionSweeperConfig().isEnabled()) {
+            environment.lifecycle().manage(injector.getInstance(StaleProjectionSweepScheduler.class));
+        }
+
+        if (config.getBulkEventIngestConfig().isReprojectionEnabled()) {
+            environment.lifecycle().manage(injector.getInstance(ReprojectionQueueScheduler.class));
+        }
+
+        if (config.getRetentionPurgeConfig().isEnabled()) {
+            environment.lifecycle().manage(injector.getInstance(RetentionPurgeScheduler.class));
+        }
+
         environment.jersey().register(injector.getInstance(PayoutResource.class));
     }
 
@@ -3,9 +3,14 @@ package uk.gov.pay.ledger.app;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import uk.gov.pay.ledger.app.config.BulkEventIngestConfig;
+import uk.gov.pay.ledger.app.config.ConcurrencyLimitConfig;
+import uk.gov.pay.ledger.app.config.ProjectionSweeperConfig;
 import uk.gov.pay.ledger.app.config.QueueMessageReceiverConfig;
 import uk.gov.pay.ledger.app.config.ReportingConfig;
+import uk.gov.pay.ledger.app.config.RetentionPurgeConfig;
 import uk.gov.pay.ledger.app.config.SqsConfig;
+import uk.gov.pay.ledger.app.config.TransactionSearchConfig;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -37,6 +42,26 @@ public class LedgerConfig extends Configuration {
     @JsonProperty("reportingConfig")
     private ReportingConfig reportingConfig;
 
+    @NotNull
+    @JsonProperty("projectionSweeperConfig")
+    private ProjectionSweeperConfig projectionSweeperConfig;
+
+    @NotNull
+    @JsonProperty("bulkEventIngestConfig")
+    private BulkEventIngestConfig bulkEventIngestConfig;
+
+    @NotNull
+    @JsonProperty("retentionPurgeConfig")
+    private RetentionPurgeConfig retentionPurgeConfig;
+
+    @NotNull
+    @JsonProperty("transactionSearchConfig")
+    private TransactionSearchConfig transactionSearchConfig;
+
+    @NotNull
+    @JsonProperty("concurrencyLimitConfig")
+    private ConcurrencyLimitConfig concurrencyLimitConfig;
+
     public SqsConfig getSqsConfig() {
         return sqsConfig;
     }
@@ -48,4 +73,24 @@ public class LedgerConfig extends Configuration {
     public ReportingConfig getReportingConfig() {
         return reportingConfig;
     }
+
+    public ProjectionSweeperConfig getProjectionSweeperConfig() {
+        return projectionSweeperConfig;
+    }
+
+    public BulkEventIngestConfig getBulkEventIngestConfig() {
+        return bulkEventIngestConfig;
+    }
+
+    public RetentionPurgeConfig getRetentionPurgeConfig() {
+        return retentionPurgeConfig;
+    }
+
+    public TransactionSearchConfig getTransactionSearchConfig() {
+        return transactionSearchConfig;
+    }
+
+    public ConcurrencyLimitConfig getConcurrencyLimitConfig() {
+        return concurrencyLimitConfig;
+    }
 }
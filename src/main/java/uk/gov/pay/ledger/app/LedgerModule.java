@@ -6,26 +6,58 @@ import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import io.dropwizard.setup.Environment;
 import org.jdbi.v3.core.Jdbi;
+import uk.gov.pay.ledger.app.config.ConcurrencyLimitConfig;
+import uk.gov.pay.ledger.app.config.ResourceClassLimitConfig;
+import uk.gov.pay.ledger.app.config.TransactionSearchConfig;
+import uk.gov.pay.ledger.concurrency.AimdConcurrencyLimiter;
+import uk.gov.pay.ledger.concurrency.ConcurrencyLimiters;
+import uk.gov.pay.ledger.event.dao.EventBulkIngestDao;
 import uk.gov.pay.ledger.event.dao.EventDao;
 import uk.gov.pay.ledger.event.dao.ResourceTypeDao;
+import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
 import uk.gov.pay.ledger.metadatakey.dao.MetadataKeyDao;
 import uk.gov.pay.ledger.payout.dao.PayoutDao;
+import uk.gov.pay.ledger.projection.dao.ProjectionRebuildDao;
+import uk.gov.pay.ledger.projection.dao.ReprojectionQueueDao;
+import uk.gov.pay.ledger.projection.dao.StaleProjectionDao;
+import uk.gov.pay.ledger.projection.service.ReprojectionService;
 import uk.gov.pay.ledger.report.dao.PerformanceReportDao;
 import uk.gov.pay.ledger.report.dao.ReportDao;
+import uk.gov.pay.ledger.retention.dao.RetentionPurgeDao;
+import uk.gov.pay.ledger.transaction.cache.TransactionSearchCache;
+import uk.gov.pay.ledger.transaction.cache.TransactionViewCache;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchJobDao;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchTemplateCache;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchVersionDao;
+import uk.gov.pay.ledger.transaction.model.CsvTransactionFactory;
+import uk.gov.pay.ledger.transaction.model.TransactionFactory;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchCostEstimator;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchExecutor;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchJobService;
+import uk.gov.pay.ledger.transaction.service.TransactionService;
 import uk.gov.pay.ledger.transactionmetadata.dao.TransactionMetadataDao;
+import uk.gov.pay.ledger.util.serialiser.ResponseMappers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class LedgerModule extends AbstractModule {
     private final LedgerConfig configuration;
     private final Environment environment;
     private final Jdbi jdbi;
 
-    LedgerModule(
+    public LedgerModule(
             LedgerConfig config,
             final Environment environment,
             final Jdbi jdbi
@@ -50,6 +82,12 @@ public class LedgerModule extends AbstractModule {
         return objectMapper;
     }
 
+    @Provides
+    @Singleton
+    public ResponseMappers provideResponseMappers(ObjectMapper objectMapper) {
+        return new ResponseMappers(objectMapper);
+    }
+
     @Provides
     @Singleton
     public EventDao provideEventDao() {
@@ -64,8 +102,41 @@ public class LedgerModule extends AbstractModule {
 
     @Provides
     @Singleton
-    public TransactionDao provideTransactionDao() {
-        return new TransactionDao(jdbi);
+    public TransactionDao provideTransactionDao(TransactionSearchCache transactionSearchCache,
+                                                TransactionViewCache transactionViewCache,
+                                                TransactionSearchTemplateCache transactionSearchTemplateCache) {
+        return new TransactionDao(jdbi, transactionSearchCache, transactionViewCache, transactionSearchTemplateCache,
+                configuration.getTransactionSearchConfig().getAccountMergeThreshold(),
+                Duration.ofMillis(configuration.getTransactionSearchConfig().getPageQueryTimeoutInMilliseconds()));
+    }
+
+    @Provides
+    @Singleton
+    public TransactionSearchTemplateCache provideTransactionSearchTemplateCache() {
+        return new TransactionSearchTemplateCache(environment.metrics());
+    }
+
+    @Provides
+    @Singleton
+    public TransactionSearchJobDao provideTransactionSearchJobDao() {
+        return new TransactionSearchJobDao(jdbi);
+    }
+
+    @Provides
+    @Singleton
+    public TransactionSearchCache provideTransactionSearchCache() {
+        TransactionSearchConfig config = configuration.getTransactionSearchConfig();
+        return new TransactionSearchCache(config.getResultCacheSizeInKilobytes(),
+                Duration.ofSeconds(config.getResultCacheExpiryInSeconds()),
+                new TransactionSearchVersionDao(jdbi),
+                environment.metrics());
+    }
+
+    @Provides
+    @Singleton
+    public TransactionViewCache provideTransactionViewCache() {
+        return new TransactionViewCache(configuration.getTransactionSearchConfig().getViewCacheSizeInKilobytes(),
+                environment.metrics());
     }
 
     @Provides
@@ -98,6 +169,113 @@ public class LedgerModule extends AbstractModule {
         return new TransactionMetadataDao(jdbi);
     }
 
+    @Provides
+    @Singleton
+    public ProjectionRebuildDao provideProjectionRebuildDao() {
+        return new ProjectionRebuildDao(jdbi);
+    }
+
+    @Provides
+    @Singleton
+    public StaleProjectionDao provideStaleProjectionDao() {
+        return new StaleProjectionDao(jdbi);
+    }
+
+    @Provides
+    @Singleton
+    public EventBulkIngestDao provideEventBulkIngestDao() {
+        return new EventBulkIngestDao(jdbi);
+    }
+
+    @Provides
+    @Singleton
+    public ReprojectionQueueDao provideReprojectionQueueDao() {
+        return new ReprojectionQueueDao(jdbi);
+    }
+
+    @Provides
+    @Singleton
+    public RetentionPurgeDao provideRetentionPurgeDao() {
+        return new RetentionPurgeDao(jdbi);
+    }
+
+    @Provides
+    @Singleton
+    public TransactionSearchExecutor provideTransactionSearchExecutor() {
+        TransactionSearchConfig config = configuration.getTransactionSearchConfig();
+        // a search holds a connection for its page query and another for its count, so the pool is kept to half of
+        // the database pool to leave connections for everything else
+        int numberOfThreads = Math.min(config.getNumberOfThreads(),
+                Math.max(1, configuration.getDataSourceFactory().getMaxSize() / 2));
+        ExecutorService executorService = environment.lifecycle()
+                .executorService("transaction-search-%d")
+                .minThreads(numberOfThreads)
+                .maxThreads(numberOfThreads)
+                .workQueue(new ArrayBlockingQueue<>(config.getQueueSize()))
+                .rejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy())
+                .build();
+
+        return new TransactionSearchExecutor(executorService,
+                Duration.ofMillis(config.getPageQueryTimeoutInMilliseconds()),
+                Duration.ofMillis(config.getCountQueryTimeoutInMilliseconds()),
+                environment.metrics());
+    }
+
+    @Provides
+    @Singleton
+    public TransactionSearchJobService provideTransactionSearchJobService(TransactionDao transactionDao,
+                                                                          TransactionSearchJobDao transactionSearchJobDao,
+                                                                          TransactionViewCache transactionViewCache,
+                                                                          TransactionSearchTemplateCache transactionSearchTemplateCache,
+                                                                          EventDao eventDao,
+                                                                          TransactionEntityFactory transactionEntityFactory,
+                                                                          TransactionFactory transactionFactory,
+                                                                          CsvTransactionFactory csvTransactionFactory,
+                                                                          ObjectMapper objectMapper,
+                                                                          ReprojectionService reprojectionService) {
+        TransactionSearchConfig config = configuration.getTransactionSearchConfig();
+        ExecutorService executorService = environment.lifecycle()
+                .executorService("transaction-search-job-%d", new ThreadFactoryBuilder()
+                        .setNameFormat("transaction-search-job-%d")
+                        .setPriority(Thread.MIN_PRIORITY)
+                        .build())
+                .minThreads(config.getAsyncJobNumberOfThreads())
+                .maxThreads(config.getAsyncJobNumberOfThreads())
+                .workQueue(new ArrayBlockingQueue<>(config.getAsyncJobQueueSize()))
+                .rejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy())
+                .build();
+
+        // jobs run their queries on their own thread rather than on the transaction-search pool, with a timeout long
+        // enough for the searches they were queued for, and their results are not cached since they are kept as jobs
+        Duration jobQueryTimeout = Duration.ofSeconds(config.getAsyncJobQueryTimeoutInSeconds());
+        TransactionDao jobTransactionDao = new TransactionDao(jdbi, TransactionSearchCache.disabled(),
+                transactionViewCache, transactionSearchTemplateCache, config.getAccountMergeThreshold(),
+                jobQueryTimeout);
+        TransactionService jobTransactionService = new TransactionService(jobTransactionDao, eventDao,
+                transactionEntityFactory, transactionFactory, csvTransactionFactory, objectMapper, reprojectionService,
+                new TransactionSearchExecutor(MoreExecutors.newDirectExecutorService(), jobQueryTimeout,
+                        jobQueryTimeout, environment.metrics()),
+                TransactionSearchCache.disabled(), transactionViewCache);
+
+        return new TransactionSearchJobService(jobTransactionService, transactionSearchJobDao,
+                new TransactionSearchCostEstimator(transactionDao, config.getAsyncJobCostThreshold(),
+                        Duration.ofDays(config.getAsyncJobWideDateRangeInDays()), Clock.systemUTC()),
+                executorService,
+                Duration.ofSeconds(config.getAsyncJobExpiryInSeconds()),
+                environment.metrics());
+    }
+
+    @Provides
+    @Singleton
+    public ConcurrencyLimiters provideConcurrencyLimiters() {
+        ConcurrencyLimitConfig config = configuration.getConcurrencyLimitConfig();
+        return new ConcurrencyLimiters(resourceClass -> {
+            ResourceClassLimitConfig limitConfig = config.getLimitConfig(resourceClass);
+            return new AimdConcurrencyLimiter(limitConfig.getInitialLimit(), limitConfig.getMinLimit(),
+                    limitConfig.getMaxLimit(), Duration.ofMillis(limitConfig.getLatencyThresholdInMilliseconds()));
+        }, config.getRetryAfterInSeconds(), environment.metrics());
+    }
+
     @Provides
     public AmazonSQS sqsClient(LedgerConfig ledgerConfig) {
         AmazonSQSClientBuilder clientBuilder = AmazonSQSClientBuilder
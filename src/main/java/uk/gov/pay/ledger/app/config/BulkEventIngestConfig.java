@@ -0,0 +1,47 @@
+package uk.gov.pay.ledger.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+public class BulkEventIngestConfig extends Configuration {
+
+    @Valid
+    private String apiToken;
+
+    @Valid
+    private boolean reprojectionEnabled;
+
+    @Valid
+    @Min(1)
+    private int reprojectionBatchSize;
+
+    @Valid
+    @Min(1)
+    private int reprojectionDelayInMilliseconds;
+
+    @Valid
+    @Min(1)
+    private int reprojectionNumberOfThreads;
+
+    public String getApiToken() {
+        return apiToken;
+    }
+
+    public boolean isReprojectionEnabled() {
+        return reprojectionEnabled;
+    }
+
+    public int getReprojectionBatchSize() {
+        return reprojectionBatchSize;
+    }
+
+    public int getReprojectionDelayInMilliseconds() {
+        return reprojectionDelayInMilliseconds;
+    }
+
+    public int getReprojectionNumberOfThreads() {
+        return reprojectionNumberOfThreads;
+    }
+}
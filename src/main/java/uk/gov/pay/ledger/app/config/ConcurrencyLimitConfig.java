@@ -0,0 +1,62 @@
+package uk.gov.pay.ledger.app.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.Configuration;
+import uk.gov.pay.ledger.concurrency.ResourceClass;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class ConcurrencyLimitConfig extends Configuration {
+
+    @Valid
+    private boolean enabled;
+
+    @Valid
+    @Min(1)
+    private int retryAfterInSeconds;
+
+    @Valid
+    @NotNull
+    @JsonProperty("search")
+    private ResourceClassLimitConfig search;
+
+    @Valid
+    @NotNull
+    @JsonProperty("singleGet")
+    private ResourceClassLimitConfig singleGet;
+
+    @Valid
+    @NotNull
+    @JsonProperty("csv")
+    private ResourceClassLimitConfig csv;
+
+    @Valid
+    @NotNull
+    @JsonProperty("reports")
+    private ResourceClassLimitConfig reports;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getRetryAfterInSeconds() {
+        return retryAfterInSeconds;
+    }
+
+    public ResourceClassLimitConfig getLimitConfig(ResourceClass resourceClass) {
+        switch (resourceClass) {
+            case SEARCH:
+                return search;
+            case SINGLE_GET:
+                return singleGet;
+            case CSV:
+                return csv;
+            case REPORTS:
+                return reports;
+            default:
+                throw new IllegalArgumentException("No concurrency limit configured for " + resourceClass);
+        }
+    }
+}
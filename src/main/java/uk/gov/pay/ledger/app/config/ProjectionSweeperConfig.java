@@ -0,0 +1,48 @@
+package uk.gov.pay.ledger.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+public class ProjectionSweeperConfig extends Configuration {
+
+    @Valid
+    private boolean enabled;
+
+    @Valid
+    @Min(1)
+    private int idRangeSize;
+
+    @Valid
+    @Min(1)
+    private int delayInMilliseconds;
+
+    @Valid
+    @Min(1)
+    private int maxReprojectionsPerSecond;
+
+    @Valid
+    @Min(1)
+    private int restartDelayInMinutes;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getIdRangeSize() {
+        return idRangeSize;
+    }
+
+    public int getDelayInMilliseconds() {
+        return delayInMilliseconds;
+    }
+
+    public int getMaxReprojectionsPerSecond() {
+        return maxReprojectionsPerSecond;
+    }
+
+    public int getRestartDelayInMinutes() {
+        return restartDelayInMinutes;
+    }
+}
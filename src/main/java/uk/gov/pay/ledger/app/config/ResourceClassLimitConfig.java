@@ -0,0 +1,41 @@
+package uk.gov.pay.ledger.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+public class ResourceClassLimitConfig extends Configuration {
+
+    @Valid
+    @Min(1)
+    private int initialLimit;
+
+    @Valid
+    @Min(1)
+    private int minLimit;
+
+    @Valid
+    @Min(1)
+    private int maxLimit;
+
+    @Valid
+    @Min(1)
+    private long latencyThresholdInMilliseconds;
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public long getLatencyThresholdInMilliseconds() {
+        return latencyThresholdInMilliseconds;
+    }
+}
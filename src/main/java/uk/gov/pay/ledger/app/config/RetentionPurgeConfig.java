@@ -0,0 +1,87 @@
+package uk.gov.pay.ledger.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+public class RetentionPurgeConfig extends Configuration {
+
+    @Valid
+    private boolean enabled;
+
+    @Valid
+    private boolean dryRun;
+
+    @Valid
+    @Min(1)
+    private int retentionPeriodInDays;
+
+    @Valid
+    @Min(1)
+    private int chunkSize;
+
+    @Valid
+    @Min(1)
+    private int delayInMinutes;
+
+    @Valid
+    @Min(1)
+    private int maxRunDurationInMinutes;
+
+    @Valid
+    @Min(0)
+    private long minPauseInMilliseconds;
+
+    @Valid
+    @Min(0)
+    private long maxPauseInMilliseconds;
+
+    @Valid
+    @Min(0)
+    private double maxReplicationLagInSeconds;
+
+    @Valid
+    @Min(0)
+    private long maxLockWaitingSessions;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public int getRetentionPeriodInDays() {
+        return retentionPeriodInDays;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getDelayInMinutes() {
+        return delayInMinutes;
+    }
+
+    public int getMaxRunDurationInMinutes() {
+        return maxRunDurationInMinutes;
+    }
+
+    public long getMinPauseInMilliseconds() {
+        return minPauseInMilliseconds;
+    }
+
+    public long getMaxPauseInMilliseconds() {
+        return maxPauseInMilliseconds;
+    }
+
+    public double getMaxReplicationLagInSeconds() {
+        return maxReplicationLagInSeconds;
+    }
+
+    public long getMaxLockWaitingSessions() {
+        return maxLockWaitingSessions;
+    }
+}
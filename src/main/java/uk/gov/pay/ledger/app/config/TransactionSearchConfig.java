@@ -0,0 +1,129 @@
+package uk.gov.pay.ledger.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+public class TransactionSearchConfig extends Configuration {
+
+    @Valid
+    @Min(1)
+    private int numberOfThreads;
+
+    @Valid
+    @Min(1)
+    private int queueSize;
+
+    @Valid
+    @Min(1)
+    private int pageQueryTimeoutInMilliseconds;
+
+    @Valid
+    @Min(1)
+    private int countQueryTimeoutInMilliseconds;
+
+    @Valid
+    @Min(0)
+    private int resultCacheSizeInKilobytes;
+
+    @Valid
+    @Min(1)
+    private int resultCacheExpiryInSeconds;
+
+    @Valid
+    @Min(0)
+    private int viewCacheSizeInKilobytes;
+
+    @Valid
+    @Min(0)
+    private int streamingMinimumDisplaySize;
+
+    @Valid
+    @Min(1)
+    private int accountMergeThreshold;
+
+    @Valid
+    @Min(0)
+    private int asyncJobCostThreshold;
+
+    @Valid
+    @Min(1)
+    private int asyncJobWideDateRangeInDays;
+
+    @Valid
+    @Min(1)
+    private int asyncJobNumberOfThreads;
+
+    @Valid
+    @Min(1)
+    private int asyncJobQueueSize;
+
+    @Valid
+    @Min(1)
+    private int asyncJobExpiryInSeconds;
+
+    @Valid
+    @Min(1)
+    private int asyncJobQueryTimeoutInSeconds;
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getPageQueryTimeoutInMilliseconds() {
+        return pageQueryTimeoutInMilliseconds;
+    }
+
+    public int getCountQueryTimeoutInMilliseconds() {
+        return countQueryTimeoutInMilliseconds;
+    }
+
+    public int getResultCacheSizeInKilobytes() {
+        return resultCacheSizeInKilobytes;
+    }
+
+    public int getResultCacheExpiryInSeconds() {
+        return resultCacheExpiryInSeconds;
+    }
+
+    public int getViewCacheSizeInKilobytes() {
+        return viewCacheSizeInKilobytes;
+    }
+
+    public int getStreamingMinimumDisplaySize() {
+        return streamingMinimumDisplaySize;
+    }
+
+    public int getAccountMergeThreshold() {
+        return accountMergeThreshold;
+    }
+
+    public int getAsyncJobCostThreshold() {
+        return asyncJobCostThreshold;
+    }
+
+    public int getAsyncJobWideDateRangeInDays() {
+        return asyncJobWideDateRangeInDays;
+    }
+
+    public int getAsyncJobNumberOfThreads() {
+        return asyncJobNumberOfThreads;
+    }
+
+    public int getAsyncJobQueueSize() {
+        return asyncJobQueueSize;
+    }
+
+    public int getAsyncJobExpiryInSeconds() {
+        return asyncJobExpiryInSeconds;
+    }
+
+    public int getAsyncJobQueryTimeoutInSeconds() {
+        return asyncJobQueryTimeoutInSeconds;
+    }
+}
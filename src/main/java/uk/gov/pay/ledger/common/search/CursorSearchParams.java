@@ -0,0 +1,11 @@
+package uk.gov.pay.ledger.common.search;
+
+/**
+ * Search parameters for searches that can be paged through with keyset cursors as well as page numbers
+ */
+public interface CursorSearchParams {
+
+    String getCursor();
+
+    String buildQueryParamStringForCursor(String cursor);
+}
@@ -0,0 +1,93 @@
+package uk.gov.pay.ledger.concurrency;
+
+import com.google.common.base.Ticker;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits how many requests may be in flight at once, adapting the limit to the latency they see. A request that
+ * finishes within the latency threshold while the limit is at least half used grows the limit by one over the course
+ * of a limit's worth of such requests. A request that is slower than the threshold, or that fails, shrinks it by a
+ * tenth. The limit stays between its minimum and maximum, so it backs off quickly when the database is saturated and
+ * creeps back up once it has recovered.
+ */
+public class AimdConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdInNanos;
+    private final Ticker ticker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    public AimdConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold) {
+        this(initialLimit, minLimit, maxLimit, latencyThreshold, Ticker.systemTicker());
+    }
+
+    AimdConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold, Ticker ticker) {
+        if (minLimit > maxLimit) {
+            throw new IllegalArgumentException("The minimum limit must not be over the maximum limit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdInNanos = latencyThreshold.toNanos();
+        this.ticker = ticker;
+        this.limit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+    }
+
+    /**
+     * A permit for the request if fewer requests than the limit are in flight. The permit must be released when the
+     * request has finished.
+     */
+    public Optional<Permit> tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return Optional.empty();
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return Optional.of(new Permit(current + 1, ticker.read()));
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void onRelease(int inFlightWhenAcquired, long latencyInNanos, boolean dropped) {
+        if (dropped || latencyInNanos > latencyThresholdInNanos) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (inFlightWhenAcquired * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public class Permit {
+
+        private final int inFlightWhenAcquired;
+        private final long acquiredAt;
+
+        private Permit(int inFlightWhenAcquired, long acquiredAt) {
+            this.inFlightWhenAcquired = inFlightWhenAcquired;
+            this.acquiredAt = acquiredAt;
+        }
+
+        /**
+         * Frees the permit's slot and adjusts the limit by the request's latency. A dropped request is one that
+         * failed, which counts against the limit however quickly it failed.
+         */
+        public void release(boolean dropped) {
+            inFlight.decrementAndGet();
+            onRelease(inFlightWhenAcquired, ticker.read() - acquiredAt, dropped);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package uk.gov.pay.ledger.concurrency;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The concurrency limiter of each resource class, with its limit, the requests it has in flight and the requests it
+ * has rejected published as metrics.
+ */
+public class ConcurrencyLimiters {
+
+    private final Map<ResourceClass, AimdConcurrencyLimiter> limiters = new EnumMap<>(ResourceClass.class);
+    private final int retryAfterInSeconds;
+    private final MetricRegistry metricRegistry;
+
+    public ConcurrencyLimiters(Function<ResourceClass, AimdConcurrencyLimiter> limiterFactory, int retryAfterInSeconds,
+                               MetricRegistry metricRegistry) {
+        this.retryAfterInSeconds = retryAfterInSeconds;
+        this.metricRegistry = metricRegistry;
+
+        for (ResourceClass resourceClass : ResourceClass.values()) {
+            AimdConcurrencyLimiter limiter = limiterFactory.apply(resourceClass);
+            limiters.put(resourceClass, limiter);
+            metricRegistry.register(metricName(resourceClass, "limit"), (Gauge<Integer>) limiter::getLimit);
+            metricRegistry.register(metricName(resourceClass, "in-flight"), (Gauge<Integer>) limiter::getInFlight);
+        }
+    }
+
+    /**
+     * A permit for a request of the resource class, or empty, counted as a rejection, if the class is at its limit.
+     */
+    public Optional<AimdConcurrencyLimiter.Permit> tryAcquire(ResourceClass resourceClass) {
+        Optional<AimdConcurrencyLimiter.Permit> permit = limiters.get(resourceClass).tryAcquire();
+        if (permit.isEmpty()) {
+            metricRegistry.counter(metricName(resourceClass, "rejected")).inc();
+        }
+        return permit;
+    }
+
+    public AimdConcurrencyLimiter getLimiter(ResourceClass resourceClass) {
+        return limiters.get(resourceClass);
+    }
+
+    public int getRetryAfterInSeconds() {
+        return retryAfterInSeconds;
+    }
+
+    private static String metricName(ResourceClass resourceClass, String name) {
+        return "concurrency-limit." + resourceClass.getMetricName() + "." + name;
+    }
+}
@@ -0,0 +1,13 @@
+package uk.gov.pay.ledger.concurrency;
+
+/**
+ * Groups of endpoints that put a similar load on the database, each of which is limited separately so that a spike
+ * in one, such as searches, cannot starve the others of threads and connections.
+ */
+public enum ResourceClass {
+    SEARCH, SINGLE_GET, CSV, REPORTS;
+
+    public String getMetricName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,145 @@
+package uk.gov.pay.ledger.event.dao;
+
+import com.google.inject.Inject;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.response.BulkEventIngestResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+
+public class EventBulkIngestDao {
+
+    private static final int COPY_BUFFER_SIZE_BYTES = 256 * 1024;
+
+    private static final String CREATE_STAGING_TABLE =
+            "CREATE TEMPORARY TABLE event_bulk_staging (" +
+            "resource_type VARCHAR(255) NOT NULL, " +
+            "resource_external_id VARCHAR(26) NOT NULL, " +
+            "parent_resource_external_id VARCHAR(26), " +
+            "event_date TIMESTAMP WITH TIME ZONE NOT NULL, " +
+            "event_type VARCHAR(255) NOT NULL, " +
+            "event_data JSONB" +
+            ") ON COMMIT DROP";
+
+    private static final String COPY_INTO_STAGING_TABLE =
+            "COPY event_bulk_staging (resource_type, resource_external_id, parent_resource_external_id, " +
+            "event_date, event_type, event_data) FROM STDIN WITH (FORMAT csv)";
+
+    /**
+     * Deduplicates on the same columns as {@link EventDao#insertIfDoesNotExist}, both within the upload and against
+     * events already stored, and enqueues each resource that received a new event for reprojection. A resource that
+     * is already queued has its generation bumped, and its attempts reset, rather than being left as it is: a worker
+     * that has claimed it may already have read its events, and waits to be able to remove only the generation it
+     * read.
+     */
+    private static final String INSERT_NEW_EVENTS_AND_ENQUEUE_RESOURCES =
+            "WITH inserted AS (" +
+            "    INSERT INTO event(resource_type_id, resource_external_id, parent_resource_external_id, " +
+            "                      event_date, event_type, event_data) " +
+            "    SELECT DISTINCT ON (rt.id, s.resource_external_id, s.event_date, s.event_type) " +
+            "           rt.id, s.resource_external_id, s.parent_resource_external_id, " +
+            "           s.event_date, s.event_type, s.event_data " +
+            "    FROM event_bulk_staging s, resource_type rt " +
+            "    WHERE upper(rt.name) = s.resource_type " +
+            "    AND NOT EXISTS ( " +
+            "        SELECT 1 " +
+            "        FROM event e " +
+            "        WHERE e.resource_type_id = rt.id AND " +
+            "              e.resource_external_id = s.resource_external_id AND " +
+            "              e.event_date = s.event_date AND " +
+            "              e.event_type = s.event_type) " +
+            "    RETURNING resource_type_id, resource_external_id" +
+            "), enqueued AS (" +
+            "    INSERT INTO reprojection_queue(resource_external_id, resource_type_id) " +
+            "    SELECT DISTINCT resource_external_id, resource_type_id FROM inserted " +
+            "    ON CONFLICT (resource_external_id) DO UPDATE " +
+            "    SET generation = reprojection_queue.generation + 1, attempts = 0 " +
+            "    RETURNING resource_external_id" +
+            ") " +
+            "SELECT (SELECT count(*) FROM inserted) AS events_inserted, " +
+            "       (SELECT count(*) FROM enqueued) AS resources_enqueued";
+
+    private final Jdbi jdbi;
+
+    @Inject
+    public EventBulkIngestDao(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    /**
+     * Loads events into a temporary staging table with COPY and moves the new ones into the event table, all in one
+     * transaction. An exception thrown while iterating the events rolls back the whole upload.
+     */
+    public BulkEventIngestResponse ingest(Iterator<Event> events) {
+        return jdbi.inTransaction(handle -> {
+            handle.execute(CREATE_STAGING_TABLE);
+            long eventsReceived = copyIntoStagingTable(handle, events);
+            handle.execute("ANALYZE event_bulk_staging");
+
+            return handle.createQuery(INSERT_NEW_EVENTS_AND_ENQUEUE_RESOURCES)
+                    .map((rs, ctx) -> new BulkEventIngestResponse(eventsReceived,
+                            rs.getLong("events_inserted"), rs.getLong("resources_enqueued")))
+                    .one();
+        });
+    }
+
+    private long copyIntoStagingTable(Handle handle, Iterator<Event> events) {
+        try {
+            return copyIntoStagingTable(handle.getConnection().unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn(COPY_INTO_STAGING_TABLE), events);
+        } catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Unable to copy events into staging table", e, null);
+        }
+    }
+
+    private long copyIntoStagingTable(CopyIn copyIn, Iterator<Event> events) throws SQLException {
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(COPY_BUFFER_SIZE_BYTES + 4096);
+        long count = 0;
+        try {
+            while (events.hasNext()) {
+                buffer.writeBytes(toCsvRow(events.next()));
+                count++;
+                if (buffer.size() >= COPY_BUFFER_SIZE_BYTES) {
+                    copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+                    buffer.reset();
+                }
+            }
+            if (buffer.size() > 0) {
+                copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+            }
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+        return count;
+    }
+
+    private byte[] toCsvRow(Event event) {
+        String row = String.join(",",
+                csvField(event.getResourceType().name()),
+                csvField(event.getResourceExternalId()),
+                csvField(event.getParentResourceExternalId()),
+                csvField(event.getEventDate().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)),
+                csvField(event.getEventType()),
+                csvField(event.getEventData())) + "\n";
+        return row.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
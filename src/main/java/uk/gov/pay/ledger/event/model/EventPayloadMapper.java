@@ -0,0 +1,217 @@
+package uk.gov.pay.ledger.event.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedField;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps an event payload on to an entity by calling the entity's setters directly, as a faster replacement for
+ * {@link ObjectMapper#convertValue(Object, Class)}.
+ *
+ * The payload keys are read once from Jackson's own view of the entity, so the naming strategy and ignored
+ * properties are the same as the object mapper's. String, number and boolean values that already have the type of
+ * their property are set directly, and enum names are converted once and remembered. Any other value, and any
+ * property with its own deserializer or format, is left to the object mapper so that coercion rules and failures
+ * are unchanged.
+ */
+public class EventPayloadMapper<T> {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final ObjectMapper objectMapper;
+    private final MethodHandle constructor;
+    private final Map<String, PropertyWriter> writers = new HashMap<>();
+    private final Set<String> propertiesDeserializedByObjectMapper = new HashSet<>();
+
+    public EventPayloadMapper(ObjectMapper objectMapper, Class<T> entityType) {
+        this.objectMapper = objectMapper;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(entityType, MethodHandles.lookup());
+            this.constructor = lookup.findConstructor(entityType, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+
+            BeanDescription description = objectMapper.getDeserializationConfig()
+                    .introspect(objectMapper.constructType(entityType));
+            AnnotationIntrospector introspector = objectMapper.getDeserializationConfig().getAnnotationIntrospector();
+
+            for (BeanPropertyDefinition property : description.findProperties()) {
+                AnnotatedMember mutator = property.getNonConstructorMutator();
+                if (mutator == null) {
+                    continue;
+                }
+                Class<?> propertyType = property.getPrimaryType().getRawClass();
+                if (hasCustomDeserializer(introspector, property)) {
+                    propertiesDeserializedByObjectMapper.add(property.getName());
+                } else if (isDirectlyAssignable(propertyType)) {
+                    writers.put(property.getName(),
+                            new PropertyWriter(setterFor(lookup, mutator), boxed(propertyType), null));
+                } else if (propertyType.isEnum()) {
+                    writers.put(property.getName(),
+                            new PropertyWriter(setterFor(lookup, mutator), propertyType, objectMapper));
+                } else {
+                    propertiesDeserializedByObjectMapper.add(property.getName());
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unable to build event payload mapper for " + entityType.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T map(Map<String, Object> payload) {
+        T entity;
+        try {
+            entity = (T) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Unable to create entity for event payload", e);
+        }
+
+        Map<String, Object> remainingPayload = null;
+        for (Map.Entry<String, Object> entry : payload.entrySet()) {
+            PropertyWriter writer = writers.get(entry.getKey());
+            if (writer != null && writer.write(entity, entry.getValue())) {
+                continue;
+            }
+            if (writer != null || propertiesDeserializedByObjectMapper.contains(entry.getKey())) {
+                if (remainingPayload == null) {
+                    remainingPayload = new HashMap<>();
+                }
+                remainingPayload.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (remainingPayload != null) {
+            try {
+                objectMapper.updateValue(entity, remainingPayload);
+            } catch (JsonMappingException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+        return entity;
+    }
+
+    private static boolean isDirectlyAssignable(Class<?> propertyType) {
+        return propertyType == String.class ||
+                propertyType == Long.class ||
+                propertyType == Integer.class ||
+                propertyType == Boolean.class ||
+                propertyType == long.class ||
+                propertyType == int.class ||
+                propertyType == boolean.class;
+    }
+
+    private static boolean hasCustomDeserializer(AnnotationIntrospector introspector, BeanPropertyDefinition property) {
+        for (AnnotatedMember member : new AnnotatedMember[]{property.getField(), property.getSetter()}) {
+            if (member == null) {
+                continue;
+            }
+            JsonFormat.Value format = introspector.findFormat(member);
+            if (introspector.findDeserializer(member) != null ||
+                    introspector.findDeserializationConverter(member) != null ||
+                    (format != null && !format.equals(JsonFormat.Value.empty()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (type == long.class) {
+            return Long.class;
+        }
+        if (type == int.class) {
+            return Integer.class;
+        }
+        if (type == boolean.class) {
+            return Boolean.class;
+        }
+        return type;
+    }
+
+    private static MethodHandle setterFor(MethodHandles.Lookup lookup, AnnotatedMember mutator)
+            throws IllegalAccessException {
+        if (mutator instanceof AnnotatedMethod) {
+            return lookup.unreflect(((AnnotatedMethod) mutator).getAnnotated()).asType(SETTER_TYPE);
+        }
+        return lookup.unreflectSetter(((AnnotatedField) mutator).getAnnotated()).asType(SETTER_TYPE);
+    }
+
+    private static class PropertyWriter {
+
+        private static final int MAX_REMEMBERED_ENUM_VALUES = 64;
+
+        private final MethodHandle setter;
+        private final Class<?> valueType;
+        private final ObjectMapper enumObjectMapper;
+        private final Map<String, Object> enumValues = new ConcurrentHashMap<>();
+
+        PropertyWriter(MethodHandle setter, Class<?> valueType, ObjectMapper enumObjectMapper) {
+            this.setter = setter;
+            this.valueType = valueType;
+            this.enumObjectMapper = enumObjectMapper;
+        }
+
+        /**
+         * Null is left to the object mapper, which sets primitives to their default rather than failing
+         *
+         * @return false if the value needs converting by the object mapper
+         */
+        boolean write(Object entity, Object value) {
+            if (value == null) {
+                return false;
+            }
+            if (enumObjectMapper != null) {
+                value = value instanceof String ? enumValueFor((String) value) : null;
+                if (value == null) {
+                    return false;
+                }
+            } else if (valueType == Long.class && value.getClass() == Integer.class) {
+                value = ((Integer) value).longValue();
+            } else if (value.getClass() != valueType) {
+                return false;
+            }
+            try {
+                setter.invokeExact(entity, value);
+                return true;
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("Unable to set event payload value", e);
+            }
+        }
+
+        /**
+         * Unknown names are not remembered, so they fail in the object mapper as they would have before
+         */
+        private Object enumValueFor(String name) {
+            Object enumValue = enumValues.get(name);
+            if (enumValue != null || enumValues.size() >= MAX_REMEMBERED_ENUM_VALUES) {
+                return enumValue;
+            }
+            try {
+                enumValue = enumObjectMapper.convertValue(name, valueType);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (enumValue != null) {
+                enumValues.put(name, enumValue);
+            }
+            return enumValue;
+        }
+    }
+}
@@ -5,19 +5,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 
+import java.util.List;
 import java.util.Map;
 
+import static java.util.stream.Collectors.toMap;
+
 public class TransactionEntityFactory {
 
     private ObjectMapper objectMapper;
+    private EventPayloadMapper<TransactionEntity> transactionEntityMapper;
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionEntityFactory.class);
 
     @Inject
     public TransactionEntityFactory(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
+        this.transactionEntityMapper = new EventPayloadMapper<>(objectMapper, TransactionEntity.class);
     }
 
     public TransactionEntity create(EventDigest eventDigest) {
@@ -31,7 +37,7 @@ public class TransactionEntityFactory {
                 .orElse(TransactionState.UNDEFINED);
 
         String transactionDetail = convertToTransactionDetails(eventPayload);
-        TransactionEntity entity = objectMapper.convertValue(eventPayload, TransactionEntity.class);
+        TransactionEntity entity = transactionEntityMapper.map(eventPayload);
         entity.setTransactionDetails(transactionDetail);
         entity.setEventCount(eventDigest.getEventCount());
         entity.setState(digestTransactionState);
@@ -39,10 +45,45 @@ public class TransactionEntityFactory {
         entity.setExternalId(eventDigest.getResourceExternalId());
         entity.setParentExternalId(eventDigest.getParentResourceExternalId());
         entity.setTransactionType(eventDigest.getResourceType().toString());
+        entity.setProjectionVersion(ProjectionVersion.TRANSACTION);
 
         return entity;
     }
 
+    public TransactionEntity createRefundWithPaymentDetails(EventDigest refundEventDigest, EventDigest paymentEventDigest) {
+        /**
+         * Apply shared refund payment attributes to the refund digest
+         *
+         * Frontend consumers rely on searching/ filtering/ downloading attributes that belong to a payment on the
+         * refund. Previously this was done at the "view" level by joining transactions to transactions, for performance
+         * reasons this is now done here during domain object projection (as transactions are de-normalised).
+         *
+         * If there is no longer a frontend requirement to display payment information on a refund, this shared data
+         * for the digest can be removed.
+         */
+        Map<String, Object> fieldsFromPayment = getPaymentFieldsToProjectOnToRefund(paymentEventDigest);
+        refundEventDigest.getEventPayload().put("payment_details", fieldsFromPayment);
+
+        TransactionEntity refundTransactionEntity = create(refundEventDigest);
+        TransactionEntity paymentTransactionEntity = create(paymentEventDigest);
+        refundTransactionEntity.setEntityFieldsFromOriginalPayment(paymentTransactionEntity);
+
+        return refundTransactionEntity;
+    }
+
+    private Map<String, Object> getPaymentFieldsToProjectOnToRefund(EventDigest paymentEventDigest) {
+        List<String> paymentsFieldsToCopyToRefunds = List.of("card_brand_label", "expiry_date", "card_type", "wallet_type");
+
+        var paymentPayloadIsEmpty = paymentEventDigest == null || paymentEventDigest.getEventPayload() == null;
+
+        return paymentPayloadIsEmpty
+                ? Map.of()
+                : paymentEventDigest.getEventPayload()
+                .entrySet()
+                .stream().filter(entry -> paymentsFieldsToCopyToRefunds.contains(entry.getKey()))
+                .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
     private String convertToTransactionDetails(Map<String, Object> transactionPayload) {
         try {
             return objectMapper.writeValueAsString(transactionPayload);
@@ -0,0 +1,30 @@
+package uk.gov.pay.ledger.event.model.response;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+public class BulkEventIngestResponse {
+
+    private final long eventsReceived;
+    private final long eventsInserted;
+    private final long resourcesEnqueued;
+
+    public BulkEventIngestResponse(long eventsReceived, long eventsInserted, long resourcesEnqueued) {
+        this.eventsReceived = eventsReceived;
+        this.eventsInserted = eventsInserted;
+        this.resourcesEnqueued = resourcesEnqueued;
+    }
+
+    public long getEventsReceived() {
+        return eventsReceived;
+    }
+
+    public long getEventsInserted() {
+        return eventsInserted;
+    }
+
+    public long getResourcesEnqueued() {
+        return resourcesEnqueued;
+    }
+}
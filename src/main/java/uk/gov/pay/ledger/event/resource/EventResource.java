@@ -4,14 +4,21 @@ import com.codahale.metrics.annotation.Timed;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.concurrency.ResourceClass;
 import uk.gov.pay.ledger.event.dao.EventDao;
 import uk.gov.pay.ledger.event.model.Event;
 import uk.gov.pay.ledger.event.model.EventTicker;
+import uk.gov.pay.ledger.event.model.response.BulkEventIngestResponse;
+import uk.gov.pay.ledger.event.service.BulkEventIngestService;
 import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.filters.ApiTokenAuthenticated;
+import uk.gov.pay.ledger.filters.ConcurrencyLimited;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import javax.validation.constraints.NotEmpty;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
@@ -19,26 +26,34 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 
+import java.io.InputStream;
 import java.time.ZonedDateTime;
 import java.util.List;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static uk.gov.pay.ledger.util.serialiser.ResponseMappers.APPLICATION_CBOR;
+import static uk.gov.pay.ledger.util.serialiser.ResponseMappers.APPLICATION_SMILE;
 
 
 @Path("/v1/event")
-@Produces(APPLICATION_JSON)
+@Produces({APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE})
 public class EventResource {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EventResource.class);
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final EventDao eventDao;
+    private final BulkEventIngestService bulkEventIngestService;
 
     @Inject
-    public EventResource(EventDao eventDao) {
+    public EventResource(EventDao eventDao, BulkEventIngestService bulkEventIngestService) {
         this.eventDao = eventDao;
+        this.bulkEventIngestService = bulkEventIngestService;
     }
 
     @Path("/{eventId}")
     @GET
+    @ConcurrencyLimited(ResourceClass.SINGLE_GET)
     @Timed
     public Event getEvent(@PathParam("eventId") Long eventId) {
         LOGGER.info("Get event request: {}", eventId);
@@ -48,8 +63,19 @@ public class EventResource {
 
     @Path("/ticker")
     @GET
+    @ConcurrencyLimited(ResourceClass.SEARCH)
     @Timed
     public List<EventTicker> eventTickerList(@NotEmpty @QueryParam("from_date") String fromDate, @NotEmpty @QueryParam("to_date") String toDate) {
         return eventDao.findEventsTickerFromDate(ZonedDateTime.parse(fromDate), ZonedDateTime.parse(toDate));
     }
+
+    @Path("/bulk")
+    @POST
+    @Timed
+    @ApiTokenAuthenticated
+    @Consumes(APPLICATION_NDJSON)
+    public BulkEventIngestResponse bulkIngestEvents(InputStream events) {
+        LOGGER.info("Bulk event ingest request");
+        return bulkEventIngestService.ingest(events);
+    }
 }
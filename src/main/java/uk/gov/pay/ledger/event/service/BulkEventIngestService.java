@@ -0,0 +1,103 @@
+package uk.gov.pay.ledger.event.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.event.dao.EventBulkIngestDao;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.response.BulkEventIngestResponse;
+import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.queue.EventMessageDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import static java.lang.String.format;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+public class BulkEventIngestService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkEventIngestService.class);
+
+    private final EventBulkIngestDao eventBulkIngestDao;
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public BulkEventIngestService(EventBulkIngestDao eventBulkIngestDao, ObjectMapper objectMapper) {
+        this.eventBulkIngestDao = eventBulkIngestDao;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Ingests newline delimited events in the same format as event messages received from the queue. The body is
+     * parsed as it is copied into the database so uploads are not held in memory.
+     */
+    public BulkEventIngestResponse ingest(InputStream eventStream) {
+        MappingIterator<EventMessageDto> eventMessages;
+        try {
+            eventMessages = objectMapper.readerFor(EventMessageDto.class).readValues(eventStream);
+        } catch (IOException e) {
+            throw new ValidationException(format("Unable to read events: %s", e.getMessage()));
+        }
+
+        BulkEventIngestResponse response = eventBulkIngestDao.ingest(new EventIterator(eventMessages));
+
+        LOGGER.info("Bulk event ingest completed",
+                kv("events_received", response.getEventsReceived()),
+                kv("events_inserted", response.getEventsInserted()),
+                kv("resources_enqueued", response.getResourcesEnqueued()));
+
+        return response;
+    }
+
+    private static class EventIterator implements Iterator<Event> {
+
+        private final MappingIterator<EventMessageDto> eventMessages;
+
+        EventIterator(MappingIterator<EventMessageDto> eventMessages) {
+            this.eventMessages = eventMessages;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return eventMessages.hasNext();
+            } catch (RuntimeException e) {
+                throw new ValidationException(format("Unable to parse event on line %d: %s",
+                        eventMessages.getCurrentLocation().getLineNr(), e.getMessage()));
+            }
+        }
+
+        @Override
+        public Event next() {
+            EventMessageDto eventMessage;
+            try {
+                eventMessage = eventMessages.next();
+            } catch (RuntimeException e) {
+                throw new ValidationException(format("Unable to parse event on line %d: %s",
+                        eventMessages.getCurrentLocation().getLineNr(), e.getMessage()));
+            }
+
+            if (eventMessage.getResourceType() == null || isBlank(eventMessage.getExternalId()) ||
+                    eventMessage.getEventDate() == null || isBlank(eventMessage.getEventType()) ||
+                    eventMessage.getEventDataNode() == null) {
+                throw new ValidationException(format("Event on line %d must have resource_type, " +
+                                "resource_external_id, timestamp, event_type and event_details",
+                        eventMessages.getCurrentLocation().getLineNr()));
+            }
+
+            return new Event(
+                    null,
+                    eventMessage.getResourceType(),
+                    eventMessage.getExternalId(),
+                    eventMessage.getParentExternalId(),
+                    eventMessage.getEventDate(),
+                    eventMessage.getEventType(),
+                    eventMessage.getEventData());
+        }
+    }
+}
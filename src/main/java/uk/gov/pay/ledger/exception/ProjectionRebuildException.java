@@ -0,0 +1,11 @@
+package uk.gov.pay.ledger.exception;
+
+public class ProjectionRebuildException extends RuntimeException {
+    public ProjectionRebuildException(String message) {
+        super(message);
+    }
+
+    public ProjectionRebuildException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
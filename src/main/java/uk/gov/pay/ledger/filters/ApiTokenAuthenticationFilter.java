@@ -0,0 +1,44 @@
+package uk.gov.pay.ledger.filters;
+
+import com.google.inject.Inject;
+import uk.gov.pay.ledger.app.LedgerConfig;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+@ApiTokenAuthenticated
+@Priority(Priorities.AUTHENTICATION)
+public class ApiTokenAuthenticationFilter implements ContainerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final byte[] apiToken;
+
+    @Inject
+    public ApiTokenAuthenticationFilter(LedgerConfig configuration) {
+        String configuredToken = configuration.getBulkEventIngestConfig().getApiToken();
+        this.apiToken = isBlank(configuredToken) ? null : configuredToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Requests are rejected when no token is configured, so the endpoint is disabled unless a token is set
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String authorization = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+
+        if (apiToken == null || authorization == null || !authorization.startsWith(BEARER_PREFIX) ||
+                !MessageDigest.isEqual(apiToken,
+                        authorization.substring(BEARER_PREFIX.length()).getBytes(StandardCharsets.UTF_8))) {
+            requestContext.abortWith(Response.status(Response.Status.UNAUTHORIZED).build());
+        }
+    }
+}
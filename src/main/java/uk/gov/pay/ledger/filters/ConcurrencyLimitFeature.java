@@ -0,0 +1,33 @@
+package uk.gov.pay.ledger.filters;
+
+import com.google.inject.Inject;
+import uk.gov.pay.ledger.concurrency.ConcurrencyLimiters;
+
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+
+/**
+ * Limits the resource methods annotated with {@link ConcurrencyLimited}, or whose class is, by the limiter of their
+ * resource class. An annotation on the method takes precedence over one on its class.
+ */
+public class ConcurrencyLimitFeature implements DynamicFeature {
+
+    private final ConcurrencyLimiters concurrencyLimiters;
+
+    @Inject
+    public ConcurrencyLimitFeature(ConcurrencyLimiters concurrencyLimiters) {
+        this.concurrencyLimiters = concurrencyLimiters;
+    }
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        ConcurrencyLimited annotation = resourceInfo.getResourceMethod().getAnnotation(ConcurrencyLimited.class);
+        if (annotation == null) {
+            annotation = resourceInfo.getResourceClass().getAnnotation(ConcurrencyLimited.class);
+        }
+        if (annotation != null) {
+            context.register(new ConcurrencyLimitFilter(concurrencyLimiters, annotation.value()));
+        }
+    }
+}
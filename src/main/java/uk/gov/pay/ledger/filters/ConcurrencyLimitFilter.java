@@ -0,0 +1,56 @@
+package uk.gov.pay.ledger.filters;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.commons.model.ErrorIdentifier;
+import uk.gov.pay.ledger.concurrency.AimdConcurrencyLimiter;
+import uk.gov.pay.ledger.concurrency.ConcurrencyLimiters;
+import uk.gov.pay.ledger.concurrency.ResourceClass;
+import uk.gov.pay.ledger.exception.ErrorResponse;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.Optional;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+@Priority(Priorities.AUTHENTICATION - 100)
+public class ConcurrencyLimitFilter implements ContainerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    static final String PERMIT_PROPERTY = ConcurrencyLimitFilter.class.getName() + ".permit";
+
+    private final ConcurrencyLimiters concurrencyLimiters;
+    private final ResourceClass resourceClass;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimiters concurrencyLimiters, ResourceClass resourceClass) {
+        this.concurrencyLimiters = concurrencyLimiters;
+        this.resourceClass = resourceClass;
+    }
+
+    /**
+     * Runs before authentication so that requests are shed as cheaply as possible. The permit is released by
+     * {@link ConcurrencyLimitReleaseListener} once the response, including any streamed body, has been written.
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Optional<AimdConcurrencyLimiter.Permit> permit = concurrencyLimiters.tryAcquire(resourceClass);
+
+        if (permit.isEmpty()) {
+            LOGGER.warn("Request rejected by concurrency limit", kv("resource_class", resourceClass.getMetricName()));
+            requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, concurrencyLimiters.getRetryAfterInSeconds())
+                    .entity(new ErrorResponse(ErrorIdentifier.GENERIC, "Too many requests of this kind are in progress"))
+                    .type(APPLICATION_JSON)
+                    .build());
+            return;
+        }
+        requestContext.setProperty(PERMIT_PROPERTY, permit.get());
+    }
+}
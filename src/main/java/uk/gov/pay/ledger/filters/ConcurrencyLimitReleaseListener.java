@@ -0,0 +1,39 @@
+package uk.gov.pay.ledger.filters;
+
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import uk.gov.pay.ledger.concurrency.AimdConcurrencyLimiter;
+
+import static uk.gov.pay.ledger.filters.ConcurrencyLimitFilter.PERMIT_PROPERTY;
+
+/**
+ * Releases the permit taken by {@link ConcurrencyLimitFilter} once the request has finished, which is after a
+ * streamed response has been written and whether or not the request failed. A request that failed or answered with
+ * a server error is released as dropped.
+ */
+public class ConcurrencyLimitReleaseListener implements ApplicationEventListener {
+
+    private static final RequestEventListener RELEASE_ON_FINISH = event -> {
+        if (event.getType() != RequestEvent.Type.FINISHED) {
+            return;
+        }
+        Object permit = event.getContainerRequest().getProperty(PERMIT_PROPERTY);
+        if (permit != null) {
+            ContainerResponse response = event.getContainerResponse();
+            boolean dropped = !event.isSuccess() || response == null || response.getStatus() >= 500;
+            ((AimdConcurrencyLimiter.Permit) permit).release(dropped);
+        }
+    };
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return RELEASE_ON_FINISH;
+    }
+}
@@ -0,0 +1,17 @@
+package uk.gov.pay.ledger.filters;
+
+import uk.gov.pay.ledger.concurrency.ResourceClass;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Resource methods with this annotation are rejected with a 503 when their resource class is at its concurrency limit
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface ConcurrencyLimited {
+    ResourceClass value();
+}
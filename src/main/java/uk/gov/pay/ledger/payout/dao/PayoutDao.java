@@ -34,7 +34,8 @@ public class PayoutDao {
             "event_count," +
             "payout_details," +
             "created_date," +
-            "gateway_account_id" +
+            "gateway_account_id," +
+            "projection_version" +
             ") " +
             "VALUES (" +
             ":gatewayPayoutId, " +
@@ -44,7 +45,8 @@ public class PayoutDao {
             ":eventCount, " +
             "CAST(:payoutDetails as jsonb), " +
             ":createdDate, " +
-            ":gatewayAccountId " +
+            ":gatewayAccountId, " +
+            ":projectionVersion " +
             ") " +
             "ON CONFLICT (gateway_payout_id) DO UPDATE SET " +
             "gateway_payout_id = EXCLUDED.gateway_payout_id, " +
@@ -54,8 +56,11 @@ public class PayoutDao {
             "event_count = EXCLUDED.event_count, " +
             "payout_details = EXCLUDED.payout_details, " +
             "created_date = EXCLUDED.created_date, " +
-            "gateway_account_id = EXCLUDED.gateway_account_id " +
-            "WHERE EXCLUDED.event_count >= payout.event_count";
+            "gateway_account_id = EXCLUDED.gateway_account_id, " +
+            "projection_version = EXCLUDED.projection_version " +
+            "WHERE EXCLUDED.event_count > payout.event_count " +
+            "OR (EXCLUDED.event_count = payout.event_count " +
+            "AND EXCLUDED.projection_version >= payout.projection_version)";
 
     private Jdbi jdbi;
 
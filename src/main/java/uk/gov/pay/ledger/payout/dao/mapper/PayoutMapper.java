@@ -25,7 +25,8 @@ public class PayoutMapper implements RowMapper<PayoutEntity> {
                .withPaidOutDate(getZonedDateTime(rs, "paid_out_date").orElse(null))
                .withEventCount(rs.getInt("event_count"))
                .withPayoutDetails(rs.getString("payout_details"))
-               .withGatewayAccountId(rs.getString("gateway_account_id"));
+               .withGatewayAccountId(rs.getString("gateway_account_id"))
+               .withProjectionVersion(rs.getInt("projection_version"));
         return builder.build();
     }
 
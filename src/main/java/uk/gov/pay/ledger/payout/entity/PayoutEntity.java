@@ -9,6 +9,7 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import uk.gov.pay.commons.api.json.MicrosecondPrecisionDateTimeDeserializer;
 import uk.gov.pay.commons.api.json.MicrosecondPrecisionDateTimeSerializer;
 import uk.gov.pay.ledger.payout.state.PayoutState;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
 
 import java.time.ZonedDateTime;
 
@@ -29,6 +30,8 @@ public class PayoutEntity {
     private Integer eventCount;
     private String payoutDetails;
     private String gatewayAccountId;
+    @JsonIgnore
+    private Integer projectionVersion = ProjectionVersion.PAYOUT;
 
     public PayoutEntity() {
     }
@@ -43,6 +46,7 @@ public class PayoutEntity {
         this.eventCount = builder.eventCount;
         this.payoutDetails = builder.payoutDetails;
         this.gatewayAccountId = builder.gatewayAccountId;
+        this.projectionVersion = builder.projectionVersion;
     }
 
     public Long getId() {
@@ -114,6 +118,14 @@ public class PayoutEntity {
         return this;
     }
 
+    public Integer getProjectionVersion() {
+        return projectionVersion;
+    }
+
+    public void setProjectionVersion(Integer projectionVersion) {
+        this.projectionVersion = projectionVersion;
+    }
+
     public static final class PayoutEntityBuilder {
         private Long id;
         private String gatewayPayoutId;
@@ -124,6 +136,7 @@ public class PayoutEntity {
         private Integer eventCount;
         private String payoutDetails;
         private String gatewayAccountId;
+        private Integer projectionVersion = ProjectionVersion.PAYOUT;
 
         private PayoutEntityBuilder() {
         }
@@ -177,6 +190,11 @@ public class PayoutEntity {
             return this;
         }
 
+        public PayoutEntityBuilder withProjectionVersion(Integer projectionVersion) {
+            this.projectionVersion = projectionVersion;
+            return this;
+        }
+
         public PayoutEntity build() {
             return new PayoutEntity(this);
         }
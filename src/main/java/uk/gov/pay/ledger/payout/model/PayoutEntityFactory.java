@@ -6,19 +6,23 @@ import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.event.model.EventDigest;
+import uk.gov.pay.ledger.event.model.EventPayloadMapper;
 import uk.gov.pay.ledger.payout.entity.PayoutEntity;
 import uk.gov.pay.ledger.payout.state.PayoutState;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
 
 import java.util.Map;
 
 public class PayoutEntityFactory {
 
     private final ObjectMapper objectMapper;
+    private final EventPayloadMapper<PayoutEntity> payoutEntityMapper;
     private static final Logger LOGGER = LoggerFactory.getLogger(PayoutEntityFactory.class);
 
     @Inject
     public PayoutEntityFactory(ObjectMapper objectMapper){
         this.objectMapper = objectMapper;
+        this.payoutEntityMapper = new EventPayloadMapper<>(objectMapper, PayoutEntity.class);
     }
 
     public PayoutEntity create(EventDigest eventDigest) {
@@ -28,12 +32,13 @@ public class PayoutEntityFactory {
                 .orElse(PayoutState.UNDEFINED);
 
         String payoutDetails = convertToPayoutDetails(eventDigest.getEventPayload());
-        PayoutEntity entity = objectMapper.convertValue(eventDigest.getEventPayload(), PayoutEntity.class);
+        PayoutEntity entity = payoutEntityMapper.map(eventDigest.getEventPayload());
         entity.setState(digestPayoutState);
         entity.setCreatedDate(eventDigest.getEventCreatedDate());
         entity.setGatewayPayoutId(eventDigest.getResourceExternalId());
         entity.setEventCount(eventDigest.getEventCount());
         entity.setPayoutDetails(payoutDetails);
+        entity.setProjectionVersion(ProjectionVersion.PAYOUT);
         return entity;
     }
 
@@ -4,6 +4,8 @@ import com.codahale.metrics.annotation.Timed;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.concurrency.ResourceClass;
+import uk.gov.pay.ledger.filters.ConcurrencyLimited;
 import uk.gov.pay.ledger.payout.model.PayoutSearchResponse;
 import uk.gov.pay.ledger.payout.search.PayoutSearchParams;
 import uk.gov.pay.ledger.payout.service.PayoutService;
@@ -21,9 +23,11 @@ import java.util.List;
 import java.util.Optional;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static uk.gov.pay.ledger.util.serialiser.ResponseMappers.APPLICATION_CBOR;
+import static uk.gov.pay.ledger.util.serialiser.ResponseMappers.APPLICATION_SMILE;
 
 @Path("/v1/payout")
-@Produces(APPLICATION_JSON)
+@Produces({APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE})
 public class PayoutResource {
 
     private static final String ACCOUNT_MANAGER_FIELD_NAME = "gateway_account_id";
@@ -36,6 +40,7 @@ public class PayoutResource {
 
     @Path("/")
     @GET
+    @ConcurrencyLimited(ResourceClass.SEARCH)
     @Timed
     public PayoutSearchResponse search(@BeanParam PayoutSearchParams searchParams,
                                        @QueryParam("override_account_id_restriction") Boolean overrideAccountRestriction,
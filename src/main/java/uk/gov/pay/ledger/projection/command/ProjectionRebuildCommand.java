@@ -0,0 +1,85 @@
+package uk.gov.pay.ledger.projection.command;
+
+import com.google.inject.Guice;
+import io.dropwizard.Application;
+import io.dropwizard.cli.EnvironmentCommand;
+import io.dropwizard.jdbi3.JdbiFactory;
+import io.dropwizard.setup.Environment;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.jdbi.v3.core.Jdbi;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.LedgerModule;
+import uk.gov.pay.ledger.projection.model.ProjectionRebuildOptions;
+import uk.gov.pay.ledger.projection.service.ProjectionRebuilder;
+
+public class ProjectionRebuildCommand extends EnvironmentCommand<LedgerConfig> {
+
+    private static final String PARALLELISM = "parallelism";
+    private static final String BATCH_SIZE = "batchSize";
+    private static final String PAGE_SIZE = "pageSize";
+    private static final String MAX_RESOURCES_PER_SECOND = "maxResourcesPerSecond";
+    private static final String RESUME = "resume";
+    private static final String SKIP_SWAP = "skipSwap";
+    private static final String LOCK_TIMEOUT_SECONDS = "lockTimeoutSeconds";
+
+    public ProjectionRebuildCommand(Application<LedgerConfig> application) {
+        super(application, "rebuildTransactionProjection",
+                "Rebuilds the transaction table from events into a shadow table and swaps it into place");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--parallelism")
+                .dest(PARALLELISM)
+                .type(Integer.class)
+                .setDefault(4)
+                .help("Number of threads projecting batches of resources");
+        subparser.addArgument("--batch-size")
+                .dest(BATCH_SIZE)
+                .type(Integer.class)
+                .setDefault(500)
+                .help("Number of resources projected and written to the shadow table per batch");
+        subparser.addArgument("--page-size")
+                .dest(PAGE_SIZE)
+                .type(Integer.class)
+                .setDefault(1000)
+                .help("Number of resources whose events are read from the database per query");
+        subparser.addArgument("--max-resources-per-second")
+                .dest(MAX_RESOURCES_PER_SECOND)
+                .type(Double.class)
+                .setDefault(0d)
+                .help("Throttles projection to this many resources per second, 0 for no limit");
+        subparser.addArgument("--resume")
+                .dest(RESUME)
+                .action(Arguments.storeTrue())
+                .help("Resumes the most recent incomplete rebuild from its last checkpoint");
+        subparser.addArgument("--skip-swap")
+                .dest(SKIP_SWAP)
+                .action(Arguments.storeTrue())
+                .help("Populates the shadow table without swapping it into place");
+        subparser.addArgument("--lock-timeout-seconds")
+                .dest(LOCK_TIMEOUT_SECONDS)
+                .type(Integer.class)
+                .setDefault(10)
+                .help("Maximum time to wait for the transaction table lock when swapping");
+    }
+
+    @Override
+    protected void run(Environment environment, Namespace namespace, LedgerConfig configuration) {
+        final Jdbi jdbi = new JdbiFactory().build(environment, configuration.getDataSourceFactory(), "postgresql");
+        ProjectionRebuilder projectionRebuilder = Guice.createInjector(new LedgerModule(configuration, environment, jdbi))
+                .getInstance(ProjectionRebuilder.class);
+
+        projectionRebuilder.rebuild(new ProjectionRebuildOptions(
+                namespace.getInt(PARALLELISM),
+                namespace.getInt(BATCH_SIZE),
+                namespace.getInt(PAGE_SIZE),
+                namespace.getDouble(MAX_RESOURCES_PER_SECOND),
+                namespace.getBoolean(RESUME),
+                !namespace.getBoolean(SKIP_SWAP),
+                namespace.getInt(LOCK_TIMEOUT_SECONDS)));
+    }
+}
@@ -0,0 +1,353 @@
+package uk.gov.pay.ledger.projection.dao;
+
+import com.google.inject.Inject;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import uk.gov.pay.ledger.event.dao.mapper.EventMapper;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.projection.dao.mapper.ProjectionRebuildMapper;
+import uk.gov.pay.ledger.projection.model.ProjectionRebuild;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class ProjectionRebuildDao {
+
+    public static final String SHADOW_TABLE = "transaction_rebuild";
+    public static final String REPLACED_TABLE = "transaction_pre_rebuild";
+
+    private static final String CREATE_SHADOW_TABLE =
+            "CREATE TABLE IF NOT EXISTS transaction_rebuild (LIKE transaction INCLUDING ALL)";
+
+    private static final String DROP_SHADOW_TABLE = "DROP TABLE IF EXISTS transaction_rebuild";
+
+    private static final String FIND_MAX_EVENT_ID = "SELECT coalesce(max(id), 0) FROM event";
+
+    /**
+     * Reads the events of the next page of resources after {@code :resumeAfter}, so that a page always holds every
+     * event of each of its resources
+     */
+    private static final String FIND_TRANSACTION_EVENTS_PAGE =
+            "SELECT e.id, e.sqs_message_id, rt.name AS resource_type_name, e.resource_external_id, " +
+            "e.parent_resource_external_id, e.event_date, e.event_type, e.event_data " +
+            "FROM event e, resource_type rt " +
+            "WHERE e.resource_type_id = rt.id " +
+            "AND rt.name IN ('payment', 'refund') " +
+            "AND e.id <= :eventIdWatermark " +
+            "AND e.resource_external_id IN (" +
+            "SELECT DISTINCT pe.resource_external_id FROM event pe, resource_type prt " +
+            "WHERE pe.resource_type_id = prt.id " +
+            "AND prt.name IN ('payment', 'refund') " +
+            "AND pe.resource_external_id > :resumeAfter " +
+            "AND pe.id <= :eventIdWatermark " +
+            "ORDER BY pe.resource_external_id " +
+            "LIMIT :pageSize) " +
+            "ORDER BY e.resource_external_id, e.event_date DESC, e.id DESC";
+
+    /**
+     * Includes refunds of payments that received events, as refunds carry fields projected from their payment
+     */
+    private static final String FIND_RESOURCES_WITH_EVENTS_AFTER =
+            "SELECT e.resource_external_id FROM event e, resource_type rt " +
+            "WHERE e.resource_type_id = rt.id " +
+            "AND rt.name IN ('payment', 'refund') " +
+            "AND e.id > :eventId " +
+            "UNION " +
+            "SELECT t.external_id FROM :transactionTable t " +
+            "WHERE t.parent_external_id IN (SELECT resource_external_id FROM event WHERE id > :eventId)";
+
+    private static final String DELETE_FROM_SHADOW_TABLE =
+            "DELETE FROM transaction_rebuild WHERE external_id IN (<externalIds>)";
+
+    /**
+     * Keeps the id of an existing transaction so that rows in transaction_metadata still point at it after the swap
+     */
+    private static final String INSERT_INTO_SHADOW_TABLE =
+            "INSERT INTO transaction_rebuild(" +
+                    "id," +
+                    "external_id," +
+                    "parent_external_id," +
+                    "gateway_account_id," +
+                    "amount," +
+                    "description," +
+                    "reference,state," +
+                    "email," +
+                    "cardholder_name," +
+                    "created_date," +
+                    "transaction_details," +
+                    "event_count," +
+                    "card_brand, " +
+                    "last_digits_card_number," +
+                    "first_digits_card_number," +
+                    "net_amount," +
+                    "total_amount," +
+                    "fee,type," +
+                    "refund_amount_available," +
+                    "refund_amount_refunded, " +
+                    "refund_status, " +
+                    "live, " +
+                    "moto, " +
+                    "gateway_transaction_id, " +
+                    "source, " +
+                    "gateway_payout_id, " +
+                    "projection_version" +
+                    ") " +
+                    "VALUES (" +
+                    "coalesce((SELECT id FROM transaction WHERE external_id = :externalId), nextval('transaction_id_seq'))," +
+                    ":externalId," +
+                    ":parentExternalId," +
+                    ":gatewayAccountId," +
+                    ":amount," +
+                    ":description," +
+                    ":reference," +
+                    ":state," +
+                    ":email," +
+                    ":cardholderName," +
+                    ":createdDate," +
+                    "CAST(:transactionDetails as jsonb)," +
+                    ":eventCount," +
+                    ":cardBrand," +
+                    ":lastDigitsCardNumber," +
+                    ":firstDigitsCardNumber," +
+                    ":netAmount," +
+                    ":totalAmount," +
+                    ":fee," +
+                    ":transactionType::transaction_type," +
+                    ":refundAmountAvailable," +
+                    ":refundAmountRefunded," +
+                    ":refundStatus," +
+                    ":live, " +
+                    ":moto, " +
+                    ":gatewayTransactionId, " +
+                    ":source::source, " +
+                    ":gatewayPayoutId, " +
+                    ":projectionVersion" +
+                    ")";
+
+    private static final String COPY_TRANSACTIONS_WITHOUT_EVENTS =
+            "INSERT INTO transaction_rebuild " +
+            "SELECT * FROM transaction t " +
+            "WHERE NOT EXISTS (SELECT 1 FROM transaction_rebuild r WHERE r.external_id = t.external_id)";
+
+    private static final String FIND_INDEX_NAME_PAIRS =
+            "SELECT o.indexname AS original_name, r.indexname AS rebuilt_name " +
+            "FROM pg_indexes o, pg_indexes r " +
+            "WHERE o.tablename = 'transaction' AND r.tablename = 'transaction_rebuild' " +
+            "AND o.schemaname = current_schema() AND r.schemaname = current_schema() " +
+            "AND substring(o.indexdef from ' USING .*') = substring(r.indexdef from ' USING .*') " +
+            "AND (o.indexdef LIKE 'CREATE UNIQUE%') = (r.indexdef LIKE 'CREATE UNIQUE%')";
+
+    /**
+     * Rebuilt rows can differ in any searchable column, and transactions first projected by the rebuild have new ids
+     */
+    private static final String REBUILD_SEARCH_INDEX =
+            "TRUNCATE transaction_search; " +
+            "INSERT INTO transaction_search(" + TransactionDao.SEARCH_INDEX_COLUMNS + ") " +
+            "SELECT " + TransactionDao.SEARCH_INDEX_COLUMNS + " FROM transaction";
+
+    /**
+     * Triggers are not copied by CREATE TABLE ... LIKE, so the rebuilt table needs the trigger that keeps
+     * transaction_search in step with it. The replaced table's trigger is dropped along with it.
+     */
+    private static final String CREATE_SEARCH_SYNC_TRIGGER =
+            "CREATE TRIGGER transaction_search_sync AFTER INSERT OR UPDATE OR DELETE ON transaction " +
+            "FOR EACH ROW EXECUTE PROCEDURE sync_transaction_search()";
+
+    private static final String FIND_LEFTOVERS_OF_SWAP =
+            "SELECT relname FROM pg_class " +
+            "WHERE relnamespace = current_schema()::regnamespace " +
+            "AND relname LIKE '%\\_pre\\_rebuild' ORDER BY relname";
+
+    private static final String DROP_REPLACED_TABLE = "DROP TABLE IF EXISTS " + REPLACED_TABLE;
+
+    private static final String FIND_INCOMPLETE_REBUILD =
+            "SELECT * FROM projection_rebuild WHERE completed_date IS NULL ORDER BY id DESC LIMIT 1";
+
+    private static final String INSERT_REBUILD =
+            "INSERT INTO projection_rebuild(event_id_watermark) VALUES (:eventIdWatermark)";
+
+    private static final String UPDATE_CHECKPOINT =
+            "UPDATE projection_rebuild SET last_resource_external_id = :lastResourceExternalId, " +
+            "resources_projected = :resourcesProjected WHERE id = :id";
+
+    private static final String COMPLETE_REBUILD =
+            "UPDATE projection_rebuild SET completed_date = now() WHERE id = :id";
+
+    private final Jdbi jdbi;
+
+    @Inject
+    public ProjectionRebuildDao(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    public void createShadowTable() {
+        jdbi.useHandle(handle -> handle.execute(CREATE_SHADOW_TABLE));
+    }
+
+    public void dropShadowTable() {
+        jdbi.useHandle(handle -> handle.execute(DROP_SHADOW_TABLE));
+    }
+
+    public long findMaxEventId() {
+        return jdbi.withHandle(this::findMaxEventId);
+    }
+
+    public long findMaxEventId(Handle handle) {
+        return handle.createQuery(FIND_MAX_EVENT_ID)
+                .mapTo(Long.class)
+                .one();
+    }
+
+    /**
+     * Streams payment and refund events ordered by resource, with each resource's events most recent first. Events
+     * are read a page of resources at a time, each page in its own short query, so that no transaction is held open
+     * for the length of the rebuild and the consumer can take as long as it needs between pages.
+     */
+    public void streamTransactionEvents(String resumeAfter, long eventIdWatermark, int pageSize,
+                                        Consumer<Event> consumer) {
+        String lastResourceExternalId = resumeAfter == null ? "" : resumeAfter;
+        List<Event> page;
+        do {
+            page = findTransactionEventsPage(lastResourceExternalId, eventIdWatermark, pageSize);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                lastResourceExternalId = page.get(page.size() - 1).getResourceExternalId();
+            }
+        } while (!page.isEmpty());
+    }
+
+    private List<Event> findTransactionEventsPage(String resumeAfter, long eventIdWatermark, int pageSize) {
+        return jdbi.withHandle(handle -> handle.createQuery(FIND_TRANSACTION_EVENTS_PAGE)
+                .bind("resumeAfter", resumeAfter)
+                .bind("eventIdWatermark", eventIdWatermark)
+                .bind("pageSize", pageSize)
+                .map(new EventMapper())
+                .list());
+    }
+
+    public List<String> findResourcesWithEventsAfter(long eventId) {
+        return findResourcesWithEventsAfter("transaction", eventId);
+    }
+
+    public List<String> findResourcesWithEventsAfter(String transactionTable, long eventId) {
+        return jdbi.withHandle(handle -> findResourcesWithEventsAfter(handle, transactionTable, eventId));
+    }
+
+    public List<String> findResourcesWithEventsAfter(Handle handle, String transactionTable, long eventId) {
+        return handle.createQuery(FIND_RESOURCES_WITH_EVENTS_AFTER.replace(":transactionTable", transactionTable))
+                .bind("eventId", eventId)
+                .mapTo(String.class)
+                .list();
+    }
+
+    public void insertIntoShadowTable(List<TransactionEntity> transactions) {
+        jdbi.useTransaction(handle -> insertIntoShadowTable(handle, transactions));
+    }
+
+    public void insertIntoShadowTable(Handle handle, List<TransactionEntity> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        handle.createUpdate(DELETE_FROM_SHADOW_TABLE)
+                .bindList("externalIds", transactions.stream()
+                        .map(TransactionEntity::getExternalId)
+                        .collect(Collectors.toList()))
+                .execute();
+
+        PreparedBatch batch = handle.prepareBatch(INSERT_INTO_SHADOW_TABLE);
+        transactions.forEach(transaction -> batch.bindBean(transaction).add());
+        batch.execute();
+    }
+
+    /**
+     * Swaps the shadow table in place of the transaction table in a single transaction, and rebuilds transaction_search
+     * from it. Writes to the transaction table are blocked while the swap runs; reads continue against the old table
+     * until the rename commits.
+     *
+     * @param catchUp projects resources that received events since the last catch-up into the shadow table, using
+     *                the handle that holds the lock
+     * @return the highest event id seen while the lock was held
+     */
+    public long swapShadowTable(int lockTimeoutSeconds, Consumer<Handle> catchUp) {
+        return jdbi.inTransaction(handle -> {
+            handle.execute(String.format("SET LOCAL lock_timeout = '%ds'", lockTimeoutSeconds));
+            handle.execute("LOCK TABLE transaction IN EXCLUSIVE MODE");
+
+            catchUp.accept(handle);
+            handle.execute(COPY_TRANSACTIONS_WITHOUT_EVENTS);
+            long eventIdAtSwap = findMaxEventId(handle);
+
+            Map<String, String> rebuiltIndexNames = handle.createQuery(FIND_INDEX_NAME_PAIRS)
+                    .map((rs, ctx) -> Map.entry(rs.getString("original_name"), rs.getString("rebuilt_name")))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first));
+
+            handle.execute("ALTER TABLE transaction_metadata DROP CONSTRAINT transaction_metadata_transaction_id_fk");
+            handle.execute("ALTER TABLE transaction RENAME TO " + REPLACED_TABLE);
+            handle.execute("ALTER TABLE transaction_rebuild RENAME TO transaction");
+            rebuiltIndexNames.forEach((originalName, rebuiltName) -> {
+                handle.execute(String.format("ALTER INDEX %s RENAME TO %s_pre_rebuild", originalName, originalName));
+                handle.execute(String.format("ALTER INDEX %s RENAME TO %s", rebuiltName, originalName));
+            });
+            handle.execute("ALTER SEQUENCE transaction_id_seq OWNED BY transaction.id");
+            handle.execute("ALTER TABLE transaction_metadata ADD CONSTRAINT transaction_metadata_transaction_id_fk " +
+                    "FOREIGN KEY (transaction_id) REFERENCES transaction(id) NOT VALID");
+            handle.execute(CREATE_SEARCH_SYNC_TRIGGER);
+            handle.createScript(REBUILD_SEARCH_INDEX).execute();
+
+            return eventIdAtSwap;
+        });
+    }
+
+    /**
+     * The replaced table and its indexes, which are left behind if a rebuild stopped between the swap and dropping
+     * them, and whose names a further swap would collide with
+     */
+    public List<String> findLeftoversOfSwap() {
+        return jdbi.withHandle(handle -> handle.createQuery(FIND_LEFTOVERS_OF_SWAP)
+                .mapTo(String.class)
+                .list());
+    }
+
+    /**
+     * Drops the table replaced by the swap, along with its indexes. The transaction id sequence now belongs to the
+     * rebuilt table and is kept.
+     */
+    public void dropReplacedTable() {
+        jdbi.useHandle(handle -> handle.execute(DROP_REPLACED_TABLE));
+    }
+
+    public Optional<ProjectionRebuild> findIncompleteRebuild() {
+        return jdbi.withHandle(handle -> handle.createQuery(FIND_INCOMPLETE_REBUILD)
+                .map(new ProjectionRebuildMapper())
+                .findFirst());
+    }
+
+    public ProjectionRebuild startRebuild(long eventIdWatermark) {
+        return jdbi.withHandle(handle -> handle.createUpdate(INSERT_REBUILD)
+                .bind("eventIdWatermark", eventIdWatermark)
+                .executeAndReturnGeneratedKeys()
+                .map(new ProjectionRebuildMapper())
+                .one());
+    }
+
+    public void checkpoint(int id, String lastResourceExternalId, long resourcesProjected) {
+        jdbi.useHandle(handle -> handle.createUpdate(UPDATE_CHECKPOINT)
+                .bind("id", id)
+                .bind("lastResourceExternalId", lastResourceExternalId)
+                .bind("resourcesProjected", resourcesProjected)
+                .execute());
+    }
+
+    public void completeRebuild(int id) {
+        jdbi.useHandle(handle -> handle.createUpdate(COMPLETE_REBUILD)
+                .bind("id", id)
+                .execute());
+    }
+}
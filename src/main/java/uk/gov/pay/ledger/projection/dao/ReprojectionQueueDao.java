@@ -0,0 +1,85 @@
+package uk.gov.pay.ledger.projection.dao;
+
+import com.google.inject.Inject;
+import org.jdbi.v3.core.Jdbi;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.projection.model.ReprojectionQueueEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class ReprojectionQueueDao {
+
+    /**
+     * Rows locked by another worker are skipped so that several instances can drain the queue at the same time
+     */
+    private static final String CLAIM_BATCH =
+            "SELECT q.resource_external_id, rt.name AS resource_type_name, q.attempts, q.generation " +
+            "FROM reprojection_queue q, resource_type rt " +
+            "WHERE q.resource_type_id = rt.id " +
+            "AND q.attempts < :maxAttempts " +
+            "ORDER BY q.enqueued_date " +
+            "LIMIT :batchSize " +
+            "FOR UPDATE OF q SKIP LOCKED";
+
+    private static final List<String> ENTRY_KEY = List.of("resourceExternalId", "generation");
+
+    private static final String DELETE_ENTRIES =
+            "DELETE FROM reprojection_queue WHERE (resource_external_id, generation) IN (<entries>)";
+
+    private static final String INCREMENT_ATTEMPTS =
+            "UPDATE reprojection_queue SET attempts = attempts + 1 " +
+            "WHERE (resource_external_id, generation) IN (<entries>)";
+
+    private final Jdbi jdbi;
+
+    @Inject
+    public ReprojectionQueueDao(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    /**
+     * Claims the oldest batch of queued resources and holds the row locks while the batch is processed. Entries
+     * that were processed are removed from the queue and those returned as failed have their attempts incremented,
+     * in both cases only at the generation that was claimed.
+     *
+     * @return the number of entries claimed
+     */
+    public int processBatch(int batchSize, int maxAttempts,
+                            Function<List<ReprojectionQueueEntry>, Set<String>> processor) {
+        return jdbi.inTransaction(handle -> {
+            List<ReprojectionQueueEntry> entries = handle.createQuery(CLAIM_BATCH)
+                    .bind("batchSize", batchSize)
+                    .bind("maxAttempts", maxAttempts)
+                    .map((rs, ctx) -> new ReprojectionQueueEntry(
+                            rs.getString("resource_external_id"),
+                            ResourceType.valueOf(rs.getString("resource_type_name").toUpperCase()),
+                            rs.getInt("attempts"),
+                            rs.getLong("generation")))
+                    .list();
+
+            if (entries.isEmpty()) {
+                return 0;
+            }
+
+            Set<String> failedExternalIds = processor.apply(entries);
+            Map<Boolean, List<ReprojectionQueueEntry>> entriesByFailure = entries.stream()
+                    .collect(Collectors.partitioningBy(entry -> failedExternalIds.contains(entry.getResourceExternalId())));
+
+            if (!entriesByFailure.get(false).isEmpty()) {
+                handle.createUpdate(DELETE_ENTRIES)
+                        .bindBeanList("entries", entriesByFailure.get(false), ENTRY_KEY)
+                        .execute();
+            }
+            if (!entriesByFailure.get(true).isEmpty()) {
+                handle.createUpdate(INCREMENT_ATTEMPTS)
+                        .bindBeanList("entries", entriesByFailure.get(true), ENTRY_KEY)
+                        .execute();
+            }
+            return entries.size();
+        });
+    }
+}
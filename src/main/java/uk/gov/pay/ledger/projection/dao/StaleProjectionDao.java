@@ -0,0 +1,131 @@
+package uk.gov.pay.ledger.projection.dao;
+
+import com.google.inject.Inject;
+import org.jdbi.v3.core.Jdbi;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+public class StaleProjectionDao {
+
+    private static final String FIND_MAX_TRANSACTION_ID = "SELECT coalesce(max(id), 0) FROM transaction";
+
+    private static final String FIND_MAX_PAYOUT_ID = "SELECT coalesce(max(id), 0) FROM payout";
+
+    private static final String FIND_STALE_TRANSACTIONS =
+            "SELECT external_id FROM transaction " +
+            "WHERE id > :fromId AND id <= :toId " +
+            "AND projection_version < :projectionVersion";
+
+    private static final String FIND_STALE_PAYOUTS =
+            "SELECT gateway_payout_id FROM payout " +
+            "WHERE id > :fromId AND id <= :toId " +
+            "AND projection_version < :projectionVersion";
+
+    private static final String INSERT_SWEEP =
+            "INSERT INTO projection_sweep(table_name, projection_version) VALUES (:tableName, :projectionVersion) " +
+            "ON CONFLICT (table_name) DO NOTHING";
+
+    /**
+     * Starts a new pass when the projection version has gone up, or when the last pass completed long enough ago.
+     * Instances still running an older projection version never restart or claim from a newer pass.
+     */
+    private static final String RESTART_SWEEP =
+            "UPDATE projection_sweep SET projection_version = :projectionVersion, next_id = 0, pass_completed_date = NULL " +
+            "WHERE table_name = :tableName " +
+            "AND (projection_version < :projectionVersion " +
+            "OR pass_completed_date < now() - :restartDelayInMinutes * interval '1 minute')";
+
+    private static final String CLAIM_ID_RANGE =
+            "UPDATE projection_sweep SET next_id = next_id + :idRangeSize " +
+            "WHERE table_name = :tableName " +
+            "AND projection_version = :projectionVersion " +
+            "AND pass_completed_date IS NULL " +
+            "AND next_id < :maxId " +
+            "RETURNING next_id - :idRangeSize";
+
+    private static final String COMPLETE_SWEEP =
+            "UPDATE projection_sweep SET pass_completed_date = now() " +
+            "WHERE table_name = :tableName " +
+            "AND projection_version = :projectionVersion " +
+            "AND pass_completed_date IS NULL " +
+            "AND next_id >= :maxId";
+
+    private final Jdbi jdbi;
+
+    @Inject
+    public StaleProjectionDao(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    public long findMaxTransactionId() {
+        return findMaxId(FIND_MAX_TRANSACTION_ID);
+    }
+
+    public long findMaxPayoutId() {
+        return findMaxId(FIND_MAX_PAYOUT_ID);
+    }
+
+    public List<String> findStaleTransactionExternalIds(long fromIdExclusive, long toIdInclusive, int projectionVersion) {
+        return findStale(FIND_STALE_TRANSACTIONS, fromIdExclusive, toIdInclusive, projectionVersion);
+    }
+
+    public List<String> findStalePayoutGatewayPayoutIds(long fromIdExclusive, long toIdInclusive, int projectionVersion) {
+        return findStale(FIND_STALE_PAYOUTS, fromIdExclusive, toIdInclusive, projectionVersion);
+    }
+
+    /**
+     * Claims the next range of ids of the table's current pass for this instance alone, so that instances sweep
+     * different ranges rather than the same ones.
+     *
+     * @return the exclusive lower bound of the claimed range, or empty if the pass has reached maxId or completed
+     */
+    public Optional<Long> claimIdRange(String tableName, int projectionVersion, long maxId, int idRangeSize,
+                                       Duration restartDelay) {
+        return jdbi.withHandle(handle -> {
+            handle.createUpdate(INSERT_SWEEP)
+                    .bind("tableName", tableName)
+                    .bind("projectionVersion", projectionVersion)
+                    .execute();
+            handle.createUpdate(RESTART_SWEEP)
+                    .bind("tableName", tableName)
+                    .bind("projectionVersion", projectionVersion)
+                    .bind("restartDelayInMinutes", restartDelay.toMinutes())
+                    .execute();
+            return handle.createQuery(CLAIM_ID_RANGE)
+                    .bind("tableName", tableName)
+                    .bind("projectionVersion", projectionVersion)
+                    .bind("maxId", maxId)
+                    .bind("idRangeSize", idRangeSize)
+                    .mapTo(Long.class)
+                    .findFirst();
+        });
+    }
+
+    /**
+     * @return whether this call completed the pass, so that it is only reported once across instances
+     */
+    public boolean completeSweep(String tableName, int projectionVersion, long maxId) {
+        return jdbi.withHandle(handle -> handle.createUpdate(COMPLETE_SWEEP)
+                .bind("tableName", tableName)
+                .bind("projectionVersion", projectionVersion)
+                .bind("maxId", maxId)
+                .execute() > 0);
+    }
+
+    private long findMaxId(String query) {
+        return jdbi.withHandle(handle -> handle.createQuery(query)
+                .mapTo(Long.class)
+                .one());
+    }
+
+    private List<String> findStale(String query, long fromIdExclusive, long toIdInclusive, int projectionVersion) {
+        return jdbi.withHandle(handle -> handle.createQuery(query)
+                .bind("fromId", fromIdExclusive)
+                .bind("toId", toIdInclusive)
+                .bind("projectionVersion", projectionVersion)
+                .mapTo(String.class)
+                .list());
+    }
+}
@@ -0,0 +1,20 @@
+package uk.gov.pay.ledger.projection.dao.mapper;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import uk.gov.pay.ledger.projection.model.ProjectionRebuild;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class ProjectionRebuildMapper implements RowMapper<ProjectionRebuild> {
+
+    @Override
+    public ProjectionRebuild map(ResultSet rs, StatementContext ctx) throws SQLException {
+        return new ProjectionRebuild(
+                rs.getInt("id"),
+                rs.getLong("event_id_watermark"),
+                rs.getString("last_resource_external_id"),
+                rs.getLong("resources_projected"));
+    }
+}
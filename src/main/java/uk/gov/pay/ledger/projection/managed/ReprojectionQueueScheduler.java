@@ -0,0 +1,64 @@
+package uk.gov.pay.ledger.projection.managed;
+
+import com.google.inject.Inject;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.projection.service.ReprojectionQueueWorker;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ReprojectionQueueScheduler implements Managed {
+
+    private static final String REPROJECTION_QUEUE_THREAD_NAME = "reprojection-queue-worker-%d";
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReprojectionQueueScheduler.class);
+
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final ReprojectionQueueWorker reprojectionQueueWorker;
+    private final long delayInMilliseconds;
+    private final int numberOfThreads;
+
+    @Inject
+    public ReprojectionQueueScheduler(Environment environment, LedgerConfig configuration,
+                                      ReprojectionQueueWorker reprojectionQueueWorker) {
+        this.reprojectionQueueWorker = reprojectionQueueWorker;
+        this.delayInMilliseconds = configuration.getBulkEventIngestConfig().getReprojectionDelayInMilliseconds();
+        this.numberOfThreads = configuration.getBulkEventIngestConfig().getReprojectionNumberOfThreads();
+
+        scheduledExecutorService = environment
+                .lifecycle()
+                .scheduledExecutorService(REPROJECTION_QUEUE_THREAD_NAME)
+                .threads(numberOfThreads)
+                .build();
+    }
+
+    @Override
+    public void start() {
+        for (int i = 0; i < numberOfThreads; i++) {
+            scheduledExecutorService.scheduleWithFixedDelay(
+                    this::drain,
+                    delayInMilliseconds,
+                    delayInMilliseconds,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    private void drain() {
+        try {
+            while (reprojectionQueueWorker.processBatch() > 0) {
+                // keep draining until the queue is empty, then wait for the next run
+            }
+        } catch (Exception e) {
+            LOGGER.error("Reprojection queue worker thread exception", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        scheduledExecutorService.shutdown();
+    }
+}
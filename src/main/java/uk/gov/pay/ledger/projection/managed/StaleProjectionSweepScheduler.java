@@ -0,0 +1,58 @@
+package uk.gov.pay.ledger.projection.managed;
+
+import com.google.inject.Inject;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.projection.service.StaleProjectionSweeper;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class StaleProjectionSweepScheduler implements Managed {
+
+    private static final String STALE_PROJECTION_SWEEPER_THREAD_NAME = "stale-projection-sweeper-%d";
+    private static final Logger LOGGER = LoggerFactory.getLogger(StaleProjectionSweepScheduler.class);
+
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final StaleProjectionSweeper staleProjectionSweeper;
+    private final long delayInMilliseconds;
+
+    @Inject
+    public StaleProjectionSweepScheduler(Environment environment, LedgerConfig configuration,
+                                         StaleProjectionSweeper staleProjectionSweeper) {
+        this.staleProjectionSweeper = staleProjectionSweeper;
+        this.delayInMilliseconds = configuration.getProjectionSweeperConfig().getDelayInMilliseconds();
+
+        scheduledExecutorService = environment
+                .lifecycle()
+                .scheduledExecutorService(STALE_PROJECTION_SWEEPER_THREAD_NAME)
+                .threads(1)
+                .build();
+    }
+
+    @Override
+    public void start() {
+        scheduledExecutorService.scheduleWithFixedDelay(
+                this::sweep,
+                delayInMilliseconds,
+                delayInMilliseconds,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void sweep() {
+        try {
+            staleProjectionSweeper.sweep();
+        } catch (Exception e) {
+            LOGGER.error("Stale projection sweeper thread exception", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        scheduledExecutorService.shutdown();
+    }
+}
@@ -0,0 +1,32 @@
+package uk.gov.pay.ledger.projection.model;
+
+public class ProjectionRebuild {
+
+    private final int id;
+    private final long eventIdWatermark;
+    private final String lastResourceExternalId;
+    private final long resourcesProjected;
+
+    public ProjectionRebuild(int id, long eventIdWatermark, String lastResourceExternalId, long resourcesProjected) {
+        this.id = id;
+        this.eventIdWatermark = eventIdWatermark;
+        this.lastResourceExternalId = lastResourceExternalId;
+        this.resourcesProjected = resourcesProjected;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getEventIdWatermark() {
+        return eventIdWatermark;
+    }
+
+    public String getLastResourceExternalId() {
+        return lastResourceExternalId;
+    }
+
+    public long getResourcesProjected() {
+        return resourcesProjected;
+    }
+}
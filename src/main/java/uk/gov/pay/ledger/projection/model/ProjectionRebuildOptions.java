@@ -0,0 +1,54 @@
+package uk.gov.pay.ledger.projection.model;
+
+public class ProjectionRebuildOptions {
+
+    private final int parallelism;
+    private final int batchSize;
+    private final int pageSize;
+    private final double maxResourcesPerSecond;
+    private final boolean resume;
+    private final boolean swap;
+    private final int lockTimeoutSeconds;
+
+    public ProjectionRebuildOptions(int parallelism, int batchSize, int pageSize, double maxResourcesPerSecond,
+                                    boolean resume, boolean swap, int lockTimeoutSeconds) {
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.pageSize = pageSize;
+        this.maxResourcesPerSecond = maxResourcesPerSecond;
+        this.resume = resume;
+        this.swap = swap;
+        this.lockTimeoutSeconds = lockTimeoutSeconds;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the maximum number of resources to project per second, or zero for no limit
+     */
+    public double getMaxResourcesPerSecond() {
+        return maxResourcesPerSecond;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public boolean isSwap() {
+        return swap;
+    }
+
+    public int getLockTimeoutSeconds() {
+        return lockTimeoutSeconds;
+    }
+}
@@ -0,0 +1,16 @@
+package uk.gov.pay.ledger.projection.model;
+
+/**
+ * Versions of the logic that projects events into transaction and payout rows, stamped on each row as it is written.
+ *
+ * Increment the relevant version when a change to the entity factories alters what a row would contain for the same
+ * events. Rows with an older version are reprojected when they are read or by the stale projection sweeper.
+ */
+public final class ProjectionVersion {
+
+    public static final int TRANSACTION = 1;
+    public static final int PAYOUT = 1;
+
+    private ProjectionVersion() {
+    }
+}
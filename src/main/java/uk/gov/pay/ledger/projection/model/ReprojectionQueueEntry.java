@@ -0,0 +1,39 @@
+package uk.gov.pay.ledger.projection.model;
+
+import uk.gov.pay.ledger.event.model.ResourceType;
+
+public class ReprojectionQueueEntry {
+
+    private final String resourceExternalId;
+    private final ResourceType resourceType;
+    private final int attempts;
+    private final long generation;
+
+    public ReprojectionQueueEntry(String resourceExternalId, ResourceType resourceType, int attempts,
+                                  long generation) {
+        this.resourceExternalId = resourceExternalId;
+        this.resourceType = resourceType;
+        this.attempts = attempts;
+        this.generation = generation;
+    }
+
+    public String getResourceExternalId() {
+        return resourceExternalId;
+    }
+
+    public ResourceType getResourceType() {
+        return resourceType;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Goes up each time the resource is enqueued again, so that an entry is only removed if no new events were
+     * enqueued for it after it was claimed
+     */
+    public long getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,287 @@
+package uk.gov.pay.ledger.projection.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.exception.ProjectionRebuildException;
+import uk.gov.pay.ledger.projection.dao.ProjectionRebuildDao;
+import uk.gov.pay.ledger.projection.model.ProjectionRebuild;
+import uk.gov.pay.ledger.projection.model.ProjectionRebuildOptions;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Rebuilds the transaction projection from the event table into a shadow table and swaps it in place of the live
+ * transaction table.
+ *
+ * Events are streamed once, ordered by resource, and grouped into batches of resources that are projected in
+ * parallel. Progress is checkpointed as the contiguous run of completed batches so an interrupted rebuild can be
+ * resumed from the last resource that is known to be in the shadow table.
+ */
+public class ProjectionRebuilder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProjectionRebuilder.class);
+    private static final long PROGRESS_LOG_INTERVAL_MILLIS = 30_000L;
+
+    private final ProjectionRebuildDao projectionRebuildDao;
+    private final TransactionDao transactionDao;
+    private final TransactionProjector transactionProjector;
+
+    @Inject
+    public ProjectionRebuilder(ProjectionRebuildDao projectionRebuildDao, TransactionDao transactionDao,
+                               TransactionProjector transactionProjector) {
+        this.projectionRebuildDao = projectionRebuildDao;
+        this.transactionDao = transactionDao;
+        this.transactionProjector = transactionProjector;
+    }
+
+    public void rebuild(ProjectionRebuildOptions options) {
+        List<String> leftoversOfSwap = projectionRebuildDao.findLeftoversOfSwap();
+        if (!leftoversOfSwap.isEmpty()) {
+            throw new ProjectionRebuildException("Tables and indexes left by an earlier swap must be dropped before " +
+                    "rebuilding: " + String.join(", ", leftoversOfSwap));
+        }
+
+        ProjectionRebuild rebuild = options.isResume()
+                ? projectionRebuildDao.findIncompleteRebuild()
+                .orElseThrow(() -> new ProjectionRebuildException("No incomplete projection rebuild to resume"))
+                : startRebuild();
+
+        LOGGER.info("Rebuilding transaction projection",
+                kv("projection_rebuild_id", rebuild.getId()),
+                kv("event_id_watermark", rebuild.getEventIdWatermark()),
+                kv("resume_after_resource_external_id", rebuild.getLastResourceExternalId()));
+
+        projectionRebuildDao.createShadowTable();
+        projectEvents(rebuild, options);
+
+        if (options.isSwap()) {
+            swap(rebuild, options);
+            projectionRebuildDao.completeRebuild(rebuild.getId());
+        } else {
+            LOGGER.info("Shadow table populated, skipping swap",
+                    kv("projection_rebuild_id", rebuild.getId()),
+                    kv("shadow_table", ProjectionRebuildDao.SHADOW_TABLE));
+        }
+    }
+
+    private ProjectionRebuild startRebuild() {
+        projectionRebuildDao.dropShadowTable();
+        return projectionRebuildDao.startRebuild(projectionRebuildDao.findMaxEventId());
+    }
+
+    private void projectEvents(ProjectionRebuild rebuild, ProjectionRebuildOptions options) {
+        RebuildRun run = new RebuildRun(rebuild, options);
+        try {
+            projectionRebuildDao.streamTransactionEvents(rebuild.getLastResourceExternalId(),
+                    rebuild.getEventIdWatermark(), options.getPageSize(), run);
+        } finally {
+            run.finish();
+        }
+    }
+
+    private void swap(ProjectionRebuild rebuild, ProjectionRebuildOptions options) {
+        // catch up without the lock first, so the lock is only held while projecting what arrives after this pass
+        long caughtUpTo = projectionRebuildDao.findMaxEventId();
+        catchUpShadowTable(projectionRebuildDao.findResourcesWithEventsAfter(ProjectionRebuildDao.SHADOW_TABLE,
+                rebuild.getEventIdWatermark()), options.getBatchSize(), projectionRebuildDao::insertIntoShadowTable);
+
+        long eventIdAtSwap = projectionRebuildDao.swapShadowTable(options.getLockTimeoutSeconds(), handle ->
+                catchUpShadowTable(projectionRebuildDao.findResourcesWithEventsAfter(handle,
+                        ProjectionRebuildDao.SHADOW_TABLE, caughtUpTo), options.getBatchSize(),
+                        batch -> projectionRebuildDao.insertIntoShadowTable(handle, batch)));
+
+        LOGGER.info("Swapped rebuilt transaction table into place",
+                kv("projection_rebuild_id", rebuild.getId()),
+                kv("replaced_table", ProjectionRebuildDao.REPLACED_TABLE));
+
+        // writes that were waiting on the lock during the swap may have landed in the replaced table
+        List<String> resourceExternalIds = projectionRebuildDao.findResourcesWithEventsAfter(eventIdAtSwap);
+        resourceExternalIds.forEach(resourceExternalId ->
+                transactionProjector.project(resourceExternalId).ifPresent(transactionDao::upsert));
+
+        LOGGER.info("Reprojected transactions with events received during swap",
+                kv("projection_rebuild_id", rebuild.getId()),
+                kv("number_of_resources", resourceExternalIds.size()));
+
+        projectionRebuildDao.dropReplacedTable();
+        LOGGER.info("Dropped replaced transaction table",
+                kv("projection_rebuild_id", rebuild.getId()),
+                kv("replaced_table", ProjectionRebuildDao.REPLACED_TABLE));
+    }
+
+    private void catchUpShadowTable(List<String> resourceExternalIds, int batchSize,
+                                    Consumer<List<TransactionEntity>> insert) {
+        List<TransactionEntity> batch = new ArrayList<>();
+        for (String resourceExternalId : resourceExternalIds) {
+            transactionProjector.project(resourceExternalId).ifPresent(batch::add);
+            if (batch.size() >= batchSize) {
+                insert.accept(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert.accept(batch);
+        }
+
+        LOGGER.info("Caught up shadow table with events received during rebuild",
+                kv("number_of_resources", resourceExternalIds.size()));
+    }
+
+    private class RebuildRun implements Consumer<Event> {
+
+        private final ProjectionRebuild rebuild;
+        private final int batchSize;
+        private final int maxBatchesInFlight;
+        private final ForkJoinPool pool;
+        private final Semaphore batchesInFlight;
+        private final RateLimiter rateLimiter;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicLong resourcesFailed = new AtomicLong();
+
+        private List<Event> resourceEvents = new ArrayList<>();
+        private List<List<Event>> batch = new ArrayList<>();
+        private long nextBatchSequence = 0;
+
+        private final TreeMap<Long, String> completedBatches = new TreeMap<>();
+        private long nextBatchToCheckpoint = 0;
+        private long resourcesProjected;
+        private long lastProgressLog = System.currentTimeMillis();
+
+        RebuildRun(ProjectionRebuild rebuild, ProjectionRebuildOptions options) {
+            this.rebuild = rebuild;
+            this.batchSize = options.getBatchSize();
+            this.maxBatchesInFlight = options.getParallelism() * 2;
+            this.pool = new ForkJoinPool(options.getParallelism());
+            this.batchesInFlight = new Semaphore(maxBatchesInFlight);
+            this.rateLimiter = options.getMaxResourcesPerSecond() > 0
+                    ? RateLimiter.create(options.getMaxResourcesPerSecond())
+                    : null;
+            this.resourcesProjected = rebuild.getResourcesProjected();
+        }
+
+        @Override
+        public void accept(Event event) {
+            if (failure.get() != null) {
+                throw new ProjectionRebuildException("Projection rebuild failed", failure.get());
+            }
+
+            if (!resourceEvents.isEmpty() &&
+                    !resourceEvents.get(0).getResourceExternalId().equals(event.getResourceExternalId())) {
+                addResource(resourceEvents);
+                resourceEvents = new ArrayList<>();
+            }
+            resourceEvents.add(event);
+        }
+
+        void finish() {
+            if (failure.get() == null) {
+                if (!resourceEvents.isEmpty()) {
+                    addResource(resourceEvents);
+                }
+                if (!batch.isEmpty()) {
+                    submitBatch();
+                }
+            }
+
+            batchesInFlight.acquireUninterruptibly(maxBatchesInFlight);
+            pool.shutdown();
+
+            if (failure.get() != null) {
+                throw new ProjectionRebuildException("Projection rebuild failed", failure.get());
+            }
+
+            LOGGER.info("Projected all events into shadow table",
+                    kv("projection_rebuild_id", rebuild.getId()),
+                    kv("resources_projected", resourcesProjected),
+                    kv("resources_failed", resourcesFailed.get()));
+        }
+
+        private void addResource(List<Event> events) {
+            batch.add(events);
+            if (batch.size() >= batchSize) {
+                submitBatch();
+            }
+        }
+
+        private void submitBatch() {
+            List<List<Event>> resources = batch;
+            batch = new ArrayList<>();
+            long sequence = nextBatchSequence++;
+            String lastResourceExternalId = resources.get(resources.size() - 1).get(0).getResourceExternalId();
+
+            if (rateLimiter != null) {
+                rateLimiter.acquire(resources.size());
+            }
+            batchesInFlight.acquireUninterruptibly();
+
+            pool.execute(() -> {
+                try {
+                    projectionRebuildDao.insertIntoShadowTable(project(resources));
+                    batchCompleted(sequence, lastResourceExternalId, resources.size());
+                } catch (Exception e) {
+                    LOGGER.error("Failed to project batch into shadow table",
+                            kv("projection_rebuild_id", rebuild.getId()),
+                            kv("resource_external_id", lastResourceExternalId),
+                            kv("error", e.getMessage()));
+                    failure.compareAndSet(null, e);
+                } finally {
+                    batchesInFlight.release();
+                }
+            });
+        }
+
+        private List<TransactionEntity> project(List<List<Event>> resources) {
+            List<TransactionEntity> transactions = new ArrayList<>(resources.size());
+            for (List<Event> events : resources) {
+                try {
+                    transactionProjector.project(events).ifPresent(transactions::add);
+                } catch (Exception e) {
+                    // the existing row for this resource, if any, is carried over to the shadow table on swap
+                    resourcesFailed.incrementAndGet();
+                    LOGGER.warn("Unable to project transaction from events",
+                            kv("resource_external_id", events.get(0).getResourceExternalId()),
+                            kv("error", e.getMessage()));
+                }
+            }
+            return transactions;
+        }
+
+        private synchronized void batchCompleted(long sequence, String lastResourceExternalId, int size) {
+            completedBatches.put(sequence, lastResourceExternalId);
+            resourcesProjected += size;
+
+            String checkpoint = null;
+            while (completedBatches.containsKey(nextBatchToCheckpoint)) {
+                checkpoint = completedBatches.remove(nextBatchToCheckpoint++);
+            }
+
+            Optional.ofNullable(checkpoint).ifPresent(lastCompletedResourceExternalId ->
+                    projectionRebuildDao.checkpoint(rebuild.getId(), lastCompletedResourceExternalId, resourcesProjected));
+
+            long now = System.currentTimeMillis();
+            if (now - lastProgressLog >= PROGRESS_LOG_INTERVAL_MILLIS) {
+                lastProgressLog = now;
+                LOGGER.info("Projection rebuild progress",
+                        kv("projection_rebuild_id", rebuild.getId()),
+                        kv("resources_projected", resourcesProjected),
+                        kv("resources_failed", resourcesFailed.get()),
+                        kv("batches_awaiting_checkpoint", completedBatches.size()));
+            }
+        }
+    }
+}
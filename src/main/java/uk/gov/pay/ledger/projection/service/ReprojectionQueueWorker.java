@@ -0,0 +1,98 @@
+package uk.gov.pay.ledger.projection.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.event.service.EventService;
+import uk.gov.pay.ledger.projection.dao.ReprojectionQueueDao;
+import uk.gov.pay.ledger.projection.model.ReprojectionQueueEntry;
+import uk.gov.pay.ledger.queue.EventDigestHandler;
+import uk.gov.pay.ledger.transaction.service.TransactionMetadataService;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Projects resources that received events through bulk ingest. The projection is the same as for events received
+ * from the queue, but runs once per resource rather than once per event.
+ */
+public class ReprojectionQueueWorker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReprojectionQueueWorker.class);
+    static final int MAX_ATTEMPTS = 5;
+
+    private final ReprojectionQueueDao reprojectionQueueDao;
+    private final EventService eventService;
+    private final EventDigestHandler eventDigestHandler;
+    private final TransactionMetadataService transactionMetadataService;
+    private final MetricRegistry metricRegistry;
+    private final int batchSize;
+
+    @Inject
+    public ReprojectionQueueWorker(ReprojectionQueueDao reprojectionQueueDao, EventService eventService,
+                                   EventDigestHandler eventDigestHandler,
+                                   TransactionMetadataService transactionMetadataService,
+                                   MetricRegistry metricRegistry, LedgerConfig configuration) {
+        this.reprojectionQueueDao = reprojectionQueueDao;
+        this.eventService = eventService;
+        this.eventDigestHandler = eventDigestHandler;
+        this.transactionMetadataService = transactionMetadataService;
+        this.metricRegistry = metricRegistry;
+        this.batchSize = configuration.getBulkEventIngestConfig().getReprojectionBatchSize();
+    }
+
+    /**
+     * @return the number of queued resources processed
+     */
+    public int processBatch() {
+        return reprojectionQueueDao.processBatch(batchSize, MAX_ATTEMPTS, this::reproject);
+    }
+
+    /**
+     * Payments are projected before refunds in the same batch as a refund carries fields from its payment
+     */
+    private Set<String> reproject(List<ReprojectionQueueEntry> entries) {
+        List<ReprojectionQueueEntry> ordered = entries.stream()
+                .sorted(Comparator.comparing(entry -> entry.getResourceType() != ResourceType.PAYMENT))
+                .collect(Collectors.toList());
+
+        Set<String> failedExternalIds = new HashSet<>();
+        for (ReprojectionQueueEntry entry : ordered) {
+            try {
+                reproject(entry);
+                metricRegistry.counter("projection.reprojected-from-queue." + entry.getResourceType().name().toLowerCase()).inc();
+            } catch (Exception e) {
+                failedExternalIds.add(entry.getResourceExternalId());
+                metricRegistry.counter("projection.reprojection-queue-failures").inc();
+                LOGGER.warn("Unable to project queued resource",
+                        kv("resource_external_id", entry.getResourceExternalId()),
+                        kv("resource_type", entry.getResourceType()),
+                        kv("attempts", entry.getAttempts() + 1),
+                        kv("error", e.getMessage()));
+            }
+        }
+        return failedExternalIds;
+    }
+
+    private void reproject(ReprojectionQueueEntry entry) {
+        List<Event> events = eventService.getEventsForResource(entry.getResourceExternalId());
+        if (events.isEmpty()) {
+            return;
+        }
+
+        eventDigestHandler.processEvent(events.get(0));
+
+        if (entry.getResourceType() == ResourceType.PAYMENT) {
+            events.stream().skip(1).forEach(transactionMetadataService::upsertMetadataFor);
+        }
+    }
+}
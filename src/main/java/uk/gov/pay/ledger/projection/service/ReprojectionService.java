@@ -0,0 +1,93 @@
+package uk.gov.pay.ledger.projection.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.event.service.EventService;
+import uk.gov.pay.ledger.payout.dao.PayoutDao;
+import uk.gov.pay.ledger.payout.model.PayoutEntityFactory;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Reprojects transaction and payout rows written by an older version of the projection from their events.
+ */
+public class ReprojectionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReprojectionService.class);
+
+    private final TransactionProjector transactionProjector;
+    private final TransactionDao transactionDao;
+    private final EventService eventService;
+    private final PayoutEntityFactory payoutEntityFactory;
+    private final PayoutDao payoutDao;
+    private final MetricRegistry metricRegistry;
+
+    @Inject
+    public ReprojectionService(TransactionProjector transactionProjector, TransactionDao transactionDao,
+                               EventService eventService, PayoutEntityFactory payoutEntityFactory,
+                               PayoutDao payoutDao, MetricRegistry metricRegistry) {
+        this.transactionProjector = transactionProjector;
+        this.transactionDao = transactionDao;
+        this.eventService = eventService;
+        this.payoutEntityFactory = payoutEntityFactory;
+        this.payoutDao = payoutDao;
+        this.metricRegistry = metricRegistry;
+    }
+
+    public static boolean isStale(TransactionEntity transaction) {
+        return transaction.getProjectionVersion() != null
+                && transaction.getProjectionVersion() < ProjectionVersion.TRANSACTION;
+    }
+
+    public List<TransactionEntity> reprojectIfStale(List<TransactionEntity> transactions) {
+        return transactions.stream()
+                .map(this::reprojectIfStale)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Reprojects and writes back a transaction read from the database if it is stale. Reads are never failed by
+     * reprojection: if the transaction cannot be reprojected the row as read is returned.
+     */
+    public TransactionEntity reprojectIfStale(TransactionEntity transaction) {
+        if (!isStale(transaction)) {
+            return transaction;
+        }
+
+        try {
+            return transactionProjector.project(transaction.getExternalId())
+                    .map(reprojected -> {
+                        transactionDao.upsert(reprojected);
+                        metricRegistry.counter("projection.reprojected-on-read.transaction").inc();
+                        reprojected.setId(transaction.getId());
+                        transaction.getPayoutEntity().ifPresent(reprojected::setPayoutEntity);
+                        return reprojected;
+                    })
+                    .orElse(transaction);
+        } catch (Exception e) {
+            LOGGER.warn("Unable to reproject stale transaction",
+                    kv("transaction_external_id", transaction.getExternalId()),
+                    kv("projection_version", transaction.getProjectionVersion()),
+                    kv("error", e.getMessage()));
+            return transaction;
+        }
+    }
+
+    public void reprojectTransaction(String externalId) {
+        transactionProjector.project(externalId).ifPresent(transactionDao::upsert);
+        metricRegistry.counter("projection.reprojected-by-sweeper.transaction").inc();
+    }
+
+    public void reprojectPayout(String gatewayPayoutId) {
+        payoutDao.upsert(payoutEntityFactory.create(eventService.getEventDigestForResource(gatewayPayoutId)));
+        metricRegistry.counter("projection.reprojected-by-sweeper.payout").inc();
+    }
+}
@@ -0,0 +1,101 @@
+package uk.gov.pay.ledger.projection.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.projection.dao.StaleProjectionDao;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Walks the transaction and payout tables by id range, reprojecting rows stamped with an older projection version.
+ * Each call sweeps one range of each table so the amount of work per run is bounded; reprojections are rate limited
+ * so the sweeper does not compete with event ingestion and API traffic.
+ *
+ * Ranges are claimed from a pass recorded in the database, so every instance can run the sweeper without two of them
+ * sweeping the same range. Once a pass reaches the end of a table no more ranges are claimed until the projection
+ * version goes up, or until the restart delay has passed to pick up rows written by instances that were still on an
+ * older version.
+ */
+public class StaleProjectionSweeper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StaleProjectionSweeper.class);
+
+    private final StaleProjectionDao staleProjectionDao;
+    private final ReprojectionService reprojectionService;
+    private final int idRangeSize;
+    private final Duration restartDelay;
+    private final RateLimiter rateLimiter;
+
+    @Inject
+    public StaleProjectionSweeper(StaleProjectionDao staleProjectionDao, ReprojectionService reprojectionService,
+                                  LedgerConfig configuration) {
+        this.staleProjectionDao = staleProjectionDao;
+        this.reprojectionService = reprojectionService;
+        this.idRangeSize = configuration.getProjectionSweeperConfig().getIdRangeSize();
+        this.restartDelay = Duration.ofMinutes(configuration.getProjectionSweeperConfig().getRestartDelayInMinutes());
+        this.rateLimiter = RateLimiter.create(configuration.getProjectionSweeperConfig().getMaxReprojectionsPerSecond());
+    }
+
+    public void sweep() {
+        sweepRange("transaction", ProjectionVersion.TRANSACTION,
+                staleProjectionDao::findMaxTransactionId,
+                (fromId, toId) -> staleProjectionDao.findStaleTransactionExternalIds(fromId, toId, ProjectionVersion.TRANSACTION),
+                reprojectionService::reprojectTransaction);
+
+        sweepRange("payout", ProjectionVersion.PAYOUT,
+                staleProjectionDao::findMaxPayoutId,
+                (fromId, toId) -> staleProjectionDao.findStalePayoutGatewayPayoutIds(fromId, toId, ProjectionVersion.PAYOUT),
+                reprojectionService::reprojectPayout);
+    }
+
+    private void sweepRange(String table, int projectionVersion, LongSupplier maxId,
+                            StaleRowFinder findStale, Consumer<String> reproject) {
+        long lastId = maxId.getAsLong();
+        Optional<Long> claimedFromId = staleProjectionDao.claimIdRange(table, projectionVersion, lastId, idRangeSize,
+                restartDelay);
+        if (claimedFromId.isEmpty()) {
+            if (staleProjectionDao.completeSweep(table, projectionVersion, lastId)) {
+                LOGGER.info("Completed stale projection sweep", kv("table", table), kv("last_id", lastId));
+            }
+            return;
+        }
+
+        long fromId = claimedFromId.get();
+        long toId = fromId + idRangeSize;
+        List<String> staleIds = findStale.find(fromId, toId);
+
+        for (String id : staleIds) {
+            rateLimiter.acquire();
+            try {
+                reproject.accept(id);
+            } catch (Exception e) {
+                LOGGER.warn("Unable to reproject stale row",
+                        kv("table", table),
+                        kv("resource_external_id", id),
+                        kv("error", e.getMessage()));
+            }
+        }
+
+        if (!staleIds.isEmpty()) {
+            LOGGER.info("Reprojected stale rows",
+                    kv("table", table),
+                    kv("from_id", fromId),
+                    kv("to_id", toId),
+                    kv("number_of_rows", staleIds.size()));
+        }
+    }
+
+    private interface StaleRowFinder {
+        List<String> find(long fromIdExclusive, long toIdInclusive);
+    }
+}
@@ -0,0 +1,69 @@
+package uk.gov.pay.ledger.projection.service;
+
+import com.google.inject.Inject;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.EventDigest;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
+import uk.gov.pay.ledger.event.service.EventService;
+import uk.gov.pay.ledger.exception.EmptyEventsException;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Projects a transaction from its events without persisting it, mirroring what the payment and refund
+ * event processors do when events arrive from the queue.
+ */
+public class TransactionProjector {
+
+    private final EventService eventService;
+    private final TransactionEntityFactory transactionEntityFactory;
+
+    @Inject
+    public TransactionProjector(EventService eventService, TransactionEntityFactory transactionEntityFactory) {
+        this.eventService = eventService;
+        this.transactionEntityFactory = transactionEntityFactory;
+    }
+
+    public Optional<TransactionEntity> project(String resourceExternalId) {
+        return project(eventService.getEventsForResource(resourceExternalId));
+    }
+
+    /**
+     * @param events all events for a single resource, most recent first
+     * @return the projected transaction, or empty if the resource is not a payment or refund
+     */
+    public Optional<TransactionEntity> project(List<Event> events) {
+        if (events.isEmpty()) {
+            return Optional.empty();
+        }
+
+        EventDigest eventDigest = EventDigest.fromEventList(events);
+
+        if (eventDigest.getResourceType() == ResourceType.PAYMENT) {
+            return Optional.of(transactionEntityFactory.create(eventDigest));
+        }
+
+        if (eventDigest.getResourceType() == ResourceType.REFUND) {
+            return Optional.of(projectRefund(eventDigest));
+        }
+
+        return Optional.empty();
+    }
+
+    private TransactionEntity projectRefund(EventDigest refundEventDigest) {
+        if (isNotBlank(refundEventDigest.getParentResourceExternalId())) {
+            try {
+                EventDigest paymentEventDigest = eventService.getEventDigestForResource(refundEventDigest.getParentResourceExternalId());
+                return transactionEntityFactory.createRefundWithPaymentDetails(refundEventDigest, paymentEventDigest);
+            } catch (EmptyEventsException ignored) {
+                // no payment events, project the refund on its own as the refund event processor does
+            }
+        }
+        return transactionEntityFactory.create(refundEventDigest);
+    }
+}
@@ -47,6 +47,10 @@ public class EventMessageDto {
         return eventData.toString();
     }
 
+    public JsonNode getEventDataNode() {
+        return eventData;
+    }
+
     public String getExternalId() {
         return externalId;
     }
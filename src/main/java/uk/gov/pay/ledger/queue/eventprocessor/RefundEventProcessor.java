@@ -8,11 +8,8 @@ import uk.gov.pay.ledger.exception.EmptyEventsException;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.service.TransactionService;
 
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
-import static java.util.stream.Collectors.toMap;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class RefundEventProcessor extends EventProcessor {
@@ -48,23 +45,7 @@ public class RefundEventProcessor extends EventProcessor {
     }
 
     private void projectRefundTransactionWithPaymentDetails(EventDigest refundEventDigest, EventDigest paymentEventDigest) {
-        /**
-         * Apply shared refund payment attributes to the refund digest
-         *
-         * Frontend consumers rely on searching/ filtering/ downloading attributes that belong to a payment on the
-         * refund. Previously this was done at the "view" level by joining transactions to transactions, for performance
-         * reasons this is now done here during domain object projection (as transactions are de-normalised).
-         *
-         * If there is no longer a frontend requirement to display payment information on a refund, this shared data
-         * for the digest can be removed.
-         */
-        Map<String, Object> fieldsFromPayment = getPaymentFieldsToProjectOnToRefund(paymentEventDigest);
-        refundEventDigest.getEventPayload().put("payment_details", fieldsFromPayment);
-
-        TransactionEntity refundTransactionEntity = transactionEntityFactory.create(refundEventDigest);
-        TransactionEntity paymentTransactionEntity = transactionEntityFactory.create(paymentEventDigest);
-        refundTransactionEntity.setEntityFieldsFromOriginalPayment(paymentTransactionEntity);
-
+        TransactionEntity refundTransactionEntity = transactionEntityFactory.createRefundWithPaymentDetails(refundEventDigest, paymentEventDigest);
         transactionService.upsertTransaction(refundTransactionEntity);
     }
 
@@ -77,17 +58,4 @@ public class RefundEventProcessor extends EventProcessor {
         }
         return Optional.ofNullable(paymentEventDigest);
     }
-
-    private Map<String, Object> getPaymentFieldsToProjectOnToRefund(EventDigest paymentEventDigest) {
-        List<String> paymentsFieldsToCopyToRefunds = List.of("card_brand_label", "expiry_date", "card_type", "wallet_type");
-
-        var paymentPayloadIsEmpty = paymentEventDigest == null || paymentEventDigest.getEventPayload() == null;
-
-        return paymentPayloadIsEmpty
-                ? Map.of()
-                : paymentEventDigest.getEventPayload()
-                .entrySet()
-                .stream().filter(entry -> paymentsFieldsToCopyToRefunds.contains(entry.getKey()))
-                .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
-    }
 }
@@ -1,7 +1,9 @@
 package uk.gov.pay.ledger.report.resource;
 
 import com.codahale.metrics.annotation.Timed;
+import uk.gov.pay.ledger.concurrency.ResourceClass;
 import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.filters.ConcurrencyLimited;
 import uk.gov.pay.ledger.report.dao.PerformanceReportDao;
 import uk.gov.pay.ledger.report.entity.GatewayAccountMonthlyPerformanceReportEntity;
 import uk.gov.pay.ledger.report.entity.PerformanceReportEntity;
@@ -22,6 +24,7 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 @Path("/v1/report")
+@ConcurrencyLimited(ResourceClass.REPORTS)
 @Produces(APPLICATION_JSON)
 public class PerformanceReportResource {
 
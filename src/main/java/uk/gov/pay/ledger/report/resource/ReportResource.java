@@ -1,7 +1,9 @@
 package uk.gov.pay.ledger.report.resource;
 
 import com.codahale.metrics.annotation.Timed;
+import uk.gov.pay.ledger.concurrency.ResourceClass;
 import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.filters.ConcurrencyLimited;
 import uk.gov.pay.ledger.report.entity.TimeseriesReportSlice;
 import uk.gov.pay.ledger.report.entity.TransactionSummaryResult;
 import uk.gov.pay.ledger.report.params.TransactionSummaryParams;
@@ -28,6 +30,7 @@ import static javax.ws.rs.core.Response.Status.OK;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 @Path("/v1/report")
+@ConcurrencyLimited(ResourceClass.REPORTS)
 @Produces(APPLICATION_JSON)
 public class ReportResource {
 
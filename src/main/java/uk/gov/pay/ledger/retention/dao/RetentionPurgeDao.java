@@ -0,0 +1,191 @@
+package uk.gov.pay.ledger.retention.dao;
+
+import com.google.inject.Inject;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import uk.gov.pay.ledger.retention.model.DatabaseLoad;
+import uk.gov.pay.ledger.retention.model.PurgeResult;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class RetentionPurgeDao {
+
+    /**
+     * A payment is only purged together with its refunds, so it is skipped while any refund is still within the
+     * retention period. Refunds are purged with their payment unless the payment no longer exists.
+     */
+    private static final String FIND_PURGEABLE_TRANSACTIONS =
+            "SELECT t.id FROM transaction t " +
+            "WHERE t.id > :afterId " +
+            "AND t.created_date < :cutoffDate " +
+            "AND (t.parent_external_id IS NULL OR NOT EXISTS (" +
+            "    SELECT 1 FROM transaction p WHERE p.external_id = t.parent_external_id)) " +
+            "AND NOT EXISTS (" +
+            "    SELECT 1 FROM transaction c " +
+            "    WHERE c.parent_external_id = t.external_id AND c.created_date >= :cutoffDate) " +
+            "ORDER BY t.id " +
+            "LIMIT :limit";
+
+    private static final String FIND_TRANSACTIONS_WITH_CHILDREN =
+            "SELECT t.id, t.external_id FROM transaction t WHERE t.id IN (<ids>) " +
+            "UNION ALL " +
+            "SELECT c.id, c.external_id FROM transaction c, transaction p " +
+            "WHERE p.id IN (<ids>) AND c.parent_external_id = p.external_id";
+
+    /**
+     * Payouts are kept while any transaction paid out in them is still held
+     */
+    private static final String FIND_PURGEABLE_PAYOUTS =
+            "SELECT p.id FROM payout p " +
+            "WHERE p.id > :afterId " +
+            "AND p.created_date < :cutoffDate " +
+            "AND NOT EXISTS (SELECT 1 FROM transaction t WHERE t.gateway_payout_id = p.gateway_payout_id) " +
+            "ORDER BY p.id " +
+            "LIMIT :limit";
+
+    private static final String FIND_PAYOUT_GATEWAY_IDS =
+            "SELECT gateway_payout_id FROM payout WHERE id IN (<ids>)";
+
+    private static final String TRANSACTION_METADATA_WHERE = "FROM transaction_metadata WHERE transaction_id IN (<ids>)";
+    private static final String EVENT_WHERE = "FROM event WHERE resource_external_id IN (<externalIds>)";
+    private static final String TRANSACTION_WHERE = "FROM transaction WHERE id IN (<ids>)";
+    private static final String PAYOUT_WHERE = "FROM payout WHERE id IN (<ids>)";
+
+    /**
+     * pg_stat_replication has no rows on a standalone database or for users without permission to read it, in which
+     * case replication lag is reported as zero
+     */
+    private static final String FIND_DATABASE_LOAD =
+            "SELECT coalesce((SELECT extract(epoch FROM max(replay_lag)) FROM pg_stat_replication), 0) " +
+            "       AS replication_lag_seconds, " +
+            "       (SELECT count(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock') AS lock_waiting_sessions";
+
+    /**
+     * Session level, so it is held on the connection that took it until released however many transactions the purge
+     * runs on other connections
+     */
+    private static final String TRY_PURGE_LOCK = "SELECT pg_try_advisory_lock(hashtext('retention_purge'))";
+    private static final String RELEASE_PURGE_LOCK = "SELECT pg_advisory_unlock(hashtext('retention_purge'))";
+
+    private final Jdbi jdbi;
+
+    @Inject
+    public RetentionPurgeDao(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    /**
+     * Runs the purge while holding a database-wide lock, so that only one instance purges at a time. The lock's
+     * connection stays checked out of the pool for the length of the purge.
+     *
+     * @return false without running the purge if another instance holds the lock
+     */
+    public boolean runWithPurgeLock(Runnable purge) {
+        return jdbi.withHandle(handle -> {
+            boolean locked = handle.createQuery(TRY_PURGE_LOCK).mapTo(Boolean.class).one();
+            if (!locked) {
+                return false;
+            }
+            try {
+                purge.run();
+                return true;
+            } finally {
+                handle.createQuery(RELEASE_PURGE_LOCK).mapTo(Boolean.class).one();
+            }
+        });
+    }
+
+    public List<Long> findPurgeableTransactionIds(long afterId, ZonedDateTime cutoffDate, int limit) {
+        return findPurgeableIds(FIND_PURGEABLE_TRANSACTIONS, afterId, cutoffDate, limit);
+    }
+
+    public List<Long> findPurgeablePayoutIds(long afterId, ZonedDateTime cutoffDate, int limit) {
+        return findPurgeableIds(FIND_PURGEABLE_PAYOUTS, afterId, cutoffDate, limit);
+    }
+
+    /**
+     * Deletes the transactions, their refunds, transaction metadata and events in one transaction. In dry run the
+     * rows that would be deleted are counted instead.
+     */
+    public PurgeResult purgeTransactions(List<Long> ids, boolean dryRun) {
+        return jdbi.inTransaction(handle -> {
+            List<TransactionKey> transactions = handle.createQuery(FIND_TRANSACTIONS_WITH_CHILDREN)
+                    .bindList("ids", ids)
+                    .map((rs, ctx) -> new TransactionKey(rs.getLong("id"), rs.getString("external_id")))
+                    .list();
+            List<Long> transactionIds = transactions.stream()
+                    .map(transaction -> transaction.id)
+                    .collect(Collectors.toList());
+            List<String> externalIds = transactions.stream()
+                    .map(transaction -> transaction.externalId)
+                    .collect(Collectors.toList());
+
+            long metadata = deleteOrCount(handle, TRANSACTION_METADATA_WHERE, "ids", transactionIds, dryRun);
+            long events = deleteOrCount(handle, EVENT_WHERE, "externalIds", externalIds, dryRun);
+            long deletedTransactions = deleteOrCount(handle, TRANSACTION_WHERE, "ids", transactionIds, dryRun);
+
+            return new PurgeResult(deletedTransactions, metadata, 0, events);
+        });
+    }
+
+    /**
+     * Deletes the payouts and their events in one transaction. In dry run the rows that would be deleted are counted
+     * instead.
+     */
+    public PurgeResult purgePayouts(List<Long> ids, boolean dryRun) {
+        return jdbi.inTransaction(handle -> {
+            List<String> gatewayPayoutIds = handle.createQuery(FIND_PAYOUT_GATEWAY_IDS)
+                    .bindList("ids", ids)
+                    .mapTo(String.class)
+                    .list();
+
+            long events = deleteOrCount(handle, EVENT_WHERE, "externalIds", gatewayPayoutIds, dryRun);
+            long payouts = deleteOrCount(handle, PAYOUT_WHERE, "ids", ids, dryRun);
+
+            return new PurgeResult(0, 0, payouts, events);
+        });
+    }
+
+    public DatabaseLoad findDatabaseLoad() {
+        return jdbi.withHandle(handle -> handle.createQuery(FIND_DATABASE_LOAD)
+                .map((rs, ctx) -> new DatabaseLoad(rs.getDouble("replication_lag_seconds"),
+                        rs.getLong("lock_waiting_sessions")))
+                .one());
+    }
+
+    private List<Long> findPurgeableIds(String query, long afterId, ZonedDateTime cutoffDate, int limit) {
+        return jdbi.withHandle(handle -> handle.createQuery(query)
+                .bind("afterId", afterId)
+                .bind("cutoffDate", cutoffDate)
+                .bind("limit", limit)
+                .mapTo(Long.class)
+                .list());
+    }
+
+    private long deleteOrCount(Handle handle, String fromWhere, String listName, List<?> values, boolean dryRun) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        if (dryRun) {
+            return handle.createQuery("SELECT count(*) " + fromWhere)
+                    .bindList(listName, values)
+                    .mapTo(Long.class)
+                    .one();
+        }
+        return handle.createUpdate("DELETE " + fromWhere)
+                .bindList(listName, values)
+                .execute();
+    }
+
+    private static class TransactionKey {
+        private final long id;
+        private final String externalId;
+
+        TransactionKey(long id, String externalId) {
+            this.id = id;
+            this.externalId = externalId;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package uk.gov.pay.ledger.retention.managed;
+
+import com.google.inject.Inject;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.retention.service.RetentionPurger;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class RetentionPurgeScheduler implements Managed {
+
+    private static final String RETENTION_PURGE_THREAD_NAME = "retention-purge-%d";
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetentionPurgeScheduler.class);
+
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final RetentionPurger retentionPurger;
+    private final long delayInMinutes;
+
+    @Inject
+    public RetentionPurgeScheduler(Environment environment, LedgerConfig configuration,
+                                   RetentionPurger retentionPurger) {
+        this.retentionPurger = retentionPurger;
+        this.delayInMinutes = configuration.getRetentionPurgeConfig().getDelayInMinutes();
+
+        scheduledExecutorService = environment
+                .lifecycle()
+                .scheduledExecutorService(RETENTION_PURGE_THREAD_NAME)
+                .threads(1)
+                .build();
+    }
+
+    @Override
+    public void start() {
+        scheduledExecutorService.scheduleWithFixedDelay(
+                this::purge,
+                delayInMinutes,
+                delayInMinutes,
+                TimeUnit.MINUTES
+        );
+    }
+
+    private void purge() {
+        try {
+            retentionPurger.purge();
+        } catch (Exception e) {
+            LOGGER.error("Retention purge thread exception", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        scheduledExecutorService.shutdown();
+    }
+}
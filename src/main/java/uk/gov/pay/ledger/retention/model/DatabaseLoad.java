@@ -0,0 +1,20 @@
+package uk.gov.pay.ledger.retention.model;
+
+public class DatabaseLoad {
+
+    private final double replicationLagSeconds;
+    private final long lockWaitingSessions;
+
+    public DatabaseLoad(double replicationLagSeconds, long lockWaitingSessions) {
+        this.replicationLagSeconds = replicationLagSeconds;
+        this.lockWaitingSessions = lockWaitingSessions;
+    }
+
+    public double getReplicationLagSeconds() {
+        return replicationLagSeconds;
+    }
+
+    public long getLockWaitingSessions() {
+        return lockWaitingSessions;
+    }
+}
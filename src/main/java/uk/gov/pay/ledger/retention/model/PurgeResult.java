@@ -0,0 +1,32 @@
+package uk.gov.pay.ledger.retention.model;
+
+public class PurgeResult {
+
+    private final long transactions;
+    private final long transactionMetadata;
+    private final long payouts;
+    private final long events;
+
+    public PurgeResult(long transactions, long transactionMetadata, long payouts, long events) {
+        this.transactions = transactions;
+        this.transactionMetadata = transactionMetadata;
+        this.payouts = payouts;
+        this.events = events;
+    }
+
+    public long getTransactions() {
+        return transactions;
+    }
+
+    public long getTransactionMetadata() {
+        return transactionMetadata;
+    }
+
+    public long getPayouts() {
+        return payouts;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+}
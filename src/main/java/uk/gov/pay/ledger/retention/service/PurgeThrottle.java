@@ -0,0 +1,47 @@
+package uk.gov.pay.ledger.retention.service;
+
+import uk.gov.pay.ledger.retention.model.DatabaseLoad;
+
+/**
+ * Adjusts the pause between purge chunks to database load. The pause doubles while replication lag or lock waits are
+ * above their limits and steps back down towards the minimum once they recover.
+ */
+public class PurgeThrottle {
+
+    private final long minPauseInMilliseconds;
+    private final long maxPauseInMilliseconds;
+    private final double maxReplicationLagInSeconds;
+    private final long maxLockWaitingSessions;
+
+    private long pauseInMilliseconds;
+
+    public PurgeThrottle(long minPauseInMilliseconds, long maxPauseInMilliseconds,
+                         double maxReplicationLagInSeconds, long maxLockWaitingSessions) {
+        this.minPauseInMilliseconds = minPauseInMilliseconds;
+        this.maxPauseInMilliseconds = Math.max(minPauseInMilliseconds, maxPauseInMilliseconds);
+        this.maxReplicationLagInSeconds = maxReplicationLagInSeconds;
+        this.maxLockWaitingSessions = maxLockWaitingSessions;
+        this.pauseInMilliseconds = minPauseInMilliseconds;
+    }
+
+    public boolean isOverloaded(DatabaseLoad load) {
+        return load.getReplicationLagSeconds() > maxReplicationLagInSeconds ||
+                load.getLockWaitingSessions() > maxLockWaitingSessions;
+    }
+
+    /**
+     * @return the pause to take before the next chunk
+     */
+    public long nextPause(DatabaseLoad load) {
+        if (isOverloaded(load)) {
+            pauseInMilliseconds = Math.min(maxPauseInMilliseconds, Math.max(1, pauseInMilliseconds) * 2);
+        } else {
+            pauseInMilliseconds = Math.max(minPauseInMilliseconds, pauseInMilliseconds - Math.max(1, minPauseInMilliseconds));
+        }
+        return pauseInMilliseconds;
+    }
+
+    public long getPauseInMilliseconds() {
+        return pauseInMilliseconds;
+    }
+}
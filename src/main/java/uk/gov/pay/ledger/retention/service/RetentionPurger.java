@@ -0,0 +1,151 @@
+package uk.gov.pay.ledger.retention.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.RetentionPurgeConfig;
+import uk.gov.pay.ledger.retention.dao.RetentionPurgeDao;
+import uk.gov.pay.ledger.retention.model.PurgeResult;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Deletes transactions, payouts and their events once they are older than the retention period. Rows are deleted in
+ * small chunks in id order so that each transaction is short and vacuum can keep up, pausing between chunks for longer
+ * while the database is under load.
+ */
+public class RetentionPurger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetentionPurger.class);
+
+    private final RetentionPurgeDao retentionPurgeDao;
+    private final MetricRegistry metricRegistry;
+    private final RetentionPurgeConfig config;
+    private final PurgeThrottle throttle;
+    private final Clock clock;
+    private final String metricPrefix;
+
+    @Inject
+    public RetentionPurger(RetentionPurgeDao retentionPurgeDao, MetricRegistry metricRegistry,
+                           LedgerConfig configuration) {
+        this(retentionPurgeDao, metricRegistry, configuration, Clock.systemUTC());
+    }
+
+    RetentionPurger(RetentionPurgeDao retentionPurgeDao, MetricRegistry metricRegistry,
+                    LedgerConfig configuration, Clock clock) {
+        this.retentionPurgeDao = retentionPurgeDao;
+        this.metricRegistry = metricRegistry;
+        this.config = configuration.getRetentionPurgeConfig();
+        this.clock = clock;
+        this.throttle = new PurgeThrottle(config.getMinPauseInMilliseconds(), config.getMaxPauseInMilliseconds(),
+                config.getMaxReplicationLagInSeconds(), config.getMaxLockWaitingSessions());
+        this.metricPrefix = config.isDryRun() ? "retention-purge.dry-run." : "retention-purge.";
+        metricRegistry.gauge("retention-purge.pause-in-milliseconds", () -> throttle::getPauseInMilliseconds);
+    }
+
+    /**
+     * Purges unless another instance is already purging, in which case this run is skipped
+     */
+    public void purge() {
+        if (!retentionPurgeDao.runWithPurgeLock(this::purgeExpired)) {
+            LOGGER.info("Skipping retention purge as another instance is running it");
+        }
+    }
+
+    private void purgeExpired() {
+        ZonedDateTime cutoffDate = ZonedDateTime.now(clock).minusDays(config.getRetentionPeriodInDays());
+        Instant deadline = clock.instant().plus(Duration.ofMinutes(config.getMaxRunDurationInMinutes()));
+
+        LOGGER.info("Starting retention purge",
+                kv("cutoff_date", cutoffDate.withZoneSameInstant(ZoneOffset.UTC)),
+                kv("dry_run", config.isDryRun()));
+
+        PurgeResult transactions = purgeInChunks("transaction", cutoffDate, deadline,
+                retentionPurgeDao::findPurgeableTransactionIds, retentionPurgeDao::purgeTransactions);
+        PurgeResult payouts = purgeInChunks("payout", cutoffDate, deadline,
+                retentionPurgeDao::findPurgeablePayoutIds, retentionPurgeDao::purgePayouts);
+
+        LOGGER.info("Finished retention purge",
+                kv("dry_run", config.isDryRun()),
+                kv("transactions_purged", transactions.getTransactions()),
+                kv("transaction_metadata_purged", transactions.getTransactionMetadata()),
+                kv("payouts_purged", payouts.getPayouts()),
+                kv("events_purged", transactions.getEvents() + payouts.getEvents()));
+    }
+
+    private PurgeResult purgeInChunks(String table, ZonedDateTime cutoffDate, Instant deadline,
+                                      PurgeableIdFinder finder,
+                                      BiFunction<List<Long>, Boolean, PurgeResult> purger) {
+        long afterId = 0;
+        long transactions = 0, metadata = 0, payouts = 0, events = 0;
+
+        while (clock.instant().isBefore(deadline)) {
+            List<Long> ids = finder.find(afterId, cutoffDate, config.getChunkSize());
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+
+            PurgeResult result;
+            try (Timer.Context ignored = metricRegistry.timer("retention-purge.chunk." + table).time()) {
+                result = purger.apply(ids, config.isDryRun());
+            }
+            transactions += result.getTransactions();
+            metadata += result.getTransactionMetadata();
+            payouts += result.getPayouts();
+            events += result.getEvents();
+            recordMetrics(result);
+
+            pause();
+        }
+
+        if (!clock.instant().isBefore(deadline)) {
+            LOGGER.info("Retention purge reached its maximum run duration",
+                    kv("table", table),
+                    kv("last_purged_id", afterId));
+        }
+        return new PurgeResult(transactions, metadata, payouts, events);
+    }
+
+    private void recordMetrics(PurgeResult result) {
+        metricRegistry.counter(metricPrefix + "transactions").inc(result.getTransactions());
+        metricRegistry.counter(metricPrefix + "transaction-metadata").inc(result.getTransactionMetadata());
+        metricRegistry.counter(metricPrefix + "payouts").inc(result.getPayouts());
+        metricRegistry.counter(metricPrefix + "events").inc(result.getEvents());
+    }
+
+    private void pause() {
+        var load = retentionPurgeDao.findDatabaseLoad();
+        if (throttle.isOverloaded(load)) {
+            metricRegistry.counter("retention-purge.throttled").inc();
+            LOGGER.info("Slowing retention purge due to database load",
+                    kv("replication_lag_seconds", load.getReplicationLagSeconds()),
+                    kv("lock_waiting_sessions", load.getLockWaitingSessions()));
+        }
+
+        long pauseInMilliseconds = throttle.nextPause(load);
+        if (pauseInMilliseconds > 0) {
+            try {
+                Thread.sleep(pauseInMilliseconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Retention purge interrupted", e);
+            }
+        }
+    }
+
+    private interface PurgeableIdFinder {
+        List<Long> find(long afterId, ZonedDateTime cutoffDate, int limit);
+    }
+}
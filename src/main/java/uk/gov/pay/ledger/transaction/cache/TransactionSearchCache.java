@@ -0,0 +1,145 @@
+package uk.gov.pay.ledger.transaction.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchVersionDao;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.util.pagination.SearchLinkBuilder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded cache of transaction search responses, keyed by a normalised form of the search and a version for each
+ * gateway account searched. Writing a transaction bumps its account's version, so later searches of that account no
+ * longer match entries read before the write. Searches across all accounts use a version bumped by every write.
+ *
+ * The versions are kept in the database, so a write made through any instance is seen by the searches of every
+ * instance. Bulk writes that do not go through {@code TransactionDao.upsert}, the projection rebuild swap and the
+ * retention purge, do not bump versions, so their effects are only seen once entries expire.
+ */
+public class TransactionSearchCache {
+
+    private static final int ESTIMATED_KILOBYTES_PER_RESPONSE = 1;
+    private static final int ESTIMATED_KILOBYTES_PER_TRANSACTION = 2;
+
+    private final Cache<String, TransactionSearchResponse> cache;
+    private final TransactionSearchVersionDao versionDao;
+    private final AtomicLong estimatedKilobytes = new AtomicLong();
+
+    public TransactionSearchCache(long maximumSizeInKilobytes, Duration expiry, TransactionSearchVersionDao versionDao,
+                                  MetricRegistry metricRegistry) {
+        this.versionDao = versionDao;
+        this.cache = maximumSizeInKilobytes > 0
+                ? CacheBuilder.newBuilder()
+                .maximumWeight(maximumSizeInKilobytes)
+                .weigher((String key, TransactionSearchResponse response) -> weigh(response))
+                .expireAfterWrite(expiry.toMillis(), TimeUnit.MILLISECONDS)
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build()
+                : null;
+
+        if (cache != null) {
+            metricRegistry.register("transaction-search-cache.hit-ratio", (Gauge<Double>) () -> cache.stats().hitRate());
+            metricRegistry.register("transaction-search-cache.hits", (Gauge<Long>) () -> cache.stats().hitCount());
+            metricRegistry.register("transaction-search-cache.misses", (Gauge<Long>) () -> cache.stats().missCount());
+            metricRegistry.register("transaction-search-cache.evictions", (Gauge<Long>) () -> cache.stats().evictionCount());
+            metricRegistry.register("transaction-search-cache.entries", (Gauge<Long>) cache::size);
+            metricRegistry.register("transaction-search-cache.estimated-kilobytes", (Gauge<Long>) estimatedKilobytes::get);
+        }
+    }
+
+    public static TransactionSearchCache disabled() {
+        return new TransactionSearchCache(0, Duration.ZERO, null, new MetricRegistry());
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Builds the key for a search before it is run, so that a write landing while the search runs leaves the
+     * response cached under a version that is no longer current. Reads the versions of the accounts searched from
+     * the database.
+     */
+    public String keyFor(TransactionSearchParams searchParams, SearchLinkBuilder searchLinkBuilder) {
+        Map<String, String> canonical = new TreeMap<>();
+        searchParams.getQueryMap().forEach((name, value) -> canonical.put(name, normalise(value)));
+        canonical.put("page", String.valueOf(searchParams.getPageNumber()));
+        canonical.put("display_size", String.valueOf(searchParams.getDisplaySize()));
+        canonical.put("cursor", String.valueOf(searchParams.getCursor()));
+        canonical.put("total", searchParams.getTotalMode().name());
+        canonical.put("limit_total", searchParams.limitTotal() ? String.valueOf(searchParams.getLimitTotalSize()) : "");
+        canonical.put("status_version", String.valueOf(searchParams.getStatusVersion()));
+        canonical.put("fields", searchParams.getFields().getRawString());
+
+        return versionsFor(searchParams.getAccountIds()) + " " + searchLinkBuilder.getBaseUri() + searchLinkBuilder.getPath() + " " + canonical;
+    }
+
+    public Optional<TransactionSearchResponse> get(String key) {
+        return cache == null ? Optional.empty() : Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    public void put(String key, TransactionSearchResponse response) {
+        if (cache != null) {
+            cache.put(key, response);
+            estimatedKilobytes.addAndGet(weigh(response));
+        }
+    }
+
+    /**
+     * Bumps the account's version, and the version of all accounts, unless the cache is disabled
+     */
+    public void invalidateAccount(String gatewayAccountId) {
+        if (cache != null) {
+            versionDao.bumpVersion(gatewayAccountId);
+        }
+    }
+
+    private String versionsFor(List<String> accountIds) {
+        if (cache == null) {
+            return "";
+        }
+        if (accountIds == null || accountIds.isEmpty()) {
+            return "*@" + versionDao.findAllAccountsVersion();
+        }
+        List<String> distinctAccountIds = accountIds.stream()
+                .sorted()
+                .distinct()
+                .collect(Collectors.toList());
+        Map<String, Long> versions = versionDao.findVersions(distinctAccountIds);
+        return distinctAccountIds.stream()
+                .map(accountId -> accountId + "@" + versions.getOrDefault(accountId, 0L))
+                .collect(Collectors.joining(","));
+    }
+
+    private String normalise(Object value) {
+        if (value instanceof List<?>) {
+            return ((List<?>) value).stream()
+                    .map(String::valueOf)
+                    .sorted()
+                    .collect(Collectors.joining(",", "[", "]"));
+        }
+        return String.valueOf(value);
+    }
+
+    private void onRemoval(RemovalNotification<String, TransactionSearchResponse> notification) {
+        estimatedKilobytes.addAndGet(-weigh(notification.getValue()));
+    }
+
+    private static int weigh(TransactionSearchResponse response) {
+        return ESTIMATED_KILOBYTES_PER_RESPONSE +
+                ESTIMATED_KILOBYTES_PER_TRANSACTION * response.getTransactionViewList().size();
+    }
+}
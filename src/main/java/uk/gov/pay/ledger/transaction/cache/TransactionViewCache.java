@@ -0,0 +1,90 @@
+package uk.gov.pay.ledger.transaction.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of serialised transaction views, holding one rendering of each transaction together with the version
+ * it was rendered from. The version is read from the database before the cache is consulted, so an entry is only
+ * served while its transaction is unchanged, including when the change was written by another instance. Writing a
+ * transaction also drops its entry, so that memory is not held by renderings that can no longer be served.
+ */
+public class TransactionViewCache {
+
+    private static final int BYTES_PER_KILOBYTE = 1024;
+
+    private final Cache<String, CachedView> cache;
+    private final AtomicLong kilobytes = new AtomicLong();
+
+    public TransactionViewCache(long maximumSizeInKilobytes, MetricRegistry metricRegistry) {
+        this.cache = maximumSizeInKilobytes > 0
+                ? CacheBuilder.newBuilder()
+                .maximumWeight(maximumSizeInKilobytes)
+                .weigher((String externalId, CachedView view) -> view.weigh())
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build()
+                : null;
+
+        if (cache != null) {
+            metricRegistry.register("transaction-view-cache.hit-ratio", (Gauge<Double>) () -> cache.stats().hitRate());
+            metricRegistry.register("transaction-view-cache.hits", (Gauge<Long>) () -> cache.stats().hitCount());
+            metricRegistry.register("transaction-view-cache.misses", (Gauge<Long>) () -> cache.stats().missCount());
+            metricRegistry.register("transaction-view-cache.evictions", (Gauge<Long>) () -> cache.stats().evictionCount());
+            metricRegistry.register("transaction-view-cache.entries", (Gauge<Long>) cache::size);
+            metricRegistry.register("transaction-view-cache.kilobytes", (Gauge<Long>) kilobytes::get);
+        }
+    }
+
+    public static TransactionViewCache disabled() {
+        return new TransactionViewCache(0, new MetricRegistry());
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public Optional<byte[]> get(String externalId, String version) {
+        return Optional.ofNullable(cache == null ? null : cache.getIfPresent(externalId))
+                .filter(view -> view.version.equals(version))
+                .map(view -> view.bytes);
+    }
+
+    public void put(String externalId, String version, byte[] bytes) {
+        if (cache != null) {
+            CachedView view = new CachedView(version, bytes);
+            cache.put(externalId, view);
+            kilobytes.addAndGet(view.weigh());
+        }
+    }
+
+    public void invalidate(String externalId) {
+        if (cache != null) {
+            cache.invalidate(externalId);
+        }
+    }
+
+    private void onRemoval(RemovalNotification<String, CachedView> notification) {
+        kilobytes.addAndGet(-notification.getValue().weigh());
+    }
+
+    private static class CachedView {
+        private final String version;
+        private final byte[] bytes;
+
+        CachedView(String version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+
+        int weigh() {
+            return 1 + bytes.length / BYTES_PER_KILOBYTE;
+        }
+    }
+}
@@ -1,26 +1,51 @@
 package uk.gov.pay.ledger.transaction.dao;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.StringUtils;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.result.ResultIterator;
 import org.jdbi.v3.core.statement.Query;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import uk.gov.pay.ledger.transaction.cache.TransactionSearchCache;
+import uk.gov.pay.ledger.transaction.cache.TransactionViewCache;
+import uk.gov.pay.ledger.transaction.dao.mapper.TransactionListMapper;
 import uk.gov.pay.ledger.transaction.dao.mapper.TransactionMapper;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregate;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
+import uk.gov.pay.ledger.transaction.search.common.AggregateGroupBy;
+import uk.gov.pay.ledger.transaction.search.common.TransactionFields;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static uk.gov.pay.ledger.payout.entity.PayoutEntity.PayoutEntityBuilder.aPayoutEntity;
 
 public class TransactionDao {
     private static final String SEARCH_CLAUSE_TRANSACTION_WITH_PAYOUT = "AND po.gateway_account_id = :gatewayAccountId ";
-    private static final String SEARCH_CLAUSE_TRANSACTIONS_WITH_PAYOUT = "AND po.gateway_account_id IN (<account_id>) ";
+    private static final String SEARCH_CLAUSE_TRANSACTIONS_WITH_PAYOUT = "AND po.gateway_account_id = ANY(:account_id) ";
 
     private static final String FIND_TRANSACTION_BY_EXTERNAL_ID =
             "SELECT t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
@@ -40,6 +65,11 @@ public class TransactionDao {
             "AND (:transactionType::transaction_type is NULL OR type = :transactionType::transaction_type) " +
             "AND (:parentExternalId is NULL OR t.parent_external_id = :parentExternalId)";
 
+    private static final String FIND_TRANSACTION_BY_EXTERNAL_ID_FOR_LIST = withListColumns(FIND_TRANSACTION_BY_EXTERNAL_ID);
+
+    private static final String FIND_TRANSACTION_BY_EXTERNAL_ID_AND_GATEWAY_ACCOUNT_ID_FOR_LIST =
+            withListColumns(FIND_TRANSACTION_BY_EXTERNAL_ID_AND_GATEWAY_ACCOUNT_ID);
+
     private static final String FIND_TRANSACTIONS_BY_EXTERNAL_OR_PARENT_ID_AND_GATEWAY_ACCOUNT_ID =
             "SELECT t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
             "LEFT OUTER JOIN payout po on " +
@@ -48,6 +78,34 @@ public class TransactionDao {
             "WHERE (t.external_id = :externalId or t.parent_external_id = :externalId) " +
             "AND t.gateway_account_id = :gatewayAccountId";
 
+    private static final String FIND_TRANSACTION_VERSION =
+            "SELECT t.external_id, t.event_count, t.projection_version, po.paid_out_date FROM transaction t " +
+            "LEFT OUTER JOIN payout po ON t.gateway_payout_id = po.gateway_payout_id " +
+            "WHERE t.external_id = :externalId " +
+            "AND (:gatewayAccountId is NULL OR t.gateway_account_id = :gatewayAccountId) " +
+            "AND (:transactionType::transaction_type is NULL OR type = :transactionType::transaction_type) " +
+            "AND (:parentExternalId is NULL OR t.parent_external_id = :parentExternalId)";
+
+    private static final String FIND_TRANSACTION_VERSIONS_BY_EXTERNAL_OR_PARENT_ID_AND_GATEWAY_ACCOUNT_ID =
+            "SELECT t.external_id, t.event_count, t.projection_version, po.paid_out_date FROM transaction t " +
+            "LEFT OUTER JOIN payout po ON t.gateway_payout_id = po.gateway_payout_id " +
+            "WHERE (t.external_id = :externalId or t.parent_external_id = :externalId) " +
+            "AND t.gateway_account_id = :gatewayAccountId";
+
+    private static final RowMapper<TransactionEntity> TRANSACTION_VERSION_MAPPER = (rs, ctx) -> {
+        TransactionEntity.Builder transactionBuilder = new TransactionEntity.Builder()
+                .withExternalId(rs.getString("external_id"))
+                .withEventCount(rs.getInt("event_count"))
+                .withProjectionVersion(rs.getInt("projection_version"));
+        Timestamp paidOutDate = rs.getTimestamp("paid_out_date");
+        if (paidOutDate != null) {
+            transactionBuilder.withPayoutEntity(aPayoutEntity()
+                    .withPaidOutDate(ZonedDateTime.ofInstant(paidOutDate.toInstant(), ZoneOffset.UTC))
+                    .build());
+        }
+        return transactionBuilder.build();
+    };
+
     private static final String FIND_TRANSACTIONS_BY_PARENT_EXT_ID_AND_GATEWAY_ACCOUNT_ID =
             "SELECT t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
             "LEFT OUTER JOIN payout po on " +
@@ -62,42 +120,121 @@ public class TransactionDao {
             "t.gateway_payout_id = po.gateway_payout_id " +
             "WHERE t.parent_external_id = :parentExternalId";
 
+    private static final String STREAM_TRANSACTIONS_BY_EXTERNAL_IDS = withListColumns(
+            "SELECT t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
+            "LEFT OUTER JOIN payout po on " +
+            "t.gateway_payout_id = po.gateway_payout_id " +
+            "AND (:gatewayAccountId is NULL OR po.gateway_account_id = :gatewayAccountId) " +
+            "WHERE t.external_id = ANY(:externalIds) " +
+            "AND (:gatewayAccountId is NULL OR t.gateway_account_id = :gatewayAccountId)");
+
+    private static final String FIND_TRANSACTIONS_BY_PARENT_EXT_ID_AND_GATEWAY_ACCOUNT_ID_FOR_LIST =
+            withListColumns(FIND_TRANSACTIONS_BY_PARENT_EXT_ID_AND_GATEWAY_ACCOUNT_ID);
+
+    private static final String STREAM_TRANSACTIONS_BY_PARENT_EXT_ID_AND_GATEWAY_ACCOUNT_ID =
+            FIND_TRANSACTIONS_BY_PARENT_EXT_ID_AND_GATEWAY_ACCOUNT_ID_FOR_LIST
+                    .replace(":payoutJoinOnGatewayIdField", "") +
+            " ORDER BY t.created_date";
+
+    /**
+     * Searches filter and page over the narrow transaction_search table, then read the full rows for just the page.
+     * The search table is aliased as t so that the filter templates apply to either table.
+     */
+    private static final String SEARCH_IDS =
+            "SELECT t.id FROM transaction_search t " +
+            "LEFT OUTER JOIN payout po on " +
+            "t.gateway_payout_id = po.gateway_payout_id " +
+            ":payoutJoinOnGatewayIdField " +
+            ":searchExtraFields ";
+
     private static final String SEARCH_TRANSACTIONS =
             "SELECT t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
             "LEFT OUTER JOIN payout po on " +
             "t.gateway_payout_id = po.gateway_payout_id " +
             ":payoutJoinOnGatewayIdField " +
-            ":searchExtraFields " +
-            "ORDER BY t.created_date DESC OFFSET :offset LIMIT :limit";
+            "WHERE t.id IN (" + SEARCH_IDS +
+            "ORDER BY t.created_date DESC OFFSET :offset LIMIT :limit) " +
+            "ORDER BY t.created_date DESC";
 
     private static final String SEARCH_TRANSACTIONS_CURSOR =
             "SELECT t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
             "LEFT OUTER JOIN payout po on " +
             "t.gateway_payout_id = po.gateway_payout_id " +
             ":payoutJoinOnGatewayIdField " +
-            ":searchExtraFields " +
+            "WHERE t.id IN (" + SEARCH_IDS +
+            ":cursorFields " +
+            "ORDER BY t.created_date DESC, t.id DESC LIMIT :limit) " +
+            "ORDER BY t.created_date DESC, t.id DESC";
+
+    private static final String SEARCH_TRANSACTIONS_CURSOR_BEFORE =
+            "SELECT t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
+            "LEFT OUTER JOIN payout po on " +
+            "t.gateway_payout_id = po.gateway_payout_id " +
+            ":payoutJoinOnGatewayIdField " +
+            "WHERE t.id IN (" + SEARCH_IDS +
+            ":cursorFields " +
+            "ORDER BY t.created_date ASC, t.id ASC LIMIT :limit) " +
+            "ORDER BY t.created_date ASC, t.id ASC";
+
+    private static final String SEARCH_KEYS_FOR_MERGE =
+            SEARCH_IDS.replace("SELECT t.id ", "SELECT t.id, t.created_date ") +
             ":cursorFields " +
             "ORDER BY t.created_date DESC, t.id DESC LIMIT :limit";
 
+    private static final String SEARCH_KEYS_FOR_MERGE_BEFORE =
+            SEARCH_IDS.replace("SELECT t.id ", "SELECT t.id, t.created_date ") +
+            ":cursorFields " +
+            "ORDER BY t.created_date ASC, t.id ASC LIMIT :limit";
+
+    private static final String FIND_TRANSACTIONS_BY_IDS =
+            "SELECT t.*, po.paid_out_date AS paid_out_date FROM transaction t " +
+            "LEFT OUTER JOIN payout po on " +
+            "t.gateway_payout_id = po.gateway_payout_id " +
+            SEARCH_CLAUSE_TRANSACTIONS_WITH_PAYOUT +
+            "WHERE t.id = ANY(:ids) " +
+            "ORDER BY t.created_date DESC, t.id DESC";
+
+    private static final String FIND_TRANSACTIONS_BY_IDS_FOR_LIST = withListColumns(FIND_TRANSACTIONS_BY_IDS);
+
+    private static final String SEARCH_TRANSACTIONS_FOR_LIST = withListColumns(SEARCH_TRANSACTIONS);
+
+    /**
+     * Matches transaction_gateway_transaction_id_payment_provider_idx. When a gateway transaction id has been seen for
+     * more than one payment with the provider, the newest payment is returned.
+     */
+    private static final String FIND_PAYMENTS_BY_GATEWAY_TRANSACTION_IDS_AND_PAYMENT_PROVIDER =
+            "SELECT DISTINCT ON (t.gateway_transaction_id) " + TransactionListMapper.COLUMNS + ", " +
+            "po.paid_out_date AS paid_out_date FROM transaction t " +
+            "LEFT OUTER JOIN payout po on " +
+            "t.gateway_payout_id = po.gateway_payout_id " +
+            "WHERE t.gateway_transaction_id = ANY(:gatewayTransactionIds) " +
+            "AND lower(t.transaction_details->>'payment_provider') = lower(:paymentProvider) " +
+            "AND t.type = 'PAYMENT'::transaction_type " +
+            "ORDER BY t.gateway_transaction_id, t.created_date DESC";
+
+    private static final String SEARCH_TRANSACTIONS_CURSOR_FOR_LIST = withListColumns(SEARCH_TRANSACTIONS_CURSOR);
+
+    private static final String SEARCH_TRANSACTIONS_CURSOR_BEFORE_FOR_LIST = withListColumns(SEARCH_TRANSACTIONS_CURSOR_BEFORE);
+
     private static final String COUNT_TRANSACTIONS = "SELECT count(*) " +
-            "FROM transaction t " +
+            "FROM transaction_search t " +
             ":searchExtraFields ";
 
     private static final String COUNT_TRANSACTIONS_WITH_PAIDOUT_DATE = "SELECT count(*) " +
-            "FROM transaction t " +
+            "FROM transaction_search t " +
             "LEFT OUTER JOIN payout po on " +
             "t.gateway_payout_id = po.gateway_payout_id " +
             ":payoutJoinOnGatewayIdField " +
             ":searchExtraFields ";
 
     private static final String COUNT_TRANSACTIONS_WITH_LIMIT = "SELECT count(*) FROM (SELECT t.id " +
-            "FROM transaction t " +
+            "FROM transaction_search t " +
             " :searchExtraFields " +
             " OFFSET 0 LIMIT :limit" +
             ") txs";
 
     private static final String COUNT_TRANSACTIONS_WITH_LIMIT_AND_PAIDOUT_DATE = "SELECT count(*) FROM (SELECT t.id " +
-            "FROM transaction t " +
+            "FROM transaction_search t " +
             "LEFT OUTER JOIN payout po on " +
             "t.gateway_payout_id = po.gateway_payout_id " +
             ":payoutJoinOnGatewayIdField " +
@@ -105,6 +242,59 @@ public class TransactionDao {
             " OFFSET 0 LIMIT :limit" +
             ") txs";
 
+    private static final String ESTIMATE_TRANSACTIONS = "EXPLAIN (FORMAT JSON) SELECT t.id " +
+            "FROM transaction_search t " +
+            ":searchExtraFields ";
+
+    private static final String ESTIMATE_TRANSACTIONS_WITH_PAIDOUT_DATE = "EXPLAIN (FORMAT JSON) SELECT t.id " +
+            "FROM transaction_search t " +
+            "LEFT OUTER JOIN payout po on " +
+            "t.gateway_payout_id = po.gateway_payout_id " +
+            ":payoutJoinOnGatewayIdField " +
+            ":searchExtraFields ";
+
+    /**
+     * Totals over every transaction matching a search. The search filters run on transaction_search and the amounts,
+     * which are not copied there, are read from the matching transaction rows. {@code :groupColumn} is replaced by the
+     * expression groups are keyed by, or by a constant when the totals are not grouped.
+     */
+    private static final String AGGREGATE_TRANSACTIONS = "SELECT :groupColumn AS group_key, " +
+            "count(*) AS count, " +
+            "COALESCE(SUM(COALESCE(t.total_amount, t.amount)) FILTER (WHERE t.type = 'PAYMENT'), 0) AS gross_amount, " +
+            "COALESCE(SUM(t.fee), 0) AS fee, " +
+            "COALESCE(SUM(t.net_amount), 0) AS net_amount, " +
+            "COALESCE(SUM(t.amount) FILTER (WHERE t.type = 'REFUND'), 0) AS refunded_amount " +
+            "FROM transaction t " +
+            "WHERE t.id IN (" + SEARCH_IDS + ") " +
+            "GROUP BY 1 ORDER BY 1";
+
+    private static final String UNGROUPED = "NULL::text";
+
+    private static final String CURSOR_AFTER_CLAUSE =
+            "t.created_date <= :startingAfterCreatedDate AND NOT (t.created_date = :startingAfterCreatedDate AND t.id >= :startingAfterId) ";
+
+    private static final String CURSOR_BEFORE_CLAUSE =
+            "t.created_date >= :endingBeforeCreatedDate AND NOT (t.created_date = :endingBeforeCreatedDate AND t.id <= :endingBeforeId) ";
+
+    private static final String QUERY_CANCELED = "57014";
+
+    private static final int STREAM_FETCH_SIZE = 100;
+
+    private static final String ACCOUNT_ID_PARAMETER = "account_id";
+
+    private static final long MERGE_MINIMUM_BATCH_SIZE = 10L;
+
+    private static final Comparator<SearchKey> NEWEST_FIRST = Comparator
+            .comparing((SearchKey key) -> key.createdDate)
+            .thenComparingLong(key -> key.id)
+            .reversed();
+
+    private static final Comparator<SearchKey> OLDEST_FIRST = NEWEST_FIRST.reversed();
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
+
+    private static final Pattern PLAN_TOTAL_COST = Pattern.compile("\"Total Cost\":\\s*([0-9.]+)");
+
     private static final String UPSERT_STRING =
             "INSERT INTO transaction(" +
                     "external_id," +
@@ -131,7 +321,8 @@ public class TransactionDao {
                     "moto, " +
                     "gateway_transaction_id, " +
                     "source, " +
-                    "gateway_payout_id" +
+                    "gateway_payout_id, " +
+                    "projection_version" +
                     ") " +
                     "VALUES (" +
                     ":externalId," +
@@ -160,7 +351,8 @@ public class TransactionDao {
                     ":moto, " +
                     ":gatewayTransactionId, " +
                     ":source::source, " +
-                    ":gatewayPayoutId" +
+                    ":gatewayPayoutId, " +
+                    ":projectionVersion" +
                     ") " +
                     "ON CONFLICT (external_id) " +
                     "DO UPDATE SET " +
@@ -190,8 +382,15 @@ public class TransactionDao {
                     "moto = EXCLUDED.moto, " +
                     "gateway_transaction_id = EXCLUDED.gateway_transaction_id, " +
                     "source = EXCLUDED.source, " +
-                    "gateway_payout_id = EXCLUDED.gateway_payout_id " +
-                    "WHERE EXCLUDED.event_count >= transaction.event_count;";
+                    "gateway_payout_id = EXCLUDED.gateway_payout_id, " +
+                    "projection_version = EXCLUDED.projection_version " +
+                    "WHERE EXCLUDED.event_count > transaction.event_count " +
+                    "OR (EXCLUDED.event_count = transaction.event_count " +
+                    "AND EXCLUDED.projection_version >= transaction.projection_version);";
+
+    public static final String SEARCH_INDEX_COLUMNS = "id, gateway_account_id, type, state, created_date, card_brand, " +
+            "first_digits_card_number, last_digits_card_number, email, reference, cardholder_name, gateway_payout_id, " +
+            "gateway_transaction_id";
 
     private static final String GET_SOURCE_TYPE_ENUM_VALUES =
             "SELECT " +
@@ -204,10 +403,33 @@ public class TransactionDao {
 
 
     private final Jdbi jdbi;
+    private final TransactionSearchCache searchCache;
+    private final TransactionViewCache viewCache;
+    private final TransactionSearchTemplateCache templateCache;
+    private final int accountMergeThreshold;
+    private final Duration pageQueryTimeout;
 
     @Inject
-    public TransactionDao(Jdbi jdbi) {
+    public TransactionDao(Jdbi jdbi, TransactionSearchTemplateCache templateCache) {
+        this(jdbi, TransactionSearchCache.disabled(), TransactionViewCache.disabled(), templateCache, Integer.MAX_VALUE,
+                null);
+    }
+
+    /**
+     * @param accountMergeThreshold searches of more gateway accounts than this read each account separately and merge
+     *                              the results, see {@link #mergeSearchAcrossAccounts}
+     * @param pageQueryTimeout      how long the database may spend on the statements that read a page of a search
+     *                              before cancelling them, or null for no limit
+     */
+    public TransactionDao(Jdbi jdbi, TransactionSearchCache searchCache, TransactionViewCache viewCache,
+                          TransactionSearchTemplateCache templateCache, int accountMergeThreshold,
+                          Duration pageQueryTimeout) {
         this.jdbi = jdbi;
+        this.searchCache = searchCache;
+        this.viewCache = viewCache;
+        this.templateCache = templateCache;
+        this.accountMergeThreshold = accountMergeThreshold;
+        this.pageQueryTimeout = pageQueryTimeout;
     }
 
     public Optional<TransactionEntity> findTransaction(String externalId, String gatewayAccountId, TransactionType transactionType, String parentTransactionExternalId) {
@@ -221,10 +443,40 @@ public class TransactionDao {
                         .findFirst());
     }
 
+    /**
+     * As {@link #findTransaction(String, String, TransactionType, String)}, reading only the columns the fields are
+     * built from.
+     */
+    public Optional<TransactionEntity> findTransaction(String externalId, String gatewayAccountId, TransactionType transactionType,
+                                                       String parentTransactionExternalId, TransactionFields fields) {
+        return jdbi.withHandle(handle ->
+                handle.createQuery(fields.select(FIND_TRANSACTION_BY_EXTERNAL_ID_AND_GATEWAY_ACCOUNT_ID_FOR_LIST))
+                        .bind("externalId", externalId)
+                        .bind("gatewayAccountId", gatewayAccountId)
+                        .bind("transactionType", transactionType)
+                        .bind("parentExternalId", parentTransactionExternalId)
+                        .map(new TransactionListMapper())
+                        .findFirst());
+    }
+
     public Optional<TransactionEntity> findTransactionByExternalId(String externalId) {
         return findTransactionByExternalIdAndGatewayAccountId(externalId, null);
     }
 
+    /**
+     * As {@link #findTransactionByExternalId(String)}, reading only the columns the fields are built from.
+     */
+    public Optional<TransactionEntity> findTransactionByExternalId(String externalId, TransactionFields fields) {
+        String query = FIND_TRANSACTION_BY_EXTERNAL_ID_FOR_LIST
+                .replace(":payoutJoinOnGatewayIdField", SEARCH_CLAUSE_TRANSACTION_WITH_PAYOUT);
+        return jdbi.withHandle(handle ->
+                handle.createQuery(fields.select(query))
+                        .bind("externalId", externalId)
+                        .bind("gatewayAccountId", (String) null)
+                        .map(new TransactionListMapper())
+                        .findFirst());
+    }
+
     public Optional<TransactionEntity> findTransactionByExternalIdAndGatewayAccountId(String externalId, String gatewayAccountId) {
         String query = FIND_TRANSACTION_BY_EXTERNAL_ID
                 .replace(":payoutJoinOnGatewayIdField",
@@ -248,8 +500,39 @@ public class TransactionDao {
         );
     }
 
+    /**
+     * Reads only what changes whenever a transaction does, for answering conditional requests without reading the
+     * rest of the row. The entity returned has only its external id, event count, projection version and the date
+     * its payout was paid out, which is written to the payout rather than the transaction.
+     */
+    public Optional<TransactionEntity> findTransactionVersion(String externalId, String gatewayAccountId,
+                                                              TransactionType transactionType,
+                                                              String parentTransactionExternalId) {
+        return jdbi.withHandle(handle ->
+                handle.createQuery(FIND_TRANSACTION_VERSION)
+                        .bind("externalId", externalId)
+                        .bind("gatewayAccountId", gatewayAccountId)
+                        .bind("transactionType", transactionType)
+                        .bind("parentExternalId", parentTransactionExternalId)
+                        .map(TRANSACTION_VERSION_MAPPER)
+                        .findFirst());
+    }
+
+    /**
+     * As {@link #findTransactionVersion}, for a transaction and its child transactions.
+     */
+    public List<TransactionEntity> findTransactionVersionsByExternalOrParentIdAndGatewayAccountId(String externalId,
+                                                                                                 String gatewayAccountId) {
+        return jdbi.withHandle(handle ->
+                handle.createQuery(FIND_TRANSACTION_VERSIONS_BY_EXTERNAL_OR_PARENT_ID_AND_GATEWAY_ACCOUNT_ID)
+                        .bind("externalId", externalId)
+                        .bind("gatewayAccountId", gatewayAccountId)
+                        .map(TRANSACTION_VERSION_MAPPER)
+                        .list());
+    }
+
     public List<TransactionEntity> findTransactionByParentIdAndGatewayAccountId(String parentExternalId, String gatewayAccountId) {
-        String query = FIND_TRANSACTIONS_BY_PARENT_EXT_ID_AND_GATEWAY_ACCOUNT_ID
+        String query = FIND_TRANSACTIONS_BY_PARENT_EXT_ID_AND_GATEWAY_ACCOUNT_ID_FOR_LIST
                 .replace(":payoutJoinOnGatewayIdField",
                         isBlank(gatewayAccountId)
                                 ? SEARCH_CLAUSE_TRANSACTION_WITH_PAYOUT : "");
@@ -257,11 +540,28 @@ public class TransactionDao {
                 handle.createQuery(query)
                         .bind("parentExternalId", parentExternalId)
                         .bind("gatewayAccountId", gatewayAccountId)
-                        .map(new TransactionMapper())
+                        .map(new TransactionListMapper())
                         .stream().collect(Collectors.toList())
         );
     }
 
+    public Optional<TransactionEntity> findPaymentByGatewayTransactionIdAndPaymentProvider(String gatewayTransactionId,
+                                                                                           String paymentProvider) {
+        return findPaymentsByGatewayTransactionIdsAndPaymentProvider(List.of(gatewayTransactionId), paymentProvider)
+                .stream()
+                .findFirst();
+    }
+
+    public List<TransactionEntity> findPaymentsByGatewayTransactionIdsAndPaymentProvider(List<String> gatewayTransactionIds,
+                                                                                         String paymentProvider) {
+        return jdbi.withHandle(handle ->
+                handle.createQuery(FIND_PAYMENTS_BY_GATEWAY_TRANSACTION_IDS_AND_PAYMENT_PROVIDER)
+                        .bindArray("gatewayTransactionIds", String.class, gatewayTransactionIds)
+                        .bind("paymentProvider", paymentProvider)
+                        .map(new TransactionListMapper())
+                        .list());
+    }
+
     public List<TransactionEntity> findTransactionByParentId(String parentExternalId) {
         return jdbi.withHandle(handle ->
                 handle.createQuery(FIND_TRANSACTIONS_BY_PARENT_EXT_ID)
@@ -272,13 +572,22 @@ public class TransactionDao {
     }
 
     public List<TransactionEntity> searchTransactions(TransactionSearchParams searchParams) {
+        return searchTransactions(searchParams, searchParams.getDisplaySize());
+    }
+
+    public List<TransactionEntity> searchTransactions(TransactionSearchParams searchParams, long limit) {
+        if (isMergedAcrossAccounts(searchParams)) {
+            return mergeSearchAcrossAccounts(searchParams, null, null, false, searchParams.getOffset(), limit,
+                    FIND_TRANSACTIONS_BY_IDS_FOR_LIST, new TransactionListMapper(), pageQueryTimeout);
+        }
         return jdbi.withHandle(handle -> {
-            Query query = handle.createQuery(createSearchTemplate(searchParams, SEARCH_TRANSACTIONS));
+            Query query = handle.createQuery(createSearchTemplate(searchParams, SEARCH_TRANSACTIONS_FOR_LIST));
             searchParams.getQueryMap().forEach(bindSearchParameter(query));
             query.bind("offset", searchParams.getOffset());
-            query.bind("limit", searchParams.getDisplaySize());
+            query.bind("limit", limit);
+            setPageQueryTimeout(query);
             return query
-                    .map(new TransactionMapper())
+                    .map(new TransactionListMapper())
                     .list();
         });
     }
@@ -295,6 +604,65 @@ public class TransactionDao {
         });
     }
 
+    /**
+     * Counts the transactions matching the search, asking the driver to cancel the count if it runs for longer than
+     * the timeout. Returns empty if the count was cancelled.
+     */
+    public Optional<Long> getTotalForSearch(TransactionSearchParams searchParams, Duration queryTimeout) {
+        try {
+            return jdbi.withHandle(handle -> {
+                Query query = handle.createQuery(createSearchTemplate(searchParams,
+                        (isNotBlank(searchParams.getFromSettledDate()) || isNotBlank(searchParams.getToSettledDate())) ?
+                                COUNT_TRANSACTIONS_WITH_PAIDOUT_DATE : COUNT_TRANSACTIONS));
+                searchParams.getQueryMap().forEach(bindSearchParameter(query));
+                query.setQueryTimeout(toTimeoutInSeconds(queryTimeout));
+                return Optional.of(query
+                        .mapTo(Long.class)
+                        .one());
+            });
+        } catch (UnableToExecuteStatementException e) {
+            if (isQueryCancelled(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isQueryCancelled(UnableToExecuteStatementException e) {
+        return e.getCause() instanceof SQLException
+                && QUERY_CANCELED.equals(((SQLException) e.getCause()).getSQLState());
+    }
+
+    /**
+     * Returns the query planner's estimate of the number of transactions matching the search, without running it.
+     * The estimate relies on table statistics and can be some way out for narrow filters.
+     */
+    public Long getEstimatedTotalForSearch(TransactionSearchParams searchParams) {
+        Matcher planRows = PLAN_ROWS.matcher(explainCountForSearch(searchParams));
+        return planRows.find() ? Long.valueOf(planRows.group(1)) : 0L;
+    }
+
+    /**
+     * Returns the query planner's estimated cost of reading every transaction matching the search, which is what
+     * counting them costs, without running it. Costs are in the planner's arbitrary units.
+     */
+    public double getEstimatedCostForSearch(TransactionSearchParams searchParams) {
+        Matcher totalCost = PLAN_TOTAL_COST.matcher(explainCountForSearch(searchParams));
+        return totalCost.find() ? Double.parseDouble(totalCost.group(1)) : 0d;
+    }
+
+    private String explainCountForSearch(TransactionSearchParams searchParams) {
+        return jdbi.withHandle(handle -> {
+            Query query = handle.createQuery(createSearchTemplate(searchParams,
+                    (isNotBlank(searchParams.getFromSettledDate()) || isNotBlank(searchParams.getToSettledDate())) ?
+                            ESTIMATE_TRANSACTIONS_WITH_PAIDOUT_DATE : ESTIMATE_TRANSACTIONS));
+            searchParams.getQueryMap().forEach(bindSearchParameter(query));
+            return query
+                    .mapTo(String.class)
+                    .one();
+        });
+    }
+
     public Long getTotalWithLimitForSearch(TransactionSearchParams searchParams) {
         return jdbi.withHandle(handle -> {
             Query query = handle.createQuery(createSearchTemplate(searchParams,
@@ -309,60 +677,410 @@ public class TransactionDao {
         });
     }
 
+    /**
+     * As {@link #getTotalWithLimitForSearch(TransactionSearchParams)}, cancelled in the same way as
+     * {@link #getTotalForSearch(TransactionSearchParams, Duration)}.
+     */
+    public Optional<Long> getTotalWithLimitForSearch(TransactionSearchParams searchParams, Duration queryTimeout) {
+        try {
+            return jdbi.withHandle(handle -> {
+                Query query = handle.createQuery(createSearchTemplate(searchParams,
+                        (isNotBlank(searchParams.getFromSettledDate()) || isNotBlank(searchParams.getToSettledDate())) ?
+                                COUNT_TRANSACTIONS_WITH_LIMIT_AND_PAIDOUT_DATE : COUNT_TRANSACTIONS_WITH_LIMIT));
+                searchParams.getQueryMap().forEach(bindSearchParameter(query));
+                query.bind("limit", searchParams.getLimitTotalSize());
+                query.setQueryTimeout(toTimeoutInSeconds(queryTimeout));
+                return Optional.of(query
+                        .mapTo(Long.class)
+                        .one());
+            });
+        } catch (UnableToExecuteStatementException e) {
+            if (isQueryCancelled(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Totals the transactions matching the search in one query, grouped when {@code groupBy} is given. No rows are
+     * read out, and no rows are returned when nothing matches a grouped search. Like
+     * {@link #getTotalForSearch(TransactionSearchParams, Duration)}, the driver is asked to cancel the query if it runs
+     * for longer than the timeout, and empty is returned if it was cancelled.
+     */
+    public Optional<List<TransactionAggregate>> aggregateForSearch(TransactionSearchParams searchParams,
+                                                                   AggregateGroupBy groupBy, Duration queryTimeout) {
+        String groupColumn = groupBy == null ? UNGROUPED : groupBy.getExpression();
+        try {
+            return jdbi.withHandle(handle -> {
+                Query query = handle.createQuery(createSearchTemplate(searchParams,
+                        AGGREGATE_TRANSACTIONS.replace(":groupColumn", groupColumn)));
+                searchParams.getQueryMap().forEach(bindSearchParameter(query));
+                query.setQueryTimeout(toTimeoutInSeconds(queryTimeout));
+                return Optional.of(query
+                        .map((rs, ctx) -> new TransactionAggregate(rs.getString("group_key"), rs.getLong("count"),
+                                rs.getLong("gross_amount"), rs.getLong("fee"), rs.getLong("net_amount"),
+                                rs.getLong("refunded_amount")))
+                        .list());
+            });
+        } catch (UnableToExecuteStatementException e) {
+            if (isQueryCancelled(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads whole rows, including all of {@code transaction_details}, for the CSV export.
+     */
     public List<TransactionEntity> cursorTransactionSearch(TransactionSearchParams searchParams, ZonedDateTime startingAfterCreatedDate, Long startingAfterId) {
-        Long cursorPageSize = searchParams.getDisplaySize();
-        String cursorTemplate = "";
-        String searchTemplate = createSearchTemplate(searchParams, SEARCH_TRANSACTIONS_CURSOR);
+        return cursorTransactionSearch(searchParams, startingAfterCreatedDate, startingAfterId, searchParams.getDisplaySize(),
+                SEARCH_TRANSACTIONS_CURSOR, FIND_TRANSACTIONS_BY_IDS, new TransactionMapper(), null);
+    }
+
+    public List<TransactionEntity> cursorTransactionSearch(TransactionSearchParams searchParams, ZonedDateTime startingAfterCreatedDate, Long startingAfterId, long limit) {
+        return cursorTransactionSearch(searchParams, startingAfterCreatedDate, startingAfterId, limit,
+                SEARCH_TRANSACTIONS_CURSOR_FOR_LIST, FIND_TRANSACTIONS_BY_IDS_FOR_LIST, new TransactionListMapper(),
+                pageQueryTimeout);
+    }
+
+    /**
+     * Searches over more accounts than the merge threshold are merged across accounts, reading the same rows with
+     * {@code findByIdsQueryString} that {@code baseQueryString} would have read.
+     */
+    private List<TransactionEntity> cursorTransactionSearch(TransactionSearchParams searchParams, ZonedDateTime startingAfterCreatedDate, Long startingAfterId, long limit,
+                                                            String baseQueryString, String findByIdsQueryString,
+                                                            TransactionMapper mapper, Duration queryTimeout) {
+        if (isMergedAcrossAccounts(searchParams)) {
+            return mergeSearchAcrossAccounts(searchParams, startingAfterCreatedDate, startingAfterId, false, 0L, limit,
+                    findByIdsQueryString, mapper, queryTimeout);
+        }
+        String searchTemplate = startingAfterCreatedDate != null && startingAfterId != null
+                ? createSearchTemplate(searchParams, baseQueryString, CURSOR_AFTER_CLAUSE)
+                : createSearchTemplate(searchParams, baseQueryString, "");
+
+        return jdbi.withHandle(handle -> {
+            Query query = handle.createQuery(searchTemplate);
+            searchParams.getQueryMap().forEach(bindSearchParameter(query));
+            query.bind("startingAfterCreatedDate", startingAfterCreatedDate);
+            query.bind("startingAfterId", startingAfterId);
+            query.bind("limit", limit);
+            setQueryTimeout(query, queryTimeout);
+
+            return query.map(mapper).list();
+        });
+    }
+
+    /**
+     * Pages backwards through the same {@code (created_date, id)} ordering as {@link #cursorTransactionSearch}, reading
+     * the newer transactions closest to the cursor in ascending order and returning them newest first.
+     */
+    public List<TransactionEntity> cursorTransactionSearchBefore(TransactionSearchParams searchParams, ZonedDateTime endingBeforeCreatedDate, Long endingBeforeId, long limit) {
+        if (isMergedAcrossAccounts(searchParams)) {
+            return mergeSearchAcrossAccounts(searchParams, endingBeforeCreatedDate, endingBeforeId, true, 0L, limit,
+                    FIND_TRANSACTIONS_BY_IDS_FOR_LIST, new TransactionListMapper(), pageQueryTimeout);
+        }
+        String searchTemplate = createSearchTemplate(searchParams, SEARCH_TRANSACTIONS_CURSOR_BEFORE_FOR_LIST, CURSOR_BEFORE_CLAUSE);
+
+        List<TransactionEntity> transactions = jdbi.withHandle(handle -> {
+            Query query = handle.createQuery(searchTemplate);
+            searchParams.getQueryMap().forEach(bindSearchParameter(query));
+            query.bind("endingBeforeCreatedDate", endingBeforeCreatedDate);
+            query.bind("endingBeforeId", endingBeforeId);
+            query.bind("limit", limit);
+            setPageQueryTimeout(query);
+
+            return query.map(new TransactionListMapper()).list();
+        });
+        Collections.reverse(transactions);
+        return transactions;
+    }
+
+    private void setPageQueryTimeout(Query query) {
+        setQueryTimeout(query, pageQueryTimeout);
+    }
+
+    private static void setQueryTimeout(Query query, Duration queryTimeout) {
+        if (queryTimeout != null) {
+            query.setQueryTimeout(toTimeoutInSeconds(queryTimeout));
+        }
+    }
+
+    /**
+     * The driver's statement timeout is in whole seconds, so the timeout is rounded up
+     */
+    private static int toTimeoutInSeconds(Duration timeout) {
+        return (int) Math.max(1, (timeout.toMillis() + 999) / 1000);
+    }
+
+    private boolean isMergedAcrossAccounts(TransactionSearchParams searchParams) {
+        return searchParams.getAccountIds() != null && searchParams.getAccountIds().size() > accountMergeThreshold;
+    }
+
+    /**
+     * Reads a page of a search over many gateway accounts without sorting every matching transaction of every account.
+     * The ids on the page are found by {@link #mergeIdsAcrossAccounts}, then the rows are read for just those ids with
+     * {@code findByIdsQueryString}.
+     */
+    private List<TransactionEntity> mergeSearchAcrossAccounts(TransactionSearchParams searchParams,
+                                                              ZonedDateTime cursorCreatedDate, Long cursorId,
+                                                              boolean beforeCursor, long offset, long limit,
+                                                              String findByIdsQueryString, TransactionMapper mapper,
+                                                              Duration queryTimeout) {
+        return jdbi.withHandle(handle -> {
+            List<Long> ids = mergeIdsAcrossAccounts(handle, searchParams, cursorCreatedDate, cursorId, beforeCursor,
+                    offset, limit, queryTimeout);
+            if (ids.isEmpty()) {
+                return List.<TransactionEntity>of();
+            }
+            Query query = handle.createQuery(searchParams.getFields().select(findByIdsQueryString))
+                    .bindArray("ids", Long.class, ids)
+                    .bindArray(ACCOUNT_ID_PARAMETER, String.class, searchParams.getAccountIds());
+            setQueryTimeout(query, queryTimeout);
+            return query
+                    .map(mapper)
+                    .list();
+        });
+    }
+
+    /**
+     * Each account is scanned newest first in index order on transaction_search, reading only ids and dates, and the
+     * scans are merged with a heap. A scan is refilled from where it stopped, in doubling batches, only when the merge
+     * has used up what it read, so reading stops soon after the page is full. Before a cursor, the accounts are scanned
+     * and merged oldest first from the cursor instead, so the ids closest to it are found first.
+     */
+    private List<Long> mergeIdsAcrossAccounts(Handle handle, TransactionSearchParams searchParams,
+                                              ZonedDateTime cursorCreatedDate, Long cursorId, boolean beforeCursor,
+                                              long offset, long limit, Duration queryTimeout) {
+        long needed = offset + limit;
+        List<String> accountIds = searchParams.getAccountIds().stream().distinct().collect(Collectors.toList());
+        long initialBatchSize = Math.min(needed, Math.max(MERGE_MINIMUM_BATCH_SIZE, needed / accountIds.size() + 1));
+
+        PriorityQueue<AccountScan> scans = new PriorityQueue<>(
+                Comparator.comparing(AccountScan::peek, beforeCursor ? OLDEST_FIRST : NEWEST_FIRST));
+        for (String accountId : accountIds) {
+            AccountScan scan = new AccountScan(accountId, cursorCreatedDate, cursorId, beforeCursor, initialBatchSize);
+            fill(handle, searchParams, scan, queryTimeout);
+            if (scan.hasBuffered()) {
+                scans.add(scan);
+            }
+        }
 
-        if (startingAfterCreatedDate != null && startingAfterId != null) {
-            cursorTemplate = searchParams.getQueryMap().isEmpty() ? "WHERE " : "AND ";
-            cursorTemplate += "t.created_date <= :startingAfterCreatedDate AND NOT (t.created_date = :startingAfterCreatedDate AND t.id >= :startingAfterId) ";
+        List<Long> ids = new ArrayList<>();
+        long skipped = 0L;
+        while (ids.size() < limit && !scans.isEmpty()) {
+            AccountScan scan = scans.poll();
+            SearchKey key = scan.next();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                ids.add(key.id);
+            }
+            if (!scan.hasBuffered() && !scan.exhausted) {
+                scan.batchSize = Math.min(needed, scan.batchSize * 2);
+                fill(handle, searchParams, scan, queryTimeout);
+            }
+            if (scan.hasBuffered()) {
+                scans.add(scan);
+            }
         }
+        return ids;
+    }
 
-        searchTemplate = searchTemplate.replace(":cursorFields", cursorTemplate);
+    private void fill(Handle handle, TransactionSearchParams searchParams, AccountScan scan, Duration queryTimeout) {
+        Query query;
+        if (scan.ascending) {
+            query = handle.createQuery(createSearchTemplate(searchParams, SEARCH_KEYS_FOR_MERGE_BEFORE,
+                    CURSOR_BEFORE_CLAUSE));
+            query.bind("endingBeforeCreatedDate", scan.lastRead.createdDate);
+            query.bind("endingBeforeId", scan.lastRead.id);
+        } else {
+            boolean afterCursor = scan.lastRead != null;
+            query = handle.createQuery(createSearchTemplate(searchParams, SEARCH_KEYS_FOR_MERGE,
+                    afterCursor ? CURSOR_AFTER_CLAUSE : ""));
+            query.bind("startingAfterCreatedDate", afterCursor ? scan.lastRead.createdDate : null);
+            query.bind("startingAfterId", afterCursor ? scan.lastRead.id : null);
+        }
+        searchParams.getQueryMap().forEach(bindSearchParameter(query));
+        query.bindArray(ACCOUNT_ID_PARAMETER, String.class, List.of(scan.accountId));
+        query.bind("limit", scan.batchSize);
+        setQueryTimeout(query, queryTimeout);
 
-        String finalSearchTemplate = searchTemplate;
+        List<SearchKey> keys = query
+                .map((rs, ctx) -> new SearchKey(rs.getLong("id"),
+                        ZonedDateTime.ofInstant(rs.getTimestamp("created_date").toInstant(), ZoneOffset.UTC)))
+                .list();
+        scan.buffered.addAll(keys);
+        scan.exhausted = keys.size() < scan.batchSize;
+        if (!keys.isEmpty()) {
+            scan.lastRead = keys.get(keys.size() - 1);
+        }
+    }
+
+    /**
+     * Runs the page query for a search under {@code EXPLAIN (ANALYZE, BUFFERS)}, returning the plan as JSON, so that
+     * tests can check the plans searches get.
+     */
+    String explainSearchTransactions(TransactionSearchParams searchParams, long limit) {
         return jdbi.withHandle(handle -> {
-            Query query = handle.createQuery(finalSearchTemplate);
+            Query query = handle.createQuery("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " +
+                    createSearchTemplate(searchParams, SEARCH_TRANSACTIONS_FOR_LIST));
+            searchParams.getQueryMap().forEach(bindSearchParameter(query));
+            query.bind("offset", searchParams.getOffset());
+            query.bind("limit", limit);
+            return query
+                    .mapTo(String.class)
+                    .one();
+        });
+    }
+
+    /**
+     * Streaming form of {@link #searchTransactions(TransactionSearchParams, long)}. The returned iterator holds a
+     * connection until it is closed, which callers must do once they have read what they need from it.
+     */
+    public ResultIterator<TransactionEntity> streamTransactions(TransactionSearchParams searchParams, long limit) {
+        if (isMergedAcrossAccounts(searchParams)) {
+            return streamMergedAcrossAccounts(searchParams, null, null, searchParams.getOffset(), limit);
+        }
+        return streamQuery(createSearchTemplate(searchParams, SEARCH_TRANSACTIONS_FOR_LIST), pageQueryTimeout, query -> {
+            searchParams.getQueryMap().forEach(bindSearchParameter(query));
+            query.bind("offset", searchParams.getOffset());
+            query.bind("limit", limit);
+        });
+    }
+
+    /**
+     * Streaming form of {@link #cursorTransactionSearch(TransactionSearchParams, ZonedDateTime, Long, long)}, closed
+     * in the same way as {@link #streamTransactions}.
+     */
+    public ResultIterator<TransactionEntity> streamCursorTransactions(TransactionSearchParams searchParams, ZonedDateTime startingAfterCreatedDate, Long startingAfterId, long limit) {
+        if (isMergedAcrossAccounts(searchParams)) {
+            return streamMergedAcrossAccounts(searchParams, startingAfterCreatedDate, startingAfterId, 0L, limit);
+        }
+        return streamQuery(createSearchTemplate(searchParams, SEARCH_TRANSACTIONS_CURSOR_FOR_LIST, CURSOR_AFTER_CLAUSE),
+                pageQueryTimeout, query -> {
             searchParams.getQueryMap().forEach(bindSearchParameter(query));
             query.bind("startingAfterCreatedDate", startingAfterCreatedDate);
             query.bind("startingAfterId", startingAfterId);
-            query.bind("limit", cursorPageSize);
+            query.bind("limit", limit);
+        });
+    }
+
+    /**
+     * The ids on the page are merged across accounts on a short-lived handle before the rows are streamed, so only the
+     * row query holds its connection while the page is written.
+     */
+    private ResultIterator<TransactionEntity> streamMergedAcrossAccounts(TransactionSearchParams searchParams,
+                                                                         ZonedDateTime startingAfterCreatedDate,
+                                                                         Long startingAfterId, long offset, long limit) {
+        List<Long> ids = jdbi.withHandle(handle -> mergeIdsAcrossAccounts(handle, searchParams,
+                startingAfterCreatedDate, startingAfterId, false, offset, limit, pageQueryTimeout));
+        return streamQuery(searchParams.getFields().select(FIND_TRANSACTIONS_BY_IDS_FOR_LIST), pageQueryTimeout, query -> {
+            query.bindArray("ids", Long.class, ids);
+            query.bindArray(ACCOUNT_ID_PARAMETER, String.class, searchParams.getAccountIds());
+        });
+    }
 
-            return query.map(new TransactionMapper()).list();
+    public ResultIterator<TransactionEntity> streamTransactionsByParentIdAndGatewayAccountId(String parentExternalId, String gatewayAccountId) {
+        return streamQuery(STREAM_TRANSACTIONS_BY_PARENT_EXT_ID_AND_GATEWAY_ACCOUNT_ID, query -> {
+            query.bind("parentExternalId", parentExternalId);
+            query.bind("gatewayAccountId", gatewayAccountId);
         });
     }
 
+    /**
+     * Streams the transactions with any of the external ids, limited to the gateway account unless it is null, in no
+     * particular order. Closed in the same way as {@link #streamTransactions}.
+     */
+    public ResultIterator<TransactionEntity> streamTransactionsByExternalIds(List<String> externalIds, String gatewayAccountId) {
+        return streamQuery(STREAM_TRANSACTIONS_BY_EXTERNAL_IDS, query -> {
+            query.bindArray("externalIds", String.class, externalIds);
+            query.bind("gatewayAccountId", gatewayAccountId);
+        });
+    }
+
+    /**
+     * Postgres only reads rows in batches of the fetch size, rather than all at once, inside a transaction. The
+     * transaction is rolled back and the handle closed when the iterator is closed.
+     */
+    private ResultIterator<TransactionEntity> streamQuery(String sql, Consumer<Query> binder) {
+        return streamQuery(sql, null, binder);
+    }
+
+    /**
+     * As {@link #streamQuery(String, Consumer)}, asking the driver to cancel the query if it runs for longer than the
+     * timeout, unless the timeout is null.
+     */
+    private ResultIterator<TransactionEntity> streamQuery(String sql, Duration queryTimeout, Consumer<Query> binder) {
+        Handle handle = jdbi.open();
+        try {
+            handle.begin();
+            Query query = handle.createQuery(sql)
+                    .setFetchSize(STREAM_FETCH_SIZE)
+                    .cleanupHandleRollback();
+            binder.accept(query);
+            setQueryTimeout(query, queryTimeout);
+            return query.map(new TransactionListMapper()).iterator();
+        } catch (RuntimeException e) {
+            if (!handle.isClosed()) {
+                handle.rollback();
+                handle.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * List queries read only the columns, and the fields of {@code transaction_details}, that list views need.
+     */
+    private static String withListColumns(String query) {
+        return query.replace("SELECT t.*", "SELECT " + TransactionListMapper.COLUMNS);
+    }
+
     private String createSearchTemplate(TransactionSearchParams searchParams, String baseQueryString) {
-        String searchClauseTemplate = String.join(" AND ", searchParams.getFilterTemplates());
-        searchClauseTemplate = StringUtils.isNotBlank(searchClauseTemplate) ?
-                "WHERE " + searchClauseTemplate :
-                "";
-        baseQueryString = baseQueryString
-                .replace(":payoutJoinOnGatewayIdField",
-                        (searchParams.getAccountIds() != null && !searchParams.getAccountIds().isEmpty())
-                        ? SEARCH_CLAUSE_TRANSACTIONS_WITH_PAYOUT : "");
+        return createSearchTemplate(searchParams, baseQueryString, "");
+    }
+
+    private String createSearchTemplate(TransactionSearchParams searchParams, String baseQueryString, String cursorClause) {
+        long filterShape = searchParams.getFilterShape();
+        return searchParams.getFields().select(templateCache.get(baseQueryString, filterShape, cursorClause, () -> {
+            String searchClauseTemplate = String.join(" AND ", searchParams.getFilterTemplates());
+            searchClauseTemplate = StringUtils.isNotBlank(searchClauseTemplate) ?
+                    "WHERE " + searchClauseTemplate :
+                    "";
+            String cursorTemplate = cursorClause.isEmpty() ? "" : (filterShape == 0L ? "WHERE " : "AND ") + cursorClause;
 
-        return baseQueryString.replace(
-                ":searchExtraFields",
-                searchClauseTemplate);
+            return baseQueryString
+                    .replace(":payoutJoinOnGatewayIdField",
+                            (searchParams.getAccountIds() != null && !searchParams.getAccountIds().isEmpty())
+                            ? SEARCH_CLAUSE_TRANSACTIONS_WITH_PAYOUT : "")
+                    .replace(":searchExtraFields", searchClauseTemplate)
+                    .replace(":cursorFields", cursorTemplate);
+        }));
     }
 
     private BiConsumer<String, Object> bindSearchParameter(Query query) {
         return (searchKey, searchValue) -> {
             if (searchValue instanceof List<?>) {
-                query.bindList(searchKey, ((List<?>) searchValue));
+                query.bindArray(searchKey, String.class, ((List<?>) searchValue));
             } else {
                 query.bind(searchKey, searchValue);
             }
         };
     }
 
+    /**
+     * Writes the transaction. Its searchable columns are copied to transaction_search by the transaction_search_sync
+     * trigger in the same database transaction, so searches never see one without the other, whichever version of
+     * the service wrote the row.
+     */
     public void upsert(TransactionEntity transaction) {
-        jdbi.withHandle(handle ->
-                handle.createUpdate(UPSERT_STRING)
-                        .bindBean(transaction)
-                        .execute());
+        jdbi.useHandle(handle -> handle.createUpdate(UPSERT_STRING)
+                .bindBean(transaction)
+                .execute());
+        searchCache.invalidateAccount(transaction.getGatewayAccountId());
+        viewCache.invalidate(transaction.getExternalId());
     }
 
     public List<String> getSourceTypeValues() {
@@ -370,4 +1088,45 @@ public class TransactionDao {
                 .mapTo(String.class)
                 .collect(Collectors.toList()));
     }
+
+    private static class SearchKey {
+        private final long id;
+        private final ZonedDateTime createdDate;
+
+        SearchKey(long id, ZonedDateTime createdDate) {
+            this.id = id;
+            this.createdDate = createdDate;
+        }
+    }
+
+    private static class AccountScan {
+        private final String accountId;
+        private final boolean ascending;
+        private final Deque<SearchKey> buffered = new ArrayDeque<>();
+        private SearchKey lastRead;
+        private long batchSize;
+        private boolean exhausted;
+
+        AccountScan(String accountId, ZonedDateTime cursorCreatedDate, Long cursorId, boolean ascending,
+                    long batchSize) {
+            this.accountId = accountId;
+            this.ascending = ascending;
+            this.lastRead = cursorCreatedDate != null && cursorId != null
+                    ? new SearchKey(cursorId, cursorCreatedDate)
+                    : null;
+            this.batchSize = batchSize;
+        }
+
+        boolean hasBuffered() {
+            return !buffered.isEmpty();
+        }
+
+        SearchKey peek() {
+            return buffered.peekFirst();
+        }
+
+        SearchKey next() {
+            return buffered.pollFirst();
+        }
+    }
 }
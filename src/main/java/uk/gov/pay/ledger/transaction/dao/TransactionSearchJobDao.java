@@ -0,0 +1,121 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchJob;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Search jobs and their results, shared by every instance so that a job can be polled for on any of them
+ */
+public class TransactionSearchJobDao {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String INSERT_JOB =
+            "INSERT INTO transaction_search_job (job_id, gateway_account_ids, status, created_date) " +
+            "VALUES (:jobId, :gatewayAccountIds, :status, :createdDate)";
+
+    private static final String UPDATE_STATUS =
+            "UPDATE transaction_search_job SET status = :status, result = :result, error = :error " +
+            "WHERE job_id = :jobId";
+
+    private static final String FIND_JOB =
+            "SELECT * FROM transaction_search_job WHERE job_id = :jobId AND created_date > :createdAfter";
+
+    private static final String DELETE_JOB = "DELETE FROM transaction_search_job WHERE job_id = :jobId";
+
+    private static final String DELETE_JOBS_CREATED_BEFORE =
+            "DELETE FROM transaction_search_job WHERE created_date <= :createdBefore";
+
+    private static final RowMapper<TransactionSearchJob> JOB_MAPPER = (rs, ctx) -> new TransactionSearchJob(
+            rs.getString("job_id"),
+            List.of((String[]) rs.getArray("gateway_account_ids").getArray()),
+            TransactionSearchJob.Status.valueOf(rs.getString("status")),
+            readTree(rs.getString("result")),
+            rs.getString("error"),
+            ZonedDateTime.ofInstant(rs.getTimestamp("created_date").toInstant(), ZoneOffset.UTC));
+
+    private final Jdbi jdbi;
+
+    @Inject
+    public TransactionSearchJobDao(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    public void insert(TransactionSearchJob job) {
+        jdbi.useHandle(handle -> handle.createUpdate(INSERT_JOB)
+                .bind("jobId", job.getJobId())
+                .bindArray("gatewayAccountIds", String.class, job.getGatewayAccountIds())
+                .bind("status", TransactionSearchJob.Status.PENDING.name())
+                .bind("createdDate", job.getCreatedDate())
+                .execute());
+    }
+
+    public void markRunning(String jobId) {
+        updateStatus(jobId, TransactionSearchJob.Status.RUNNING, null, null);
+    }
+
+    /**
+     * @param result the search response, written as JSON
+     */
+    public void complete(String jobId, String result) {
+        updateStatus(jobId, TransactionSearchJob.Status.COMPLETED, result, null);
+    }
+
+    public void fail(String jobId, String error) {
+        updateStatus(jobId, TransactionSearchJob.Status.FAILED, null, error);
+    }
+
+    private void updateStatus(String jobId, TransactionSearchJob.Status status, String result, String error) {
+        jdbi.useHandle(handle -> handle.createUpdate(UPDATE_STATUS)
+                .bind("jobId", jobId)
+                .bind("status", status.name())
+                .bind("result", result)
+                .bind("error", error)
+                .execute());
+    }
+
+    /**
+     * The job, unless it was created at or before {@code createdAfter} and so has expired
+     */
+    public Optional<TransactionSearchJob> findJob(String jobId, ZonedDateTime createdAfter) {
+        return jdbi.withHandle(handle -> handle.createQuery(FIND_JOB)
+                .bind("jobId", jobId)
+                .bind("createdAfter", createdAfter)
+                .map(JOB_MAPPER)
+                .findFirst());
+    }
+
+    public void delete(String jobId) {
+        jdbi.useHandle(handle -> handle.createUpdate(DELETE_JOB)
+                .bind("jobId", jobId)
+                .execute());
+    }
+
+    public int deleteJobsCreatedBefore(ZonedDateTime createdBefore) {
+        return jdbi.withHandle(handle -> handle.createUpdate(DELETE_JOBS_CREATED_BEFORE)
+                .bind("createdBefore", createdBefore)
+                .execute());
+    }
+
+    private static JsonNode readTree(String json) throws SQLException {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new SQLException("Unable to parse search job result", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Search SQL built once for each query, filter shape and cursor clause, so that every search with the same filters
+ * sends the driver the same text. The driver switches a statement it has seen repeatedly on a connection to a named
+ * server-side prepared statement, which is only reused while the text stays the same.
+ *
+ * There are at most a few thousand shapes in practice, so the cache is unbounded. The metrics count lookups in this
+ * cache, not whether the server reused a plan for the statement.
+ */
+public class TransactionSearchTemplateCache {
+
+    private final ConcurrentMap<Key, String> templates = new ConcurrentHashMap<>();
+    private final LongAdder compiles = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public TransactionSearchTemplateCache(MetricRegistry metricRegistry) {
+        metricRegistry.register("transaction-search.query-shapes", (Gauge<Integer>) templates::size);
+        metricRegistry.register("transaction-search.query-shape-compiles", (Gauge<Long>) compiles::sum);
+        metricRegistry.register("transaction-search.query-shape-cache-hits", (Gauge<Long>) hits::sum);
+    }
+
+    public String get(String baseQuery, long filterShape, String cursorClause, Supplier<String> compile) {
+        Key key = new Key(baseQuery, filterShape, cursorClause);
+        String template = templates.get(key);
+        if (template != null) {
+            hits.increment();
+            return template;
+        }
+        return templates.computeIfAbsent(key, k -> {
+            compiles.increment();
+            return compile.get();
+        });
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    private static class Key {
+        private final String baseQuery;
+        private final long filterShape;
+        private final String cursorClause;
+
+        Key(String baseQuery, long filterShape, String cursorClause) {
+            this.baseQuery = baseQuery;
+            this.filterShape = filterShape;
+            this.cursorClause = cursorClause;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return filterShape == key.filterShape &&
+                    baseQuery.equals(key.baseQuery) &&
+                    cursorClause.equals(key.cursorClause);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(baseQuery, filterShape, cursorClause);
+        }
+    }
+}
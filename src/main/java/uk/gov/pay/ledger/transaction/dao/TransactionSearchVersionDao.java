@@ -0,0 +1,73 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+import com.google.inject.Inject;
+import org.jdbi.v3.core.Jdbi;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Versions of the transactions of each gateway account, shared by every instance, that cached search responses are
+ * keyed by. Each write takes the next value of one sequence, so the sequence's last value is the version of the
+ * transactions of all accounts.
+ */
+public class TransactionSearchVersionDao {
+
+    private static final String BUMP_ACCOUNT_VERSION =
+            "INSERT INTO transaction_search_version (gateway_account_id, version) " +
+            "VALUES (:gatewayAccountId, nextval('transaction_search_version_seq')) " +
+            "ON CONFLICT (gateway_account_id) DO UPDATE SET version = excluded.version";
+
+    private static final String BUMP_ALL_ACCOUNTS_VERSION = "SELECT nextval('transaction_search_version_seq')";
+
+    private static final String FIND_ACCOUNT_VERSIONS =
+            "SELECT gateway_account_id, version FROM transaction_search_version " +
+            "WHERE gateway_account_id IN (<gatewayAccountIds>)";
+
+    /**
+     * is_called is false until the sequence's first nextval, when last_value is still the start value
+     */
+    private static final String FIND_ALL_ACCOUNTS_VERSION =
+            "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM transaction_search_version_seq";
+
+    private final Jdbi jdbi;
+
+    @Inject
+    public TransactionSearchVersionDao(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    /**
+     * Bumps the version of the account and with it the version of all accounts, or only the latter if the account
+     * is null
+     */
+    public void bumpVersion(String gatewayAccountId) {
+        jdbi.useHandle(handle -> {
+            if (gatewayAccountId == null) {
+                handle.createQuery(BUMP_ALL_ACCOUNTS_VERSION).mapTo(Long.class).one();
+            } else {
+                handle.createUpdate(BUMP_ACCOUNT_VERSION)
+                        .bind("gatewayAccountId", gatewayAccountId)
+                        .execute();
+            }
+        });
+    }
+
+    /**
+     * The versions of the accounts that have been written to. Accounts missing from the result are at version 0.
+     */
+    public Map<String, Long> findVersions(List<String> gatewayAccountIds) {
+        return jdbi.withHandle(handle -> handle.createQuery(FIND_ACCOUNT_VERSIONS)
+                .bindList("gatewayAccountIds", gatewayAccountIds)
+                .map((rs, ctx) -> Map.entry(rs.getString("gateway_account_id"), rs.getLong("version")))
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    public long findAllAccountsVersion() {
+        return jdbi.withHandle(handle -> handle.createQuery(FIND_ALL_ACCOUNTS_VERSION)
+                .mapTo(Long.class)
+                .one());
+    }
+}
@@ -0,0 +1,115 @@
+package uk.gov.pay.ledger.transaction.dao.mapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Maps rows selected with {@link #COLUMNS}, which extract in SQL only the fields of {@code transaction_details} that
+ * {@link uk.gov.pay.ledger.transaction.model.TransactionFactory} reads, instead of fetching and parsing the whole
+ * document. The extracted fields are handed on as an already built details node.
+ */
+public class TransactionListMapper extends TransactionMapper {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String PAYMENT_DETAILS = "payment_details";
+    private static final String EXTERNAL_METADATA = "external_metadata";
+
+    private static final List<String> TEXT_FIELDS = List.of(
+            "language", "return_url", "payment_provider", "gateway_transaction_id", "wallet",
+            "card_brand_label", "card_type", "expiry_date", "capture_submitted_date", "captured_date",
+            "address_line1", "address_line2", "address_postcode", "address_city", "address_county", "address_country",
+            "refunded_by", "user_email");
+    private static final List<String> PAYMENT_DETAILS_TEXT_FIELDS = List.of(
+            "card_type", "card_brand_label", "expiry_date", "wallet");
+    /**
+     * Read as JSON rather than text, so that TransactionFactory reads them exactly as it would from the whole document,
+     * whatever type the event payload gave them.
+     */
+    private static final List<String> JSON_FIELDS = List.of(
+            "delayed_capture", "corporate_surcharge", EXTERNAL_METADATA);
+
+    /**
+     * The expression selected for each column the mapper reads, by the name it is read as.
+     */
+    public static final Map<String, String> COLUMN_EXPRESSIONS = columnExpressions();
+
+    public static final String COLUMNS = select(COLUMN_EXPRESSIONS);
+
+    private static Map<String, String> columnExpressions() {
+        Map<String, String> expressions = new LinkedHashMap<>();
+        Stream.of("id", "gateway_account_id", "external_id", "parent_external_id", "amount", "reference", "description",
+                "state", "email", "cardholder_name", "created_date", "event_count", "card_brand",
+                "last_digits_card_number", "first_digits_card_number", "net_amount", "total_amount", "refund_status",
+                "refund_amount_refunded", "refund_amount_available", "fee", "type", "live", "moto",
+                "gateway_transaction_id", "gateway_payout_id", "projection_version", "source")
+                .forEach(column -> expressions.put(column, "t." + column));
+        TEXT_FIELDS.forEach(field -> expressions.put("td_" + field, "t.transaction_details->>'" + field + "'"));
+        PAYMENT_DETAILS_TEXT_FIELDS.forEach(field -> expressions.put("td_pd_" + field,
+                "t.transaction_details->'" + PAYMENT_DETAILS + "'->>'" + field + "'"));
+        JSON_FIELDS.forEach(field -> expressions.put("td_" + field, "t.transaction_details->'" + field + "'"));
+        expressions.put("td_has_payment_details", "t.transaction_details ?? '" + PAYMENT_DETAILS + "'");
+        return Collections.unmodifiableMap(expressions);
+    }
+
+    /**
+     * Renders a select list of the given expressions, naming each by its column.
+     */
+    public static String select(Map<String, String> expressions) {
+        return expressions.entrySet().stream()
+                .map(column -> column.getValue().equals("t." + column.getKey())
+                        ? column.getValue()
+                        : column.getValue() + " AS " + column.getKey())
+                .collect(Collectors.joining(", "));
+    }
+
+    @Override
+    protected void mapTransactionDetails(TransactionEntity.Builder transactionBuilder, ResultSet rs) throws SQLException {
+        ObjectNode details = JsonNodeFactory.instance.objectNode();
+        for (String field : TEXT_FIELDS) {
+            putIfNotNull(details, field, rs.getString("td_" + field));
+        }
+
+        if (rs.getBoolean("td_has_payment_details")) {
+            ObjectNode paymentDetails = details.putObject(PAYMENT_DETAILS);
+            for (String field : PAYMENT_DETAILS_TEXT_FIELDS) {
+                putIfNotNull(paymentDetails, field, rs.getString("td_pd_" + field));
+            }
+        }
+
+        for (String field : JSON_FIELDS) {
+            String json = rs.getString("td_" + field);
+            if (json != null) {
+                details.set(field, readTree(field, json));
+            }
+        }
+
+        transactionBuilder.withExtractedTransactionDetails(details);
+    }
+
+    private static void putIfNotNull(ObjectNode node, String field, String value) {
+        if (value != null) {
+            node.put(field, value);
+        }
+    }
+
+    private static JsonNode readTree(String field, String json) throws SQLException {
+        try {
+            return OBJECT_MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new SQLException("Unable to parse " + field, e);
+        }
+    }
+}
@@ -31,7 +31,6 @@ public class TransactionMapper implements RowMapper<TransactionEntity> {
                 .withEmail(rs.getString("email"))
                 .withCardholderName(rs.getString("cardholder_name"))
                 .withCreatedDate(getZonedDateTime(rs, "created_date").orElse(null))
-                .withTransactionDetails(rs.getString("transaction_details"))
                 .withEventCount(rs.getInt("event_count"))
                 .withCardBrand(rs.getString("card_brand"))
                 .withLastDigitsCardNumber(rs.getString("last_digits_card_number"))
@@ -46,7 +45,9 @@ public class TransactionMapper implements RowMapper<TransactionEntity> {
                 .withLive(rs.getBoolean("live"))
                 .withMoto(rs.getBoolean("moto"))
                 .withGatewayTransactionId(rs.getString("gateway_transaction_id"))
-                .withGatewayPayoutId(rs.getString("gateway_payout_id"));
+                .withGatewayPayoutId(rs.getString("gateway_payout_id"))
+                .withProjectionVersion(rs.getInt("projection_version"));
+        mapTransactionDetails(transactionBuilder, rs);
         Source.from(rs.getString("source")).ifPresent(transactionBuilder::withSource);
         if (rs.getString("gateway_payout_id") != null) {
             var payoutBuilder = aPayoutEntity()
@@ -57,6 +58,10 @@ public class TransactionMapper implements RowMapper<TransactionEntity> {
         return transactionBuilder.build();
     }
 
+    protected void mapTransactionDetails(TransactionEntity.Builder transactionBuilder, ResultSet rs) throws SQLException {
+        transactionBuilder.withTransactionDetails(rs.getString("transaction_details"));
+    }
+
     private Long getLongWithNullCheck(ResultSet rs, String columnName) throws SQLException {
         long value = rs.getLong(columnName);
         return rs.wasNull() ? null : value;
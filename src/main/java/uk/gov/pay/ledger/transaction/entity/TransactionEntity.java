@@ -2,10 +2,12 @@ package uk.gov.pay.ledger.transaction.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import uk.gov.pay.commons.model.Source;
 import uk.gov.pay.ledger.payout.entity.PayoutEntity;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 
 import java.time.ZonedDateTime;
@@ -33,6 +35,8 @@ public class TransactionEntity {
     @JsonIgnore
     private String transactionDetails;
     @JsonIgnore
+    private JsonNode extractedTransactionDetails;
+    @JsonIgnore
     private Integer eventCount;
     private String cardBrand;
     private String lastDigitsCardNumber;
@@ -50,6 +54,8 @@ public class TransactionEntity {
     private Source source;
     private String gatewayPayoutId;
     private PayoutEntity payoutEntity;
+    @JsonIgnore
+    private Integer projectionVersion = ProjectionVersion.TRANSACTION;
 
     public TransactionEntity() {
     }
@@ -67,6 +73,7 @@ public class TransactionEntity {
         this.cardholderName = builder.cardholderName;
         this.createdDate = builder.createdDate;
         this.transactionDetails = builder.transactionDetails;
+        this.extractedTransactionDetails = builder.extractedTransactionDetails;
         this.eventCount = builder.eventCount;
         this.cardBrand = builder.cardBrand;
         this.lastDigitsCardNumber = builder.lastDigitsCardNumber;
@@ -84,6 +91,7 @@ public class TransactionEntity {
         this.source = builder.source;
         this.gatewayPayoutId = builder.gatewayPayoutId;
         this.payoutEntity = builder.payoutEntity;
+        this.projectionVersion = builder.projectionVersion;
     }
 
     public Long getId() {
@@ -134,6 +142,14 @@ public class TransactionEntity {
         return transactionDetails;
     }
 
+    /**
+     * The fields of {@code transaction_details} extracted in SQL for list queries, which read these instead of the
+     * whole document. Null when the whole document was read.
+     */
+    public JsonNode getExtractedTransactionDetails() {
+        return extractedTransactionDetails;
+    }
+
     public Integer getEventCount() {
         return eventCount;
     }
@@ -230,6 +246,22 @@ public class TransactionEntity {
         return Optional.ofNullable(payoutEntity);
     }
 
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public void setPayoutEntity(PayoutEntity payoutEntity) {
+        this.payoutEntity = payoutEntity;
+    }
+
+    public Integer getProjectionVersion() {
+        return projectionVersion;
+    }
+
+    public void setProjectionVersion(Integer projectionVersion) {
+        this.projectionVersion = projectionVersion;
+    }
+
     public void setEntityFieldsFromOriginalPayment(TransactionEntity paymentTransaction) {
         this.cardBrand = paymentTransaction.getCardBrand();
         this.cardholderName = paymentTransaction.getCardholderName();
@@ -254,6 +286,7 @@ public class TransactionEntity {
         private String cardholderName;
         private ZonedDateTime createdDate;
         private String transactionDetails;
+        private JsonNode extractedTransactionDetails;
         private Integer eventCount;
         private String cardBrand;
         private String lastDigitsCardNumber;
@@ -270,6 +303,7 @@ public class TransactionEntity {
         private boolean moto;
         private String gatewayPayoutId;
         private PayoutEntity payoutEntity;
+        private Integer projectionVersion = ProjectionVersion.TRANSACTION;
 
         public Builder() {
         }
@@ -338,6 +372,11 @@ public class TransactionEntity {
             return this;
         }
 
+        public Builder withExtractedTransactionDetails(JsonNode extractedTransactionDetails) {
+            this.extractedTransactionDetails = extractedTransactionDetails;
+            return this;
+        }
+
         public Builder withEventCount(Integer eventCount) {
             this.eventCount = eventCount;
             return this;
@@ -422,5 +461,10 @@ public class TransactionEntity {
             this.payoutEntity = payoutEntity;
             return this;
         }
+
+        public Builder withProjectionVersion(Integer projectionVersion) {
+            this.projectionVersion = projectionVersion;
+            return this;
+        }
     }
 }
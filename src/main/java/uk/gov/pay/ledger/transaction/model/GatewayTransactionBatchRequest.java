@@ -0,0 +1,37 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+public class GatewayTransactionBatchRequest {
+
+    public static final int MAX_GATEWAY_TRANSACTION_IDS = 5000;
+
+    @NotEmpty
+    private String paymentProvider;
+
+    @NotEmpty
+    @Size(max = MAX_GATEWAY_TRANSACTION_IDS)
+    private List<String> gatewayTransactionIds;
+
+    public GatewayTransactionBatchRequest() {
+    }
+
+    public GatewayTransactionBatchRequest(String paymentProvider, List<String> gatewayTransactionIds) {
+        this.paymentProvider = paymentProvider;
+        this.gatewayTransactionIds = gatewayTransactionIds;
+    }
+
+    public String getPaymentProvider() {
+        return paymentProvider;
+    }
+
+    public List<String> getGatewayTransactionIds() {
+        return gatewayTransactionIds;
+    }
+}
@@ -0,0 +1,31 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import uk.gov.pay.ledger.transaction.search.model.TransactionView;
+
+import java.util.List;
+
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+public class GatewayTransactionBatchResponse {
+
+    private final String paymentProvider;
+    private final List<TransactionView> transactions;
+
+    private GatewayTransactionBatchResponse(String paymentProvider, List<TransactionView> transactions) {
+        this.paymentProvider = paymentProvider;
+        this.transactions = transactions;
+    }
+
+    public static GatewayTransactionBatchResponse of(String paymentProvider, List<TransactionView> transactions) {
+        return new GatewayTransactionBatchResponse(paymentProvider, transactions);
+    }
+
+    public String getPaymentProvider() {
+        return paymentProvider;
+    }
+
+    public List<TransactionView> getTransactions() {
+        return transactions;
+    }
+}
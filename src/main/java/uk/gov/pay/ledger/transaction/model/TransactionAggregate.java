@@ -0,0 +1,69 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+/**
+ * Totals over a set of transactions. The gross amount is that of payments, including any corporate card surcharge,
+ * and the refunded amount is that of refunds, so that a set holding both is not netted off.
+ */
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionAggregate {
+
+    private final String group;
+    private final long count;
+    private final long grossAmount;
+    private final long fee;
+    private final long netAmount;
+    private final long refundedAmount;
+
+    public TransactionAggregate(String group, long count, long grossAmount, long fee, long netAmount,
+                                long refundedAmount) {
+        this.group = group;
+        this.count = count;
+        this.grossAmount = grossAmount;
+        this.fee = fee;
+        this.netAmount = netAmount;
+        this.refundedAmount = refundedAmount;
+    }
+
+    /**
+     * The totals of the given groups taken together.
+     */
+    public static TransactionAggregate sum(List<TransactionAggregate> groups) {
+        return new TransactionAggregate(null,
+                groups.stream().mapToLong(TransactionAggregate::getCount).sum(),
+                groups.stream().mapToLong(TransactionAggregate::getGrossAmount).sum(),
+                groups.stream().mapToLong(TransactionAggregate::getFee).sum(),
+                groups.stream().mapToLong(TransactionAggregate::getNetAmount).sum(),
+                groups.stream().mapToLong(TransactionAggregate::getRefundedAmount).sum());
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getGrossAmount() {
+        return grossAmount;
+    }
+
+    public long getFee() {
+        return fee;
+    }
+
+    public long getNetAmount() {
+        return netAmount;
+    }
+
+    public long getRefundedAmount() {
+        return refundedAmount;
+    }
+}
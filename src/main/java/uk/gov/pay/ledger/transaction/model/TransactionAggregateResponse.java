@@ -0,0 +1,43 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import uk.gov.pay.ledger.transaction.search.common.AggregateGroupBy;
+
+import java.util.List;
+
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionAggregateResponse {
+
+    private final String groupBy;
+    private final TransactionAggregate totals;
+    private final List<TransactionAggregate> groups;
+
+    private TransactionAggregateResponse(String groupBy, TransactionAggregate totals, List<TransactionAggregate> groups) {
+        this.groupBy = groupBy;
+        this.totals = totals;
+        this.groups = groups;
+    }
+
+    public static TransactionAggregateResponse of(TransactionAggregate totals) {
+        return new TransactionAggregateResponse(null, totals, null);
+    }
+
+    public static TransactionAggregateResponse of(AggregateGroupBy groupBy, List<TransactionAggregate> groups) {
+        return new TransactionAggregateResponse(groupBy.getName(), TransactionAggregate.sum(groups), groups);
+    }
+
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    public TransactionAggregate getTotals() {
+        return totals;
+    }
+
+    public List<TransactionAggregate> getGroups() {
+        return groups;
+    }
+}
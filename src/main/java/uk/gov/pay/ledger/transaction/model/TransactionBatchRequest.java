@@ -0,0 +1,29 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+public class TransactionBatchRequest {
+
+    public static final int MAX_TRANSACTION_IDS = 5000;
+
+    @NotEmpty
+    @Size(max = MAX_TRANSACTION_IDS)
+    private List<String> transactionIds;
+
+    public TransactionBatchRequest() {
+    }
+
+    public TransactionBatchRequest(List<String> transactionIds) {
+        this.transactionIds = transactionIds;
+    }
+
+    public List<String> getTransactionIds() {
+        return transactionIds;
+    }
+}
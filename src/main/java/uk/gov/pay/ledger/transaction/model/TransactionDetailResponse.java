@@ -0,0 +1,39 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import uk.gov.pay.ledger.transaction.search.model.TransactionView;
+
+import java.util.List;
+
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+public class TransactionDetailResponse {
+
+    private final TransactionView transaction;
+    private final List<TransactionView> transactions;
+    private final List<TransactionEvent> events;
+
+    private TransactionDetailResponse(TransactionView transaction, List<TransactionView> transactions,
+                                      List<TransactionEvent> events) {
+        this.transaction = transaction;
+        this.transactions = transactions;
+        this.events = events;
+    }
+
+    public static TransactionDetailResponse of(TransactionView transaction, List<TransactionView> transactions,
+                                               List<TransactionEvent> events) {
+        return new TransactionDetailResponse(transaction, transactions, events);
+    }
+
+    public TransactionView getTransaction() {
+        return transaction;
+    }
+
+    public List<TransactionView> getTransactions() {
+        return transactions;
+    }
+
+    public List<TransactionEvent> getEvents() {
+        return events;
+    }
+}
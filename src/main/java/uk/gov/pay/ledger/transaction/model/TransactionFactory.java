@@ -40,7 +40,7 @@ public class TransactionFactory {
 
     private Transaction createPayment(TransactionEntity entity) {
         try {
-            JsonNode transactionDetails = objectMapper.readTree(Optional.ofNullable(entity.getTransactionDetails()).orElse("{}"));
+            JsonNode transactionDetails = readTransactionDetails(entity);
             Address billingAddress = Address.from(
                     safeGetAsString(transactionDetails, "address_line1"),
                     safeGetAsString(transactionDetails, "address_line2"),
@@ -109,7 +109,7 @@ public class TransactionFactory {
 
     private Transaction createRefund(TransactionEntity entity) {
         try {
-            JsonNode transactionDetails = objectMapper.readTree(Optional.ofNullable(entity.getTransactionDetails()).orElse("{}"));
+            JsonNode transactionDetails = readTransactionDetails(entity);
 
             JsonNode refundPaymentDetails = transactionDetails.get("payment_details");
 
@@ -152,4 +152,11 @@ public class TransactionFactory {
 
         return null;
     }
+
+    private JsonNode readTransactionDetails(TransactionEntity entity) throws IOException {
+        if (entity.getExtractedTransactionDetails() != null) {
+            return entity.getExtractedTransactionDetails();
+        }
+        return objectMapper.readTree(Optional.ofNullable(entity.getTransactionDetails()).orElse("{}"));
+    }
 }
@@ -0,0 +1,93 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import uk.gov.pay.commons.api.json.ApiResponseDateTimeSerializer;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A search run in the background because it was estimated to be too expensive to run while the client waited. It is
+ * written as its status until it has finished; the response of a completed job is the search response, kept as the
+ * JSON it was written as with the fields the search asked for.
+ */
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionSearchJob {
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String jobId;
+    private final List<String> gatewayAccountIds;
+    private final Status status;
+    private final JsonNode result;
+    private final String error;
+    @JsonSerialize(using = ApiResponseDateTimeSerializer.class)
+    private final ZonedDateTime createdDate;
+
+    public TransactionSearchJob(String jobId, List<String> gatewayAccountIds, ZonedDateTime createdDate) {
+        this(jobId, gatewayAccountIds, Status.PENDING, null, null, createdDate);
+    }
+
+    public TransactionSearchJob(String jobId, List<String> gatewayAccountIds, Status status, JsonNode result,
+                                String error, ZonedDateTime createdDate) {
+        this.jobId = jobId;
+        this.gatewayAccountIds = List.copyOf(gatewayAccountIds);
+        this.status = status;
+        this.result = result;
+        this.error = error;
+        this.createdDate = createdDate;
+    }
+
+    /**
+     * Whether the job may be read by a client restricted to the given accounts, which must be the accounts it
+     * searched. Jobs searching every account are only read with the restriction overridden.
+     */
+    public boolean isReadableBy(List<String> gatewayAccountIds) {
+        return !this.gatewayAccountIds.isEmpty() && Set.copyOf(this.gatewayAccountIds).equals(Set.copyOf(gatewayAccountIds));
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getStatus() {
+        return status.name().toLowerCase();
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    @JsonIgnore
+    public boolean isFailed() {
+        return status == Status.FAILED;
+    }
+
+    @JsonIgnore
+    public JsonNode getResult() {
+        return result;
+    }
+
+    @JsonIgnore
+    public List<String> getGatewayAccountIds() {
+        return gatewayAccountIds;
+    }
+}
@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.transaction.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import uk.gov.pay.ledger.util.pagination.PaginationBuilder;
 import uk.gov.pay.ledger.transaction.search.model.TransactionView;
@@ -9,13 +10,24 @@ import java.util.List;
 public class TransactionSearchResponse {
 
     @JsonProperty("total")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Long total;
     @JsonProperty("count")
     private long count;
     @JsonProperty("page")
-    private long page;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long page;
     @JsonProperty("results")
     List<TransactionView> transactionViewList;
+    @JsonProperty("has_next")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean hasNext;
+    @JsonProperty("next_cursor")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+    @JsonProperty("prev_cursor")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String prevCursor;
     @JsonProperty("_links")
     private PaginationBuilder paginationBuilder;
 
@@ -32,6 +44,17 @@ public class TransactionSearchResponse {
         return this;
     }
 
+    public TransactionSearchResponse withCursors(String prevCursor, String nextCursor) {
+        this.prevCursor = prevCursor;
+        this.nextCursor = nextCursor;
+        return this;
+    }
+
+    public TransactionSearchResponse withHasNext(Boolean hasNext) {
+        this.hasNext = hasNext;
+        return this;
+    }
+
     public Long getTotal() {
         return total;
     }
@@ -48,6 +71,18 @@ public class TransactionSearchResponse {
         return transactionViewList;
     }
 
+    public Boolean getHasNext() {
+        return hasNext;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
     public PaginationBuilder getPaginationBuilder() {
         return paginationBuilder;
     }
@@ -7,45 +7,64 @@ import jersey.repackaged.com.google.common.base.Stopwatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.concurrency.ResourceClass;
+import uk.gov.pay.ledger.filters.ConcurrencyLimited;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
-import uk.gov.pay.ledger.transaction.model.TransactionEventResponse;
-import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
+import uk.gov.pay.ledger.transaction.model.GatewayTransactionBatchRequest;
+import uk.gov.pay.ledger.transaction.model.GatewayTransactionBatchResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregateResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionBatchRequest;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchJob;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
-import uk.gov.pay.ledger.transaction.model.TransactionsForTransactionResponse;
+import uk.gov.pay.ledger.transaction.search.common.AggregateGroupBy;
+import uk.gov.pay.ledger.transaction.search.common.TransactionFields;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 import uk.gov.pay.ledger.transaction.search.model.TransactionView;
 import uk.gov.pay.ledger.transaction.service.AccountIdListSupplierManager;
 import uk.gov.pay.ledger.transaction.service.AccountIdSupplierManager;
 import uk.gov.pay.ledger.transaction.service.CsvService;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchJobService;
 import uk.gov.pay.ledger.transaction.service.TransactionService;
 import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
+import uk.gov.pay.ledger.util.serialiser.MappedStreamingOutput;
+import uk.gov.pay.ledger.util.serialiser.ResponseMappers;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.BeanParam;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import static java.lang.String.format;
 import static net.logstash.logback.argument.StructuredArguments.kv;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static uk.gov.pay.ledger.transaction.search.common.TransactionSearchParamsValidator.validateSearchParams;
 import static uk.gov.pay.ledger.transaction.search.common.TransactionSearchParamsValidator.validateSearchParamsForCsv;
 
 @Path("/v1/transaction")
-@Produces("application/json; qs=1")
+@Produces({"application/json; qs=1", ResponseMappers.APPLICATION_CBOR + "; qs=.9", ResponseMappers.APPLICATION_SMILE + "; qs=.9"})
 public class TransactionResource {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionResource.class);
@@ -53,51 +72,137 @@ public class TransactionResource {
     private final TransactionService transactionService;
     private final CsvService csvService;
     private final LedgerConfig configuration;
+    private final TransactionSearchJobService searchJobService;
 
     @Inject
-    public TransactionResource(TransactionService transactionService, CsvService csvService, LedgerConfig configuration) {
+    public TransactionResource(TransactionService transactionService, CsvService csvService, LedgerConfig configuration,
+                               TransactionSearchJobService searchJobService) {
         this.transactionService = transactionService;
         this.csvService = csvService;
         this.configuration = configuration;
+        this.searchJobService = searchJobService;
     }
 
     @Path("/{transactionExternalId}")
     @GET
+    @ConcurrencyLimited(ResourceClass.SINGLE_GET)
     @Timed
-    public TransactionView getById(@PathParam("transactionExternalId") String transactionExternalId,
-                                   @QueryParam("account_id") String gatewayAccountId,
-                                   @QueryParam("override_account_id_restriction") Boolean overrideAccountRestriction,
-                                   @QueryParam("transaction_type") TransactionType transactionType,
-                                   @QueryParam("parent_external_id") String parentTransactionExternalId,
-                                   @DefaultValue("2") @QueryParam("status_version") int statusVersion
+    public Response getById(@PathParam("transactionExternalId") String transactionExternalId,
+                            @QueryParam("account_id") String gatewayAccountId,
+                            @QueryParam("override_account_id_restriction") Boolean overrideAccountRestriction,
+                            @QueryParam("transaction_type") TransactionType transactionType,
+                            @QueryParam("parent_external_id") String parentTransactionExternalId,
+                            @DefaultValue("2") @QueryParam("status_version") int statusVersion,
+                            @QueryParam(TransactionFields.FIELDS_FIELD) CommaDelimitedSetParameter fieldsParameter,
+                            @Context Request request
     ) {
         LOGGER.info("Get transaction request: {}", transactionExternalId);
+        TransactionFields fields = TransactionFields.from(fieldsParameter);
 
-        AccountIdSupplierManager<Optional<TransactionView>> accountIdSupplierManager =
+        AccountIdSupplierManager<Optional<String>> versionSupplierManager =
                 AccountIdSupplierManager.of(overrideAccountRestriction, gatewayAccountId);
-
-        return accountIdSupplierManager
-                .withSupplier((accountId) -> transactionService.getTransactionForGatewayAccount(accountId,
-                        transactionExternalId, transactionType,
-                        parentTransactionExternalId, statusVersion))
-                .withPrivilegedSupplier(() -> transactionService.getTransaction(transactionExternalId, statusVersion))
+        String version = versionSupplierManager
+                .withSupplier(accountId -> transactionService.getTransactionVersion(transactionExternalId, accountId,
+                        transactionType, parentTransactionExternalId, statusVersion))
+                .withPrivilegedSupplier(() -> transactionService.getTransactionVersion(transactionExternalId, null,
+                        null, null, statusVersion))
                 .validateAndGet()
                 .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND));
+
+        Supplier<Optional<TransactionView>> transactionView = () -> {
+            AccountIdSupplierManager<Optional<TransactionView>> accountIdSupplierManager =
+                    AccountIdSupplierManager.of(overrideAccountRestriction, gatewayAccountId);
+
+            return accountIdSupplierManager
+                    .withSupplier((accountId) -> transactionService.getTransactionForGatewayAccount(accountId,
+                            transactionExternalId, transactionType,
+                            parentTransactionExternalId, statusVersion, fields))
+                    .withPrivilegedSupplier(() -> transactionService.getTransaction(transactionExternalId,
+                            statusVersion, fields))
+                    .validateAndGet();
+        };
+
+        MediaType mediaType = ResponseMappers.negotiate(request);
+        if (!MediaType.APPLICATION_JSON_TYPE.equals(mediaType)) {
+            return conditionally(request, tagFor(version, fields) + "/" + mediaType.getSubtype(), mediaType,
+                    () -> withFields(transactionView.get()
+                            .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND)), fields));
+        }
+
+        return conditionally(request, tagFor(version, fields), mediaType,
+                () -> transactionService.getSerialisedTransaction(transactionExternalId, version, fields, transactionView)
+                        .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND)));
+    }
+
+    /**
+     * Representations with different fields, or in different media types, are told apart by their tags.
+     */
+    private static String tagFor(String version, TransactionFields fields) {
+        return fields.isAll() ? version : version + "/" + fields.getRawString();
+    }
+
+    @Path("/batch")
+    @POST
+    @ConcurrencyLimited(ResourceClass.SEARCH)
+    @Timed
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response getByIds(@Valid @NotNull TransactionBatchRequest request,
+                             @QueryParam("account_id") String gatewayAccountId,
+                             @QueryParam("override_account_id_restriction") Boolean overrideAccountRestriction,
+                             @DefaultValue("2") @QueryParam("status_version") int statusVersion
+    ) {
+        LOGGER.info("Get transactions batch request", kv("transaction_ids", request.getTransactionIds().size()));
+
+        AccountIdSupplierManager<MappedStreamingOutput> accountIdSupplierManager =
+                AccountIdSupplierManager.of(overrideAccountRestriction, gatewayAccountId);
+
+        return Response.ok(accountIdSupplierManager
+                .withSupplier(accountId -> transactionService.streamTransactionsByExternalIds(
+                        request.getTransactionIds(), accountId, statusVersion))
+                .withPrivilegedSupplier(() -> transactionService.streamTransactionsByExternalIds(
+                        request.getTransactionIds(), null, statusVersion))
+                .validateAndGet()).build();
     }
 
     @Path("/")
     @GET
+    @ConcurrencyLimited(ResourceClass.SEARCH)
     @Timed
-    public TransactionSearchResponse search(@Valid
-                                            @BeanParam TransactionSearchParams searchParams,
-                                            @QueryParam("override_account_id_restriction") Boolean overrideAccountRestriction,
-                                            @QueryParam("account_id") CommaDelimitedSetParameter gatewayAccountIds,
-                                            @Context UriInfo uriInfo) {
+    public Response search(@Valid
+                           @BeanParam TransactionSearchParams searchParams,
+                           @QueryParam("override_account_id_restriction") Boolean overrideAccountRestriction,
+                           @QueryParam("account_id") CommaDelimitedSetParameter gatewayAccountIds,
+                           @Context UriInfo uriInfo) {
         return searchForTransactions(searchParams, overrideAccountRestriction, gatewayAccountIds, uriInfo);
     }
 
+    @Path("/aggregate")
+    @GET
+    @ConcurrencyLimited(ResourceClass.SEARCH)
+    @Timed
+    public TransactionAggregateResponse aggregate(@Valid
+                                                  @BeanParam TransactionSearchParams searchParams,
+                                                  @QueryParam("override_account_id_restriction") Boolean overrideAccountRestriction,
+                                                  @QueryParam("account_id") CommaDelimitedSetParameter commaSeparatedGatewayAccountIds,
+                                                  @QueryParam("group_by") String groupBy) {
+        TransactionSearchParams transactionSearchParams = Optional.ofNullable(searchParams)
+                .orElse(new TransactionSearchParams());
+        validateSearchParams(transactionSearchParams, commaSeparatedGatewayAccountIds);
+        AggregateGroupBy aggregateGroupBy = isNotBlank(groupBy) ? AggregateGroupBy.from(groupBy) : null;
+        List<String> gatewayAccountIds = commaSeparatedGatewayAccountIds != null ? commaSeparatedGatewayAccountIds.getParameters() : List.of();
+        AccountIdListSupplierManager<TransactionAggregateResponse> accountIdSupplierManager =
+                AccountIdListSupplierManager.of(overrideAccountRestriction, gatewayAccountIds);
+        return accountIdSupplierManager
+                .withSupplier(accountId -> transactionService.aggregateTransactions(gatewayAccountIds,
+                        transactionSearchParams, aggregateGroupBy))
+                .withPrivilegedSupplier(() -> transactionService.aggregateTransactions(List.of(),
+                        transactionSearchParams, aggregateGroupBy))
+                .validateAndGet(ACCOUNT_MANAGER_FIELD_NAME);
+    }
+
     @Path("/")
     @GET
+    @ConcurrencyLimited(ResourceClass.CSV)
     @Produces("text/csv; qs=.5")
     @Timed
     public Response streamCsv(@Valid @BeanParam TransactionSearchParams searchParams,
@@ -146,47 +251,158 @@ public class TransactionResource {
         return Response.ok(stream).build();
     }
 
-    private TransactionSearchResponse searchForTransactions(TransactionSearchParams searchParams, Boolean overrideAccountRestriction, CommaDelimitedSetParameter commaSeparatedGatewayAccountIds, UriInfo uriInfo) {
+    /**
+     * Pages at least as large as the configured minimum are streamed to the client as they are read. Smaller pages
+     * are built in memory, which lets them be served from the search cache.
+     */
+    private Response searchForTransactions(TransactionSearchParams searchParams, Boolean overrideAccountRestriction, CommaDelimitedSetParameter commaSeparatedGatewayAccountIds, UriInfo uriInfo) {
         TransactionSearchParams transactionSearchParams = Optional.ofNullable(searchParams)
                 .orElse(new TransactionSearchParams());
         validateSearchParams(transactionSearchParams, commaSeparatedGatewayAccountIds);
         List<String> gatewayAccountIds = commaSeparatedGatewayAccountIds != null ? commaSeparatedGatewayAccountIds.getParameters() : List.of();
-        AccountIdListSupplierManager<TransactionSearchResponse> accountIdSupplierManager =
+        AccountIdListSupplierManager<Response> accountIdSupplierManager =
                 AccountIdListSupplierManager.of(overrideAccountRestriction, gatewayAccountIds);
         return accountIdSupplierManager
-                .withSupplier(accountId -> transactionService.searchTransactions(gatewayAccountIds, transactionSearchParams, uriInfo))
-                .withPrivilegedSupplier(() -> transactionService.searchTransactions(transactionSearchParams, uriInfo))
+                .withSupplier(accountId -> searchForTransactions(gatewayAccountIds, transactionSearchParams, uriInfo))
+                .withPrivilegedSupplier(() -> searchForTransactions(List.of(), transactionSearchParams, uriInfo))
                 .validateAndGet(ACCOUNT_MANAGER_FIELD_NAME);
     }
 
+    /**
+     * Searches estimated to be expensive are answered with 202 and the job they are run as, which is polled for at
+     * the location given.
+     */
+    private Response searchForTransactions(List<String> gatewayAccountIds, TransactionSearchParams searchParams,
+                                           UriInfo uriInfo) {
+        if (searchJobService.shouldRunAsJob(gatewayAccountIds, searchParams)) {
+            TransactionSearchJob job = searchJobService.submit(gatewayAccountIds, searchParams, uriInfo);
+            UriBuilder jobUri = uriInfo.getBaseUriBuilder().path("/v1/transaction/search-job/{jobId}");
+            if (!gatewayAccountIds.isEmpty()) {
+                jobUri.queryParam(ACCOUNT_MANAGER_FIELD_NAME, String.join(",", gatewayAccountIds));
+            }
+            return Response.accepted(job).location(jobUri.build(job.getJobId())).build();
+        }
+
+        return isStreamed(searchParams)
+                ? Response.ok(transactionService.streamTransactions(gatewayAccountIds, searchParams, uriInfo)).build()
+                : Response.ok(withFields(transactionService.searchTransactions(gatewayAccountIds, searchParams, uriInfo),
+                        searchParams.getFields())).build();
+    }
+
+    @Path("/search-job/{jobId}")
+    @GET
+    @ConcurrencyLimited(ResourceClass.SINGLE_GET)
+    @Timed
+    public Response getSearchJob(@PathParam("jobId") String jobId,
+                                 @QueryParam("override_account_id_restriction") Boolean overrideAccountRestriction,
+                                 @QueryParam("account_id") CommaDelimitedSetParameter commaSeparatedGatewayAccountIds) {
+        List<String> gatewayAccountIds = commaSeparatedGatewayAccountIds != null ? commaSeparatedGatewayAccountIds.getParameters() : List.of();
+        AccountIdListSupplierManager<Optional<TransactionSearchJob>> accountIdSupplierManager =
+                AccountIdListSupplierManager.of(overrideAccountRestriction, gatewayAccountIds);
+        TransactionSearchJob job = accountIdSupplierManager
+                .withSupplier(accountId -> searchJobService.getJob(jobId, gatewayAccountIds))
+                .withPrivilegedSupplier(() -> searchJobService.getJob(jobId))
+                .validateAndGet(ACCOUNT_MANAGER_FIELD_NAME)
+                .orElseThrow(() -> new WebApplicationException(format("Search job with id [%s] not found", jobId),
+                        Response.Status.NOT_FOUND));
+
+        if (!job.isFinished()) {
+            return Response.accepted(job).build();
+        }
+        if (job.isFailed()) {
+            return Response.serverError().entity(job).build();
+        }
+        return Response.ok(job.getResult()).build();
+    }
+
+    /**
+     * Responses built in memory are written by the mapper for their media type unless only some fields were asked
+     * for.
+     */
+    private Object withFields(Object entity, TransactionFields fields) {
+        if (fields.isAll()) {
+            return entity;
+        }
+        return transactionService.writeWithFields(entity, fields);
+    }
+
+    private boolean isStreamed(TransactionSearchParams searchParams) {
+        return searchParams.getDisplaySize() >= configuration.getTransactionSearchConfig().getStreamingMinimumDisplaySize();
+    }
+
     @Path("{transactionExternalId}/event")
     @GET
+    @ConcurrencyLimited(ResourceClass.SINGLE_GET)
     @Timed
-    public TransactionEventResponse events(@PathParam("transactionExternalId") String transactionExternalId,
-                                           @QueryParam("gateway_account_id") @NotEmpty String gatewayAccountId,
-                                           @QueryParam("include_all_events") boolean includeAllEvents,
-                                           @DefaultValue("2") @QueryParam("status_version") int statusVersion,
-                                           @Context UriInfo uriInfo) {
+    public Response events(@PathParam("transactionExternalId") String transactionExternalId,
+                           @QueryParam("gateway_account_id") @NotEmpty String gatewayAccountId,
+                           @QueryParam("include_all_events") boolean includeAllEvents,
+                           @DefaultValue("2") @QueryParam("status_version") int statusVersion,
+                           @Context UriInfo uriInfo,
+                           @Context Request request) {
 
         LOGGER.info("Get transaction event: external_id [{}], gateway_account_id [{}]",
                 transactionExternalId, gatewayAccountId);
-        return transactionService.findTransactionEvents(transactionExternalId, gatewayAccountId, includeAllEvents, statusVersion);
+        return conditionally(request, getVersionWithChildren(transactionExternalId, gatewayAccountId, statusVersion),
+                () -> transactionService.findTransactionEvents(transactionExternalId, gatewayAccountId, includeAllEvents,
+                        statusVersion));
+    }
+
+    @Path("{transactionExternalId}/detail")
+    @GET
+    @ConcurrencyLimited(ResourceClass.SINGLE_GET)
+    @Timed
+    public Response detail(@PathParam("transactionExternalId") String transactionExternalId,
+                           @QueryParam("gateway_account_id") @NotEmpty String gatewayAccountId,
+                           @DefaultValue("2") @QueryParam("status_version") int statusVersion,
+                           @Context Request request) {
+        LOGGER.info("Get transaction detail: external_id [{}], gateway_account_id [{}]",
+                transactionExternalId, gatewayAccountId);
+
+        return conditionally(request, getVersionWithChildren(transactionExternalId, gatewayAccountId, statusVersion),
+                () -> transactionService.getTransactionDetail(transactionExternalId, gatewayAccountId, statusVersion));
+    }
+
+    private String getVersionWithChildren(String transactionExternalId, String gatewayAccountId, int statusVersion) {
+        return transactionService.getTransactionVersionWithChildren(transactionExternalId, gatewayAccountId, statusVersion)
+                .orElseThrow(() ->
+                        new WebApplicationException(format("Transaction with id [%s] not found", transactionExternalId),
+                                Response.Status.NOT_FOUND));
+    }
+
+    /**
+     * Answers 304 without building the entity when the client already has the given version of it, and otherwise
+     * tags the entity with the version. The version is read before the entity, so the entity is never older than its
+     * tag.
+     */
+    private static Response conditionally(Request request, String version, Supplier<Object> entity) {
+        return conditionally(request, version, null, entity);
+    }
+
+    private static Response conditionally(Request request, String version, MediaType mediaType, Supplier<Object> entity) {
+        EntityTag entityTag = new EntityTag(version);
+        return Optional.ofNullable(request.evaluatePreconditions(entityTag))
+                .orElseGet(() -> Response.ok(entity.get(), mediaType))
+                .tag(entityTag)
+                .build();
     }
 
     @Path("/{parentTransactionExternalId}/transaction")
     @GET
+    @ConcurrencyLimited(ResourceClass.SINGLE_GET)
     @Timed
-    public TransactionsForTransactionResponse getTransactionsForParentTransaction(@PathParam("parentTransactionExternalId") String parentTransactionExternalId,
-                                                                                  @QueryParam("gateway_account_id") @NotEmpty String gatewayAccountId
+    public Response getTransactionsForParentTransaction(@PathParam("parentTransactionExternalId") String parentTransactionExternalId,
+                                                        @QueryParam("gateway_account_id") @NotEmpty String gatewayAccountId
     ) {
         LOGGER.info("Get transactions for parent transaction: [{}], gateway_account_id [{}]",
                 parentTransactionExternalId, gatewayAccountId);
 
-        return transactionService.getTransactions(parentTransactionExternalId, gatewayAccountId);
+        return Response.ok(transactionService.streamTransactionsForParentTransaction(parentTransactionExternalId, gatewayAccountId)).build();
     }
 
     @Path("/gateway-transaction/{gatewayTransactionId}")
     @GET
+    @ConcurrencyLimited(ResourceClass.SINGLE_GET)
     @Timed
     public TransactionView findByGatewayTransactionId(@PathParam("gatewayTransactionId") String gatewayTransactionId,
                                                       @QueryParam("payment_provider") @NotEmpty String paymentProvider
@@ -194,4 +410,16 @@ public class TransactionResource {
         return transactionService.findByGatewayTransactionId(gatewayTransactionId, paymentProvider)
                 .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND));
     }
+
+    @Path("/gateway-transaction/batch")
+    @POST
+    @ConcurrencyLimited(ResourceClass.SEARCH)
+    @Timed
+    @Consumes(MediaType.APPLICATION_JSON)
+    public GatewayTransactionBatchResponse findByGatewayTransactionIds(@Valid @NotNull GatewayTransactionBatchRequest request) {
+        LOGGER.info("Find transactions by gateway transaction ids",
+                kv("payment_provider", request.getPaymentProvider()),
+                kv("gateway_transaction_ids", request.getGatewayTransactionIds().size()));
+        return transactionService.findByGatewayTransactionIds(request);
+    }
 }
@@ -0,0 +1,48 @@
+package uk.gov.pay.ledger.transaction.search.common;
+
+import uk.gov.pay.ledger.exception.ValidationException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * What the totals of an aggregate search are grouped by, set with the {@code group_by} query parameter. Each group is
+ * keyed by an expression over the transaction row, so the grouping is done by the aggregate query itself.
+ */
+public enum AggregateGroupBy {
+    /**
+     * Grouped by the state transactions are stored in, such as {@code SUCCESS} or {@code FAILED_REJECTED}
+     */
+    STATE("t.state::text"),
+    /**
+     * Grouped by card brand, transactions without a card being grouped together without a key
+     */
+    CARD_BRAND("t.card_brand"),
+    /**
+     * Grouped by the UTC day the transaction was created on, as {@code yyyy-mm-dd}
+     */
+    DAY("to_char(t.created_date AT TIME ZONE 'UTC', 'YYYY-MM-DD')");
+
+    private final String expression;
+
+    AggregateGroupBy(String expression) {
+        this.expression = expression;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    public static AggregateGroupBy from(String value) {
+        return Arrays.stream(values())
+                .filter(groupBy -> groupBy.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new ValidationException(String.format("group_by must be one of %s", Arrays.stream(values())
+                        .map(AggregateGroupBy::getName)
+                        .collect(Collectors.joining(", ")))));
+    }
+}
@@ -0,0 +1,34 @@
+package uk.gov.pay.ledger.transaction.search.common;
+
+import uk.gov.pay.ledger.exception.ValidationException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * How the total number of matching transactions is worked out for a search, set with the {@code total} query
+ * parameter.
+ */
+public enum SearchTotalMode {
+    /**
+     * No total is returned; whether there is a next page is found by reading one row more than the page size
+     */
+    NONE,
+    /**
+     * The total is the query planner's row estimate, corrected by the rows actually read for the page
+     */
+    ESTIMATE,
+    /**
+     * The total is counted, capped at {@code limit_total_size} when {@code limit_total} is set
+     */
+    EXACT;
+
+    public static SearchTotalMode from(String value) {
+        return Arrays.stream(values())
+                .filter(mode -> mode.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new ValidationException(String.format("total must be one of %s", Arrays.stream(values())
+                        .map(mode -> mode.name().toLowerCase())
+                        .collect(Collectors.joining(", ")))));
+    }
+}
@@ -0,0 +1,189 @@
+package uk.gov.pay.ledger.transaction.search.common;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.transaction.dao.mapper.TransactionListMapper;
+import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Map.entry;
+
+/**
+ * The fields of a transaction view asked for with the {@code fields} query parameter. Only the columns the fields are
+ * built from are read, the others being selected as {@code NULL}, and only the fields are written. A view nested as
+ * the {@code payment_details} of a refund is written whole, if it is asked for.
+ */
+public class TransactionFields {
+
+    public static final String FIELDS_FIELD = "fields";
+    public static final String FILTER_ID = "transactionFields";
+    public static final TransactionFields ALL = new TransactionFields(null);
+
+    private static final String PAYMENT_DETAILS = "payment_details";
+    private static final String PAID_OUT_DATE = "po.paid_out_date AS paid_out_date";
+
+    /**
+     * Columns that are read whatever fields are asked for, since they identify the transaction, tell payments from
+     * refunds, or are needed to reproject a stale transaction and to build cursors.
+     */
+    private static final Set<String> ALWAYS_SELECTED = Set.of("id", "gateway_account_id", "external_id", "type",
+            "state", "created_date", "event_count", "projection_version");
+
+    private static final List<String> CARD_COLUMNS = List.of("cardholder_name", "card_brand",
+            "last_digits_card_number", "first_digits_card_number", "td_card_brand_label", "td_card_type",
+            "td_expiry_date");
+
+    private static final Map<String, List<String>> COLUMNS_BY_FIELD = Map.ofEntries(
+            entry("gateway_account_id", List.of()),
+            entry("amount", List.of("amount")),
+            entry("total_amount", List.of("total_amount")),
+            entry("corporate_card_surcharge", List.of("td_corporate_surcharge")),
+            entry("fee", List.of("fee")),
+            entry("net_amount", List.of("net_amount")),
+            entry("state", List.of()),
+            entry("description", List.of("description")),
+            entry("reference", List.of("reference")),
+            entry("language", List.of("td_language")),
+            entry("transaction_id", List.of()),
+            entry("parent_transaction_id", List.of("parent_external_id")),
+            entry("return_url", List.of("td_return_url")),
+            entry("email", List.of("email")),
+            entry("payment_provider", List.of("td_payment_provider")),
+            entry("created_date", List.of()),
+            entry("card_details", concat(CARD_COLUMNS, List.of("td_address_line1", "td_address_line2",
+                    "td_address_postcode", "td_address_city", "td_address_county", "td_address_country"))),
+            entry("delayed_capture", List.of("td_delayed_capture")),
+            entry("gateway_transaction_id", List.of("gateway_transaction_id", "td_gateway_transaction_id")),
+            entry("refund_summary", List.of("refund_status", "refund_amount_refunded", "refund_amount_available")),
+            entry("settlement_summary", List.of("gateway_payout_id", "td_capture_submitted_date", "td_captured_date")),
+            entry("metadata", List.of("td_external_metadata")),
+            entry("refunded_by", List.of("td_refunded_by")),
+            entry("refunded_by_user_email", List.of("td_user_email")),
+            entry("transaction_type", List.of()),
+            entry("moto", List.of("moto")),
+            entry("live", List.of("live")),
+            entry("source", List.of("source")),
+            entry("wallet_type", List.of("td_wallet")),
+            entry("gateway_payout_id", List.of("gateway_payout_id")),
+            entry(PAYMENT_DETAILS, concat(CARD_COLUMNS, List.of("reference", "description", "email",
+                    "td_has_payment_details", "td_pd_card_type", "td_pd_card_brand_label", "td_pd_expiry_date",
+                    "td_pd_wallet")))
+    );
+
+    private final Set<String> fields;
+    private final String columns;
+
+    private TransactionFields(Set<String> fields) {
+        this.fields = fields;
+        this.columns = fields == null ? TransactionListMapper.COLUMNS : selectColumns(fields);
+    }
+
+    public static TransactionFields from(CommaDelimitedSetParameter fields) {
+        if (fields == null || !fields.isNotEmpty()) {
+            return ALL;
+        }
+
+        Set<String> requested = fields.getParameters().stream()
+                .map(String::trim)
+                .collect(Collectors.toCollection(TreeSet::new));
+        Set<String> unknown = requested.stream()
+                .filter(field -> !COLUMNS_BY_FIELD.containsKey(field))
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!unknown.isEmpty()) {
+            throw new ValidationException(String.format("%s contains unknown fields %s, must be any of %s",
+                    FIELDS_FIELD, unknown, new TreeSet<>(COLUMNS_BY_FIELD.keySet())));
+        }
+        return new TransactionFields(requested);
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * Replaces the list columns of a query with just the columns the fields are built from.
+     */
+    public String select(String query) {
+        if (isAll()) {
+            return query;
+        }
+        return query.replace(TransactionListMapper.COLUMNS + ", " + PAID_OUT_DATE,
+                columns + ", " + (includes("settlement_summary") ? PAID_OUT_DATE : "NULL AS paid_out_date"))
+                .replace(TransactionListMapper.COLUMNS, columns);
+    }
+
+    public FilterProvider filterProvider() {
+        return new SimpleFilterProvider().addFilter(FILTER_ID, isAll()
+                ? SimpleBeanPropertyFilter.serializeAll()
+                : new FieldsFilter(fields));
+    }
+
+    /**
+     * The fields in a stable order, for telling apart the representations of a transaction with different fields.
+     */
+    public String getRawString() {
+        return isAll() ? "" : String.join(",", fields);
+    }
+
+    private static String selectColumns(Set<String> fields) {
+        Set<String> selected = new TreeSet<>(ALWAYS_SELECTED);
+        fields.forEach(field -> selected.addAll(COLUMNS_BY_FIELD.get(field)));
+
+        Map<String, String> expressions = new LinkedHashMap<>();
+        TransactionListMapper.COLUMN_EXPRESSIONS.forEach((column, expression) ->
+                expressions.put(column, selected.contains(column) ? expression : "NULL"));
+        return TransactionListMapper.select(expressions);
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        return Stream.concat(first.stream(), second.stream()).distinct().collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Mixed in to {@link uk.gov.pay.ledger.transaction.search.model.TransactionView} by the mapper that writes
+     * selected fields, so that the application mapper is left unfiltered.
+     */
+    @JsonFilter(FILTER_ID)
+    public interface FilteredView {
+    }
+
+    private static class FieldsFilter extends SimpleBeanPropertyFilter {
+        private final Set<String> fields;
+
+        FieldsFilter(Set<String> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public void serializeAsField(Object pojo, JsonGenerator generator, SerializerProvider provider,
+                                     PropertyWriter writer) throws Exception {
+            if (fields.contains(writer.getName()) || isPaymentDetails(generator)) {
+                writer.serializeAsField(pojo, generator, provider);
+            } else if (!generator.canOmitFields()) {
+                writer.serializeAsOmittedField(pojo, generator, provider);
+            }
+        }
+
+        private static boolean isPaymentDetails(JsonGenerator generator) {
+            return generator.getOutputContext().getParent() != null &&
+                    PAYMENT_DETAILS.equals(generator.getOutputContext().getParent().getCurrentName());
+        }
+    }
+}
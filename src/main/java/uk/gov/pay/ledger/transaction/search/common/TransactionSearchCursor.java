@@ -0,0 +1,92 @@
+package uk.gov.pay.ledger.transaction.search.common;
+
+import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a transaction search ordered by {@code (created_date, id)} descending, encoded as an opaque token for
+ * the {@code cursor} query parameter. A cursor either continues after its position, towards older transactions, or
+ * before it, towards newer ones.
+ */
+public class TransactionSearchCursor {
+
+    public enum Direction {
+        AFTER("a"),
+        BEFORE("b");
+
+        private final String code;
+
+        Direction(String code) {
+            this.code = code;
+        }
+
+        static Direction fromCode(String code) {
+            for (Direction direction : values()) {
+                if (direction.code.equals(code)) {
+                    return direction;
+                }
+            }
+            throw new IllegalArgumentException("Unknown cursor direction: " + code);
+        }
+    }
+
+    private static final String SEPARATOR = "|";
+
+    private final Direction direction;
+    private final ZonedDateTime createdDate;
+    private final Long id;
+
+    private TransactionSearchCursor(Direction direction, ZonedDateTime createdDate, Long id) {
+        this.direction = direction;
+        this.createdDate = createdDate;
+        this.id = id;
+    }
+
+    public static TransactionSearchCursor after(TransactionEntity transaction) {
+        return new TransactionSearchCursor(Direction.AFTER, transaction.getCreatedDate(), transaction.getId());
+    }
+
+    public static TransactionSearchCursor before(TransactionEntity transaction) {
+        return new TransactionSearchCursor(Direction.BEFORE, transaction.getCreatedDate(), transaction.getId());
+    }
+
+    public static TransactionSearchCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split("\\" + SEPARATOR, -1);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected 3 cursor parts but found " + parts.length);
+            }
+            return new TransactionSearchCursor(
+                    Direction.fromCode(parts[0]),
+                    ZonedDateTime.ofInstant(Instant.parse(parts[1]), ZoneOffset.UTC),
+                    Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("Invalid cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        String value = direction.code + SEPARATOR + createdDate.toInstant() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
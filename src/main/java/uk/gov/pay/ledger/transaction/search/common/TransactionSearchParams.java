@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.transaction.search.common;
 
+import uk.gov.pay.ledger.common.search.CursorSearchParams;
 import uk.gov.pay.ledger.common.search.SearchParams;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
@@ -14,11 +15,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
-public class TransactionSearchParams extends SearchParams {
+public class TransactionSearchParams extends SearchParams implements CursorSearchParams {
 
     private static final String GATEWAY_ACCOUNT_EXTERNAL_FIELD = "account_id";
     private static final String CARDHOLDER_NAME_FIELD = "cardholder_name";
@@ -37,6 +39,57 @@ public class TransactionSearchParams extends SearchParams {
     private static final String GATEWAY_PAYOUT_ID = "gateway_payout_id";
     private static final String FROM_SETTLED_DATE_FIELD = "from_settled_date";
     private static final String TO_SETTLED_DATE_FIELD = "to_settled_date";
+    private static final String CURSOR_FIELD = "cursor";
+    private static final String TOTAL_FIELD = "total";
+    private static final String PAYMENT_STATE_FILTER =
+            " (t.state = ANY(:" + PAYMENT_STATES_FIELD + ") AND t.type =  'PAYMENT'::transaction_type)";
+    private static final String REFUND_STATE_FILTER =
+            " (t.state = ANY(:" + REFUND_STATES_FIELD + ") AND t.type =  'REFUND'::transaction_type)";
+
+    /**
+     * Every filter a search can apply, in the order their templates are joined. The position of a filter in this
+     * list is its bit in {@link #getFilterShape()}, so new filters are added at the end.
+     */
+    private static final List<SearchFilter> SEARCH_FILTERS = List.of(
+            new SearchFilter(params -> params.accountIds != null && !params.accountIds.isEmpty(),
+                    " t.gateway_account_id = ANY(:" + GATEWAY_ACCOUNT_EXTERNAL_FIELD + ")"),
+            new SearchFilter(params -> params.transactionType != null,
+                    " t.type = :" + TRANSACTION_TYPE_FIELD + "::transaction_type"),
+            new SearchFilter(params -> isNotBlank(params.fromDate),
+                    " t.created_date > :" + FROM_DATE_FIELD),
+            new SearchFilter(params -> isNotBlank(params.toDate),
+                    " t.created_date < :" + TO_DATE_FIELD),
+            new SearchFilter(params -> params.isSet(params.paymentStates) && !params.isSet(params.refundStates),
+                    "(" + PAYMENT_STATE_FILTER + ")"),
+            new SearchFilter(params -> !params.isSet(params.paymentStates) && params.isSet(params.refundStates),
+                    "(" + REFUND_STATE_FILTER + ")"),
+            new SearchFilter(params -> params.isSet(params.paymentStates) && params.isSet(params.refundStates),
+                    "(" + PAYMENT_STATE_FILTER + " OR" + REFUND_STATE_FILTER + ")"),
+            new SearchFilter(params -> isNotBlank(params.state),
+                    " t.state = ANY(:" + STATE_FIELD + ")"),
+            new SearchFilter(params -> isNotBlank(params.firstDigitsCardNumber),
+                    " t.first_digits_card_number = :" + FIRST_DIGITS_CARD_NUMBER_FIELD),
+            new SearchFilter(params -> isNotBlank(params.gatewayPayoutId),
+                    " t.gateway_payout_id = :" + GATEWAY_PAYOUT_ID),
+            new SearchFilter(params -> isNotBlank(params.email),
+                    " lower(t.email) LIKE lower(:" + EMAIL_FIELD + ")"),
+            new SearchFilter(params -> isNotBlank(params.reference) && params.exactReferenceMatch,
+                    " lower(t.reference) = lower(:" + REFERENCE_FIELD + ")"),
+            new SearchFilter(params -> isNotBlank(params.reference) && !params.exactReferenceMatch,
+                    " lower(t.reference) LIKE lower(:" + REFERENCE_FIELD + ")"),
+            new SearchFilter(params -> isNotBlank(params.cardHolderName),
+                    " lower(t.cardholder_name) LIKE lower(:" + CARDHOLDER_NAME_FIELD + ")"),
+            new SearchFilter(params -> params.cardBrands != null && params.cardBrands.isNotEmpty(),
+                    " t.card_brand = ANY(:" + CARD_BRAND_FIELD + ")"),
+            new SearchFilter(params -> isNotBlank(params.lastDigitsCardNumber),
+                    " t.last_digits_card_number = :" + LAST_DIGITS_CARD_NUMBER_FIELD),
+            new SearchFilter(params -> isNotBlank(params.gatewayTransactionId),
+                    " t.gateway_transaction_id = :" + GATEWAY_TRANSACTION_ID_FIELD),
+            new SearchFilter(params -> isNotBlank(params.fromSettledDate),
+                    " po.paid_out_date >= :" + FROM_SETTLED_DATE_FIELD),
+            new SearchFilter(params -> isNotBlank(params.toSettledDate),
+                    " po.paid_out_date < :" + TO_SETTLED_DATE_FIELD));
+
     private static final long DEFAULT_PAGE_NUMBER = 1L;
     private static final long DEFAULT_MAX_DISPLAY_SIZE = 500L;
     private static final Long DEFAULT_LIMIT_TOTAL_SIZE = 10000L;
@@ -96,6 +149,14 @@ public class TransactionSearchParams extends SearchParams {
     private Map<String, Object> queryMap;
     @QueryParam("gateway_transaction_id")
     private String gatewayTransactionId;
+    @QueryParam("cursor")
+    private String cursor;
+    @DefaultValue("exact")
+    @QueryParam("total")
+    private String total = "exact";
+    @QueryParam(TransactionFields.FIELDS_FIELD)
+    private CommaDelimitedSetParameter fields;
+    private TransactionFields transactionFields;
 
     public void setAccountIds(List<String> accountIds) {
         this.accountIds = List.copyOf(accountIds);
@@ -178,6 +239,19 @@ public class TransactionSearchParams extends SearchParams {
         this.limitTotalSize = limitTotalSize;
     }
 
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public void setTotal(String total) {
+        this.total = total;
+    }
+
+    public void setFields(CommaDelimitedSetParameter fields) {
+        this.fields = fields;
+        this.transactionFields = null;
+    }
+
     public void setLimitTotal(boolean limitTotal) {
         this.limitTotal = limitTotal;
     }
@@ -188,67 +262,26 @@ public class TransactionSearchParams extends SearchParams {
 
     public List<String> getFilterTemplates() {
         List<String> filters = new ArrayList<>();
-
-        addCommonFilterTemplates(filters);
-
-        if (isNotBlank(email)) {
-            filters.add(" lower(t.email) LIKE lower(:" + EMAIL_FIELD + ")");
-        }
-        if (isNotBlank(reference)) {
-            if (exactReferenceMatch) {
-                filters.add(" lower(t.reference) = lower(:" + REFERENCE_FIELD + ")");
-            } else {
-                filters.add(" lower(t.reference) LIKE lower(:" + REFERENCE_FIELD + ")");
+        for (SearchFilter filter : SEARCH_FILTERS) {
+            if (filter.isSetOn(this)) {
+                filters.add(filter.template);
             }
         }
-        if (isNotBlank(cardHolderName)) {
-            filters.add(" lower(t.cardholder_name) LIKE lower(:" + CARDHOLDER_NAME_FIELD + ")");
-        }
-        if (cardBrands != null && cardBrands.isNotEmpty()) {
-            filters.add(" t.card_brand IN (<" + CARD_BRAND_FIELD + ">)");
-        }
-        if (isNotBlank(lastDigitsCardNumber)) {
-            filters.add(" t.last_digits_card_number = :" + LAST_DIGITS_CARD_NUMBER_FIELD);
-        }
-        if (isNotBlank(gatewayTransactionId)) {
-            filters.add(" t.gateway_transaction_id = :" + GATEWAY_TRANSACTION_ID_FIELD);
-        }
-        if (isNotBlank(fromSettledDate)) {
-            filters.add(" po.paid_out_date >= :" + FROM_SETTLED_DATE_FIELD);
-        }
-        if (isNotBlank(toSettledDate)) {
-            filters.add(" po.paid_out_date < :" + TO_SETTLED_DATE_FIELD);
-        }
-
         return List.copyOf(filters);
     }
 
-    private void addCommonFilterTemplates(List<String> filters) {
-
-        if (accountIds != null && !accountIds.isEmpty()) {
-            filters.add(" t.gateway_account_id IN (<" + GATEWAY_ACCOUNT_EXTERNAL_FIELD + ">)");
-        }
-        if (transactionType != null) {
-            filters.add(" t.type = :" + TRANSACTION_TYPE_FIELD + "::transaction_type");
-        }
-        if (isNotBlank(fromDate)) {
-            filters.add(" t.created_date > :" + FROM_DATE_FIELD);
-        }
-        if (isNotBlank(toDate)) {
-            filters.add(" t.created_date < :" + TO_DATE_FIELD);
-        }
-        if (isSet(paymentStates) || isSet(refundStates)) {
-            filters.add(createStateFilter());
-        }
-        if (isNotBlank(state)) {
-            filters.add(" t.state IN (<" + STATE_FIELD + ">)");
-        }
-        if (isNotBlank(firstDigitsCardNumber)) {
-            filters.add(" t.first_digits_card_number = :" + FIRST_DIGITS_CARD_NUMBER_FIELD);
-        }
-        if (isNotBlank(gatewayPayoutId)) {
-            filters.add(" t.gateway_payout_id = :" + GATEWAY_PAYOUT_ID);
+    /**
+     * Identifies which filters the search sets, one bit per filter. Searches with the same shape produce the same SQL
+     * whatever the values bound to it, including the lengths of the lists bound with {@code = ANY(:array)}.
+     */
+    public long getFilterShape() {
+        long shape = 0L;
+        for (int i = 0; i < SEARCH_FILTERS.size(); i++) {
+            if (SEARCH_FILTERS.get(i).isSetOn(this)) {
+                shape |= 1L << i;
+            }
         }
+        return shape;
     }
 
     public Map<String, Object> getQueryMap() {
@@ -370,6 +403,30 @@ public class TransactionSearchParams extends SearchParams {
         return statusVersion;
     }
 
+    @Override
+    public String getCursor() {
+        return cursor;
+    }
+
+    public Optional<TransactionSearchCursor> getDecodedCursor() {
+        return isNotBlank(cursor) ? Optional.of(TransactionSearchCursor.decode(cursor)) : Optional.empty();
+    }
+
+    public String getTotal() {
+        return total;
+    }
+
+    public TransactionFields getFields() {
+        if (transactionFields == null) {
+            transactionFields = TransactionFields.from(fields);
+        }
+        return transactionFields;
+    }
+
+    public SearchTotalMode getTotalMode() {
+        return isNotBlank(total) ? SearchTotalMode.from(total) : SearchTotalMode.EXACT;
+    }
+
     public String getFromSettledDate() {
         return fromSettledDate;
     }
@@ -380,6 +437,23 @@ public class TransactionSearchParams extends SearchParams {
 
     @Override
     public String buildQueryParamString(Long forPage) {
+        List<String> queries = buildFilterQueryParams();
+        queries.add("page=" + forPage);
+        queries.add("display_size=" + getDisplaySize());
+
+        return String.join("&", queries);
+    }
+
+    @Override
+    public String buildQueryParamStringForCursor(String cursor) {
+        List<String> queries = buildFilterQueryParams();
+        queries.add(CURSOR_FIELD + "=" + cursor);
+        queries.add("display_size=" + getDisplaySize());
+
+        return String.join("&", queries);
+    }
+
+    private List<String> buildFilterQueryParams() {
         List<String> queries = new ArrayList<>();
 
         if (accountIds != null && !accountIds.isEmpty()) {
@@ -431,11 +505,14 @@ public class TransactionSearchParams extends SearchParams {
         if (isNotBlank(toSettledDate)) {
             queries.add(TO_SETTLED_DATE_FIELD + "=" + toSettledDate);
         }
-        queries.add("page=" + forPage);
-        queries.add("display_size=" + getDisplaySize());
-
+        if (getTotalMode() != SearchTotalMode.EXACT) {
+            queries.add(TOTAL_FIELD + "=" + getTotalMode().name().toLowerCase());
+        }
+        if (!getFields().isAll()) {
+            queries.add(TransactionFields.FIELDS_FIELD + "=" + getFields().getRawString());
+        }
 
-        return String.join("&", queries);
+        return queries;
     }
 
     public Long getOffset() {
@@ -456,23 +533,11 @@ public class TransactionSearchParams extends SearchParams {
                 .collect(Collectors.toList());
     }
 
-    private String createStateFilter() {
-        String paymentStateFilter = null;
-        String refundStateFilter = null;
-        if (isSet(paymentStates)) {
-            paymentStateFilter =
-                    " (t.state IN (<" + PAYMENT_STATES_FIELD + ">) AND t.type =  'PAYMENT'::transaction_type)";
-        }
-        if (isSet(refundStates)) {
-            refundStateFilter =
-                    " (t.state IN (<" + REFUND_STATES_FIELD + ">) AND t.type =  'REFUND'::transaction_type)";
-        }
-
-        return "(" + List.of(
-                Optional.ofNullable(paymentStateFilter), Optional.ofNullable(refundStateFilter)
-        ).stream()
-                .flatMap(Optional::stream)
-                .collect(Collectors.joining(" OR ")) + ")";
+    /**
+     * Whether any filter is matched with a pattern starting with a wildcard, which no index on the column can serve.
+     */
+    public boolean hasLeadingWildcardFilter() {
+        return isNotBlank(email) || (isNotBlank(reference) && !exactReferenceMatch) || isNotBlank(cardHolderName);
     }
 
     private String likeClause(String rawUserInputText) {
@@ -486,4 +551,18 @@ public class TransactionSearchParams extends SearchParams {
     public void setGatewayTransactionId(String gatewayTransactionId) {
         this.gatewayTransactionId = gatewayTransactionId;
     }
+
+    private static class SearchFilter {
+        private final Predicate<TransactionSearchParams> isSet;
+        private final String template;
+
+        SearchFilter(Predicate<TransactionSearchParams> isSet, String template) {
+            this.isSet = isSet;
+            this.template = template;
+        }
+
+        boolean isSetOn(TransactionSearchParams searchParams) {
+            return isSet.test(searchParams);
+        }
+    }
 }
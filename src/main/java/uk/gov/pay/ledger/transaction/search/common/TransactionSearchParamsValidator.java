@@ -17,6 +17,14 @@ public class TransactionSearchParamsValidator {
 
     public static void validateSearchParams(TransactionSearchParams searchParams, CommaDelimitedSetParameter gatewayAccountIds) {
         validateDates(searchParams);
+
+        if (isNotBlank(searchParams.getCursor())) {
+            TransactionSearchCursor.decode(searchParams.getCursor());
+        }
+        if (isNotBlank(searchParams.getTotal())) {
+            SearchTotalMode.from(searchParams.getTotal());
+        }
+        searchParams.getFields();
     }
 
     public static void validateSearchParamsForCsv(TransactionSearchParams searchParams, CommaDelimitedSetParameter gatewayAccountIds) {
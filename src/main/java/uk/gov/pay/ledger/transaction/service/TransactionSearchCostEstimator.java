@@ -0,0 +1,90 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Decides, before a search is run, whether it is too expensive to run while the client waits. Searches whose filters
+ * have none of the shapes known to be slow are cheap without asking the database. The others are planned with
+ * {@code EXPLAIN}, which does not run them, and are expensive if the planner's cost of reading every match is over
+ * the threshold. A threshold of zero treats every search as cheap.
+ */
+public class TransactionSearchCostEstimator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionSearchCostEstimator.class);
+
+    private final TransactionDao transactionDao;
+    private final double costThreshold;
+    private final Duration wideDateRange;
+    private final Clock clock;
+
+    public TransactionSearchCostEstimator(TransactionDao transactionDao, double costThreshold, Duration wideDateRange,
+                                          Clock clock) {
+        this.transactionDao = transactionDao;
+        this.costThreshold = costThreshold;
+        this.wideDateRange = wideDateRange;
+        this.clock = clock;
+    }
+
+    public boolean isExpensive(TransactionSearchParams searchParams) {
+        if (costThreshold <= 0) {
+            return false;
+        }
+
+        List<String> riskFactors = riskFactors(searchParams);
+        if (riskFactors.isEmpty()) {
+            return false;
+        }
+
+        double cost = transactionDao.getEstimatedCostForSearch(searchParams);
+        boolean expensive = cost > costThreshold;
+        if (expensive) {
+            LOGGER.info("Transaction search estimated to be expensive",
+                    kv("estimated_cost", cost),
+                    kv("risk_factors", riskFactors));
+        }
+        return expensive;
+    }
+
+    /**
+     * The shapes of the filters that can make a search slow: searching every account, matching text with a leading
+     * wildcard, or a date range wider than the configured width, including one that is open at its start and no date
+     * range at all.
+     */
+    List<String> riskFactors(TransactionSearchParams searchParams) {
+        List<String> riskFactors = new ArrayList<>();
+        if (searchParams.getAccountIds() == null || searchParams.getAccountIds().isEmpty()) {
+            riskFactors.add("all_accounts");
+        }
+        if (searchParams.hasLeadingWildcardFilter()) {
+            riskFactors.add("leading_wildcard");
+        }
+        if (hasWideDateRange(searchParams)) {
+            riskFactors.add("wide_date_range");
+        }
+        return riskFactors;
+    }
+
+    private boolean hasWideDateRange(TransactionSearchParams searchParams) {
+        if (isBlank(searchParams.getFromDate())) {
+            return true;
+        }
+        ZonedDateTime fromDate = ZonedDateTime.parse(searchParams.getFromDate());
+        ZonedDateTime toDate = isNotBlank(searchParams.getToDate())
+                ? ZonedDateTime.parse(searchParams.getToDate())
+                : ZonedDateTime.now(clock);
+        return Duration.between(fromDate, toDate).compareTo(wideDateRange) > 0;
+    }
+}
@@ -0,0 +1,74 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Runs the independent queries behind a transaction search concurrently, each on its own handle, on a bounded pool.
+ * When the pool is saturated queries run on the request thread instead, as they would without the pool.
+ */
+public class TransactionSearchExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionSearchExecutor.class);
+
+    private final ExecutorService executorService;
+    private final Duration pageQueryTimeout;
+    private final Duration countQueryTimeout;
+    private final MetricRegistry metricRegistry;
+
+    public TransactionSearchExecutor(ExecutorService executorService, Duration pageQueryTimeout,
+                                     Duration countQueryTimeout, MetricRegistry metricRegistry) {
+        this.executorService = executorService;
+        this.pageQueryTimeout = pageQueryTimeout;
+        this.countQueryTimeout = countQueryTimeout;
+        this.metricRegistry = metricRegistry;
+    }
+
+    public <T> Future<T> submit(Callable<T> query) {
+        return executorService.submit(query);
+    }
+
+    public Duration getPageQueryTimeout() {
+        return pageQueryTimeout;
+    }
+
+    public Duration getCountQueryTimeout() {
+        return countQueryTimeout;
+    }
+
+    /**
+     * Waits for a query until the deadline, cancelling it if it has not finished by then. An empty result means the
+     * query timed out or returned null; a failed query rethrows its exception.
+     */
+    public <T> Optional<T> await(String queryName, Future<T> query, long deadlineNanos) {
+        try {
+            return Optional.ofNullable(query.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            query.cancel(true);
+            metricRegistry.counter("transaction-search." + queryName + "-query-timeouts").inc();
+            LOGGER.warn("Transaction search query timed out and was cancelled", kv("query", queryName));
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            query.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for transaction search " + queryName + " query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Transaction search " + queryName + " query failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchJobDao;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchJob;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.util.pagination.SearchLinkBuilder;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Runs searches estimated to be too expensive to run while the client waits as jobs on a small pool of low priority
+ * threads, so that only a few database connections are ever held by them. Each job runs its queries on its own thread
+ * with the job query timeout, rather than on the pool searches are run on while the client waits. Jobs, with their
+ * results, are kept in the database so that clients can poll for them on any instance until they expire, whether or
+ * not they have been read.
+ */
+public class TransactionSearchJobService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionSearchJobService.class);
+
+    private final TransactionService transactionService;
+    private final TransactionSearchJobDao jobDao;
+    private final TransactionSearchCostEstimator costEstimator;
+    private final ExecutorService executorService;
+    private final Duration expiry;
+    private final MetricRegistry metricRegistry;
+
+    /**
+     * @param transactionService the service the jobs search with, whose queries run on the calling thread
+     */
+    public TransactionSearchJobService(TransactionService transactionService, TransactionSearchJobDao jobDao,
+                                       TransactionSearchCostEstimator costEstimator, ExecutorService executorService,
+                                       Duration expiry, MetricRegistry metricRegistry) {
+        this.transactionService = transactionService;
+        this.jobDao = jobDao;
+        this.costEstimator = costEstimator;
+        this.executorService = executorService;
+        this.expiry = expiry;
+        this.metricRegistry = metricRegistry;
+    }
+
+    public boolean shouldRunAsJob(List<String> gatewayAccountIds, TransactionSearchParams searchParams) {
+        if (!gatewayAccountIds.isEmpty()) {
+            searchParams.setAccountIds(gatewayAccountIds);
+        }
+        return costEstimator.isExpensive(searchParams);
+    }
+
+    /**
+     * Queues the search, answering 503 if the queue is full. The request's URIs are copied, since links to other
+     * pages are built once the request has finished. Expired jobs are deleted as new ones are submitted.
+     */
+    public TransactionSearchJob submit(List<String> gatewayAccountIds, TransactionSearchParams searchParams,
+                                       UriInfo uriInfo) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        TransactionSearchJob job = new TransactionSearchJob(UUID.randomUUID().toString(), gatewayAccountIds, now);
+        SearchLinkBuilder searchLinkBuilder = SearchLinkBuilder.of(uriInfo);
+
+        jobDao.deleteJobsCreatedBefore(now.minus(expiry));
+        jobDao.insert(job);
+        try {
+            executorService.execute(() -> run(job, searchParams, searchLinkBuilder));
+        } catch (RejectedExecutionException e) {
+            jobDao.delete(job.getJobId());
+            metricRegistry.counter("transaction-search-jobs.rejected").inc();
+            throw new WebApplicationException("Too many expensive transaction searches are queued",
+                    Response.Status.SERVICE_UNAVAILABLE);
+        }
+        metricRegistry.counter("transaction-search-jobs.submitted").inc();
+        LOGGER.info("Transaction search queued as a job", kv("job_id", job.getJobId()));
+        return job;
+    }
+
+    public Optional<TransactionSearchJob> getJob(String jobId) {
+        return jobDao.findJob(jobId, ZonedDateTime.now(ZoneOffset.UTC).minus(expiry));
+    }
+
+    public Optional<TransactionSearchJob> getJob(String jobId, List<String> gatewayAccountIds) {
+        return getJob(jobId).filter(job -> job.isReadableBy(gatewayAccountIds));
+    }
+
+    private void run(TransactionSearchJob job, TransactionSearchParams searchParams,
+                     SearchLinkBuilder searchLinkBuilder) {
+        jobDao.markRunning(job.getJobId());
+        long startedAt = System.nanoTime();
+        try {
+            TransactionSearchResponse response = transactionService.searchTransactions(job.getGatewayAccountIds(),
+                    searchParams, searchLinkBuilder);
+            jobDao.complete(job.getJobId(),
+                    transactionService.writerFor(searchParams.getFields()).writeValueAsString(response));
+            metricRegistry.timer("transaction-search-jobs.duration")
+                    .update(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        } catch (JsonProcessingException | RuntimeException e) {
+            LOGGER.error("Transaction search job failed", kv("job_id", job.getJobId()), e);
+            metricRegistry.counter("transaction-search-jobs.failed").inc();
+            jobDao.fail(job.getJobId(), "The transaction search failed");
+        }
+    }
+}
@@ -1,77 +1,255 @@
 package uk.gov.pay.ledger.transaction.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.inject.Inject;
+import org.jdbi.v3.core.result.ResultIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.ledger.event.dao.EventDao;
 import uk.gov.pay.ledger.event.model.Event;
 import uk.gov.pay.ledger.event.model.EventDigest;
 import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
+import uk.gov.pay.ledger.payout.entity.PayoutEntity;
+import uk.gov.pay.ledger.projection.service.ReprojectionService;
+import uk.gov.pay.ledger.transaction.cache.TransactionSearchCache;
+import uk.gov.pay.ledger.transaction.cache.TransactionViewCache;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.model.CsvTransactionFactory;
-import uk.gov.pay.ledger.transaction.model.Transaction;
+import uk.gov.pay.ledger.transaction.model.GatewayTransactionBatchRequest;
+import uk.gov.pay.ledger.transaction.model.GatewayTransactionBatchResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregate;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregateResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionDetailResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionEvent;
 import uk.gov.pay.ledger.transaction.model.TransactionEventResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionFactory;
 import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
 import uk.gov.pay.ledger.transaction.model.TransactionsForTransactionResponse;
+import uk.gov.pay.ledger.transaction.search.common.AggregateGroupBy;
+import uk.gov.pay.ledger.transaction.search.common.SearchTotalMode;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
+import uk.gov.pay.ledger.transaction.search.common.TransactionFields;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 import uk.gov.pay.ledger.transaction.search.model.TransactionView;
 import uk.gov.pay.ledger.util.pagination.PaginationBuilder;
+import uk.gov.pay.ledger.util.pagination.SearchLinkBuilder;
+import uk.gov.pay.ledger.util.serialiser.MappedStreamingOutput;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 import static java.util.stream.Collectors.groupingBy;
-import static uk.gov.pay.ledger.transaction.model.TransactionType.PAYMENT;
 
 public class TransactionService {
 
     public static final int DEFAULT_STATUS_VERSION = 2;
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionService.class);
+    private static final Set<String> REFUNDABLE_STATUSES = Set.of("available", "pending");
     private final TransactionDao transactionDao;
     private final EventDao eventDao;
     private TransactionEntityFactory transactionEntityFactory;
     private TransactionFactory transactionFactory;
     private CsvTransactionFactory csvTransactionFactory;
     private ObjectMapper objectMapper;
+    private ReprojectionService reprojectionService;
+    private TransactionSearchExecutor searchExecutor;
+    private TransactionSearchCache searchCache;
+    private TransactionViewCache viewCache;
+    private final Map<ObjectMapper, ObjectMapper> fieldsMappers = new ConcurrentHashMap<>();
 
     @Inject
     public TransactionService(TransactionDao transactionDao, EventDao eventDao, TransactionEntityFactory transactionEntityFactory,
                               TransactionFactory transactionFactory, CsvTransactionFactory csvTransactionFactory,
-                              ObjectMapper objectMapper) {
+                              ObjectMapper objectMapper, ReprojectionService reprojectionService,
+                              TransactionSearchExecutor searchExecutor, TransactionSearchCache searchCache,
+                              TransactionViewCache viewCache) {
         this.transactionDao = transactionDao;
         this.eventDao = eventDao;
         this.transactionEntityFactory = transactionEntityFactory;
         this.transactionFactory = transactionFactory;
         this.csvTransactionFactory = csvTransactionFactory;
         this.objectMapper = objectMapper;
+        this.reprojectionService = reprojectionService;
+        this.searchExecutor = searchExecutor;
+        this.searchCache = searchCache;
+        this.viewCache = viewCache;
     }
 
     public Optional<TransactionView> getTransactionForGatewayAccount(String gatewayAccountId, String transactionExternalId,
                                                                      TransactionType transactionType, String parentTransactionExternalId,
                                                                      int statusVersion) {
         return transactionDao.findTransaction(transactionExternalId, gatewayAccountId, transactionType, parentTransactionExternalId)
+                .map(reprojectionService::reprojectIfStale)
                 .map(entity -> TransactionView.from(transactionFactory.createTransactionEntity(entity), statusVersion));
     }
 
     public Optional<TransactionView> getTransaction(String transactionExternalId, int statusVersion) {
         return transactionDao.findTransactionByExternalId(transactionExternalId)
+                .map(reprojectionService::reprojectIfStale)
                 .map(entity -> TransactionView.from(transactionFactory.createTransactionEntity(entity), statusVersion));
     }
 
+    /**
+     * As {@link #getTransactionForGatewayAccount(String, String, TransactionType, String, int)}, reading only the
+     * columns the fields are built from.
+     */
+    public Optional<TransactionView> getTransactionForGatewayAccount(String gatewayAccountId, String transactionExternalId,
+                                                                     TransactionType transactionType, String parentTransactionExternalId,
+                                                                     int statusVersion, TransactionFields fields) {
+        if (fields.isAll()) {
+            return getTransactionForGatewayAccount(gatewayAccountId, transactionExternalId, transactionType,
+                    parentTransactionExternalId, statusVersion);
+        }
+        return transactionDao.findTransaction(transactionExternalId, gatewayAccountId, transactionType, parentTransactionExternalId, fields)
+                .map(reprojectionService::reprojectIfStale)
+                .map(entity -> TransactionView.from(transactionFactory.createTransactionEntity(entity), statusVersion));
+    }
+
+    /**
+     * As {@link #getTransaction(String, int)}, reading only the columns the fields are built from.
+     */
+    public Optional<TransactionView> getTransaction(String transactionExternalId, int statusVersion, TransactionFields fields) {
+        if (fields.isAll()) {
+            return getTransaction(transactionExternalId, statusVersion);
+        }
+        return transactionDao.findTransactionByExternalId(transactionExternalId, fields)
+                .map(reprojectionService::reprojectIfStale)
+                .map(entity -> TransactionView.from(transactionFactory.createTransactionEntity(entity), statusVersion));
+    }
+
+    /**
+     * The version of the transaction {@link #getTransactionForGatewayAccount} would return, read without building it,
+     * so that a client that already has it can be told so cheaply.
+     */
+    public Optional<String> getTransactionVersion(String transactionExternalId, String gatewayAccountId,
+                                                  TransactionType transactionType, String parentTransactionExternalId,
+                                                  int statusVersion) {
+        return transactionDao.findTransactionVersion(transactionExternalId, gatewayAccountId, transactionType,
+                parentTransactionExternalId)
+                .map(transactionEntity -> versionOf(List.of(transactionEntity), statusVersion));
+    }
+
+    /**
+     * The version of a transaction together with its child transactions, which changes whenever the events of any of
+     * them do.
+     */
+    public Optional<String> getTransactionVersionWithChildren(String transactionExternalId, String gatewayAccountId,
+                                                              int statusVersion) {
+        List<TransactionEntity> transactionEntities = transactionDao
+                .findTransactionVersionsByExternalOrParentIdAndGatewayAccountId(transactionExternalId, gatewayAccountId);
+        return transactionEntities.isEmpty()
+                ? Optional.empty()
+                : Optional.of(versionOf(transactionEntities, statusVersion));
+    }
+
+    /**
+     * The serialised view of the given version of a transaction, from the view cache if it holds that version and
+     * otherwise built by the given supplier. Views of transactions that are finished and can no longer be refunded
+     * are then cached, since they are unlikely to change again.
+     */
+    public Optional<byte[]> getSerialisedTransaction(String transactionExternalId, String version,
+                                                     Supplier<Optional<TransactionView>> transactionView) {
+        return getSerialisedTransaction(transactionExternalId, version, TransactionFields.ALL, transactionView);
+    }
+
+    /**
+     * As {@link #getSerialisedTransaction(String, String, Supplier)}, writing only the fields. Only whole views are
+     * cached, so views of some of the fields are always built.
+     */
+    public Optional<byte[]> getSerialisedTransaction(String transactionExternalId, String version, TransactionFields fields,
+                                                     Supplier<Optional<TransactionView>> transactionView) {
+        if (!fields.isAll()) {
+            return transactionView.get().map(view -> serialise(view, fields));
+        }
+
+        Optional<byte[]> cachedView = viewCache.get(transactionExternalId, version);
+        if (cachedView.isPresent()) {
+            return cachedView;
+        }
+
+        return transactionView.get().map(view -> {
+            byte[] bytes = serialise(view, fields);
+            if (isSettled(view)) {
+                viewCache.put(transactionExternalId, version, bytes);
+            }
+            return bytes;
+        });
+    }
+
+    /**
+     * Writes views with only the fields, using a copy of the application mapper that filters transaction views so
+     * that the application mapper itself is left unfiltered.
+     */
+    public ObjectWriter writerFor(TransactionFields fields) {
+        return writerFor(fields, objectMapper);
+    }
+
+    /**
+     * As {@link #writerFor(TransactionFields)}, for the mapper of the media type the response is written as.
+     */
+    public ObjectWriter writerFor(TransactionFields fields, ObjectMapper mapper) {
+        if (fields.isAll()) {
+            return mapper.writer();
+        }
+        return fieldsMappers.computeIfAbsent(mapper, TransactionService::filteringTransactionViews)
+                .writer(fields.filterProvider());
+    }
+
+    /**
+     * Writes a response built in memory with only the given fields of the transaction views in it, in whichever
+     * media type the client negotiated.
+     */
+    public MappedStreamingOutput writeWithFields(Object entity, TransactionFields fields) {
+        return new MappedStreamingOutput(objectMapper, (outputStream, mapper) ->
+                writerFor(fields, mapper).writeValue(outputStream, entity));
+    }
+
+    private static ObjectMapper filteringTransactionViews(ObjectMapper mapper) {
+        return mapper.copy().addMixIn(TransactionView.class, TransactionFields.FilteredView.class);
+    }
+
+    private byte[] serialise(TransactionView view, TransactionFields fields) {
+        try {
+            return writerFor(fields).writeValueAsBytes(view);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(format("Unable to serialise transaction [%s]", view.getTransactionId()), e);
+        }
+    }
+
+    private static boolean isSettled(TransactionView view) {
+        return view.getState() != null && view.getState().isFinished() &&
+                (view.getRefundSummary() == null || !REFUNDABLE_STATUSES.contains(view.getRefundSummary().getStatus()));
+    }
+
     public TransactionsForTransactionResponse getTransactions(String parentTransactionExternalId, String gatewayAccountId) {
         return transactionDao.findTransactionByExternalIdAndGatewayAccountId(parentTransactionExternalId, gatewayAccountId)
                 .map(transactionEntity ->
@@ -83,28 +261,242 @@ public class TransactionService {
                                 Response.Status.NOT_FOUND));
     }
 
+    /**
+     * Streaming form of {@link #getTransactions(String, String)}, writing the transactions as they are read.
+     */
+    public MappedStreamingOutput streamTransactionsForParentTransaction(String parentTransactionExternalId, String gatewayAccountId) {
+        TransactionEntity parent = transactionDao.findTransactionByExternalIdAndGatewayAccountId(parentTransactionExternalId, gatewayAccountId)
+                .orElseThrow(() ->
+                        new WebApplicationException(format("Transaction with id [%s] not found", parentTransactionExternalId),
+                                Response.Status.NOT_FOUND));
+
+        ResultIterator<TransactionEntity> rows = transactionDao.streamTransactionsByParentIdAndGatewayAccountId(
+                parent.getExternalId(), parent.getGatewayAccountId());
+        return new MappedStreamingOutput(objectMapper, (outputStream, mapper) -> {
+            try (rows; JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeStringField("parent_transaction_id", parent.getExternalId());
+                generator.writeArrayFieldStart("transactions");
+                writeRows(rows, Long.MAX_VALUE, transaction -> generator.writeObject(TransactionView.from(
+                        transactionFactory.createTransactionEntity(transaction), DEFAULT_STATUS_VERSION)));
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        });
+    }
+
+    /**
+     * Writes the transactions with the given external ids as they are read, in no particular order, resolving them all
+     * with one query. Ids that match no transaction, or one in another gateway account, are left out.
+     */
+    public MappedStreamingOutput streamTransactionsByExternalIds(List<String> transactionExternalIds, String gatewayAccountId,
+                                                                 int statusVersion) {
+        ResultIterator<TransactionEntity> rows = transactionDao.streamTransactionsByExternalIds(
+                transactionExternalIds.stream().distinct().collect(Collectors.toList()), gatewayAccountId);
+        return new MappedStreamingOutput(objectMapper, (outputStream, mapper) -> {
+            try (rows; JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("transactions");
+                writeRows(rows, Long.MAX_VALUE, transaction -> generator.writeObject(TransactionView.from(
+                        transactionFactory.createTransactionEntity(transaction), statusVersion)));
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        });
+    }
+
+    /**
+     * Totals the transactions matching the search, grouped when {@code groupBy} is given. The totals of a grouped
+     * search are the sums of its groups, so only one query is run either way. The query is given the page timeout,
+     * since it reads every matching transaction and has no cheaper fallback.
+     */
+    public TransactionAggregateResponse aggregateTransactions(List<String> gatewayAccountIds,
+                                                              TransactionSearchParams searchParams,
+                                                              AggregateGroupBy groupBy) {
+        if (!gatewayAccountIds.isEmpty()) {
+            searchParams.setAccountIds(gatewayAccountIds);
+        }
+
+        List<TransactionAggregate> groups = transactionDao.aggregateForSearch(searchParams, groupBy,
+                searchExecutor.getPageQueryTimeout())
+                .orElseThrow(() -> new WebApplicationException("Transaction aggregate timed out",
+                        Response.Status.SERVICE_UNAVAILABLE));
+        return groupBy == null
+                ? TransactionAggregateResponse.of(TransactionAggregate.sum(groups))
+                : TransactionAggregateResponse.of(groupBy, groups);
+    }
+
     public TransactionSearchResponse searchTransactions(TransactionSearchParams searchParams, UriInfo uriInfo) {
         return searchTransactions(List.of(), searchParams, uriInfo);
     }
 
     public TransactionSearchResponse searchTransactions(List<String> gatewayAccountIds,
                                                         TransactionSearchParams searchParams, UriInfo uriInfo) {
+        return searchTransactions(gatewayAccountIds, searchParams, SearchLinkBuilder.of(uriInfo));
+    }
+
+    /**
+     * As {@link #searchTransactions(List, TransactionSearchParams, UriInfo)}, building links from URIs copied from
+     * the request, for searches that run once the request has finished.
+     */
+    public TransactionSearchResponse searchTransactions(List<String> gatewayAccountIds,
+                                                        TransactionSearchParams searchParams,
+                                                        SearchLinkBuilder searchLinkBuilder) {
         if (!gatewayAccountIds.isEmpty()) {
             searchParams.setAccountIds(gatewayAccountIds);
         }
 
-        List<Transaction> transactionList = transactionDao.searchTransactions(searchParams)
-                .stream()
-                .map(transactionFactory::createTransactionEntity)
-                .collect(Collectors.toList());
+        if (!searchCache.isEnabled()) {
+            return runSearch(searchParams, searchLinkBuilder);
+        }
 
-        Long total;
+        String cacheKey = searchCache.keyFor(searchParams, searchLinkBuilder);
+        Optional<TransactionSearchResponse> cachedResponse = searchCache.get(cacheKey);
+        if (cachedResponse.isPresent()) {
+            return cachedResponse.get();
+        }
 
-        if (searchParams.limitTotal()) {
-            total = transactionDao.getTotalWithLimitForSearch(searchParams);
-        } else {
-            total = transactionDao.getTotalForSearch(searchParams);
+        boolean limitTotalRequested = searchParams.limitTotal();
+        TransactionSearchResponse response = runSearch(searchParams, searchLinkBuilder);
+        if (searchParams.limitTotal() == limitTotalRequested) {
+            // a response whose count fell back to the capped count is not what the key asked for
+            searchCache.put(cacheKey, response);
+        }
+        return response;
+    }
+
+    /**
+     * Writes the search to the response as its rows are read, so that a page is never held in memory whole. The
+     * results are written first and the total, cursors and links after them, once the page has been read. Searches
+     * backwards from a cursor read their rows in reverse order, so are built in memory as before. Searches are
+     * answered from the search cache as in {@link #searchTransactions(List, TransactionSearchParams, SearchLinkBuilder)},
+     * and a streamed page is kept in the cache once it has been written. Nothing is queried until the response is
+     * written, so a response that is never written never holds a connection.
+     */
+    public MappedStreamingOutput streamTransactions(List<String> gatewayAccountIds, TransactionSearchParams searchParams,
+                                                    UriInfo uriInfo) {
+        SearchLinkBuilder searchLinkBuilder = SearchLinkBuilder.of(uriInfo);
+
+        Optional<TransactionSearchCursor> cursor = searchParams.getDecodedCursor();
+        if (cursor.isPresent() && cursor.get().getDirection() == TransactionSearchCursor.Direction.BEFORE) {
+            return writeWithFields(searchTransactions(gatewayAccountIds, searchParams, searchLinkBuilder),
+                    searchParams.getFields());
+        }
 
+        if (!gatewayAccountIds.isEmpty()) {
+            searchParams.setAccountIds(gatewayAccountIds);
+        }
+        String cacheKey = searchCache.isEnabled() ? searchCache.keyFor(searchParams, searchLinkBuilder) : null;
+        if (cacheKey != null) {
+            Optional<TransactionSearchResponse> cachedResponse = searchCache.get(cacheKey);
+            if (cachedResponse.isPresent()) {
+                return writeWithFields(cachedResponse.get(), searchParams.getFields());
+            }
+        }
+
+        return new MappedStreamingOutput(objectMapper, (outputStream, mapper) -> {
+            boolean limitTotalRequested = searchParams.limitTotal();
+            long startedAt = System.nanoTime();
+            Future<Long> countQuery = searchParams.getTotalMode() == SearchTotalMode.EXACT
+                    ? submitCountQuery(searchParams)
+                    : null;
+            long limit = searchParams.getDisplaySize() + 1;
+
+            try (ResultIterator<TransactionEntity> rows = openPageRows(() -> cursor.isPresent()
+                    ? transactionDao.streamCursorTransactions(searchParams, cursor.get().getCreatedDate(), cursor.get().getId(), limit)
+                    : transactionDao.streamTransactions(searchParams, limit), countQuery, startedAt)) {
+                Long total = null;
+                if (cursor.isEmpty() && countQuery != null && !rows.hasNext()) {
+                    // nothing has been written yet, so a page that does not exist can still be answered with 404
+                    total = awaitCountQuery(countQuery, searchParams, startedAt);
+                    checkPageExists(searchParams, total);
+                }
+
+                List<TransactionView> transactionViews = new ArrayList<>();
+                try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                    generator.writeStartObject();
+                    generator.writeArrayFieldStart("results");
+                    SearchPage page = writeSearchPage(generator, writerFor(searchParams.getFields(), mapper), rows,
+                            searchParams.getDisplaySize(), searchParams.getStatusVersion(),
+                            cacheKey != null ? transactionViews::add : view -> {});
+                    generator.writeEndArray();
+
+                    TransactionSearchResponse response;
+                    if (cursor.isPresent()) {
+                        response = buildCursorSearchResponse(searchParams, searchLinkBuilder, true, page,
+                                getCursorSearchTotal(searchParams, countQuery, startedAt), transactionViews);
+                    } else if (countQuery != null) {
+                        response = buildCountedSearchResponse(searchParams, searchLinkBuilder, page,
+                                total != null ? total : awaitCountQuery(countQuery, searchParams, startedAt),
+                                transactionViews);
+                    } else {
+                        response = buildUncountedSearchResponse(searchParams, searchLinkBuilder, page, transactionViews);
+                    }
+                    writeFieldsExceptResults(generator, response);
+                    generator.writeEndObject();
+
+                    if (cacheKey != null && searchParams.limitTotal() == limitTotalRequested) {
+                        searchCache.put(cacheKey, response);
+                    }
+                }
+            } finally {
+                if (countQuery != null) {
+                    countQuery.cancel(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * Opens the rows of a streamed page on the search executor, giving up on them once the page query timeout has
+     * passed. Rows opened after the wait was given up on are closed by whichever of the query and the wait comes
+     * last, so that their connection is never left open.
+     */
+    private ResultIterator<TransactionEntity> openPageRows(Supplier<ResultIterator<TransactionEntity>> pageQuery,
+                                                           Future<Long> countQuery, long startedAt) {
+        AtomicReference<Optional<ResultIterator<TransactionEntity>>> handOver = new AtomicReference<>();
+        Future<ResultIterator<TransactionEntity>> rows = searchExecutor.submit(() -> {
+            ResultIterator<TransactionEntity> openedRows = pageQuery.get();
+            if (!handOver.compareAndSet(null, Optional.of(openedRows))) {
+                openedRows.close();
+            }
+            return openedRows;
+        });
+        try {
+            return awaitPageQuery(rows, countQuery, startedAt);
+        } catch (RuntimeException e) {
+            Optional<ResultIterator<TransactionEntity>> openedRows = handOver.getAndSet(Optional.empty());
+            if (openedRows != null) {
+                openedRows.ifPresent(ResultIterator::close);
+            }
+            throw e;
+        }
+    }
+
+    private TransactionSearchResponse runSearch(TransactionSearchParams searchParams, SearchLinkBuilder searchLinkBuilder) {
+        Optional<TransactionSearchCursor> cursor = searchParams.getDecodedCursor();
+        if (cursor.isPresent()) {
+            return searchTransactionsFromCursor(searchParams, cursor.get(), searchLinkBuilder);
+        }
+        if (searchParams.getTotalMode() != SearchTotalMode.EXACT) {
+            return searchTransactionsWithoutCount(searchParams, searchLinkBuilder);
+        }
+
+        long startedAt = System.nanoTime();
+        Future<Long> countQuery = submitCountQuery(searchParams);
+        Future<List<TransactionEntity>> pageQuery = searchExecutor.submit(() -> transactionDao.searchTransactions(searchParams));
+
+        List<TransactionEntity> transactionEntities = reprojectionService.reprojectIfStale(
+                awaitPageQuery(pageQuery, countQuery, startedAt));
+        Long total = awaitCountQuery(countQuery, searchParams, startedAt);
+        checkPageExists(searchParams, total);
+
+        return buildCountedSearchResponse(searchParams, searchLinkBuilder, SearchPage.of(transactionEntities, false), total,
+                toTransactionViews(transactionEntities, searchParams.getStatusVersion()));
+    }
+
+    private void checkPageExists(TransactionSearchParams searchParams, Long total) {
+        if (!searchParams.limitTotal()) {
             long size = searchParams.getDisplaySize();
             if (total > 0 && searchParams.getDisplaySize() > 0) {
                 long lastPage = (total + size - 1) / size;
@@ -114,37 +506,277 @@ public class TransactionService {
                 }
             }
         }
+    }
+
+    private TransactionSearchResponse buildCountedSearchResponse(TransactionSearchParams searchParams, SearchLinkBuilder searchLinkBuilder,
+                                                                 SearchPage page, Long total,
+                                                                 List<TransactionView> transactionViews) {
+        boolean hasNextPage = page.getCount() >= searchParams.getDisplaySize() &&
+                (searchParams.limitTotal() || total > searchParams.getOffset() + page.getCount());
+        boolean hasPrevPage = searchParams.getPageNumber() > 1;
+
+        return buildTransactionSearchResponse(searchParams, searchLinkBuilder, page.getCount(), transactionViews, total)
+                .withCursors(
+                        hasPrevPage ? page.getCursorBefore() : null,
+                        hasNextPage ? page.getCursorAfter() : null);
+    }
+
+    /**
+     * Reads one row more than the page size to find out whether there is a next page, rather than counting every
+     * matching transaction. With {@link SearchTotalMode#ESTIMATE} the total is the planner's estimate, which is made
+     * exact once the last page has been read.
+     */
+    private TransactionSearchResponse searchTransactionsWithoutCount(TransactionSearchParams searchParams, SearchLinkBuilder searchLinkBuilder) {
+        long pageSize = searchParams.getDisplaySize();
+        List<TransactionEntity> transactionEntities = transactionDao.searchTransactions(searchParams, pageSize + 1);
+
+        boolean hasNextPage = transactionEntities.size() > pageSize;
+        if (hasNextPage) {
+            transactionEntities = transactionEntities.subList(0, (int) pageSize);
+        }
+        transactionEntities = reprojectionService.reprojectIfStale(transactionEntities);
 
-        return buildTransactionSearchResponse(searchParams, uriInfo, transactionList, total);
+        return buildUncountedSearchResponse(searchParams, searchLinkBuilder, SearchPage.of(transactionEntities, hasNextPage),
+                toTransactionViews(transactionEntities, searchParams.getStatusVersion()));
+    }
+
+    private TransactionSearchResponse buildUncountedSearchResponse(TransactionSearchParams searchParams, SearchLinkBuilder searchLinkBuilder,
+                                                                   SearchPage page,
+                                                                   List<TransactionView> transactionViews) {
+        boolean hasNextPage = page.hasMore();
+
+        Long total = null;
+        if (searchParams.getTotalMode() == SearchTotalMode.ESTIMATE) {
+            long readUpTo = searchParams.getOffset() + page.getCount();
+            if (!hasNextPage && page.getCount() > 0) {
+                total = readUpTo;
+            } else {
+                long estimate = transactionDao.getEstimatedTotalForSearch(searchParams);
+                total = hasNextPage ? Math.max(estimate, readUpTo + 1) : estimate;
+            }
+        }
+
+        PaginationBuilder paginationBuilder = new PaginationBuilder(searchParams, searchLinkBuilder)
+                .withTotalCount(total)
+                .withCount(page.getCount())
+                .withHasNextPage(hasNextPage)
+                .buildResponse();
+
+        return new TransactionSearchResponse(
+                total,
+                page.getCount(),
+                searchParams.getPageNumber(),
+                transactionViews
+        ).withHasNext(hasNextPage)
+                .withCursors(
+                        searchParams.getPageNumber() > 1 ? page.getCursorBefore() : null,
+                        hasNextPage ? page.getCursorAfter() : null)
+                .withPaginationBuilder(paginationBuilder);
+    }
+
+    /**
+     * Reads the page adjacent to the cursor with the {@code (created_date, id)} keyset, so that every page costs the
+     * same to read however deep it is. One row more than the page size is read to find out whether there is a
+     * further page in the direction of travel.
+     */
+    private TransactionSearchResponse searchTransactionsFromCursor(TransactionSearchParams searchParams,
+                                                                   TransactionSearchCursor cursor, SearchLinkBuilder searchLinkBuilder) {
+        long pageSize = searchParams.getDisplaySize();
+        boolean forwards = cursor.getDirection() == TransactionSearchCursor.Direction.AFTER;
+
+        long startedAt = System.nanoTime();
+        Future<Long> countQuery = searchParams.getTotalMode() == SearchTotalMode.EXACT
+                ? submitCountQuery(searchParams)
+                : null;
+        Future<List<TransactionEntity>> pageQuery = searchExecutor.submit(() -> forwards
+                ? transactionDao.cursorTransactionSearch(searchParams, cursor.getCreatedDate(), cursor.getId(), pageSize + 1)
+                : transactionDao.cursorTransactionSearchBefore(searchParams, cursor.getCreatedDate(), cursor.getId(), pageSize + 1));
+
+        List<TransactionEntity> transactionEntities = awaitPageQuery(pageQuery, countQuery, startedAt);
+
+        boolean hasMore = transactionEntities.size() > pageSize;
+        if (hasMore) {
+            transactionEntities = forwards
+                    ? transactionEntities.subList(0, (int) pageSize)
+                    : transactionEntities.subList(1, transactionEntities.size());
+        }
+        transactionEntities = reprojectionService.reprojectIfStale(transactionEntities);
+
+        return buildCursorSearchResponse(searchParams, searchLinkBuilder, forwards, SearchPage.of(transactionEntities, hasMore),
+                getCursorSearchTotal(searchParams, countQuery, startedAt),
+                toTransactionViews(transactionEntities, searchParams.getStatusVersion()));
+    }
+
+    private Long getCursorSearchTotal(TransactionSearchParams searchParams, Future<Long> countQuery, long startedAt) {
+        switch (searchParams.getTotalMode()) {
+            case NONE:
+                return null;
+            case ESTIMATE:
+                return transactionDao.getEstimatedTotalForSearch(searchParams);
+            default:
+                return awaitCountQuery(countQuery, searchParams, startedAt);
+        }
+    }
+
+    private TransactionSearchResponse buildCursorSearchResponse(TransactionSearchParams searchParams, SearchLinkBuilder searchLinkBuilder,
+                                                                boolean forwards, SearchPage page, Long total,
+                                                                List<TransactionView> transactionViews) {
+        String prevCursor = forwards || page.hasMore() ? page.getCursorBefore() : null;
+        String nextCursor = !forwards || page.hasMore() ? page.getCursorAfter() : null;
+
+        PaginationBuilder paginationBuilder = new PaginationBuilder(searchParams, searchLinkBuilder)
+                .withTotalCount(total)
+                .withCount(page.getCount())
+                .withCursors(searchParams, prevCursor, nextCursor)
+                .buildResponse();
+
+        return new TransactionSearchResponse(
+                total,
+                page.getCount(),
+                null,
+                transactionViews
+        ).withCursors(prevCursor, nextCursor).withPaginationBuilder(paginationBuilder);
+    }
+
+    /**
+     * The query map is built lazily and not safely shared, so it is built on the request thread before the queries
+     * that read it are handed to other threads.
+     */
+    private Future<Long> submitCountQuery(TransactionSearchParams searchParams) {
+        searchParams.getQueryMap();
+        if (searchParams.limitTotal()) {
+            return searchExecutor.submit(() -> transactionDao.getTotalWithLimitForSearch(searchParams,
+                    searchExecutor.getPageQueryTimeout()).orElse(null));
+        }
+        return searchExecutor.submit(() -> transactionDao.getTotalForSearch(searchParams,
+                searchExecutor.getCountQueryTimeout()).orElse(null));
+    }
+
+    private <T> T awaitPageQuery(Future<T> pageQuery, Future<Long> countQuery, long startedAt) {
+        return searchExecutor.await("page", pageQuery, startedAt + searchExecutor.getPageQueryTimeout().toNanos())
+                .orElseThrow(() -> {
+                    if (countQuery != null) {
+                        countQuery.cancel(true);
+                    }
+                    return new WebApplicationException("Transaction search timed out", Response.Status.SERVICE_UNAVAILABLE);
+                });
+    }
+
+    /**
+     * A count that does not finish within the count timeout is abandoned and replaced with a count capped at
+     * {@code limit_total_size}, and the search is then paginated as if {@code limit_total} had been asked for.
+     */
+    private Long awaitCountQuery(Future<Long> countQuery, TransactionSearchParams searchParams, long startedAt) {
+        if (searchParams.limitTotal()) {
+            return searchExecutor.await("count", countQuery, startedAt + searchExecutor.getPageQueryTimeout().toNanos())
+                    .orElseThrow(() -> new WebApplicationException("Transaction search timed out",
+                            Response.Status.SERVICE_UNAVAILABLE));
+        }
+
+        return searchExecutor.await("count", countQuery, startedAt + searchExecutor.getCountQueryTimeout().toNanos())
+                .orElseGet(() -> {
+                    searchParams.setLimitTotal(true);
+                    return transactionDao.getTotalWithLimitForSearch(searchParams, searchExecutor.getCountQueryTimeout())
+                            .orElseThrow(() -> new WebApplicationException("Transaction search timed out",
+                                    Response.Status.SERVICE_UNAVAILABLE));
+                });
+    }
+
+    /**
+     * Writes up to a page of rows as transaction views, keeping only the first and last rows for the cursors. Each
+     * view is passed on once it has been written.
+     */
+    private SearchPage writeSearchPage(JsonGenerator generator, ObjectWriter writer, ResultIterator<TransactionEntity> rows,
+                                      long pageSize, int statusVersion, Consumer<TransactionView> written) throws IOException {
+        TransactionEntity[] firstAndLast = new TransactionEntity[2];
+        long[] count = {0};
+        boolean hasMore = writeRows(rows, pageSize, transaction -> {
+            if (firstAndLast[0] == null) {
+                firstAndLast[0] = transaction;
+            }
+            firstAndLast[1] = transaction;
+            TransactionView view = TransactionView.from(transactionFactory.createTransactionEntity(transaction), statusVersion);
+            writer.writeValue(generator, view);
+            written.accept(view);
+            count[0]++;
+        });
+        return new SearchPage(count[0], firstAndLast[0], firstAndLast[1], hasMore);
+    }
+
+    /**
+     * Passes up to {@code limit} rows to the writer in the order they were read, then closes the rows. Rows are passed
+     * on as they are read until the first stale one. That row and the rows after it are held back until the rows have
+     * been closed, and are then reprojected and passed on. Reprojecting takes connections of its own, so it never
+     * waits on the pool while the rows still hold one.
+     *
+     * @return whether there were more rows than the limit
+     */
+    private boolean writeRows(ResultIterator<TransactionEntity> rows, long limit, RowWriter writer) throws IOException {
+        List<TransactionEntity> heldBack = new ArrayList<>();
+        long read = 0;
+        boolean hasMore;
+        try (rows) {
+            while (read < limit && rows.hasNext()) {
+                TransactionEntity row = rows.next();
+                if (heldBack.isEmpty() && !ReprojectionService.isStale(row)) {
+                    writer.write(row);
+                } else {
+                    heldBack.add(row);
+                }
+                read++;
+            }
+            hasMore = rows.hasNext();
+        }
+
+        for (TransactionEntity row : reprojectionService.reprojectIfStale(heldBack)) {
+            writer.write(row);
+        }
+        return hasMore;
+    }
+
+    private interface RowWriter {
+        void write(TransactionEntity transaction) throws IOException;
+    }
+
+    private void writeFieldsExceptResults(JsonGenerator generator, TransactionSearchResponse response) throws IOException {
+        ObjectNode fields = objectMapper.valueToTree(response);
+        fields.remove("results");
+        Iterator<Map.Entry<String, JsonNode>> iterator = fields.fields();
+        while (iterator.hasNext()) {
+            Map.Entry<String, JsonNode> field = iterator.next();
+            generator.writeFieldName(field.getKey());
+            generator.writeTree(field.getValue());
+        }
     }
 
     public List<TransactionEntity> searchTransactionAfter(TransactionSearchParams searchParams, ZonedDateTime startingAfterCreatedDate, Long startingAfterId) {
         return transactionDao.cursorTransactionSearch(searchParams, startingAfterCreatedDate, startingAfterId);
     }
 
-    private TransactionSearchResponse buildTransactionSearchResponse(TransactionSearchParams searchParams, UriInfo uriInfo, List<Transaction> transactionList, Long totalCount) {
+    private TransactionSearchResponse buildTransactionSearchResponse(TransactionSearchParams searchParams, SearchLinkBuilder searchLinkBuilder,
+                                                                     long count, List<TransactionView> transactionViewList,
+                                                                     Long totalCount) {
         Long total = Optional.ofNullable(totalCount).orElse(0L);
-        PaginationBuilder paginationBuilder = new PaginationBuilder(searchParams, uriInfo);
+        PaginationBuilder paginationBuilder = new PaginationBuilder(searchParams, searchLinkBuilder);
         paginationBuilder = paginationBuilder
                 .withTotalCount(total)
-                .withCount((long) transactionList.size())
+                .withCount(count)
                 .buildResponse();
 
-        List<TransactionView> transactionViewList = mapToTransactionViewList(transactionList, searchParams.getStatusVersion());
-
         return new TransactionSearchResponse(
                 total,
-                (long) transactionList.size(),
+                count,
                 searchParams.getPageNumber(),
                 transactionViewList
         ).withPaginationBuilder(paginationBuilder);
     }
 
-    private List<TransactionView> mapToTransactionViewList(List<Transaction> transactionList, int statusVersion) {
-        return transactionList.stream()
-                .map(transaction -> TransactionView.from(transaction, statusVersion))
+    private List<TransactionView> toTransactionViews(List<TransactionEntity> transactionEntities, int statusVersion) {
+        return transactionEntities.stream()
+                .map(transactionEntity -> TransactionView.from(transactionFactory.createTransactionEntity(transactionEntity), statusVersion))
                 .collect(Collectors.toList());
     }
+
     // @TODO(sfount) handling writing invalid transaction should be tested at `EventMessageHandler` integration level
 
     public void upsertTransactionFor(EventDigest eventDigest) {
@@ -173,17 +805,52 @@ public class TransactionService {
         }
     }
 
+    /**
+     * Everything the transaction detail page shows, read with one query for the transaction and its child transactions
+     * and one for all of their events, rather than with separate requests for each.
+     */
+    public TransactionDetailResponse getTransactionDetail(String externalId, String gatewayAccountId, int statusVersion) {
+        List<TransactionEntity> transactionEntities = reprojectionService.reprojectIfStale(
+                transactionDao.findTransactionByExternalOrParentIdAndGatewayAccountId(externalId, gatewayAccountId));
+        TransactionEntity transaction = transactionEntities.stream()
+                .filter(transactionEntity -> transactionEntity.getExternalId().equals(externalId))
+                .findFirst()
+                .orElseThrow(() ->
+                        new WebApplicationException(format("Transaction with id [%s] not found", externalId),
+                                Response.Status.NOT_FOUND));
+
+        List<TransactionView> childTransactions = transactionEntities.stream()
+                .filter(transactionEntity -> transactionEntity != transaction)
+                .sorted(Comparator.comparing(TransactionEntity::getCreatedDate))
+                .map(transactionEntity ->
+                        TransactionView.from(transactionFactory.createTransactionEntity(transactionEntity), statusVersion))
+                .collect(Collectors.toList());
+        Map<String, TransactionEntity> transactionEntityMap = transactionEntities.stream()
+                .collect(Collectors.toMap(TransactionEntity::getExternalId, transactionEntity -> transactionEntity));
+
+        return TransactionDetailResponse.of(
+                TransactionView.from(transactionFactory.createTransactionEntity(transaction), statusVersion),
+                childTransactions,
+                removeDuplicates(getTransactionEventsFor(transactionEntityMap, statusVersion)));
+    }
+
     public Optional<TransactionView> findByGatewayTransactionId(String gatewayTransactionId, String paymentProvider) {
-        TransactionSearchParams searchParams = new TransactionSearchParams();
-        searchParams.setGatewayTransactionId(gatewayTransactionId);
-        searchParams.setTransactionType(PAYMENT);
+        return transactionDao.findPaymentByGatewayTransactionIdAndPaymentProvider(gatewayTransactionId, paymentProvider)
+                .map(transactionEntity ->
+                        TransactionView.from(transactionFactory.createTransactionEntity(transactionEntity), DEFAULT_STATUS_VERSION));
+    }
 
-        return transactionDao.searchTransactions(searchParams)
+    public GatewayTransactionBatchResponse findByGatewayTransactionIds(GatewayTransactionBatchRequest request) {
+        List<String> gatewayTransactionIds = request.getGatewayTransactionIds().stream()
+                .distinct()
+                .collect(Collectors.toList());
+        List<TransactionView> transactions = transactionDao
+                .findPaymentsByGatewayTransactionIdsAndPaymentProvider(gatewayTransactionIds, request.getPaymentProvider())
                 .stream()
                 .map(transactionEntity ->
                         TransactionView.from(transactionFactory.createTransactionEntity(transactionEntity), DEFAULT_STATUS_VERSION))
-                .filter(transaction -> paymentProvider.equalsIgnoreCase(transaction.getPaymentProvider()))
-                .findFirst();
+                .collect(Collectors.toList());
+        return GatewayTransactionBatchResponse.of(request.getPaymentProvider(), transactions);
     }
 
     public List<TransactionEntity> getChildTransactions(String parentExternalId) {
@@ -209,6 +876,27 @@ public class TransactionService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * A digest of the event count and projection version of each transaction and the paid out date of its payout,
+     * which between them change whenever anything shown about the transactions could.
+     */
+    private static String versionOf(List<TransactionEntity> transactionEntities, int statusVersion) {
+        String versions = transactionEntities.stream()
+                .sorted(Comparator.comparing(TransactionEntity::getExternalId))
+                .map(transactionEntity -> transactionEntity.getExternalId() + ":" + transactionEntity.getEventCount()
+                        + ":" + transactionEntity.getProjectionVersion() + ":" + transactionEntity.getPayoutEntity()
+                        .map(PayoutEntity::getPaidOutDate)
+                        .map(paidOutDate -> paidOutDate.toInstant().toString())
+                        .orElse(""))
+                .collect(Collectors.joining(",", statusVersion + "/", ""));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(versions.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private List<TransactionEvent> removeDuplicates(List<TransactionEvent> transactionEvents) {
         // removes 1. events without mapping to transaction state
         // 2. duplicate events based on external_id,resource_type & state (gets the first created event based on event date)
@@ -234,4 +922,44 @@ public class TransactionService {
                 .collect(Collectors.toList());
         return TransactionsForTransactionResponse.of(parentTransactionExternalId, transactions);
     }
+
+    /**
+     * What a search response needs to know about the page of rows it returns, besides the rows themselves.
+     */
+    private static class SearchPage {
+        private final long count;
+        private final TransactionEntity first;
+        private final TransactionEntity last;
+        private final boolean hasMore;
+
+        SearchPage(long count, TransactionEntity first, TransactionEntity last, boolean hasMore) {
+            this.count = count;
+            this.first = first;
+            this.last = last;
+            this.hasMore = hasMore;
+        }
+
+        static SearchPage of(List<TransactionEntity> transactionEntities, boolean hasMore) {
+            return transactionEntities.isEmpty()
+                    ? new SearchPage(0, null, null, hasMore)
+                    : new SearchPage(transactionEntities.size(), transactionEntities.get(0),
+                    transactionEntities.get(transactionEntities.size() - 1), hasMore);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        boolean hasMore() {
+            return hasMore;
+        }
+
+        String getCursorBefore() {
+            return first == null ? null : TransactionSearchCursor.before(first).encode();
+        }
+
+        String getCursorAfter() {
+            return last == null ? null : TransactionSearchCursor.after(last).encode();
+        }
+    }
 }
@@ -64,7 +64,7 @@ public class TransactionMetadataDao {
     private BiConsumer<String, Object> bindSearchParameter(Query query) {
         return (searchKey, searchValue) -> {
             if (searchValue instanceof List<?>) {
-                query.bindList(searchKey, ((List<?>) searchValue));
+                query.bindArray(searchKey, String.class, ((List<?>) searchValue));
             } else {
                 query.bind(searchKey, searchValue);
             }
@@ -3,10 +3,10 @@ package uk.gov.pay.ledger.util.pagination;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import uk.gov.pay.ledger.common.search.CursorSearchParams;
 import uk.gov.pay.ledger.common.search.SearchParams;
 
 import javax.ws.rs.core.UriInfo;
-import java.net.URI;
 import java.util.Objects;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -20,7 +20,7 @@ public class PaginationBuilder {
     private static final String PREV_LINK = "prev_page";
     private static final String NEXT_LINK = "next_page";
     private SearchParams searchParams;
-    private UriInfo uriInfo;
+    private SearchLinkBuilder searchLinkBuilder;
 
     @JsonIgnore
     private Long totalCount;
@@ -28,6 +28,16 @@ public class PaginationBuilder {
     private Long count;
     @JsonIgnore
     private Long selfPageNum;
+    @JsonIgnore
+    private Boolean hasNextPage;
+    @JsonIgnore
+    private CursorSearchParams cursorSearchParams;
+    @JsonIgnore
+    private String selfCursor;
+    @JsonIgnore
+    private String prevCursor;
+    @JsonIgnore
+    private String nextCursor;
     @JsonProperty(SELF_LINK)
     private PaginationLink selfLink;
     @JsonProperty(FIRST_LINK)
@@ -40,8 +50,12 @@ public class PaginationBuilder {
     private PaginationLink nextLink;
 
     public PaginationBuilder(SearchParams searchParams, UriInfo uriInfo) {
+        this(searchParams, SearchLinkBuilder.of(uriInfo));
+    }
+
+    public PaginationBuilder(SearchParams searchParams, SearchLinkBuilder searchLinkBuilder) {
         this.searchParams = searchParams;
-        this.uriInfo = uriInfo;
+        this.searchLinkBuilder = searchLinkBuilder;
         selfPageNum = searchParams.getPageNumber();
     }
 
@@ -55,10 +69,35 @@ public class PaginationBuilder {
         return this;
     }
 
+    /**
+     * For searches that did not count the total, so the last page is not known. The next link is built from whether
+     * a row was found beyond the current page instead.
+     */
+    public PaginationBuilder withHasNextPage(boolean hasNextPage) {
+        this.hasNextPage = hasNextPage;
+        return this;
+    }
+
+    /**
+     * Builds the previous and next links from keyset cursors rather than page numbers. There is no last page link as
+     * the position of the last page is not known without counting.
+     */
+    public PaginationBuilder withCursors(CursorSearchParams cursorSearchParams, String prevCursor, String nextCursor) {
+        this.cursorSearchParams = cursorSearchParams;
+        this.selfCursor = cursorSearchParams.getCursor();
+        this.prevCursor = prevCursor;
+        this.nextCursor = nextCursor;
+        return this;
+    }
+
     public PaginationBuilder buildResponse() {
 
-        if (searchParams.limitTotal()) {
-            buildLinksForLimitTotal();
+        if (selfCursor != null) {
+            buildLinksForCursors();
+        } else if (hasNextPage != null) {
+            buildLinksWithoutLastPage(hasNextPage);
+        } else if (searchParams.limitTotal()) {
+            buildLinksWithoutLastPage(Objects.equals(count, searchParams.getDisplaySize()));
         } else {
             Long pageSize = searchParams.getDisplaySize();
             long lastPage = totalCount > 0 ? (totalCount + pageSize - 1) / pageSize : 1;
@@ -88,11 +127,11 @@ public class PaginationBuilder {
         return nextLink;
     }
 
-    private void buildLinksForLimitTotal() {
+    private void buildLinksWithoutLastPage(boolean hasNextPage) {
         selfLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(searchParams.getPageNumber())));
         firstLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(1L)));
 
-        if (Objects.equals(count, searchParams.getDisplaySize())) {
+        if (hasNextPage) {
             nextLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(selfPageNum + 1)));
         }
 
@@ -103,6 +142,15 @@ public class PaginationBuilder {
         }
     }
 
+    private void buildLinksForCursors() {
+        selfLink = PaginationLink.ofValue(uriWithParams(cursorSearchParams.buildQueryParamStringForCursor(selfCursor)));
+        firstLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(1L)));
+        prevLink = prevCursor == null ? null :
+                PaginationLink.ofValue(uriWithParams(cursorSearchParams.buildQueryParamStringForCursor(prevCursor)));
+        nextLink = nextCursor == null ? null :
+                PaginationLink.ofValue(uriWithParams(cursorSearchParams.buildQueryParamStringForCursor(nextCursor)));
+    }
+
     private void buildLinks(long lastPage) {
         selfLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(searchParams.getPageNumber())));
         firstLink = PaginationLink.ofValue(uriWithParams(searchParams.buildQueryParamString(1L)));
@@ -122,11 +170,6 @@ public class PaginationBuilder {
     }
 
     private String uriWithParams(String queryParams) {
-        URI uri = uriInfo.getBaseUriBuilder()
-                .replacePath(uriInfo.getPath())
-                .replaceQuery(queryParams)
-                .build();
-
-        return uri.toString();
+        return searchLinkBuilder.withQuery(queryParams);
     }
 }
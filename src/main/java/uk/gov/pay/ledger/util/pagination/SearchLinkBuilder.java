@@ -0,0 +1,43 @@
+package uk.gov.pay.ledger.util.pagination;
+
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+
+/**
+ * Builds links to other pages of a search from copies of the base and request URIs of the request for it, so that
+ * the links can be built after the request has finished.
+ */
+public class SearchLinkBuilder {
+
+    private final URI baseUri;
+    private final String path;
+
+    public SearchLinkBuilder(URI baseUri, URI requestUri) {
+        this.baseUri = baseUri;
+        this.path = baseUri.relativize(requestUri).getPath();
+    }
+
+    public static SearchLinkBuilder of(UriInfo uriInfo) {
+        return new SearchLinkBuilder(uriInfo.getBaseUri(), uriInfo.getRequestUri());
+    }
+
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    /**
+     * The path of the request relative to the base URI
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public String withQuery(String queryParams) {
+        return UriBuilder.fromUri(baseUri)
+                .replacePath(path)
+                .replaceQuery(queryParams)
+                .build()
+                .toString();
+    }
+}
@@ -0,0 +1,36 @@
+package uk.gov.pay.ledger.util.serialiser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A response written straight to the output stream with whichever mapper the client negotiated, rather than with a
+ * mapper chosen up front. Written on its own it is written as JSON.
+ */
+public class MappedStreamingOutput implements StreamingOutput {
+
+    private final ObjectMapper jsonMapper;
+    private final Writer writer;
+
+    public MappedStreamingOutput(ObjectMapper jsonMapper, Writer writer) {
+        this.jsonMapper = jsonMapper;
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        write(outputStream, jsonMapper);
+    }
+
+    public void write(OutputStream outputStream, ObjectMapper objectMapper) throws IOException {
+        writer.write(outputStream, objectMapper);
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+        void write(OutputStream outputStream, ObjectMapper objectMapper) throws IOException;
+    }
+}
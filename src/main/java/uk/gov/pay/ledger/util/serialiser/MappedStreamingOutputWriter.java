@@ -0,0 +1,40 @@
+package uk.gov.pay.ledger.util.serialiser;
+
+import com.google.inject.Inject;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes a {@link MappedStreamingOutput} with the mapper for the media type negotiated for the response.
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, ResponseMappers.APPLICATION_CBOR, ResponseMappers.APPLICATION_SMILE})
+public class MappedStreamingOutputWriter implements MessageBodyWriter<MappedStreamingOutput> {
+
+    private final ResponseMappers responseMappers;
+
+    @Inject
+    public MappedStreamingOutputWriter(ResponseMappers responseMappers) {
+        this.responseMappers = responseMappers;
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return MappedStreamingOutput.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(MappedStreamingOutput output, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream outputStream) throws IOException {
+        output.write(outputStream, responseMappers.forMediaType(mediaType));
+    }
+}
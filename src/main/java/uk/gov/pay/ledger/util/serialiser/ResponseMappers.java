@@ -0,0 +1,79 @@
+package uk.gov.pay.ledger.util.serialiser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.inject.Inject;
+import io.dropwizard.jackson.Jackson;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Variant;
+import java.util.List;
+
+/**
+ * The object mappers responses are written with, one for each media type a resource can produce. The binary mappers
+ * are configured as the application mapper is, so every format is written from the same annotations and carries the
+ * same fields.
+ */
+public class ResponseMappers {
+
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
+    private static final List<Variant> VARIANTS = Variant.mediaTypes(
+            MediaType.APPLICATION_JSON_TYPE, APPLICATION_CBOR_TYPE, APPLICATION_SMILE_TYPE).build();
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper smileMapper;
+
+    @Inject
+    public ResponseMappers(ObjectMapper objectMapper) {
+        this.jsonMapper = objectMapper;
+        this.cborMapper = newObjectMapper(new CBORFactory());
+        this.smileMapper = newObjectMapper(new SmileFactory());
+    }
+
+    private static ObjectMapper newObjectMapper(JsonFactory jsonFactory) {
+        ObjectMapper objectMapper = Jackson.newObjectMapper(jsonFactory);
+        objectMapper.findAndRegisterModules();
+        return objectMapper;
+    }
+
+    /**
+     * The media type the client most prefers of those the mappers write, which is JSON when the client has no
+     * preference.
+     */
+    public static MediaType negotiate(Request request) {
+        Variant variant = request.selectVariant(VARIANTS);
+        return variant == null ? MediaType.APPLICATION_JSON_TYPE : variant.getMediaType();
+    }
+
+    public ObjectMapper forMediaType(MediaType mediaType) {
+        if (isType(APPLICATION_CBOR_TYPE, mediaType)) {
+            return cborMapper;
+        }
+        if (isType(APPLICATION_SMILE_TYPE, mediaType)) {
+            return smileMapper;
+        }
+        return jsonMapper;
+    }
+
+    private static boolean isType(MediaType type, MediaType mediaType) {
+        return mediaType != null &&
+                type.getType().equalsIgnoreCase(mediaType.getType()) &&
+                type.getSubtype().equalsIgnoreCase(mediaType.getSubtype());
+    }
+
+    public ObjectMapper getCborMapper() {
+        return cborMapper;
+    }
+
+    public ObjectMapper getSmileMapper() {
+        return smileMapper;
+    }
+}
@@ -0,0 +1,12 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_projection_rebuild
+CREATE TABLE projection_rebuild (
+    id SERIAL PRIMARY KEY,
+    started_date TIMESTAMP WITH TIME ZONE DEFAULT (now() AT TIME ZONE 'utc') NOT NULL,
+    event_id_watermark BIGINT NOT NULL,
+    last_resource_external_id VARCHAR(26),
+    resources_projected BIGINT DEFAULT 0 NOT NULL,
+    completed_date TIMESTAMP WITH TIME ZONE
+);
+--rollback drop table projection_rebuild;
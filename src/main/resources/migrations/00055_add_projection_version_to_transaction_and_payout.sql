@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_projection_version_to_transaction
+ALTER TABLE transaction ADD COLUMN projection_version INTEGER DEFAULT 1 NOT NULL;
+--rollback ALTER TABLE transaction DROP COLUMN projection_version;
+
+--changeset uk.gov.pay:add_projection_version_to_payout
+ALTER TABLE payout ADD COLUMN projection_version INTEGER DEFAULT 1 NOT NULL;
+--rollback ALTER TABLE payout DROP COLUMN projection_version;
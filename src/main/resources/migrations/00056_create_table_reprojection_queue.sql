@@ -0,0 +1,14 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_reprojection_queue
+CREATE TABLE reprojection_queue (
+    resource_external_id VARCHAR(26) PRIMARY KEY,
+    resource_type_id INTEGER NOT NULL,
+    enqueued_date TIMESTAMP WITH TIME ZONE DEFAULT (now() AT TIME ZONE 'utc') NOT NULL,
+    attempts INTEGER DEFAULT 0 NOT NULL
+);
+--rollback drop table reprojection_queue;
+
+--changeset uk.gov.pay:add_index_reprojection_queue_enqueued_date
+CREATE INDEX reprojection_queue_enqueued_date_idx ON reprojection_queue(enqueued_date);
+--rollback drop index reprojection_queue_enqueued_date_idx;
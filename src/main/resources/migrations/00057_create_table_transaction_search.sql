@@ -0,0 +1,61 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_transaction_search
+CREATE TABLE transaction_search (
+    id BIGINT PRIMARY KEY,
+    gateway_account_id VARCHAR(255),
+    type transaction_type,
+    state TEXT,
+    created_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    card_brand TEXT,
+    first_digits_card_number CHAR(6),
+    last_digits_card_number CHAR(4),
+    email VARCHAR(254),
+    reference VARCHAR(255),
+    cardholder_name VARCHAR(255),
+    gateway_payout_id VARCHAR(50),
+    gateway_transaction_id TEXT
+);
+--rollback drop table transaction_search;
+
+--changeset uk.gov.pay:populate_transaction_search
+INSERT INTO transaction_search (id, gateway_account_id, type, state, created_date, card_brand,
+    first_digits_card_number, last_digits_card_number, email, reference, cardholder_name, gateway_payout_id,
+    gateway_transaction_id)
+SELECT id, gateway_account_id, type, state, created_date, card_brand,
+    first_digits_card_number, last_digits_card_number, email, reference, cardholder_name, gateway_payout_id,
+    gateway_transaction_id
+FROM transaction;
+--rollback delete from transaction_search;
+
+--changeset uk.gov.pay:index_transaction_search_gateway_account_id_created_date_id
+CREATE INDEX transaction_search_gateway_account_id_created_date_id_idx ON transaction_search(gateway_account_id, created_date DESC, id DESC);
+--rollback drop index transaction_search_gateway_account_id_created_date_id_idx;
+
+--changeset uk.gov.pay:index_transaction_search_gateway_account_id_type_state_created_date
+CREATE INDEX transaction_search_gateway_account_id_type_state_created_date_idx ON transaction_search(gateway_account_id, type, state, created_date DESC);
+--rollback drop index transaction_search_gateway_account_id_type_state_created_date_idx;
+
+--changeset uk.gov.pay:index_transaction_search_created_date_id
+CREATE INDEX transaction_search_created_date_id_idx ON transaction_search(created_date DESC, id DESC);
+--rollback drop index transaction_search_created_date_id_idx;
+
+--changeset uk.gov.pay:index_transaction_search_gateway_account_id_card_digits
+CREATE INDEX transaction_search_gateway_account_id_last_digits_idx ON transaction_search(gateway_account_id, last_digits_card_number);
+CREATE INDEX transaction_search_gateway_account_id_first_digits_idx ON transaction_search(gateway_account_id, first_digits_card_number);
+--rollback drop index transaction_search_gateway_account_id_last_digits_idx; drop index transaction_search_gateway_account_id_first_digits_idx;
+
+--changeset uk.gov.pay:index_transaction_search_gateway_account_id_lower_reference
+CREATE INDEX transaction_search_gateway_account_id_lower_reference_idx ON transaction_search(gateway_account_id, lower(reference));
+--rollback drop index transaction_search_gateway_account_id_lower_reference_idx;
+
+--changeset uk.gov.pay:gin_index_transaction_search_text_fields
+CREATE INDEX transaction_search_lower_email_idx ON transaction_search USING GIN (lower(email) gin_trgm_ops);
+CREATE INDEX transaction_search_lower_reference_idx ON transaction_search USING GIN (lower(reference) gin_trgm_ops);
+CREATE INDEX transaction_search_lower_cardholder_name_idx ON transaction_search USING GIN (lower(cardholder_name) gin_trgm_ops);
+--rollback drop index transaction_search_lower_email_idx; drop index transaction_search_lower_reference_idx; drop index transaction_search_lower_cardholder_name_idx;
+
+--changeset uk.gov.pay:index_transaction_search_gateway_ids
+CREATE INDEX transaction_search_gateway_payout_id_idx ON transaction_search(gateway_payout_id);
+CREATE INDEX transaction_search_gateway_transaction_id_idx ON transaction_search(gateway_transaction_id);
+--rollback drop index transaction_search_gateway_payout_id_idx; drop index transaction_search_gateway_transaction_id_idx;
@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:index_transaction_search_gateway_account_id_state_created_date runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS transaction_search_gateway_account_id_state_created_date_idx ON transaction_search(gateway_account_id, state, created_date DESC, id DESC);
+--rollback drop index transaction_search_gateway_account_id_state_created_date_idx;
+
+--changeset uk.gov.pay:partial_index_transaction_search_refunds runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS transaction_search_refund_gateway_account_id_created_date_idx ON transaction_search(gateway_account_id, created_date DESC, id DESC) WHERE type = 'REFUND';
+--rollback drop index transaction_search_refund_gateway_account_id_created_date_idx;
+
+--changeset uk.gov.pay:index_transaction_search_gateway_account_id_card_brand_created_date runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS transaction_search_gateway_account_id_card_brand_created_date_idx ON transaction_search(gateway_account_id, card_brand, created_date DESC);
+--rollback drop index transaction_search_gateway_account_id_card_brand_created_date_idx;
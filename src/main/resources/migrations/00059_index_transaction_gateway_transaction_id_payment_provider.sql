@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:index_transaction_gateway_transaction_id_payment_provider runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS transaction_gateway_transaction_id_payment_provider_idx ON transaction(gateway_transaction_id, lower(transaction_details->>'payment_provider')) WHERE type = 'PAYMENT';
+--rollback drop index transaction_gateway_transaction_id_payment_provider_idx;
@@ -0,0 +1,10 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_projection_sweep
+CREATE TABLE projection_sweep (
+    table_name VARCHAR(50) PRIMARY KEY,
+    projection_version INTEGER NOT NULL,
+    next_id BIGINT DEFAULT 0 NOT NULL,
+    pass_completed_date TIMESTAMP WITH TIME ZONE
+);
+--rollback drop table projection_sweep;
@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_generation_to_reprojection_queue
+ALTER TABLE reprojection_queue ADD COLUMN generation BIGINT DEFAULT 0 NOT NULL;
+--rollback alter table reprojection_queue drop column generation;
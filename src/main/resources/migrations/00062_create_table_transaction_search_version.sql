@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_transaction_search_version
+CREATE SEQUENCE transaction_search_version_seq;
+CREATE TABLE transaction_search_version (
+    gateway_account_id VARCHAR(255) PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+--rollback drop table transaction_search_version; drop sequence transaction_search_version_seq;
@@ -0,0 +1,63 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_function_sync_transaction_search splitStatements:false
+CREATE OR REPLACE FUNCTION sync_transaction_search() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM transaction_search WHERE id = OLD.id;
+        RETURN NULL;
+    END IF;
+
+    INSERT INTO transaction_search (id, gateway_account_id, type, state, created_date, card_brand,
+        first_digits_card_number, last_digits_card_number, email, reference, cardholder_name, gateway_payout_id,
+        gateway_transaction_id)
+    VALUES (NEW.id, NEW.gateway_account_id, NEW.type, NEW.state, NEW.created_date, NEW.card_brand,
+        NEW.first_digits_card_number, NEW.last_digits_card_number, NEW.email, NEW.reference, NEW.cardholder_name,
+        NEW.gateway_payout_id, NEW.gateway_transaction_id)
+    ON CONFLICT (id) DO UPDATE SET
+        gateway_account_id = EXCLUDED.gateway_account_id,
+        type = EXCLUDED.type,
+        state = EXCLUDED.state,
+        created_date = EXCLUDED.created_date,
+        card_brand = EXCLUDED.card_brand,
+        first_digits_card_number = EXCLUDED.first_digits_card_number,
+        last_digits_card_number = EXCLUDED.last_digits_card_number,
+        email = EXCLUDED.email,
+        reference = EXCLUDED.reference,
+        cardholder_name = EXCLUDED.cardholder_name,
+        gateway_payout_id = EXCLUDED.gateway_payout_id,
+        gateway_transaction_id = EXCLUDED.gateway_transaction_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+--rollback drop function sync_transaction_search();
+
+--changeset uk.gov.pay:create_trigger_transaction_search_sync
+CREATE TRIGGER transaction_search_sync AFTER INSERT OR UPDATE OR DELETE ON transaction
+    FOR EACH ROW EXECUTE PROCEDURE sync_transaction_search();
+--rollback drop trigger transaction_search_sync on transaction;
+
+--changeset uk.gov.pay:catch_up_transaction_search
+INSERT INTO transaction_search (id, gateway_account_id, type, state, created_date, card_brand,
+    first_digits_card_number, last_digits_card_number, email, reference, cardholder_name, gateway_payout_id,
+    gateway_transaction_id)
+SELECT id, gateway_account_id, type, state, created_date, card_brand,
+    first_digits_card_number, last_digits_card_number, email, reference, cardholder_name, gateway_payout_id,
+    gateway_transaction_id
+FROM transaction
+ON CONFLICT (id) DO UPDATE SET
+    gateway_account_id = EXCLUDED.gateway_account_id,
+    type = EXCLUDED.type,
+    state = EXCLUDED.state,
+    created_date = EXCLUDED.created_date,
+    card_brand = EXCLUDED.card_brand,
+    first_digits_card_number = EXCLUDED.first_digits_card_number,
+    last_digits_card_number = EXCLUDED.last_digits_card_number,
+    email = EXCLUDED.email,
+    reference = EXCLUDED.reference,
+    cardholder_name = EXCLUDED.cardholder_name,
+    gateway_payout_id = EXCLUDED.gateway_payout_id,
+    gateway_transaction_id = EXCLUDED.gateway_transaction_id
+WHERE (transaction_search.*) IS DISTINCT FROM (EXCLUDED.*);
+DELETE FROM transaction_search ts WHERE NOT EXISTS (SELECT 1 FROM transaction t WHERE t.id = ts.id);
+--rollback select 1;
@@ -0,0 +1,18 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:drop_transaction_card_indexes runInTransaction:false
+DROP INDEX CONCURRENTLY IF EXISTS transaction_card_brand_idx;
+DROP INDEX CONCURRENTLY IF EXISTS transaction_first_digits_card_number_idx;
+DROP INDEX CONCURRENTLY IF EXISTS transaction_last_digits_card_number_idx;
+--rollback create index transaction_card_brand_idx on transaction(card_brand); create index transaction_first_digits_card_number_idx on transaction(first_digits_card_number); create index transaction_last_digits_card_number_idx on transaction(last_digits_card_number);
+
+--changeset uk.gov.pay:drop_transaction_state_index runInTransaction:false
+DROP INDEX CONCURRENTLY IF EXISTS transaction_state_idx;
+--rollback create index transaction_state_idx on transaction(state);
+
+--changeset uk.gov.pay:drop_transaction_text_search_indexes runInTransaction:false
+DROP INDEX CONCURRENTLY IF EXISTS transaction_lower_email_idx;
+DROP INDEX CONCURRENTLY IF EXISTS transaction_lower_cardholder_name_idx;
+DROP INDEX CONCURRENTLY IF EXISTS transaction_reference_gin_idx;
+DROP INDEX CONCURRENTLY IF EXISTS transaction_lower_reference_idx;
+--rollback create index transaction_lower_email_idx on transaction using gin (lower(email) gin_trgm_ops); create index transaction_lower_cardholder_name_idx on transaction using gin (lower(cardholder_name) gin_trgm_ops); create index transaction_reference_gin_idx on transaction using gin (lower(reference) gin_trgm_ops); create index transaction_lower_reference_idx on transaction(lower(reference));
@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:create_table_transaction_search_job
+CREATE TABLE transaction_search_job (
+    job_id VARCHAR(36) PRIMARY KEY,
+    gateway_account_ids TEXT[] NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    result TEXT,
+    error TEXT,
+    created_date TIMESTAMP WITH TIME ZONE NOT NULL
+);
+--rollback drop table transaction_search_job;
+
+--changeset uk.gov.pay:index_transaction_search_job_created_date
+CREATE INDEX transaction_search_job_created_date_idx ON transaction_search_job(created_date);
+--rollback drop index transaction_search_job_created_date_idx;
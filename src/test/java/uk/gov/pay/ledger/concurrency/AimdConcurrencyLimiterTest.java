@@ -0,0 +1,111 @@
+package uk.gov.pay.ledger.concurrency;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AimdConcurrencyLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    public void shouldRejectRequests_whenTheLimitIsInFlight() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(2, 1, 4, Duration.ofMillis(100), ticker);
+
+        AimdConcurrencyLimiter.Permit first = limiter.tryAcquire().get();
+        limiter.tryAcquire().get();
+
+        assertThat(limiter.tryAcquire().isPresent(), is(false));
+        assertThat(limiter.getInFlight(), is(2));
+
+        first.release(false);
+
+        assertThat(limiter.tryAcquire().isPresent(), is(true));
+    }
+
+    @Test
+    public void shouldBackOffByATenth_whenARequestIsSlowerThanTheThreshold() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(20, 1, 20, Duration.ofMillis(100), ticker);
+
+        AimdConcurrencyLimiter.Permit permit = limiter.tryAcquire().get();
+        nanos.addAndGet(Duration.ofMillis(101).toNanos());
+        permit.release(false);
+
+        assertThat(limiter.getLimit(), is(18));
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    @Test
+    public void shouldBackOff_whenARequestIsDroppedHoweverQuicklyItFailed() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(10, 1, 20, Duration.ofMillis(100), ticker);
+
+        limiter.tryAcquire().get().release(true);
+
+        assertThat(limiter.getLimit(), is(9));
+    }
+
+    @Test
+    public void shouldNotBackOffBelowTheMinimum() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(3, 2, 20, Duration.ofMillis(100), ticker);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire().get().release(true);
+        }
+
+        assertThat(limiter.getLimit(), is(2));
+    }
+
+    @Test
+    public void shouldGrowByOneOverALimitOfFastRequests_whenTheLimitIsWellUsed() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(4, 1, 5, Duration.ofMillis(100), ticker);
+
+        List<AimdConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(limiter.tryAcquire().get());
+        }
+        permits.forEach(permit -> permit.release(false));
+
+        assertThat(limiter.getLimit(), is(4));
+
+        for (int round = 0; round < 10; round++) {
+            permits.clear();
+            for (int i = 0; i < limiter.getLimit(); i++) {
+                permits.add(limiter.tryAcquire().get());
+            }
+            permits.forEach(permit -> permit.release(false));
+        }
+
+        assertThat(limiter.getLimit(), is(5));
+    }
+
+    @Test
+    public void shouldNotGrow_whenFewerThanHalfTheLimitAreInFlight() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(10, 1, 20, Duration.ofMillis(100), ticker);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire().get().release(false);
+        }
+
+        assertThat(limiter.getLimit(), is(10));
+    }
+
+    @Test
+    public void shouldRefuseAMinimumOverTheMaximum() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AimdConcurrencyLimiter(2, 4, 3, Duration.ofMillis(100), ticker));
+    }
+}
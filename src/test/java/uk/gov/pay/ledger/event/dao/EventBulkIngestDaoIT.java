@@ -0,0 +1,87 @@
+package uk.gov.pay.ledger.event.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.event.model.response.BulkEventIngestResponse;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+
+public class EventBulkIngestDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private static final ZonedDateTime EVENT_DATE = ZonedDateTime.parse("2020-07-01T10:00:00Z");
+
+    private final EventBulkIngestDao eventBulkIngestDao = new EventBulkIngestDao(rule.getJdbi());
+
+    @BeforeEach
+    public void setUp() {
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
+        rule.getJdbi().useHandle(handle -> handle.execute("TRUNCATE TABLE reprojection_queue"));
+    }
+
+    @Test
+    public void shouldInsertNewEventsOnceAndEnqueueTheirResources() {
+        BulkEventIngestResponse response = eventBulkIngestDao.ingest(List.of(
+                anEvent("payment-a", "PAYMENT_CREATED", EVENT_DATE),
+                anEvent("payment-a", "PAYMENT_CREATED", EVENT_DATE),
+                anEvent("payment-a", "PAYMENT_STARTED", EVENT_DATE.plusSeconds(1)),
+                anEvent("payment-b", "PAYMENT_CREATED", EVENT_DATE)).iterator());
+
+        assertThat(response.getEventsReceived(), is(4L));
+        assertThat(response.getEventsInserted(), is(3L));
+        assertThat(response.getResourcesEnqueued(), is(2L));
+        assertThat(aDatabaseTestHelper(rule.getJdbi()).getEventsCountByExternalId("payment-a"), is(2));
+        assertThat(queueEntry("payment-a").get("generation"), is(0L));
+    }
+
+    @Test
+    public void shouldSkipEventsAlreadyStoredAndBumpTheGenerationOfResourcesStillQueued() {
+        eventBulkIngestDao.ingest(List.of(anEvent("payment-a", "PAYMENT_CREATED", EVENT_DATE)).iterator());
+        rule.getJdbi().useHandle(handle -> handle.execute("UPDATE reprojection_queue SET attempts = 3"));
+
+        BulkEventIngestResponse response = eventBulkIngestDao.ingest(List.of(
+                anEvent("payment-a", "PAYMENT_CREATED", EVENT_DATE),
+                anEvent("payment-a", "PAYMENT_STARTED", EVENT_DATE.plusSeconds(1))).iterator());
+
+        assertThat(response.getEventsInserted(), is(1L));
+        assertThat(queueEntry("payment-a").get("generation"), is(1L));
+        assertThat(queueEntry("payment-a").get("attempts"), is(0));
+    }
+
+    @Test
+    public void shouldNotEnqueueResources_whenNoEventIsNew() {
+        eventBulkIngestDao.ingest(List.of(anEvent("payment-a", "PAYMENT_CREATED", EVENT_DATE)).iterator());
+
+        BulkEventIngestResponse response = eventBulkIngestDao.ingest(
+                List.of(anEvent("payment-a", "PAYMENT_CREATED", EVENT_DATE)).iterator());
+
+        assertThat(response.getEventsInserted(), is(0L));
+        assertThat(response.getResourcesEnqueued(), is(0L));
+        assertThat(queueEntry("payment-a").get("generation"), is(0L));
+    }
+
+    private Map<String, Object> queueEntry(String resourceExternalId) {
+        return rule.getJdbi().withHandle(handle -> handle
+                .createQuery("SELECT * FROM reprojection_queue WHERE resource_external_id = :resourceExternalId")
+                .bind("resourceExternalId", resourceExternalId)
+                .mapToMap()
+                .one());
+    }
+
+    private static Event anEvent(String resourceExternalId, String eventType, ZonedDateTime eventDate) {
+        return new Event(null, ResourceType.PAYMENT, resourceExternalId, null, eventDate, eventType,
+                "{\"amount\": 1000}");
+    }
+}
@@ -0,0 +1,97 @@
+package uk.gov.pay.ledger.event.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapping a merged payment payload with {@link EventPayloadMapper} against
+ * {@link ObjectMapper#convertValue(Object, Class)}. Run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -DmainClass=uk.gov.pay.ledger.event.model.EventPayloadMapperBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventPayloadMapperBenchmark {
+
+    private ObjectMapper objectMapper;
+    private EventPayloadMapper<TransactionEntity> eventPayloadMapper;
+    private Map<String, Object> payload;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson.newObjectMapper();
+        eventPayloadMapper = new EventPayloadMapper<>(objectMapper, TransactionEntity.class);
+
+        payload = new HashMap<>();
+        payload.put("gateway_account_id", "123");
+        payload.put("amount", 1000);
+        payload.put("reference", "a reference");
+        payload.put("description", "a description");
+        payload.put("email", "someone@example.org");
+        payload.put("cardholder_name", "J Doe");
+        payload.put("card_brand", "visa");
+        payload.put("card_brand_label", "Visa");
+        payload.put("last_digits_card_number", "4242");
+        payload.put("first_digits_card_number", "424242");
+        payload.put("expiry_date", "11/23");
+        payload.put("card_type", "debit");
+        payload.put("net_amount", 950);
+        payload.put("total_amount", 1000);
+        payload.put("fee", 50);
+        payload.put("live", true);
+        payload.put("moto", false);
+        payload.put("delayed_capture", false);
+        payload.put("language", "en");
+        payload.put("return_url", "https://example.org/return");
+        payload.put("payment_provider", "sandbox");
+        payload.put("gateway_transaction_id", "gateway-transaction-id");
+        payload.put("source", "CARD_API");
+        payload.put("refund_status", "available");
+        payload.put("refund_amount_available", 1000);
+        payload.put("refund_amount_refunded", 0);
+        payload.put("address_line1", "1 Street");
+        payload.put("address_city", "London");
+        payload.put("address_postcode", "E1 1AA");
+        payload.put("address_country", "GB");
+    }
+
+    @Benchmark
+    public TransactionEntity convertValue() {
+        return objectMapper.convertValue(payload, TransactionEntity.class);
+    }
+
+    @Benchmark
+    public TransactionEntity eventPayloadMapper() {
+        return eventPayloadMapper.map(payload);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventPayloadMapperBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,133 @@
+package uk.gov.pay.ledger.event.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.payout.entity.PayoutEntity;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class EventPayloadMapperTest {
+
+    private static final List<String> TRANSACTION_KEYS = List.of("gateway_account_id", "amount", "reference",
+            "description", "state", "email", "cardholder_name", "card_brand", "last_digits_card_number",
+            "first_digits_card_number", "net_amount", "total_amount", "fee", "transaction_type", "refund_status",
+            "refund_amount_refunded", "refund_amount_available", "live", "moto", "gateway_transaction_id", "source",
+            "gateway_payout_id", "external_id", "event_count", "created_date", "language", "payment_details");
+
+    private static final List<String> PAYOUT_KEYS = List.of("gateway_payout_id", "amount", "paid_out_date", "state",
+            "event_count", "payout_details", "gateway_account_id", "created_date", "statement_descriptor");
+
+    private static final List<Object> VALUES = Arrays.asList(null, "a string", "", "100", "true", "false",
+            "CARD_API", "SUBMITTED", "2020-05-04T00:20:00.123456Z", 0, 100, Integer.MAX_VALUE, 12345678901L, 1.5,
+            true, false, Map.of("nested", "value"), List.of("a", "b"));
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    @Test
+    public void shouldMapPaymentPayloadTheSameAsObjectMapper() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("gateway_account_id", "123");
+        payload.put("amount", 1000);
+        payload.put("reference", "a reference");
+        payload.put("description", "a description");
+        payload.put("email", "someone@example.org");
+        payload.put("cardholder_name", "J Doe");
+        payload.put("card_brand", "visa");
+        payload.put("last_digits_card_number", "4242");
+        payload.put("first_digits_card_number", "424242");
+        payload.put("net_amount", 950L);
+        payload.put("total_amount", "1000");
+        payload.put("fee", 50);
+        payload.put("live", true);
+        payload.put("moto", "false");
+        payload.put("gateway_transaction_id", "gateway-id");
+        payload.put("source", "CARD_API");
+        payload.put("language", "en");
+        payload.put("delayed_capture", false);
+        payload.put("payment_details", Map.of("card_type", "debit"));
+
+        TransactionEntity expected = objectMapper.convertValue(payload, TransactionEntity.class);
+        TransactionEntity actual = new EventPayloadMapper<>(objectMapper, TransactionEntity.class).map(payload);
+
+        assertThat(actual.getAmount(), is(1000L));
+        assertThat(actual.getTotalAmount(), is(1000L));
+        assertThat(actual.isMoto(), is(false));
+        assertThat(EqualsBuilder.reflectionEquals(expected, actual), is(true));
+    }
+
+    @Test
+    public void shouldMapPayoutPayloadUsingPropertyDeserializers() {
+        Map<String, Object> payload = Map.of(
+                "amount", 10000,
+                "paid_out_date", "2020-05-04T00:20:00.123456Z",
+                "gateway_account_id", "123",
+                "statement_descriptor", "SPECIAL TEST SERVICE");
+        ObjectMapper plainObjectMapper = new ObjectMapper();
+
+        PayoutEntity expected = plainObjectMapper.convertValue(payload, PayoutEntity.class);
+        PayoutEntity actual = new EventPayloadMapper<>(plainObjectMapper, PayoutEntity.class).map(payload);
+
+        assertThat(actual.getPaidOutDate(), is(expected.getPaidOutDate()));
+        assertThat(EqualsBuilder.reflectionEquals(expected, actual), is(true));
+    }
+
+    @Test
+    public void shouldFailWhereObjectMapperFails() {
+        Map<String, Object> payload = Map.of("amount", "not a number");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> objectMapper.convertValue(payload, TransactionEntity.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> new EventPayloadMapper<>(objectMapper, TransactionEntity.class).map(payload));
+    }
+
+    @Test
+    public void shouldMatchObjectMapperForRandomTransactionPayloads() {
+        assertMatchesObjectMapper(TransactionEntity.class, TRANSACTION_KEYS);
+    }
+
+    @Test
+    public void shouldMatchObjectMapperForRandomPayoutPayloads() {
+        assertMatchesObjectMapper(PayoutEntity.class, PAYOUT_KEYS);
+    }
+
+    private <T> void assertMatchesObjectMapper(Class<T> entityType, List<String> keys) {
+        EventPayloadMapper<T> mapper = new EventPayloadMapper<>(objectMapper, entityType);
+        Random random = new Random(20201019L);
+
+        for (int i = 0; i < 2000; i++) {
+            Map<String, Object> payload = new HashMap<>();
+            for (String key : keys) {
+                if (random.nextBoolean()) {
+                    payload.put(key, VALUES.get(random.nextInt(VALUES.size())));
+                }
+            }
+
+            T expected = null;
+            IllegalArgumentException expectedFailure = null;
+            try {
+                expected = objectMapper.convertValue(payload, entityType);
+            } catch (IllegalArgumentException e) {
+                expectedFailure = e;
+            }
+
+            if (expectedFailure != null) {
+                assertThrows(IllegalArgumentException.class, () -> mapper.map(payload), "payload: " + payload);
+            } else {
+                T actual = mapper.map(payload);
+                assertThat("payload: " + payload, EqualsBuilder.reflectionEquals(expected, actual), is(true));
+            }
+        }
+    }
+}
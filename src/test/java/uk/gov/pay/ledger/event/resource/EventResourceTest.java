@@ -6,22 +6,36 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.BulkEventIngestConfig;
 import uk.gov.pay.ledger.event.dao.EventDao;
 import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.response.BulkEventIngestResponse;
+import uk.gov.pay.ledger.event.service.BulkEventIngestService;
+import uk.gov.pay.ledger.filters.ApiTokenAuthenticationFilter;
 import uk.gov.pay.ledger.util.fixture.EventFixture;
 
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Response;
+import java.io.InputStream;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 @ExtendWith(DropwizardExtensionsSupport.class)
 public class EventResourceTest {
     private static final EventDao dao = mock(EventDao.class);
+    private static final BulkEventIngestService bulkEventIngestService = mock(BulkEventIngestService.class);
+    private static final String API_TOKEN = "a-bulk-ingest-token";
     private static final Long eventId = 1L;
     private static final String nonExistentId = "I'm not really here";
     private final Event event = EventFixture.anEventFixture()
@@ -29,14 +43,24 @@ public class EventResourceTest {
             .toEntity();
 
     public static final ResourceExtension resources = ResourceExtension.builder()
-            .addResource(new EventResource(dao))
+            .addResource(new EventResource(dao, bulkEventIngestService))
+            .addProvider(new ApiTokenAuthenticationFilter(configWithApiToken()))
             .build();
 
     @BeforeEach
     public void setup() {
+        reset(bulkEventIngestService);
         when(dao.getById(eventId)).thenReturn(Optional.of(event));
     }
 
+    private static LedgerConfig configWithApiToken() {
+        LedgerConfig config = mock(LedgerConfig.class);
+        BulkEventIngestConfig bulkEventIngestConfig = mock(BulkEventIngestConfig.class);
+        when(config.getBulkEventIngestConfig()).thenReturn(bulkEventIngestConfig);
+        when(bulkEventIngestConfig.getApiToken()).thenReturn(API_TOKEN);
+        return config;
+    }
+
     @Test
     public void shouldReturnEventIfItExists() {
         Event returnedEvent = resources.target("/v1/event/" + eventId).request().get(Event.class);
@@ -54,4 +78,41 @@ public class EventResourceTest {
         Response response = resources.target("/v1/event/ticker").request().get();
         assertThat(response.getStatus(), is(400));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReturn401IfBulkIngestRequestHasNoApiToken() {
+        Response response = resources.target("/v1/event/bulk")
+                .request()
+                .post(Entity.entity("{}", "application/x-ndjson"));
+
+        assertThat(response.getStatus(), is(401));
+        verify(bulkEventIngestService, never()).ingest(any());
+    }
+
+    @Test
+    public void shouldReturn401IfBulkIngestRequestHasWrongApiToken() {
+        Response response = resources.target("/v1/event/bulk")
+                .request()
+                .header("Authorization", "Bearer not-the-token")
+                .post(Entity.entity("{}", "application/x-ndjson"));
+
+        assertThat(response.getStatus(), is(401));
+    }
+
+    @Test
+    public void shouldIngestEventsInBulkWithApiToken() {
+        when(bulkEventIngestService.ingest(any(InputStream.class)))
+                .thenReturn(new BulkEventIngestResponse(3L, 2L, 1L));
+
+        Response response = resources.target("/v1/event/bulk")
+                .request()
+                .header("Authorization", "Bearer " + API_TOKEN)
+                .post(Entity.entity("{}", "application/x-ndjson"));
+
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> body = response.readEntity(Map.class);
+        assertThat(body.get("events_received"), is(3));
+        assertThat(body.get("events_inserted"), is(2));
+        assertThat(body.get("resources_enqueued"), is(1));
+    }
+}
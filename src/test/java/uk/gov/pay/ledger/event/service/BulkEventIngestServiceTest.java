@@ -0,0 +1,96 @@
+package uk.gov.pay.ledger.event.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.event.dao.EventBulkIngestDao;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.event.model.response.BulkEventIngestResponse;
+import uk.gov.pay.ledger.exception.ValidationException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BulkEventIngestServiceTest {
+
+    @Mock
+    private EventBulkIngestDao eventBulkIngestDao;
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private final List<Event> ingestedEvents = new ArrayList<>();
+    private BulkEventIngestService bulkEventIngestService;
+
+    @BeforeEach
+    public void setUp() {
+        bulkEventIngestService = new BulkEventIngestService(eventBulkIngestDao, objectMapper);
+        when(eventBulkIngestDao.ingest(any())).thenAnswer(invocation -> {
+            Iterator<Event> events = invocation.getArgument(0);
+            events.forEachRemaining(ingestedEvents::add);
+            return new BulkEventIngestResponse(ingestedEvents.size(), ingestedEvents.size(), 1L);
+        });
+    }
+
+    @Test
+    public void shouldConvertEachLineToAnEvent() {
+        String ndjson =
+                "{\"timestamp\":\"2020-01-01T10:00:00.000000Z\",\"resource_external_id\":\"refund-id\"," +
+                "\"parent_resource_external_id\":\"payment-id\",\"event_type\":\"REFUND_CREATED_BY_USER\"," +
+                "\"resource_type\":\"refund\",\"event_details\":{\"amount\":100}}\n" +
+                "{\"timestamp\":\"2020-01-01T10:00:01.000000Z\",\"resource_external_id\":\"refund-id\"," +
+                "\"event_type\":\"REFUND_SUCCEEDED\",\"resource_type\":\"refund\",\"event_details\":{}}\n";
+
+        BulkEventIngestResponse response = bulkEventIngestService.ingest(toStream(ndjson));
+
+        assertThat(response.getEventsReceived(), is(2L));
+        assertThat(ingestedEvents.size(), is(2));
+        assertThat(ingestedEvents.get(0).getResourceType(), is(ResourceType.REFUND));
+        assertThat(ingestedEvents.get(0).getResourceExternalId(), is("refund-id"));
+        assertThat(ingestedEvents.get(0).getParentResourceExternalId(), is("payment-id"));
+        assertThat(ingestedEvents.get(0).getEventType(), is("REFUND_CREATED_BY_USER"));
+        assertThat(ingestedEvents.get(0).getEventData(), is("{\"amount\":100}"));
+        assertThat(ingestedEvents.get(0).getSqsMessageId(), is(nullValue()));
+        assertThat(ingestedEvents.get(1).getEventType(), is("REFUND_SUCCEEDED"));
+    }
+
+    @Test
+    public void shouldRejectEventWithMissingField() {
+        String ndjson =
+                "{\"timestamp\":\"2020-01-01T10:00:00.000000Z\",\"resource_external_id\":\"payment-id\"," +
+                "\"event_type\":\"PAYMENT_CREATED\",\"resource_type\":\"payment\",\"event_details\":{}}\n" +
+                "{\"timestamp\":\"2020-01-01T10:00:01.000000Z\",\"resource_external_id\":\"payment-id\"," +
+                "\"resource_type\":\"payment\",\"event_details\":{}}\n";
+
+        ValidationException exception = assertThrows(ValidationException.class,
+                () -> bulkEventIngestService.ingest(toStream(ndjson)));
+
+        assertThat(exception.getMessage(), containsString("line 2"));
+    }
+
+    @Test
+    public void shouldRejectMalformedLine() {
+        String ndjson = "{\"timestamp\":\"2020-01-01T10:00:00.000000Z\",\"resource_external_id\":\n";
+
+        assertThrows(ValidationException.class, () -> bulkEventIngestService.ingest(toStream(ndjson)));
+    }
+
+    private ByteArrayInputStream toStream(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+}
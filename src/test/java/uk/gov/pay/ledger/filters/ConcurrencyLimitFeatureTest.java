@@ -0,0 +1,85 @@
+package uk.gov.pay.ledger.filters;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import uk.gov.pay.ledger.concurrency.AimdConcurrencyLimiter;
+import uk.gov.pay.ledger.concurrency.ConcurrencyLimiters;
+import uk.gov.pay.ledger.concurrency.ResourceClass;
+import uk.gov.pay.ledger.event.dao.EventDao;
+import uk.gov.pay.ledger.event.resource.EventResource;
+import uk.gov.pay.ledger.event.service.BulkEventIngestService;
+import uk.gov.pay.ledger.util.fixture.EventFixture;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class ConcurrencyLimitFeatureTest {
+
+    private static final EventDao dao = mock(EventDao.class);
+    private static final MetricRegistry metricRegistry = new MetricRegistry();
+    private static final ConcurrencyLimiters concurrencyLimiters = new ConcurrencyLimiters(
+            resourceClass -> new AimdConcurrencyLimiter(1, 1, 1, Duration.ofSeconds(10)), 3, metricRegistry);
+
+    public static final ResourceExtension resources = ResourceExtension.builder()
+            .addResource(new EventResource(dao, mock(BulkEventIngestService.class)))
+            .addProvider(new ConcurrencyLimitFeature(concurrencyLimiters))
+            .addProvider(new ConcurrencyLimitReleaseListener())
+            .build();
+
+    private final List<AimdConcurrencyLimiter.Permit> heldPermits = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        when(dao.getById(1L)).thenReturn(Optional.of(EventFixture.anEventFixture().withId(1L).toEntity()));
+    }
+
+    @AfterEach
+    public void releaseHeldPermits() {
+        heldPermits.forEach(permit -> permit.release(false));
+    }
+
+    @Test
+    public void shouldAnswer503WithRetryAfter_whenTheResourceClassIsAtItsLimit() {
+        heldPermits.add(concurrencyLimiters.tryAcquire(ResourceClass.SINGLE_GET).get());
+        long rejected = metricRegistry.counter("concurrency-limit.single-get.rejected").getCount();
+
+        Response response = resources.target("/v1/event/1").request().get();
+
+        assertThat(response.getStatus(), is(503));
+        assertThat(response.getHeaderString(HttpHeaders.RETRY_AFTER), is("3"));
+        assertThat(metricRegistry.counter("concurrency-limit.single-get.rejected").getCount(), is(rejected + 1));
+    }
+
+    @Test
+    public void shouldServeTheRequest_whenAnotherResourceClassIsAtItsLimit() {
+        heldPermits.add(concurrencyLimiters.tryAcquire(ResourceClass.SEARCH).get());
+
+        Response response = resources.target("/v1/event/1").request().get();
+
+        assertThat(response.getStatus(), is(200));
+    }
+
+    @Test
+    public void shouldReleaseThePermit_whenTheRequestHasFinished() {
+        assertThat(resources.target("/v1/event/1").request().get().getStatus(), is(200));
+        assertThat(resources.target("/v1/event/1").request().get().getStatus(), is(200));
+
+        assertThat(concurrencyLimiters.getLimiter(ResourceClass.SINGLE_GET).getInFlight(), is(0));
+        assertThat(metricRegistry.getGauges().get("concurrency-limit.single-get.in-flight").getValue(), is(0));
+    }
+}
@@ -12,8 +12,8 @@ import uk.gov.pay.ledger.payout.model.PayoutSearchResponse;
 import uk.gov.pay.ledger.payout.search.PayoutSearchParams;
 
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
+import java.net.URI;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -40,8 +40,8 @@ public class PayoutServiceTest {
     @BeforeEach
     public void setUp() {
         payoutService = new PayoutService(mockPayoutDao, payoutEntityFactory);
-        lenient().when(mockUriInfo.getBaseUriBuilder()).thenReturn(UriBuilder.fromUri("http://example.com"));
-        lenient().when(mockUriInfo.getPath()).thenReturn("/v1/payout");
+        lenient().when(mockUriInfo.getBaseUri()).thenReturn(URI.create("http://example.com/"));
+        lenient().when(mockUriInfo.getRequestUri()).thenReturn(URI.create("http://example.com/v1/payout"));
     }
 
     @Test
@@ -0,0 +1,107 @@
+package uk.gov.pay.ledger.projection.dao;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchTemplateCache;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+import static uk.gov.pay.ledger.util.fixture.EventFixture.anEventFixture;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+public class ProjectionRebuildDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private final ProjectionRebuildDao projectionRebuildDao = new ProjectionRebuildDao(rule.getJdbi());
+    private final TransactionDao transactionDao = new TransactionDao(rule.getJdbi(), new TransactionSearchTemplateCache(new MetricRegistry()));
+
+    @BeforeEach
+    public void setUp() {
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
+        projectionRebuildDao.dropReplacedTable();
+        projectionRebuildDao.dropShadowTable();
+    }
+
+    @Test
+    public void shouldStreamEveryEventOfEachResourceAcrossPages() {
+        ZonedDateTime eventDate = ZonedDateTime.parse("2020-07-01T10:00:00Z");
+        anEventFixture().withId(1L).withResourceExternalId("resource-a").withEventDate(eventDate).insert(rule.getJdbi());
+        anEventFixture().withId(2L).withResourceExternalId("resource-b").withEventDate(eventDate).insert(rule.getJdbi());
+        anEventFixture().withId(3L).withResourceExternalId("resource-a").withEventDate(eventDate.plusMinutes(1)).insert(rule.getJdbi());
+        anEventFixture().withId(4L).withResourceExternalId("resource-c").withEventDate(eventDate).insert(rule.getJdbi());
+        anEventFixture().withId(5L).withResourceExternalId("resource-b").withEventDate(eventDate.plusMinutes(1)).insert(rule.getJdbi());
+
+        List<Long> streamedEventIds = new ArrayList<>();
+        projectionRebuildDao.streamTransactionEvents(null, 4L, 1, event -> streamedEventIds.add(event.getId()));
+
+        assertThat(streamedEventIds, is(List.of(3L, 1L, 2L, 4L)));
+    }
+
+    @Test
+    public void shouldResumeStreamingAfterTheCheckpointedResource() {
+        anEventFixture().withId(1L).withResourceExternalId("resource-a").insert(rule.getJdbi());
+        anEventFixture().withId(2L).withResourceExternalId("resource-b").insert(rule.getJdbi());
+
+        List<Event> streamedEvents = new ArrayList<>();
+        projectionRebuildDao.streamTransactionEvents("resource-a", 2L, 100, streamedEvents::add);
+
+        assertThat(streamedEvents.size(), is(1));
+        assertThat(streamedEvents.get(0).getResourceExternalId(), is("resource-b"));
+    }
+
+    @Test
+    public void shouldSwapARebuiltTableIntoPlaceTwice() {
+        aTransactionFixture().withId(1L).withExternalId("without-events").insert(rule.getJdbi());
+
+        rebuildWith(aTransactionFixture().withExternalId("first-rebuild").toEntity());
+        rebuildWith(aTransactionFixture().withExternalId("second-rebuild").toEntity());
+
+        List<String> externalIds = aDatabaseTestHelper(rule.getJdbi()).getAllTransactions().stream()
+                .map(transaction -> (String) transaction.get("external_id"))
+                .collect(Collectors.toList());
+        assertThat(externalIds, containsInAnyOrder("without-events", "first-rebuild", "second-rebuild"));
+        assertThat(transactionDao.findTransactionByExternalId("second-rebuild").isPresent(), is(true));
+        assertThat(projectionRebuildDao.findLeftoversOfSwap(), is(List.of()));
+
+        Map<String, Object> searchRow = aDatabaseTestHelper(rule.getJdbi()).getTransactionSearchRow(1L);
+        assertThat(searchRow.get("id"), is(1L));
+    }
+
+    @Test
+    public void shouldFindTheReplacedTableAndItsIndexesUntilTheyAreDropped() {
+        projectionRebuildDao.createShadowTable();
+        projectionRebuildDao.swapShadowTable(10, handle -> {});
+
+        List<String> leftovers = projectionRebuildDao.findLeftoversOfSwap();
+        assertThat(leftovers, hasItem(ProjectionRebuildDao.REPLACED_TABLE));
+        assertThat(leftovers, hasItem("transaction_pkey_pre_rebuild"));
+
+        projectionRebuildDao.dropReplacedTable();
+
+        assertThat(projectionRebuildDao.findLeftoversOfSwap(), is(List.of()));
+    }
+
+    private void rebuildWith(TransactionEntity transaction) {
+        projectionRebuildDao.createShadowTable();
+        projectionRebuildDao.insertIntoShadowTable(List.of(transaction));
+        projectionRebuildDao.swapShadowTable(10, handle -> {});
+        projectionRebuildDao.dropReplacedTable();
+    }
+}
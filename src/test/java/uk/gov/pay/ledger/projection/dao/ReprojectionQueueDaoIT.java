@@ -0,0 +1,99 @@
+package uk.gov.pay.ledger.projection.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.event.dao.EventBulkIngestDao;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.projection.model.ReprojectionQueueEntry;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+
+public class ReprojectionQueueDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private static final ZonedDateTime EVENT_DATE = ZonedDateTime.parse("2020-07-01T10:00:00Z");
+
+    private final ReprojectionQueueDao reprojectionQueueDao = new ReprojectionQueueDao(rule.getJdbi());
+    private final EventBulkIngestDao eventBulkIngestDao = new EventBulkIngestDao(rule.getJdbi());
+
+    @BeforeEach
+    public void setUp() {
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
+        rule.getJdbi().useHandle(handle -> handle.execute("TRUNCATE TABLE reprojection_queue"));
+    }
+
+    @Test
+    public void shouldRemoveProcessedEntriesAndCountAttemptsOfFailedOnes() {
+        ingest("payment-a", "PAYMENT_CREATED");
+        ingest("payment-b", "PAYMENT_CREATED");
+
+        List<ReprojectionQueueEntry> claimed = new ArrayList<>();
+        int processed = reprojectionQueueDao.processBatch(10, 5, entries -> {
+            claimed.addAll(entries);
+            return Set.of("payment-b");
+        });
+
+        assertThat(processed, is(2));
+        assertThat(claimed.get(0).getResourceType(), is(ResourceType.PAYMENT));
+        assertThat(queuedResources(), is(List.of("payment-b")));
+        assertThat(queueEntry("payment-b").get("attempts"), is(1));
+    }
+
+    @Test
+    public void shouldNotClaimEntriesThatHaveUsedTheirAttempts() {
+        ingest("payment-a", "PAYMENT_CREATED");
+        rule.getJdbi().useHandle(handle -> handle.execute("UPDATE reprojection_queue SET attempts = 5"));
+
+        assertThat(reprojectionQueueDao.processBatch(10, 5, entries -> Set.of()), is(0));
+    }
+
+    @Test
+    public void shouldKeepTheEntry_whenEventsAreIngestedForItWhileItIsClaimed() throws Exception {
+        ingest("payment-a", "PAYMENT_CREATED");
+
+        List<CompletableFuture<?>> ingestsWhileClaimed = new ArrayList<>();
+        reprojectionQueueDao.processBatch(10, 5, entries -> {
+            ingestsWhileClaimed.add(CompletableFuture.runAsync(() -> ingest("payment-a", "PAYMENT_STARTED")));
+            return Set.of();
+        });
+        ingestsWhileClaimed.get(0).get(10, TimeUnit.SECONDS);
+
+        assertThat(queuedResources(), is(List.of("payment-a")));
+        assertThat(queueEntry("payment-a").get("attempts"), is(0));
+    }
+
+    private void ingest(String resourceExternalId, String eventType) {
+        eventBulkIngestDao.ingest(List.of(new Event(null, ResourceType.PAYMENT, resourceExternalId, null,
+                EVENT_DATE, eventType, "{}")).iterator());
+    }
+
+    private List<String> queuedResources() {
+        return rule.getJdbi().withHandle(handle -> handle
+                .createQuery("SELECT resource_external_id FROM reprojection_queue ORDER BY resource_external_id")
+                .mapTo(String.class)
+                .list());
+    }
+
+    private Map<String, Object> queueEntry(String resourceExternalId) {
+        return rule.getJdbi().withHandle(handle -> handle
+                .createQuery("SELECT * FROM reprojection_queue WHERE resource_external_id = :resourceExternalId")
+                .bind("resourceExternalId", resourceExternalId)
+                .mapToMap()
+                .one());
+    }
+}
@@ -0,0 +1,60 @@
+package uk.gov.pay.ledger.projection.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StaleProjectionDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private static final Duration RESTART_DELAY = Duration.ofMinutes(1440);
+
+    private final StaleProjectionDao staleProjectionDao = new StaleProjectionDao(rule.getJdbi());
+
+    @BeforeEach
+    public void setUp() {
+        rule.getJdbi().useHandle(handle -> handle.execute("TRUNCATE TABLE projection_sweep"));
+    }
+
+    @Test
+    public void shouldClaimEachRangeOfAPassOnce() {
+        assertThat(staleProjectionDao.claimIdRange("transaction", 2, 250L, 100, RESTART_DELAY), is(Optional.of(0L)));
+        assertThat(staleProjectionDao.claimIdRange("transaction", 2, 250L, 100, RESTART_DELAY), is(Optional.of(100L)));
+        assertThat(staleProjectionDao.claimIdRange("transaction", 2, 250L, 100, RESTART_DELAY), is(Optional.of(200L)));
+        assertThat(staleProjectionDao.claimIdRange("transaction", 2, 250L, 100, RESTART_DELAY), is(Optional.empty()));
+        assertThat(staleProjectionDao.claimIdRange("payout", 2, 250L, 100, RESTART_DELAY), is(Optional.of(0L)));
+    }
+
+    @Test
+    public void shouldNotStartAnotherPass_untilTheRestartDelayHasPassed() {
+        staleProjectionDao.claimIdRange("transaction", 2, 100L, 100, RESTART_DELAY);
+        staleProjectionDao.claimIdRange("transaction", 2, 100L, 100, RESTART_DELAY);
+
+        assertThat(staleProjectionDao.completeSweep("transaction", 2, 100L), is(true));
+        assertThat(staleProjectionDao.completeSweep("transaction", 2, 100L), is(false));
+        assertThat(staleProjectionDao.claimIdRange("transaction", 2, 200L, 100, RESTART_DELAY), is(Optional.empty()));
+
+        rule.getJdbi().useHandle(handle -> handle.execute(
+                "UPDATE projection_sweep SET pass_completed_date = now() - interval '2 days'"));
+
+        assertThat(staleProjectionDao.claimIdRange("transaction", 2, 200L, 100, RESTART_DELAY), is(Optional.of(0L)));
+    }
+
+    @Test
+    public void shouldStartANewPass_whenTheProjectionVersionGoesUp() {
+        staleProjectionDao.claimIdRange("transaction", 2, 100L, 100, RESTART_DELAY);
+        staleProjectionDao.completeSweep("transaction", 2, 100L);
+
+        assertThat(staleProjectionDao.claimIdRange("transaction", 3, 100L, 100, RESTART_DELAY), is(Optional.of(0L)));
+        assertThat(staleProjectionDao.claimIdRange("transaction", 2, 100L, 100, RESTART_DELAY), is(Optional.empty()));
+    }
+}
@@ -0,0 +1,181 @@
+package uk.gov.pay.ledger.projection.service;
+
+import org.jdbi.v3.core.Handle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.exception.ProjectionRebuildException;
+import uk.gov.pay.ledger.projection.dao.ProjectionRebuildDao;
+import uk.gov.pay.ledger.projection.model.ProjectionRebuild;
+import uk.gov.pay.ledger.projection.model.ProjectionRebuildOptions;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.util.fixture.EventFixture.anEventFixture;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+@ExtendWith(MockitoExtension.class)
+class ProjectionRebuilderTest {
+
+    @Mock
+    private ProjectionRebuildDao projectionRebuildDao;
+    @Mock
+    private TransactionDao transactionDao;
+    @Mock
+    private TransactionProjector transactionProjector;
+    @Captor
+    private ArgumentCaptor<List<TransactionEntity>> transactionsCaptor;
+
+    @InjectMocks
+    private ProjectionRebuilder projectionRebuilder;
+
+    @Test
+    void shouldProjectEventsGroupedByResourceIntoShadowTableAndSwap() {
+        when(projectionRebuildDao.findMaxEventId()).thenReturn(100L);
+        when(projectionRebuildDao.startRebuild(100L)).thenReturn(new ProjectionRebuild(1, 100L, null, 0));
+        streamEvents(List.of(
+                anEvent("payment-1"), anEvent("payment-1"),
+                anEvent("payment-2"),
+                anEvent("payment-3"), anEvent("payment-3"), anEvent("payment-3")));
+        when(transactionProjector.project(anyList())).thenAnswer(invocation -> {
+            List<Event> events = invocation.getArgument(0);
+            return Optional.of(aTransactionFixture()
+                    .withExternalId(events.get(0).getResourceExternalId())
+                    .withEventCount(events.size())
+                    .toEntity());
+        });
+        when(projectionRebuildDao.findResourcesWithEventsAfter(ProjectionRebuildDao.SHADOW_TABLE, 100L))
+                .thenReturn(List.of());
+        when(projectionRebuildDao.findResourcesWithEventsAfter(anyLong())).thenReturn(List.of());
+
+        projectionRebuilder.rebuild(options(false, true));
+
+        verify(projectionRebuildDao).dropShadowTable();
+        verify(projectionRebuildDao).createShadowTable();
+        verify(projectionRebuildDao, times(2)).insertIntoShadowTable(transactionsCaptor.capture());
+
+        List<String> projected = transactionsCaptor.getAllValues().stream()
+                .flatMap(List::stream)
+                .map(transaction -> transaction.getExternalId() + ":" + transaction.getEventCount())
+                .collect(Collectors.toList());
+        assertThat(projected, containsInAnyOrder("payment-1:2", "payment-2:1", "payment-3:3"));
+
+        verify(projectionRebuildDao).checkpoint(eq(1), eq("payment-3"), eq(3L));
+        verify(projectionRebuildDao).swapShadowTable(eq(10), any());
+        verify(projectionRebuildDao).dropReplacedTable();
+        verify(projectionRebuildDao).completeRebuild(1);
+    }
+
+    @Test
+    void shouldCatchUpShadowTableBeforeTakingTheSwapLockAndOnlyProjectNewerEventsWhileHoldingIt() {
+        Handle handle = mock(Handle.class);
+        when(projectionRebuildDao.findMaxEventId()).thenReturn(100L, 150L);
+        when(projectionRebuildDao.startRebuild(100L)).thenReturn(new ProjectionRebuild(4, 100L, null, 0));
+        when(projectionRebuildDao.findResourcesWithEventsAfter(ProjectionRebuildDao.SHADOW_TABLE, 100L))
+                .thenReturn(List.of("payment-1"));
+        when(projectionRebuildDao.findResourcesWithEventsAfter(handle, ProjectionRebuildDao.SHADOW_TABLE, 150L))
+                .thenReturn(List.of("payment-2"));
+        when(transactionProjector.project(anyString())).thenAnswer(invocation -> Optional.of(aTransactionFixture()
+                .withExternalId(invocation.getArgument(0))
+                .toEntity()));
+        doAnswer(invocation -> {
+            Consumer<Handle> catchUp = invocation.getArgument(1);
+            catchUp.accept(handle);
+            return 150L;
+        }).when(projectionRebuildDao).swapShadowTable(eq(10), any());
+        when(projectionRebuildDao.findResourcesWithEventsAfter(150L)).thenReturn(List.of());
+
+        projectionRebuilder.rebuild(options(false, true));
+
+        InOrder inOrder = inOrder(projectionRebuildDao);
+        inOrder.verify(projectionRebuildDao).insertIntoShadowTable(transactionsCaptor.capture());
+        inOrder.verify(projectionRebuildDao).swapShadowTable(eq(10), any());
+        assertThat(transactionsCaptor.getValue().get(0).getExternalId(), is("payment-1"));
+
+        verify(projectionRebuildDao).insertIntoShadowTable(eq(handle), transactionsCaptor.capture());
+        assertThat(transactionsCaptor.getValue().get(0).getExternalId(), is("payment-2"));
+    }
+
+    @Test
+    void shouldResumeFromLastCheckpointedResource() {
+        when(projectionRebuildDao.findIncompleteRebuild())
+                .thenReturn(Optional.of(new ProjectionRebuild(2, 50L, "payment-5", 5)));
+
+        projectionRebuilder.rebuild(options(true, true));
+
+        verify(projectionRebuildDao, never()).dropShadowTable();
+        verify(projectionRebuildDao).createShadowTable();
+        verify(projectionRebuildDao).streamTransactionEvents(eq("payment-5"), eq(50L), anyInt(), any());
+        verify(projectionRebuildDao).completeRebuild(2);
+    }
+
+    @Test
+    void shouldNotSwapOrCompleteRebuildWhenSwapIsSkipped() {
+        when(projectionRebuildDao.findMaxEventId()).thenReturn(100L);
+        when(projectionRebuildDao.startRebuild(100L)).thenReturn(new ProjectionRebuild(3, 100L, null, 0));
+
+        projectionRebuilder.rebuild(options(false, false));
+
+        verify(projectionRebuildDao, never()).swapShadowTable(anyInt(), any());
+        verify(projectionRebuildDao, never()).dropReplacedTable();
+        verify(projectionRebuildDao, never()).completeRebuild(anyInt());
+    }
+
+    @Test
+    void shouldRefuseToStartWhenAnEarlierSwapLeftItsReplacedTableBehind() {
+        when(projectionRebuildDao.findLeftoversOfSwap())
+                .thenReturn(List.of("transaction_pre_rebuild", "transaction_pkey_pre_rebuild"));
+
+        ProjectionRebuildException exception = assertThrows(ProjectionRebuildException.class,
+                () -> projectionRebuilder.rebuild(options(false, true)));
+
+        assertThat(exception.getMessage(), containsString("transaction_pre_rebuild, transaction_pkey_pre_rebuild"));
+        verify(projectionRebuildDao, never()).startRebuild(anyLong());
+        verify(projectionRebuildDao, never()).createShadowTable();
+    }
+
+    private void streamEvents(List<Event> events) {
+        doAnswer(invocation -> {
+            Consumer<Event> consumer = invocation.getArgument(3);
+            events.forEach(consumer);
+            return null;
+        }).when(projectionRebuildDao).streamTransactionEvents(any(), anyLong(), anyInt(), any());
+    }
+
+    private Event anEvent(String resourceExternalId) {
+        return anEventFixture().withResourceExternalId(resourceExternalId).toEntity();
+    }
+
+    private ProjectionRebuildOptions options(boolean resume, boolean swap) {
+        return new ProjectionRebuildOptions(2, 2, 100, 0, resume, swap, 10);
+    }
+}
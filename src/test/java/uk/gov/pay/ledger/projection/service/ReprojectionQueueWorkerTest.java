@@ -0,0 +1,102 @@
+package uk.gov.pay.ledger.projection.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.BulkEventIngestConfig;
+import uk.gov.pay.ledger.event.model.Event;
+import uk.gov.pay.ledger.event.model.ResourceType;
+import uk.gov.pay.ledger.event.service.EventService;
+import uk.gov.pay.ledger.projection.dao.ReprojectionQueueDao;
+import uk.gov.pay.ledger.projection.model.ReprojectionQueueEntry;
+import uk.gov.pay.ledger.queue.EventDigestHandler;
+import uk.gov.pay.ledger.transaction.service.TransactionMetadataService;
+import uk.gov.pay.ledger.util.fixture.EventFixture;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReprojectionQueueWorkerTest {
+
+    @Mock
+    private ReprojectionQueueDao reprojectionQueueDao;
+    @Mock
+    private EventService eventService;
+    @Mock
+    private EventDigestHandler eventDigestHandler;
+    @Mock
+    private TransactionMetadataService transactionMetadataService;
+    @Mock
+    private LedgerConfig ledgerConfig;
+    @Mock
+    private BulkEventIngestConfig bulkEventIngestConfig;
+
+    private Set<String> failedExternalIds;
+    private ReprojectionQueueWorker reprojectionQueueWorker;
+
+    @BeforeEach
+    void setUp() {
+        when(ledgerConfig.getBulkEventIngestConfig()).thenReturn(bulkEventIngestConfig);
+        when(bulkEventIngestConfig.getReprojectionBatchSize()).thenReturn(10);
+        reprojectionQueueWorker = new ReprojectionQueueWorker(reprojectionQueueDao, eventService, eventDigestHandler,
+                transactionMetadataService, new MetricRegistry(), ledgerConfig);
+    }
+
+    @Test
+    void shouldProjectPaymentsBeforeRefundsAndReportFailures() {
+        Event refundEvent = anEvent("refund-id", ResourceType.REFUND);
+        Event latestPaymentEvent = anEvent("payment-id", ResourceType.PAYMENT);
+        Event earlierPaymentEvent = anEvent("payment-id", ResourceType.PAYMENT);
+        Event failingPaymentEvent = anEvent("failing-payment-id", ResourceType.PAYMENT);
+        when(eventService.getEventsForResource("refund-id")).thenReturn(List.of(refundEvent));
+        when(eventService.getEventsForResource("payment-id")).thenReturn(List.of(latestPaymentEvent, earlierPaymentEvent));
+        when(eventService.getEventsForResource("failing-payment-id")).thenReturn(List.of(failingPaymentEvent));
+        lenient().doThrow(new RuntimeException("projection failed")).when(eventDigestHandler).processEvent(failingPaymentEvent);
+        givenQueuedEntries(List.of(
+                new ReprojectionQueueEntry("refund-id", ResourceType.REFUND, 0, 0),
+                new ReprojectionQueueEntry("payment-id", ResourceType.PAYMENT, 0, 0),
+                new ReprojectionQueueEntry("failing-payment-id", ResourceType.PAYMENT, 2, 0)));
+
+        int processed = reprojectionQueueWorker.processBatch();
+
+        assertThat(processed, is(3));
+        assertThat(failedExternalIds, is(Set.of("failing-payment-id")));
+        InOrder inOrder = inOrder(eventDigestHandler);
+        inOrder.verify(eventDigestHandler).processEvent(latestPaymentEvent);
+        inOrder.verify(eventDigestHandler).processEvent(refundEvent);
+        verify(transactionMetadataService).upsertMetadataFor(earlierPaymentEvent);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenQueuedEntries(List<ReprojectionQueueEntry> entries) {
+        when(reprojectionQueueDao.processBatch(anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            Function<List<ReprojectionQueueEntry>, Set<String>> processor = invocation.getArgument(2);
+            failedExternalIds = processor.apply(entries);
+            return entries.size();
+        });
+    }
+
+    private Event anEvent(String resourceExternalId, ResourceType resourceType) {
+        return EventFixture.anEventFixture()
+                .withResourceExternalId(resourceExternalId)
+                .withResourceType(resourceType)
+                .toEntity();
+    }
+}
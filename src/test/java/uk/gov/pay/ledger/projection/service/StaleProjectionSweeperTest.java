@@ -0,0 +1,93 @@
+package uk.gov.pay.ledger.projection.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.ProjectionSweeperConfig;
+import uk.gov.pay.ledger.projection.dao.StaleProjectionDao;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StaleProjectionSweeperTest {
+
+    @Mock
+    private StaleProjectionDao staleProjectionDao;
+    @Mock
+    private ReprojectionService reprojectionService;
+    @Mock
+    private LedgerConfig ledgerConfig;
+    @Mock
+    private ProjectionSweeperConfig projectionSweeperConfig;
+
+    private static final Duration RESTART_DELAY = Duration.ofMinutes(1440);
+
+    private StaleProjectionSweeper staleProjectionSweeper;
+
+    @BeforeEach
+    void setUp() {
+        when(ledgerConfig.getProjectionSweeperConfig()).thenReturn(projectionSweeperConfig);
+        when(projectionSweeperConfig.getIdRangeSize()).thenReturn(100);
+        when(projectionSweeperConfig.getMaxReprojectionsPerSecond()).thenReturn(1000);
+        when(projectionSweeperConfig.getRestartDelayInMinutes()).thenReturn(1440);
+        staleProjectionSweeper = new StaleProjectionSweeper(staleProjectionDao, reprojectionService, ledgerConfig);
+    }
+
+    @Test
+    void shouldReprojectStaleRowsInTheIdRangesItClaims() {
+        when(staleProjectionDao.findMaxTransactionId()).thenReturn(250L);
+        when(staleProjectionDao.findMaxPayoutId()).thenReturn(50L);
+        when(staleProjectionDao.claimIdRange("transaction", ProjectionVersion.TRANSACTION, 250L, 100, RESTART_DELAY))
+                .thenReturn(Optional.of(0L), Optional.of(200L));
+        when(staleProjectionDao.claimIdRange("payout", ProjectionVersion.PAYOUT, 50L, 100, RESTART_DELAY))
+                .thenReturn(Optional.of(0L), Optional.empty());
+        when(staleProjectionDao.findStaleTransactionExternalIds(0, 100, ProjectionVersion.TRANSACTION))
+                .thenReturn(List.of("transaction-1", "transaction-2"));
+        when(staleProjectionDao.findStaleTransactionExternalIds(200, 300, ProjectionVersion.TRANSACTION))
+                .thenReturn(List.of("transaction-3"));
+        when(staleProjectionDao.findStalePayoutGatewayPayoutIds(0, 100, ProjectionVersion.PAYOUT))
+                .thenReturn(List.of("payout-1"));
+
+        staleProjectionSweeper.sweep();
+        staleProjectionSweeper.sweep();
+
+        verify(reprojectionService).reprojectTransaction("transaction-1");
+        verify(reprojectionService).reprojectTransaction("transaction-2");
+        verify(reprojectionService).reprojectTransaction("transaction-3");
+        verify(reprojectionService).reprojectPayout("payout-1");
+        verify(staleProjectionDao, never()).findStaleTransactionExternalIds(100, 200, ProjectionVersion.TRANSACTION);
+        verify(staleProjectionDao).completeSweep("payout", ProjectionVersion.PAYOUT, 50L);
+    }
+
+    @Test
+    void shouldNotScanAgain_whenThePassHasReachedTheEndOfTheTable() {
+        when(staleProjectionDao.findMaxTransactionId()).thenReturn(100L);
+        when(staleProjectionDao.findMaxPayoutId()).thenReturn(0L);
+        when(staleProjectionDao.claimIdRange(anyString(), anyInt(), anyLong(), anyInt(), any()))
+                .thenReturn(Optional.empty());
+
+        staleProjectionSweeper.sweep();
+        staleProjectionSweeper.sweep();
+        staleProjectionSweeper.sweep();
+
+        verify(staleProjectionDao, never()).findStaleTransactionExternalIds(anyLong(), anyLong(), anyInt());
+        verify(staleProjectionDao, never()).findStalePayoutGatewayPayoutIds(anyLong(), anyLong(), anyInt());
+        verify(reprojectionService, never()).reprojectTransaction(anyString());
+        verify(staleProjectionDao, times(3)).completeSweep("transaction", ProjectionVersion.TRANSACTION, 100L);
+    }
+}
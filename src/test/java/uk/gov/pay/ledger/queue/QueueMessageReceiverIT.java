@@ -1,5 +1,6 @@
 package uk.gov.pay.ledger.queue;
 
+import com.codahale.metrics.MetricRegistry;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,6 +10,7 @@ import uk.gov.pay.ledger.event.model.ResourceType;
 import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
 import com.google.gson.Gson;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchTemplateCache;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.util.fixture.QueuePaymentEventFixture;
 
@@ -32,7 +34,7 @@ public class QueueMessageReceiverIT {
             config("queueMessageReceiverConfig.backgroundProcessingEnabled", "true")
     );
 
-    TransactionDao transactionDao = new TransactionDao(rule.getJdbi());
+    TransactionDao transactionDao = new TransactionDao(rule.getJdbi(), new TransactionSearchTemplateCache(new MetricRegistry()));
 
     private static final ZonedDateTime CREATED_AT = ZonedDateTime.parse("2019-06-07T08:46:01.123456Z");
 
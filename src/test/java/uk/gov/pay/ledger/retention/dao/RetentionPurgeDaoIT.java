@@ -0,0 +1,79 @@
+package uk.gov.pay.ledger.retention.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+public class RetentionPurgeDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private static final ZonedDateTime CUTOFF_DATE = ZonedDateTime.parse("2020-01-01T00:00:00Z");
+
+    private final RetentionPurgeDao retentionPurgeDao = new RetentionPurgeDao(rule.getJdbi());
+
+    @BeforeEach
+    public void setUp() {
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
+    }
+
+    @Test
+    public void shouldFindExpiredPaymentsWithoutRecentRefundsAndOrphanRefunds() {
+        ZonedDateTime expired = CUTOFF_DATE.minusDays(1);
+        aTransactionFixture().withId(1L).withExternalId("expired-payment")
+                .withCreatedDate(expired).insert(rule.getJdbi());
+        aTransactionFixture().withId(2L).withExternalId("expired-refund").withParentExternalId("expired-payment")
+                .withTransactionType("REFUND").withCreatedDate(expired).insert(rule.getJdbi());
+        aTransactionFixture().withId(3L).withExternalId("payment-with-recent-refund")
+                .withCreatedDate(expired).insert(rule.getJdbi());
+        aTransactionFixture().withId(4L).withExternalId("recent-refund").withParentExternalId("payment-with-recent-refund")
+                .withTransactionType("REFUND").withCreatedDate(CUTOFF_DATE.plusDays(1)).insert(rule.getJdbi());
+        aTransactionFixture().withId(5L).withExternalId("orphan-refund").withParentExternalId("purged-payment")
+                .withTransactionType("REFUND").withCreatedDate(expired).insert(rule.getJdbi());
+        aTransactionFixture().withId(6L).withExternalId("recent-payment")
+                .withCreatedDate(CUTOFF_DATE.plusDays(1)).insert(rule.getJdbi());
+
+        assertThat(retentionPurgeDao.findPurgeableTransactionIds(0, CUTOFF_DATE, 10), is(List.of(1L, 5L)));
+        assertThat(retentionPurgeDao.findPurgeableTransactionIds(1, CUTOFF_DATE, 1), is(List.of(5L)));
+    }
+
+    @Test
+    public void shouldPurgeAPaymentTogetherWithItsRefunds() {
+        ZonedDateTime expired = CUTOFF_DATE.minusDays(1);
+        aTransactionFixture().withId(1L).withExternalId("expired-payment")
+                .withCreatedDate(expired).insert(rule.getJdbi());
+        aTransactionFixture().withId(2L).withExternalId("expired-refund").withParentExternalId("expired-payment")
+                .withTransactionType("REFUND").withCreatedDate(expired).insert(rule.getJdbi());
+
+        assertThat(retentionPurgeDao.purgeTransactions(List.of(1L), true).getTransactions(), is(2L));
+        assertThat(aDatabaseTestHelper(rule.getJdbi()).getAllTransactions().size(), is(2));
+        assertThat(aDatabaseTestHelper(rule.getJdbi()).getTransactionSearchRowsCount(), is(2));
+
+        assertThat(retentionPurgeDao.purgeTransactions(List.of(1L), false).getTransactions(), is(2L));
+        assertThat(aDatabaseTestHelper(rule.getJdbi()).getAllTransactions().size(), is(0));
+        assertThat(aDatabaseTestHelper(rule.getJdbi()).getTransactionSearchRowsCount(), is(0));
+    }
+
+    @Test
+    public void shouldNotRunAPurge_whileAnotherHoldsThePurgeLock() {
+        AtomicBoolean nestedPurgeRan = new AtomicBoolean();
+
+        boolean ran = retentionPurgeDao.runWithPurgeLock(() ->
+                assertThat(retentionPurgeDao.runWithPurgeLock(() -> nestedPurgeRan.set(true)), is(false)));
+
+        assertThat(ran, is(true));
+        assertThat(nestedPurgeRan.get(), is(false));
+        assertThat(retentionPurgeDao.runWithPurgeLock(() -> {}), is(true));
+    }
+}
@@ -0,0 +1,29 @@
+package uk.gov.pay.ledger.retention.service;
+
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.retention.model.DatabaseLoad;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class PurgeThrottleTest {
+
+    @Test
+    void shouldDoublePauseWhileDatabaseIsUnderLoadAndStepDownOnceRecovered() {
+        PurgeThrottle throttle = new PurgeThrottle(100, 1000, 10, 5);
+
+        assertThat(throttle.nextPause(new DatabaseLoad(30, 0)), is(200L));
+        assertThat(throttle.nextPause(new DatabaseLoad(0, 6)), is(400L));
+        assertThat(throttle.nextPause(new DatabaseLoad(30, 0)), is(800L));
+        assertThat(throttle.nextPause(new DatabaseLoad(30, 0)), is(1000L));
+        assertThat(throttle.nextPause(new DatabaseLoad(0, 0)), is(900L));
+        assertThat(throttle.nextPause(new DatabaseLoad(0, 0)), is(800L));
+    }
+
+    @Test
+    void shouldNotPauseBelowMinimum() {
+        PurgeThrottle throttle = new PurgeThrottle(100, 1000, 10, 5);
+
+        assertThat(throttle.nextPause(new DatabaseLoad(0, 0)), is(100L));
+    }
+}
@@ -0,0 +1,111 @@
+package uk.gov.pay.ledger.retention.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.app.LedgerConfig;
+import uk.gov.pay.ledger.app.config.RetentionPurgeConfig;
+import uk.gov.pay.ledger.retention.dao.RetentionPurgeDao;
+import uk.gov.pay.ledger.retention.model.DatabaseLoad;
+import uk.gov.pay.ledger.retention.model.PurgeResult;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionPurgerTest {
+
+    private static final Instant NOW = Instant.parse("2020-06-01T00:00:00Z");
+    private static final ZonedDateTime CUTOFF_DATE = ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC).minusDays(30);
+
+    @Mock
+    private RetentionPurgeDao retentionPurgeDao;
+    @Mock
+    private LedgerConfig ledgerConfig;
+    @Mock
+    private RetentionPurgeConfig retentionPurgeConfig;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @BeforeEach
+    void setUp() {
+        when(ledgerConfig.getRetentionPurgeConfig()).thenReturn(retentionPurgeConfig);
+        lenient().when(retentionPurgeConfig.getRetentionPeriodInDays()).thenReturn(30);
+        lenient().when(retentionPurgeConfig.getChunkSize()).thenReturn(2);
+        lenient().when(retentionPurgeConfig.getMaxRunDurationInMinutes()).thenReturn(10);
+        lenient().when(retentionPurgeConfig.getMaxReplicationLagInSeconds()).thenReturn(10.0);
+        lenient().when(retentionPurgeConfig.getMaxLockWaitingSessions()).thenReturn(5L);
+        lenient().when(retentionPurgeDao.findDatabaseLoad()).thenReturn(new DatabaseLoad(0, 0));
+        lenient().when(retentionPurgeDao.runWithPurgeLock(any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return true;
+        });
+    }
+
+    @Test
+    void shouldPurgeTransactionsAndPayoutsInIdOrderedChunks() {
+        when(retentionPurgeDao.findPurgeableTransactionIds(0, CUTOFF_DATE, 2)).thenReturn(List.of(3L, 7L));
+        when(retentionPurgeDao.findPurgeableTransactionIds(7, CUTOFF_DATE, 2)).thenReturn(List.of(9L));
+        when(retentionPurgeDao.findPurgeableTransactionIds(9, CUTOFF_DATE, 2)).thenReturn(List.of());
+        when(retentionPurgeDao.findPurgeablePayoutIds(0, CUTOFF_DATE, 2)).thenReturn(List.of(1L));
+        when(retentionPurgeDao.findPurgeablePayoutIds(1, CUTOFF_DATE, 2)).thenReturn(List.of());
+        when(retentionPurgeDao.purgeTransactions(List.of(3L, 7L), false)).thenReturn(new PurgeResult(3, 4, 0, 12));
+        when(retentionPurgeDao.purgeTransactions(List.of(9L), false)).thenReturn(new PurgeResult(1, 0, 0, 3));
+        when(retentionPurgeDao.purgePayouts(List.of(1L), false)).thenReturn(new PurgeResult(0, 0, 1, 2));
+
+        retentionPurger().purge();
+
+        assertThat(metricRegistry.counter("retention-purge.transactions").getCount(), is(4L));
+        assertThat(metricRegistry.counter("retention-purge.transaction-metadata").getCount(), is(4L));
+        assertThat(metricRegistry.counter("retention-purge.payouts").getCount(), is(1L));
+        assertThat(metricRegistry.counter("retention-purge.events").getCount(), is(17L));
+    }
+
+    @Test
+    void shouldOnlyCountRowsInDryRun() {
+        when(retentionPurgeConfig.isDryRun()).thenReturn(true);
+        when(retentionPurgeDao.findPurgeableTransactionIds(0, CUTOFF_DATE, 2)).thenReturn(List.of(3L));
+        when(retentionPurgeDao.findPurgeableTransactionIds(3, CUTOFF_DATE, 2)).thenReturn(List.of());
+        when(retentionPurgeDao.findPurgeablePayoutIds(0, CUTOFF_DATE, 2)).thenReturn(List.of());
+        when(retentionPurgeDao.purgeTransactions(List.of(3L), true)).thenReturn(new PurgeResult(2, 0, 0, 5));
+
+        retentionPurger().purge();
+
+        verify(retentionPurgeDao, never()).purgeTransactions(anyList(), eq(false));
+        assertThat(metricRegistry.counter("retention-purge.dry-run.transactions").getCount(), is(2L));
+        assertThat(metricRegistry.counter("retention-purge.transactions").getCount(), is(0L));
+    }
+
+    @Test
+    void shouldNotPurge_whenAnotherInstanceHoldsThePurgeLock() {
+        doReturn(false).when(retentionPurgeDao).runWithPurgeLock(any(Runnable.class));
+
+        retentionPurger().purge();
+
+        verify(retentionPurgeDao, never()).findPurgeableTransactionIds(anyLong(), any(ZonedDateTime.class), anyInt());
+        verify(retentionPurgeDao, never()).findPurgeablePayoutIds(anyLong(), any(ZonedDateTime.class), anyInt());
+    }
+
+    private RetentionPurger retentionPurger() {
+        return new RetentionPurger(retentionPurgeDao, metricRegistry, ledgerConfig, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+}
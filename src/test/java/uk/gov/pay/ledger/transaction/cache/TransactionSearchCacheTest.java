@@ -0,0 +1,131 @@
+package uk.gov.pay.ledger.transaction.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchVersionDao;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
+import uk.gov.pay.ledger.util.pagination.SearchLinkBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionSearchCacheTest {
+
+    @Mock
+    private TransactionSearchVersionDao mockVersionDao;
+
+    private final SearchLinkBuilder searchLinkBuilder = new SearchLinkBuilder(URI.create("http://app.com/"),
+            URI.create("http://app.com/v1/transaction"));
+    private MetricRegistry metricRegistry;
+    private TransactionSearchCache searchCache;
+
+    @BeforeEach
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        lenient().when(mockVersionDao.findVersions(anyList())).thenReturn(Map.of());
+        searchCache = new TransactionSearchCache(1024, Duration.ofMinutes(1), mockVersionDao, metricRegistry);
+    }
+
+    @Test
+    public void shouldBuildSameKey_whenSearchesDifferOnlyInListOrder() {
+        TransactionSearchParams first = searchParams(List.of("1", "2"), "visa,master-card");
+        TransactionSearchParams second = searchParams(List.of("2", "1"), "master-card,visa");
+
+        assertThat(searchCache.keyFor(first, searchLinkBuilder), is(searchCache.keyFor(second, searchLinkBuilder)));
+    }
+
+    @Test
+    public void shouldChangeKeyOnlyForSearchesOfAccountWithWrite() {
+        String accountOneKey = searchCache.keyFor(searchParams(List.of("1"), null), searchLinkBuilder);
+        String accountTwoKey = searchCache.keyFor(searchParams(List.of("2"), null), searchLinkBuilder);
+        String allAccountsKey = searchCache.keyFor(new TransactionSearchParams(), searchLinkBuilder);
+
+        when(mockVersionDao.findVersions(List.of("1"))).thenReturn(Map.of("1", 7L));
+        when(mockVersionDao.findAllAccountsVersion()).thenReturn(7L);
+
+        assertThat(searchCache.keyFor(searchParams(List.of("1"), null), searchLinkBuilder), is(not(accountOneKey)));
+        assertThat(searchCache.keyFor(searchParams(List.of("2"), null), searchLinkBuilder), is(accountTwoKey));
+        assertThat(searchCache.keyFor(new TransactionSearchParams(), searchLinkBuilder), is(not(allAccountsKey)));
+    }
+
+    @Test
+    public void shouldReadVersionsOfEachAccountSearchedOnce() {
+        searchCache.keyFor(searchParams(List.of("2", "1", "2"), null), searchLinkBuilder);
+
+        verify(mockVersionDao).findVersions(List.of("1", "2"));
+    }
+
+    @Test
+    public void shouldBumpTheAccountVersion_whenAccountIsWritten() {
+        searchCache.invalidateAccount("1");
+
+        verify(mockVersionDao).bumpVersion("1");
+    }
+
+    @Test
+    public void shouldNotReturnResponseCachedBeforeWriteToAccount() {
+        TransactionSearchResponse response = new TransactionSearchResponse(0L, 0L, 1L, List.of());
+        String key = searchCache.keyFor(searchParams(List.of("1"), null), searchLinkBuilder);
+        searchCache.put(key, response);
+
+        assertThat(searchCache.get(searchCache.keyFor(searchParams(List.of("1"), null), searchLinkBuilder)).get(), is(response));
+
+        when(mockVersionDao.findVersions(List.of("1"))).thenReturn(Map.of("1", 1L));
+
+        assertThat(searchCache.get(searchCache.keyFor(searchParams(List.of("1"), null), searchLinkBuilder)).isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldReportHitRatioAndEstimatedSize() {
+        String key = searchCache.keyFor(searchParams(List.of("1"), null), searchLinkBuilder);
+        searchCache.get(key);
+        searchCache.put(key, new TransactionSearchResponse(0L, 0L, 1L, List.of()));
+        searchCache.get(key);
+
+        assertThat(gauge("transaction-search-cache.hit-ratio"), is(0.5));
+        assertThat(gauge("transaction-search-cache.estimated-kilobytes"), is(1L));
+    }
+
+    @Test
+    public void shouldNotCache_whenDisabled() {
+        TransactionSearchCache disabledCache = TransactionSearchCache.disabled();
+        String key = disabledCache.keyFor(searchParams(List.of("1"), null), searchLinkBuilder);
+        disabledCache.put(key, new TransactionSearchResponse(0L, 0L, 1L, List.of()));
+
+        disabledCache.invalidateAccount("1");
+
+        assertThat(disabledCache.isEnabled(), is(false));
+        assertThat(disabledCache.get(key).isPresent(), is(false));
+    }
+
+    private Object gauge(String name) {
+        return ((Gauge<?>) metricRegistry.getGauges().get(name)).getValue();
+    }
+
+    private TransactionSearchParams searchParams(List<String> accountIds, String cardBrands) {
+        TransactionSearchParams searchParams = new TransactionSearchParams();
+        searchParams.setAccountIds(accountIds);
+        if (cardBrands != null) {
+            searchParams.setCardBrands(new CommaDelimitedSetParameter(cardBrands));
+        }
+        return searchParams;
+    }
+}
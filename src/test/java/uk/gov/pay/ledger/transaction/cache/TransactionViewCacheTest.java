@@ -0,0 +1,67 @@
+package uk.gov.pay.ledger.transaction.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TransactionViewCacheTest {
+
+    private MetricRegistry metricRegistry;
+    private TransactionViewCache viewCache;
+
+    @BeforeEach
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        viewCache = new TransactionViewCache(1024, metricRegistry);
+    }
+
+    @Test
+    public void shouldOnlyReturnViewForTheVersionItWasCachedFor() {
+        byte[] view = "{}".getBytes();
+        viewCache.put("external-id", "version-1", view);
+
+        assertThat(viewCache.get("external-id", "version-1").get(), is(view));
+        assertThat(viewCache.get("external-id", "version-2").isPresent(), is(false));
+        assertThat(viewCache.get("other-external-id", "version-1").isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldNotReturnViewAfterTransactionIsInvalidated() {
+        viewCache.put("external-id", "version-1", "{}".getBytes());
+
+        viewCache.invalidate("external-id");
+
+        assertThat(viewCache.get("external-id", "version-1").isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldReportHitRatioAndSize() {
+        viewCache.get("external-id", "version-1");
+        viewCache.put("external-id", "version-1", new byte[1536]);
+        viewCache.get("external-id", "version-1");
+
+        assertThat(gauge("transaction-view-cache.hit-ratio"), is(0.5));
+        assertThat(gauge("transaction-view-cache.kilobytes"), is(2L));
+
+        viewCache.invalidate("external-id");
+
+        assertThat(gauge("transaction-view-cache.kilobytes"), is(0L));
+    }
+
+    @Test
+    public void shouldNotCache_whenDisabled() {
+        TransactionViewCache disabledCache = TransactionViewCache.disabled();
+        disabledCache.put("external-id", "version-1", "{}".getBytes());
+
+        assertThat(disabledCache.isEnabled(), is(false));
+        assertThat(disabledCache.get("external-id", "version-1").isPresent(), is(false));
+    }
+
+    private Object gauge(String name) {
+        return ((Gauge<?>) metricRegistry.getGauges().get(name)).getValue();
+    }
+}
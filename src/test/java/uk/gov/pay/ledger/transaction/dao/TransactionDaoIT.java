@@ -1,18 +1,27 @@
 package uk.gov.pay.ledger.transaction.dao;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableMap;
+import io.dropwizard.jackson.Jackson;
+import org.jdbi.v3.core.result.ResultIterator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import uk.gov.pay.commons.model.Source;
 import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.transaction.cache.TransactionSearchCache;
+import uk.gov.pay.ledger.transaction.cache.TransactionViewCache;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.TransactionFactory;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
+import uk.gov.pay.ledger.transaction.search.model.TransactionView;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 import uk.gov.pay.ledger.util.fixture.TransactionFixture;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
@@ -21,6 +30,8 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
 import static uk.gov.pay.ledger.util.fixture.PayoutFixture.PayoutFixtureBuilder.aPayoutFixture;
 import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
 
@@ -29,7 +40,7 @@ public class TransactionDaoIT {
     @RegisterExtension
     public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
 
-    private TransactionDao transactionDao = new TransactionDao(rule.getJdbi());
+    private TransactionDao transactionDao = new TransactionDao(rule.getJdbi(), new TransactionSearchTemplateCache(new MetricRegistry()));
 
     @Test
     public void shouldInsertTransaction() {
@@ -76,6 +87,22 @@ public class TransactionDaoIT {
         assertThat(retrievedTransaction.getSource(), is(Source.CARD_API));
     }
 
+    @Test
+    public void shouldUpsertTransactionWithoutGatewayAccountId_whenItIsProjectedBeforeItsCreationEvent() {
+        TransactionEntity transactionEntity = aTransactionFixture()
+                .withGatewayAccountId(null)
+                .withTransactionType("PAYMENT")
+                .toEntity();
+
+        transactionDao.upsert(transactionEntity);
+        transactionDao.upsert(transactionEntity);
+
+        TransactionEntity retrievedTransaction = transactionDao.findTransactionByExternalId(transactionEntity.getExternalId()).get();
+        assertThat(retrievedTransaction.getGatewayAccountId(), is(nullValue()));
+        Map<String, Object> searchRow = aDatabaseTestHelper(rule.getJdbi()).getTransactionSearchRow(retrievedTransaction.getId());
+        assertThat(searchRow.get("gateway_account_id"), is(nullValue()));
+    }
+
     @Test
     public void shouldRetrieveTransactionByExternalIdAndGatewayAccount() {
         ZonedDateTime paidOutDate = ZonedDateTime.parse("2019-12-12T10:00:00Z");
@@ -223,6 +250,30 @@ public class TransactionDaoIT {
         assertThat(retrievedTransaction.getState(), is(modifiedTransaction.getState()));
     }
 
+    @Test
+    public void shouldCopySearchableColumnsToTransactionSearchOnUpsert() {
+        TransactionEntity transaction = aTransactionFixture()
+                .withState(TransactionState.CREATED)
+                .toEntity();
+        transactionDao.upsert(transaction);
+
+        TransactionEntity modifiedTransaction = aTransactionFixture()
+                .withExternalId(transaction.getExternalId())
+                .withGatewayAccountId(transaction.getGatewayAccountId())
+                .withEventCount(2)
+                .withState(TransactionState.SUBMITTED)
+                .withReference("updated-reference")
+                .toEntity();
+        transactionDao.upsert(modifiedTransaction);
+
+        Long id = transactionDao.findTransactionByExternalId(transaction.getExternalId()).get().getId();
+        Map<String, Object> searchRow = aDatabaseTestHelper(rule.getJdbi()).getTransactionSearchRow(id);
+
+        assertThat(searchRow.get("gateway_account_id"), is(transaction.getGatewayAccountId()));
+        assertThat(searchRow.get("state"), is("SUBMITTED"));
+        assertThat(searchRow.get("reference"), is("updated-reference"));
+    }
+
     @Test
     public void shouldNotOverwriteTransactionIfItConsistsOfFewerEvents() {
         TransactionEntity transaction = aTransactionFixture()
@@ -328,6 +379,177 @@ public class TransactionDaoIT {
         assertThat(transactionEntity.getId(), is(transactionWithParentExternalId.getId()));
     }
 
+    @Test
+    public void findTransactionByParentIdAndGatewayAccountId_shouldReadTheSameViewAsTheFullRow() throws Exception {
+        TransactionEntity payment = aTransactionFixture()
+                .withTransactionType("PAYMENT")
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi())
+                .toEntity();
+        aTransactionFixture()
+                .withTransactionType("REFUND")
+                .withGatewayAccountId(payment.getGatewayAccountId())
+                .withParentExternalId(payment.getExternalId())
+                .withCardBrandLabel("Visa")
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi());
+
+        TransactionEntity listRow = transactionDao.findTransactionByParentIdAndGatewayAccountId(
+                payment.getExternalId(), payment.getGatewayAccountId()).get(0);
+        TransactionEntity fullRow = transactionDao.findTransactionByExternalId(listRow.getExternalId()).get();
+
+        assertThat(listRow.getTransactionDetails(), is(nullValue()));
+        assertThat(toViewJson(listRow), is(toViewJson(fullRow)));
+    }
+
+    private String toViewJson(TransactionEntity entity) throws Exception {
+        var objectMapper = Jackson.newObjectMapper();
+        var transaction = new TransactionFactory(objectMapper).createTransactionEntity(entity);
+        return objectMapper.writeValueAsString(TransactionView.from(transaction, 1));
+    }
+
+    @Test
+    public void findPaymentsByGatewayTransactionIdsAndPaymentProvider_shouldReturnNewestPaymentForEachId() {
+        String gatewayTransactionId = randomAlphanumeric(20);
+        String otherGatewayTransactionId = randomAlphanumeric(20);
+        aTransactionFixture()
+                .withTransactionType("PAYMENT")
+                .withPaymentProvider("stripe")
+                .withGatewayTransactionId(gatewayTransactionId)
+                .withCreatedDate(ZonedDateTime.parse("2019-12-10T10:00:00Z"))
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi());
+        TransactionEntity newestPayment = aTransactionFixture()
+                .withTransactionType("PAYMENT")
+                .withPaymentProvider("stripe")
+                .withGatewayTransactionId(gatewayTransactionId)
+                .withCreatedDate(ZonedDateTime.parse("2019-12-12T10:00:00Z"))
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi())
+                .toEntity();
+        aTransactionFixture()
+                .withTransactionType("PAYMENT")
+                .withPaymentProvider("sandbox")
+                .withGatewayTransactionId(otherGatewayTransactionId)
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi());
+        aTransactionFixture()
+                .withTransactionType("REFUND")
+                .withPaymentProvider("stripe")
+                .withGatewayTransactionId(otherGatewayTransactionId)
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi());
+
+        List<TransactionEntity> payments = transactionDao.findPaymentsByGatewayTransactionIdsAndPaymentProvider(
+                List.of(gatewayTransactionId, otherGatewayTransactionId), "STRIPE");
+
+        assertThat(payments.size(), is(1));
+        assertThat(payments.get(0).getExternalId(), is(newestPayment.getExternalId()));
+    }
+
+    @Test
+    public void findTransactionVersion_shouldReadTheEventCountAndProjectionVersionForTheGatewayAccount() {
+        TransactionEntity transaction = aTransactionFixture()
+                .withEventCount(4)
+                .insert(rule.getJdbi())
+                .toEntity();
+
+        TransactionEntity version = transactionDao.findTransactionVersion(transaction.getExternalId(),
+                transaction.getGatewayAccountId(), null, null).get();
+
+        assertThat(version.getExternalId(), is(transaction.getExternalId()));
+        assertThat(version.getEventCount(), is(4));
+        assertThat(version.getProjectionVersion(), is(transaction.getProjectionVersion()));
+        assertThat(transactionDao.findTransactionVersion(transaction.getExternalId(), null, null, null).isPresent(), is(true));
+        assertThat(transactionDao.findTransactionVersion(transaction.getExternalId(),
+                transaction.getGatewayAccountId() + "-other", null, null).isPresent(), is(false));
+    }
+
+    @Test
+    public void findTransactionVersion_shouldReadThePaidOutDateOfThePayout() {
+        String gatewayPayoutId = "po_" + randomAlphanumeric(10);
+        ZonedDateTime paidOutDate = ZonedDateTime.parse("2020-05-13T18:45:33.123Z");
+        TransactionEntity transaction = aTransactionFixture()
+                .withGatewayPayoutId(gatewayPayoutId)
+                .insert(rule.getJdbi())
+                .toEntity();
+        aPayoutFixture()
+                .withGatewayAccountId(transaction.getGatewayAccountId())
+                .withGatewayPayoutId(gatewayPayoutId)
+                .withPaidOutDate(paidOutDate)
+                .build()
+                .insert(rule.getJdbi());
+
+        TransactionEntity version = transactionDao.findTransactionVersion(transaction.getExternalId(),
+                transaction.getGatewayAccountId(), null, null).get();
+
+        assertThat(version.getPayoutEntity().get().getPaidOutDate().toInstant(), is(paidOutDate.toInstant()));
+    }
+
+    @Test
+    public void upsert_shouldDropTheCachedViewOfTheTransaction() {
+        TransactionViewCache viewCache = new TransactionViewCache(1024, new MetricRegistry());
+        TransactionDao cachingTransactionDao = new TransactionDao(rule.getJdbi(), TransactionSearchCache.disabled(),
+                viewCache, new TransactionSearchTemplateCache(new MetricRegistry()), Integer.MAX_VALUE, null);
+        TransactionEntity transaction = aTransactionFixture()
+                .insert(rule.getJdbi())
+                .toEntity();
+        viewCache.put(transaction.getExternalId(), "version-1", "{}".getBytes());
+
+        cachingTransactionDao.upsert(transaction);
+
+        assertThat(viewCache.get(transaction.getExternalId(), "version-1").isPresent(), is(false));
+    }
+
+    @Test
+    public void findTransactionVersionsByExternalOrParentIdAndGatewayAccountId_shouldIncludeChildTransactions() {
+        TransactionEntity payment = aTransactionFixture()
+                .insert(rule.getJdbi())
+                .toEntity();
+        TransactionEntity refund = aTransactionFixture()
+                .withGatewayAccountId(payment.getGatewayAccountId())
+                .withParentExternalId(payment.getExternalId())
+                .withTransactionType("REFUND")
+                .insert(rule.getJdbi())
+                .toEntity();
+
+        List<TransactionEntity> versions = transactionDao.findTransactionVersionsByExternalOrParentIdAndGatewayAccountId(
+                payment.getExternalId(), payment.getGatewayAccountId());
+
+        assertThat(versions.stream().map(TransactionEntity::getExternalId).collect(Collectors.toList()),
+                containsInAnyOrder(payment.getExternalId(), refund.getExternalId()));
+    }
+
+    @Test
+    public void streamTransactionsByExternalIds_shouldReturnTransactionsInTheGatewayAccount() {
+        TransactionEntity transaction = aTransactionFixture()
+                .insert(rule.getJdbi())
+                .toEntity();
+        TransactionEntity otherTransaction = aTransactionFixture()
+                .withGatewayAccountId(transaction.getGatewayAccountId())
+                .insert(rule.getJdbi())
+                .toEntity();
+        TransactionEntity transactionInOtherAccount = aTransactionFixture()
+                .withGatewayAccountId(transaction.getGatewayAccountId() + "-other")
+                .insert(rule.getJdbi())
+                .toEntity();
+        List<String> externalIds = List.of(transaction.getExternalId(), otherTransaction.getExternalId(),
+                transactionInOtherAccount.getExternalId(), "not-a-transaction");
+
+        List<String> forAccount = new ArrayList<>();
+        try (ResultIterator<TransactionEntity> rows = transactionDao.streamTransactionsByExternalIds(externalIds, transaction.getGatewayAccountId())) {
+            rows.forEachRemaining(row -> forAccount.add(row.getExternalId()));
+        }
+        List<String> forAnyAccount = new ArrayList<>();
+        try (ResultIterator<TransactionEntity> rows = transactionDao.streamTransactionsByExternalIds(externalIds, null)) {
+            rows.forEachRemaining(row -> forAnyAccount.add(row.getExternalId()));
+        }
+
+        assertThat(forAccount, containsInAnyOrder(transaction.getExternalId(), otherTransaction.getExternalId()));
+        assertThat(forAnyAccount, containsInAnyOrder(transaction.getExternalId(), otherTransaction.getExternalId(),
+                transactionInOtherAccount.getExternalId()));
+    }
+
     @Test
     public void findTransactionByParentId_shouldFilterByParentExternalId() {
         String payOutId = randomAlphanumeric(20);
@@ -1,28 +1,39 @@
 package uk.gov.pay.ledger.transaction.dao;
 
 
+import com.codahale.metrics.MetricRegistry;
 import org.hamcrest.Matchers;
+import org.jdbi.v3.core.result.ResultIterator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.transaction.cache.TransactionSearchCache;
+import uk.gov.pay.ledger.transaction.cache.TransactionViewCache;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregate;
 import uk.gov.pay.ledger.transaction.model.TransactionType;
+import uk.gov.pay.ledger.transaction.search.common.AggregateGroupBy;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
 import uk.gov.pay.ledger.util.DatabaseTestHelper;
 import uk.gov.pay.ledger.util.fixture.TransactionFixture;
 
+import java.time.Duration;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static java.time.ZonedDateTime.now;
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
 import static org.apache.commons.lang3.RandomUtils.nextLong;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertTrue;
 import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
 import static uk.gov.pay.ledger.util.fixture.PayoutFixture.PayoutFixtureBuilder.aPayoutFixture;
@@ -43,7 +54,7 @@ public class TransactionDaoSearchIT {
     @BeforeEach
     public void setUp() {
         databaseTestHelper.truncateAllData();
-        transactionDao = new TransactionDao(rule.getJdbi());
+        transactionDao = new TransactionDao(rule.getJdbi(), new TransactionSearchTemplateCache(new MetricRegistry()));
         searchParams = new TransactionSearchParams();
     }
 
@@ -576,6 +587,94 @@ public class TransactionDaoSearchIT {
         assertThat(transactionList.get(1).getExternalId(), is(earlier.getExternalId()));
     }
 
+    @Test
+    public void streamTransactionsReadsTheSamePageAsSearchTransactions() {
+        aPersistedTransactionList("1", 5, rule.getJdbi(), true);
+        searchParams.setAccountIds(List.of("1"));
+        searchParams.setDisplaySize(3L);
+
+        List<Long> streamedIds = new ArrayList<>();
+        try (ResultIterator<TransactionEntity> rows = transactionDao.streamTransactions(searchParams, 3L)) {
+            rows.forEachRemaining(transaction -> streamedIds.add(transaction.getId()));
+        }
+
+        List<Long> searchedIds = transactionDao.searchTransactions(searchParams).stream()
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList());
+        assertThat(streamedIds, is(searchedIds));
+    }
+
+    @Test
+    public void searchesOfManyAccountsMergeToTheSamePagesAsASingleQuery() {
+        ZonedDateTime createdDate = now(ZoneOffset.UTC).minusDays(1);
+        for (int i = 0; i < 30; i++) {
+            aTransactionFixture()
+                    .withGatewayAccountId(String.valueOf(i % 3 + 1))
+                    .withCreatedDate(createdDate.minusMinutes(i * 7 % 30))
+                    .insert(rule.getJdbi());
+        }
+        TransactionDao mergingTransactionDao = new TransactionDao(rule.getJdbi(),
+                TransactionSearchCache.disabled(), TransactionViewCache.disabled(),
+                new TransactionSearchTemplateCache(new MetricRegistry()), 1, Duration.ofSeconds(30));
+        searchParams.setAccountIds(List.of("1", "2", "3"));
+        searchParams.setDisplaySize(4L);
+        searchParams.setPageNumber(3L);
+
+        List<Long> mergedIds = mergingTransactionDao.searchTransactions(searchParams).stream()
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList());
+        List<Long> cursorMergedIds = mergingTransactionDao.cursorTransactionSearch(searchParams, createdDate.minusMinutes(10), Long.MAX_VALUE, 6L).stream()
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList());
+        List<Long> cursorBeforeMergedIds = mergingTransactionDao.cursorTransactionSearchBefore(searchParams, createdDate.minusMinutes(20), 0L, 6L).stream()
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList());
+
+        assertThat(mergedIds, is(transactionDao.cursorTransactionSearch(searchParams, null, null, 12L).stream()
+                .skip(8)
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList())));
+        assertThat(cursorMergedIds, is(transactionDao.cursorTransactionSearch(searchParams, createdDate.minusMinutes(10), Long.MAX_VALUE, 6L).stream()
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList())));
+        assertThat(cursorBeforeMergedIds, is(transactionDao.cursorTransactionSearchBefore(searchParams, createdDate.minusMinutes(20), 0L, 6L).stream()
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList())));
+    }
+
+    @Test
+    public void streamedAndCsvSearchesOfManyAccountsMergeToTheSameRowsAsASingleQuery() {
+        ZonedDateTime createdDate = now(ZoneOffset.UTC).minusDays(1);
+        for (int i = 0; i < 30; i++) {
+            aTransactionFixture()
+                    .withGatewayAccountId(String.valueOf(i % 3 + 1))
+                    .withCreatedDate(createdDate.minusMinutes(i * 7 % 30))
+                    .insert(rule.getJdbi());
+        }
+        TransactionDao mergingTransactionDao = new TransactionDao(rule.getJdbi(),
+                TransactionSearchCache.disabled(), TransactionViewCache.disabled(),
+                new TransactionSearchTemplateCache(new MetricRegistry()), 1, Duration.ofSeconds(30));
+        searchParams.setAccountIds(List.of("1", "2", "3"));
+        searchParams.setDisplaySize(6L);
+
+        List<Long> streamedIds = new ArrayList<>();
+        try (ResultIterator<TransactionEntity> rows = mergingTransactionDao.streamCursorTransactions(searchParams,
+                createdDate.minusMinutes(10), Long.MAX_VALUE, 6L)) {
+            rows.forEachRemaining(transaction -> streamedIds.add(transaction.getId()));
+        }
+        List<TransactionEntity> csvRows = mergingTransactionDao.cursorTransactionSearch(searchParams,
+                createdDate.minusMinutes(10), Long.MAX_VALUE);
+
+        List<TransactionEntity> expectedRows = transactionDao.cursorTransactionSearch(searchParams,
+                createdDate.minusMinutes(10), Long.MAX_VALUE);
+        List<Long> expectedIds = expectedRows.stream()
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList());
+        assertThat(streamedIds, is(expectedIds));
+        assertThat(csvRows.stream().map(TransactionEntity::getId).collect(Collectors.toList()), is(expectedIds));
+        assertThat(csvRows.get(0).getTransactionDetails(), is(expectedRows.get(0).getTransactionDetails()));
+    }
+
     @Test
     public void searchTransactionsByCursor() {
 
@@ -703,6 +802,63 @@ public class TransactionDaoSearchIT {
         assertThat(fourthPage.size(), is(0));
     }
 
+    @Test
+    public void getEstimatedTotalForSearch_shouldReturnPlannerRowEstimate() {
+        aPersistedTransactionList("1", 20, rule.getJdbi(), false);
+        rule.getJdbi().useHandle(handle -> handle.execute("ANALYZE transaction"));
+
+        searchParams.setAccountIds(List.of("1"));
+
+        assertThat(transactionDao.getEstimatedTotalForSearch(searchParams), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void getEstimatedCostForSearch_shouldReturnPlannerCost() {
+        aPersistedTransactionList("1", 20, rule.getJdbi(), false);
+        rule.getJdbi().useHandle(handle -> handle.execute("ANALYZE transaction_search"));
+
+        searchParams.setAccountIds(List.of("1"));
+        searchParams.setEmail("someone");
+
+        assertThat(transactionDao.getEstimatedCostForSearch(searchParams), is(greaterThan(0d)));
+    }
+
+    @Test
+    public void cursorTransactionSearchBefore_shouldPageBackwardsInTheSameOrderAsForwards() {
+        TransactionFixture newest = aTransactionFixture()
+                .withId(10L)
+                .withGatewayAccountId("1")
+                .withCreatedDate(now(ZoneOffset.UTC).minusDays(1))
+                .insert(rule.getJdbi());
+        aTransactionFixture()
+                .withId(20L)
+                .withGatewayAccountId("1")
+                .withCreatedDate(now(ZoneOffset.UTC).minusDays(2))
+                .insert(rule.getJdbi());
+        aTransactionFixture()
+                .withId(30L)
+                .withGatewayAccountId("1")
+                .withCreatedDate(now(ZoneOffset.UTC).minusDays(2))
+                .insert(rule.getJdbi());
+        TransactionFixture oldest = aTransactionFixture()
+                .withId(40L)
+                .withGatewayAccountId("1")
+                .withCreatedDate(now(ZoneOffset.UTC).minusDays(3))
+                .insert(rule.getJdbi());
+
+        searchParams.setAccountIds(List.of("1"));
+
+        List<TransactionEntity> beforeOldest = transactionDao.cursorTransactionSearchBefore(searchParams,
+                oldest.getCreatedDate(), oldest.getId(), 2);
+        List<TransactionEntity> beforeNewest = transactionDao.cursorTransactionSearchBefore(searchParams,
+                newest.getCreatedDate(), newest.getId(), 2);
+
+        assertThat(beforeOldest.size(), is(2));
+        assertThat(beforeOldest.get(0).getId(), is(30L));
+        assertThat(beforeOldest.get(1).getId(), is(20L));
+        assertThat(beforeNewest.size(), is(0));
+    }
+
     @Test
     public void getTotalWithLimitForSearchShouldApplyLimitTotalSizeCorrectly() {
         String gatewayAccountId = "account-id-" + nextLong();
@@ -857,4 +1013,62 @@ public class TransactionDaoSearchIT {
         total = transactionDao.getTotalForSearch(searchParams);
         assertThat(total, is(1L));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldAggregateMatchingTransactions_withoutGrouping() {
+        String gatewayAccountId = "account-id-" + nextLong();
+        aTransactionFixture().withGatewayAccountId(gatewayAccountId).withAmount(1000L).withTotalAmount(1250L)
+                .withFee(50L).withNetAmount(1200L).withState(TransactionState.SUCCESS).insert(rule.getJdbi());
+        aTransactionFixture().withGatewayAccountId(gatewayAccountId).withAmount(500L)
+                .withState(TransactionState.SUCCESS).insert(rule.getJdbi());
+        aTransactionFixture().withGatewayAccountId(gatewayAccountId).withAmount(300L)
+                .withTransactionType("REFUND").withState(TransactionState.SUCCESS).insert(rule.getJdbi());
+        aTransactionFixture().withAmount(9999L).insert(rule.getJdbi());
+
+        searchParams.setAccountIds(List.of(gatewayAccountId));
+
+        List<TransactionAggregate> aggregates = transactionDao.aggregateForSearch(searchParams, null,
+                Duration.ofSeconds(30)).get();
+
+        assertThat(aggregates.size(), is(1));
+        TransactionAggregate totals = aggregates.get(0);
+        assertThat(totals.getGroup(), is(nullValue()));
+        assertThat(totals.getCount(), is(3L));
+        assertThat(totals.getGrossAmount(), is(1750L));
+        assertThat(totals.getFee(), is(50L));
+        assertThat(totals.getNetAmount(), is(1200L));
+        assertThat(totals.getRefundedAmount(), is(300L));
+    }
+
+    @Test
+    public void shouldAggregateMatchingTransactions_groupedByCardBrand() {
+        String gatewayAccountId = "account-id-" + nextLong();
+        aTransactionFixture().withGatewayAccountId(gatewayAccountId).withAmount(1000L).withCardBrand("visa")
+                .insert(rule.getJdbi());
+        aTransactionFixture().withGatewayAccountId(gatewayAccountId).withAmount(500L).withCardBrand("visa")
+                .insert(rule.getJdbi());
+        aTransactionFixture().withGatewayAccountId(gatewayAccountId).withAmount(200L).withCardBrand("mastercard")
+                .insert(rule.getJdbi());
+
+        searchParams.setAccountIds(List.of(gatewayAccountId));
+        searchParams.setCardBrands(new CommaDelimitedSetParameter("visa,mastercard"));
+
+        List<TransactionAggregate> aggregates = transactionDao.aggregateForSearch(searchParams, AggregateGroupBy.CARD_BRAND,
+                Duration.ofSeconds(30)).get();
+
+        assertThat(aggregates.size(), is(2));
+        assertThat(aggregates.get(0).getGroup(), is("mastercard"));
+        assertThat(aggregates.get(0).getCount(), is(1L));
+        assertThat(aggregates.get(0).getGrossAmount(), is(200L));
+        assertThat(aggregates.get(1).getGroup(), is("visa"));
+        assertThat(aggregates.get(1).getCount(), is(2L));
+        assertThat(aggregates.get(1).getGrossAmount(), is(1500L));
+    }
+
+    @Test
+    public void shouldReturnNoAggregates_whenNoTransactionsMatch() {
+        searchParams.setAccountIds(List.of("account-id-" + nextLong()));
+
+        assertThat(transactionDao.aggregateForSearch(searchParams, null, Duration.ofSeconds(30)).get().isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,66 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchJob;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TransactionSearchJobDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private final TransactionSearchJobDao jobDao = new TransactionSearchJobDao(rule.getJdbi());
+
+    @Test
+    public void shouldKeepTheResultOfACompletedJobAsItWasWritten() {
+        String jobId = UUID.randomUUID().toString();
+        ZonedDateTime createdDate = ZonedDateTime.now(ZoneOffset.UTC);
+        jobDao.insert(new TransactionSearchJob(jobId, List.of("1", "2"), createdDate));
+
+        jobDao.markRunning(jobId);
+        jobDao.complete(jobId, "{\"total\":0,\"count\":0,\"results\":[]}");
+
+        TransactionSearchJob job = jobDao.findJob(jobId, createdDate.minusMinutes(10)).get();
+        assertThat(job.isFinished(), is(true));
+        assertThat(job.getGatewayAccountIds(), is(List.of("1", "2")));
+        assertThat(job.getResult().toString(), is("{\"total\":0,\"count\":0,\"results\":[]}"));
+    }
+
+    @Test
+    public void shouldKeepTheErrorOfAFailedJob() {
+        String jobId = UUID.randomUUID().toString();
+        ZonedDateTime createdDate = ZonedDateTime.now(ZoneOffset.UTC);
+        jobDao.insert(new TransactionSearchJob(jobId, List.of(), createdDate));
+
+        jobDao.fail(jobId, "The transaction search failed");
+
+        TransactionSearchJob job = jobDao.findJob(jobId, createdDate.minusMinutes(10)).get();
+        assertThat(job.isFailed(), is(true));
+        assertThat(job.getError(), is("The transaction search failed"));
+        assertThat(job.getResult(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotFindOrKeepExpiredJobs() {
+        String jobId = UUID.randomUUID().toString();
+        ZonedDateTime createdDate = ZonedDateTime.now(ZoneOffset.UTC).minusHours(1);
+        jobDao.insert(new TransactionSearchJob(jobId, List.of("1"), createdDate));
+
+        assertThat(jobDao.findJob(jobId, createdDate).isPresent(), is(false));
+        assertThat(jobDao.findJob(jobId, createdDate.minusMinutes(1)).isPresent(), is(true));
+
+        jobDao.deleteJobsCreatedBefore(createdDate);
+
+        assertThat(jobDao.findJob(jobId, createdDate.minusMinutes(1)).isPresent(), is(false));
+    }
+}
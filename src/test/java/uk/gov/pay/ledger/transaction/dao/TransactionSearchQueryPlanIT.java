@@ -0,0 +1,182 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+import uk.gov.pay.ledger.transaction.model.TransactionType;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static uk.gov.pay.ledger.util.DatabaseTestHelper.aDatabaseTestHelper;
+
+/**
+ * Seeds one large account among many small ones, then checks the plan of the page query for every search shape made
+ * of an account and up to two other filters. Each plan must reach transaction and transaction_search only through
+ * indexes and stay within a budget of shared buffers.
+ */
+public class TransactionSearchQueryPlanIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private static final String LARGE_ACCOUNT = "plan-large-account";
+    private static final int LARGE_ACCOUNT_TRANSACTIONS = 50000;
+    private static final int SMALL_ACCOUNTS = 500;
+    private static final int SMALL_ACCOUNT_TRANSACTIONS = 20;
+    private static final long PAGE_SIZE = 20L;
+    private static final long BUFFER_BUDGET = 2000L;
+    private static final List<String> INDEXED_TABLES = List.of("transaction", "transaction_search");
+
+    private static final ZonedDateTime NOW = ZonedDateTime.now();
+
+    private static final Map<String, Consumer<TransactionSearchParams>> FILTERS = new LinkedHashMap<>();
+
+    static {
+        FILTERS.put("transaction_type", params -> params.setTransactionType(TransactionType.REFUND));
+        FILTERS.put("from_date", params -> params.setFromDate(NOW.minusDays(30).toString()));
+        FILTERS.put("to_date", params -> params.setToDate(NOW.minusDays(10).toString()));
+        FILTERS.put("payment_states", params -> params.setPaymentStates(new CommaDelimitedSetParameter("success")));
+        FILTERS.put("refund_states", params -> params.setRefundStates(new CommaDelimitedSetParameter("success")));
+        FILTERS.put("state", params -> params.setState("failed"));
+        FILTERS.put("first_digits_card_number", params -> params.setFirstDigitsCardNumber("510510"));
+        FILTERS.put("gateway_payout_id", params -> params.setGatewayPayoutId("po_plan_7"));
+        FILTERS.put("email", params -> params.setEmail("user12345@"));
+        FILTERS.put("reference", params -> params.setReference("ref-1234"));
+        FILTERS.put("exact_reference", params -> {
+            params.setReference("ref-12345");
+            params.setExactReferenceMatch(true);
+        });
+        FILTERS.put("cardholder_name", params -> params.setCardHolderName("holder 4321"));
+        FILTERS.put("card_brands", params -> params.setCardBrands(new CommaDelimitedSetParameter("amex")));
+        FILTERS.put("last_digits_card_number", params -> params.setLastDigitsCardNumber("4242"));
+        FILTERS.put("gateway_transaction_id", params -> params.setGatewayTransactionId("gti-777"));
+        FILTERS.put("from_settled_date", params -> params.setFromSettledDate(NOW.minusDays(20).toString()));
+        FILTERS.put("to_settled_date", params -> params.setToSettledDate(NOW.minusDays(5).toString()));
+    }
+
+    private final TransactionDao transactionDao = new TransactionDao(rule.getJdbi(), new TransactionSearchTemplateCache(new MetricRegistry()));
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    public static void seedSkewedDataset() {
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllPayoutData();
+
+        rule.getJdbi().useHandle(handle -> {
+            handle.createUpdate("INSERT INTO payout(gateway_payout_id, amount, created_date, paid_out_date, state, " +
+                    "event_count, payout_details, gateway_account_id) " +
+                    "SELECT 'po_plan_' || p, 1000, now() - p * interval '1 day', now() - p * interval '1 day', " +
+                    "'PAID_OUT', 1, '{}', :account FROM generate_series(1, 50) p")
+                    .bind("account", LARGE_ACCOUNT)
+                    .execute();
+
+            handle.createUpdate("INSERT INTO transaction(external_id, gateway_account_id, amount, description, " +
+                    "reference, state, email, cardholder_name, created_date, transaction_details, event_count, " +
+                    "card_brand, last_digits_card_number, first_digits_card_number, type, live, " +
+                    "gateway_transaction_id, source, gateway_payout_id) " +
+                    "SELECT 'plan' || i, " +
+                    "CASE WHEN i <= :largeAccountTransactions THEN :largeAccount ELSE 'plan-small-' || (i % :smallAccounts) END, " +
+                    "1000 + i % 5000, 'description', 'ref-' || i, " +
+                    "CASE WHEN i % 10 = 0 THEN 'FAILED_REJECTED' WHEN i % 10 = 1 THEN 'CREATED' ELSE 'SUCCESS' END, " +
+                    "'user' || i || '@example.org', 'Holder ' || i, now() - i * interval '10 minutes', '{}', 3, " +
+                    "CASE WHEN i % 50 = 0 THEN 'amex' WHEN i % 3 = 0 THEN 'master-card' ELSE 'visa' END, " +
+                    "lpad((i % 10000)::text, 4, '0'), CASE WHEN i % 10 = 0 THEN '510510' ELSE '424242' END, " +
+                    "CASE WHEN i % 20 = 0 THEN 'REFUND'::transaction_type ELSE 'PAYMENT'::transaction_type END, " +
+                    "true, 'gti-' || i, 'CARD_API'::source, " +
+                    "CASE WHEN i <= :largeAccountTransactions AND i % 100 = 0 THEN 'po_plan_' || (i % 50 + 1) END " +
+                    "FROM generate_series(1, :total) i")
+                    .bind("largeAccountTransactions", LARGE_ACCOUNT_TRANSACTIONS)
+                    .bind("largeAccount", LARGE_ACCOUNT)
+                    .bind("smallAccounts", SMALL_ACCOUNTS)
+                    .bind("total", LARGE_ACCOUNT_TRANSACTIONS + SMALL_ACCOUNTS * SMALL_ACCOUNT_TRANSACTIONS)
+                    .execute();
+
+            handle.execute("ANALYZE transaction");
+            handle.execute("ANALYZE transaction_search");
+            handle.execute("ANALYZE payout");
+        });
+    }
+
+    @AfterAll
+    public static void removeSkewedDataset() {
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllData();
+        aDatabaseTestHelper(rule.getJdbi()).truncateAllPayoutData();
+    }
+
+    @Test
+    public void everySearchShapeForTheLargeAccountUsesIndexesWithinTheBufferBudget() throws Exception {
+        List<String> filterNames = new ArrayList<>(FILTERS.keySet());
+        Map<Long, List<String>> searchShapes = new LinkedHashMap<>();
+        addShape(searchShapes, List.of());
+        for (int i = 0; i < filterNames.size(); i++) {
+            addShape(searchShapes, List.of(filterNames.get(i)));
+            for (int j = i + 1; j < filterNames.size(); j++) {
+                addShape(searchShapes, List.of(filterNames.get(i), filterNames.get(j)));
+            }
+        }
+
+        List<String> violations = new ArrayList<>();
+        for (List<String> filters : searchShapes.values()) {
+            JsonNode plan = objectMapper.readTree(transactionDao.explainSearchTransactions(searchParamsFor(filters), PAGE_SIZE))
+                    .get(0).get("Plan");
+            checkPlan(filters, plan, violations);
+        }
+
+        assertThat(violations, empty());
+    }
+
+    @Test
+    public void unfilteredSearchAcrossAllAccountsUsesIndexesWithinTheBufferBudget() throws Exception {
+        TransactionSearchParams searchParams = new TransactionSearchParams();
+        searchParams.setDisplaySize(PAGE_SIZE);
+
+        JsonNode plan = objectMapper.readTree(transactionDao.explainSearchTransactions(searchParams, PAGE_SIZE))
+                .get(0).get("Plan");
+        List<String> violations = new ArrayList<>();
+        checkPlan(List.of("all accounts"), plan, violations);
+
+        assertThat(violations, empty());
+    }
+
+    private void addShape(Map<Long, List<String>> searchShapes, List<String> filters) {
+        searchShapes.putIfAbsent(searchParamsFor(filters).getFilterShape(), filters);
+    }
+
+    private TransactionSearchParams searchParamsFor(List<String> filters) {
+        TransactionSearchParams searchParams = new TransactionSearchParams();
+        searchParams.setAccountIds(List.of(LARGE_ACCOUNT));
+        searchParams.setDisplaySize(PAGE_SIZE);
+        filters.forEach(filter -> FILTERS.get(filter).accept(searchParams));
+        return searchParams;
+    }
+
+    private void checkPlan(List<String> filters, JsonNode plan, List<String> violations) {
+        long buffers = plan.path("Shared Hit Blocks").asLong() + plan.path("Shared Read Blocks").asLong();
+        if (buffers > BUFFER_BUDGET) {
+            violations.add(filters + " read " + buffers + " buffers, over the budget of " + BUFFER_BUDGET);
+        }
+        checkForSequentialScans(filters, plan, violations);
+    }
+
+    private void checkForSequentialScans(List<String> filters, JsonNode node, List<String> violations) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())
+                && INDEXED_TABLES.contains(node.path("Relation Name").asText())) {
+            violations.add(filters + " scanned " + node.path("Relation Name").asText() + " sequentially");
+        }
+        node.path("Plans").forEach(child -> checkForSequentialScans(filters, child, violations));
+    }
+}
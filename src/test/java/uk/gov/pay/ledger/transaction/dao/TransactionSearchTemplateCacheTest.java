@@ -0,0 +1,52 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class TransactionSearchTemplateCacheTest {
+
+    private MetricRegistry metricRegistry;
+    private TransactionSearchTemplateCache templateCache;
+
+    @BeforeEach
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        templateCache = new TransactionSearchTemplateCache(metricRegistry);
+    }
+
+    @Test
+    public void compilesEachShapeOnceAndServesLaterLookupsFromTheCache() {
+        AtomicInteger compiled = new AtomicInteger();
+
+        String first = templateCache.get("SELECT 1", 3L, "", () -> "compiled-" + compiled.incrementAndGet());
+        String second = templateCache.get("SELECT 1", 3L, "", () -> "compiled-" + compiled.incrementAndGet());
+
+        assertThat(first, is("compiled-1"));
+        assertThat(second, is("compiled-1"));
+        assertThat(gauge("transaction-search.query-shapes"), is(1));
+        assertThat(gauge("transaction-search.query-shape-compiles"), is(1L));
+        assertThat(gauge("transaction-search.query-shape-cache-hits"), is(1L));
+    }
+
+    @Test
+    public void compilesSeparatelyForDifferentQueriesShapesAndCursorClauses() {
+        templateCache.get("SELECT 1", 3L, "", () -> "a");
+        templateCache.get("SELECT 2", 3L, "", () -> "b");
+        templateCache.get("SELECT 1", 1L, "", () -> "c");
+        templateCache.get("SELECT 1", 3L, "t.id > :id", () -> "d");
+
+        assertThat(templateCache.size(), is(4));
+        assertThat(gauge("transaction-search.query-shape-cache-hits"), is(0L));
+    }
+
+    private Object gauge(String name) {
+        return ((Gauge<?>) metricRegistry.getGauges().get(name)).getValue();
+    }
+}
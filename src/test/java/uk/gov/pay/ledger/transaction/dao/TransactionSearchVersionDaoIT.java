@@ -0,0 +1,43 @@
+package uk.gov.pay.ledger.transaction.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.ledger.extension.AppWithPostgresAndSqsExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class TransactionSearchVersionDaoIT {
+
+    @RegisterExtension
+    public static AppWithPostgresAndSqsExtension rule = new AppWithPostgresAndSqsExtension();
+
+    private final TransactionSearchVersionDao versionDao = new TransactionSearchVersionDao(rule.getJdbi());
+
+    @Test
+    public void shouldBumpTheVersionOfTheAccountWrittenAndOfAllAccounts() {
+        versionDao.bumpVersion("version-account-1");
+        Map<String, Long> before = versionDao.findVersions(List.of("version-account-1", "version-account-2"));
+        long allAccountsBefore = versionDao.findAllAccountsVersion();
+
+        versionDao.bumpVersion("version-account-1");
+        Map<String, Long> after = versionDao.findVersions(List.of("version-account-1", "version-account-2"));
+
+        assertThat(after.get("version-account-1"), is(greaterThan(before.get("version-account-1"))));
+        assertThat(after.containsKey("version-account-2"), is(false));
+        assertThat(versionDao.findAllAccountsVersion(), is(greaterThan(allAccountsBefore)));
+    }
+
+    @Test
+    public void shouldBumpOnlyTheVersionOfAllAccounts_whenNoAccountIsGiven() {
+        long allAccountsBefore = versionDao.findAllAccountsVersion();
+
+        versionDao.bumpVersion(null);
+
+        assertThat(versionDao.findAllAccountsVersion(), is(allAccountsBefore + 1));
+    }
+}
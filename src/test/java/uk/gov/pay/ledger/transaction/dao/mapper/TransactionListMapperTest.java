@@ -0,0 +1,64 @@
+package uk.gov.pay.ledger.transaction.dao.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.model.Payment;
+import uk.gov.pay.ledger.transaction.model.TransactionFactory;
+
+import java.sql.ResultSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.lenient;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionListMapperTest {
+
+    private final TransactionFactory transactionFactory = new TransactionFactory(new ObjectMapper());
+
+    @Mock
+    private ResultSet resultSet;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lenient().when(resultSet.getString("type")).thenReturn("PAYMENT");
+        lenient().when(resultSet.getString("state")).thenReturn("created");
+    }
+
+    @Test
+    void shouldReadStringTypedSurchargeAndDelayedCaptureAsTransactionFactoryReadsTheWholeDocument() throws Exception {
+        lenient().when(resultSet.getString("td_corporate_surcharge")).thenReturn("\"250\"");
+        lenient().when(resultSet.getString("td_delayed_capture")).thenReturn("\"true\"");
+        TransactionEntity wholeDocument = aTransactionFixture()
+                .withTransactionDetails("{\"corporate_surcharge\": \"250\", \"delayed_capture\": \"true\"}")
+                .toEntity();
+
+        TransactionEntity extracted = new TransactionListMapper().map(resultSet, null);
+
+        assertThat(extracted.getExtractedTransactionDetails().get("corporate_surcharge").textValue(), is("250"));
+        assertThat(extracted.getExtractedTransactionDetails().get("delayed_capture").textValue(), is("true"));
+
+        Payment fromExtracted = (Payment) transactionFactory.createTransactionEntity(extracted);
+        Payment fromWholeDocument = (Payment) transactionFactory.createTransactionEntity(wholeDocument);
+        assertThat(fromExtracted.getCorporateCardSurcharge(), is(fromWholeDocument.getCorporateCardSurcharge()));
+        assertThat(fromExtracted.getDelayedCapture(), is(fromWholeDocument.getDelayedCapture()));
+    }
+
+    @Test
+    void shouldReadNumberAndBooleanTypedSurchargeAndDelayedCapture() throws Exception {
+        lenient().when(resultSet.getString("td_corporate_surcharge")).thenReturn("250");
+        lenient().when(resultSet.getString("td_delayed_capture")).thenReturn("true");
+
+        Payment payment = (Payment) transactionFactory.createTransactionEntity(
+                new TransactionListMapper().map(resultSet, null));
+
+        assertThat(payment.getCorporateCardSurcharge(), is(250L));
+        assertThat(payment.getDelayedCapture(), is(true));
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.testcontainers.shaded.com.google.common.collect.ImmutableMap;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+import uk.gov.pay.ledger.transaction.search.model.TransactionView;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 
 import java.time.ZonedDateTime;
@@ -268,6 +269,42 @@ public class TransactionFactoryTest {
         assertThat(refund.getPayoutEntity().get().getPaidOutDate(), is(notNullValue()));
     }
 
+    @Test
+    public void createsTheSameTransactionFromExtractedTransactionDetails() throws Exception {
+        var objectMapper = Jackson.newObjectMapper();
+        TransactionEntity extractedDataObject = new TransactionEntity.Builder()
+                .withId(id)
+                .withGatewayAccountId(gatewayAccountId)
+                .withExternalId(externalId)
+                .withAmount(amount)
+                .withReference(reference)
+                .withDescription(description)
+                .withState(state)
+                .withEmail(email)
+                .withCardholderName(cardholderName)
+                .withCreatedDate(createdDate)
+                .withExtractedTransactionDetails(objectMapper.readTree(fullTransactionDetails.toString()))
+                .withEventCount(eventCount)
+                .withCardBrand(cardBrand)
+                .withLastDigitsCardNumber(lastDigitsCardNumber)
+                .withFirstDigitsCardNumber(firstDigitsCardNumber)
+                .withNetAmount(netAmount)
+                .withTotalAmount(totalAmount)
+                .withRefundStatus(refundStatus)
+                .withRefundAmountRefunded(refundAmountRefunded)
+                .withRefundAmountAvailable(refundAmountAvailable)
+                .withFee(fee)
+                .withPayoutEntity(fullDataObject.getPayoutEntity().orElse(null))
+                .build();
+
+        String fromExtracted = objectMapper.writeValueAsString(
+                TransactionView.from(transactionFactory.createTransactionEntity(extractedDataObject), 1));
+        String fromDocument = objectMapper.writeValueAsString(
+                TransactionView.from(transactionFactory.createTransactionEntity(fullDataObject), 1));
+
+        assertThat(fromExtracted, is(fromDocument));
+    }
+
     private void assertCorrectPaymentTransactionWithFullData(Payment payment) {
         assertThat(payment.getGatewayAccountId(), is(gatewayAccountId));
         assertThat(payment.getAmount(), is(amount));
@@ -0,0 +1,90 @@
+package uk.gov.pay.ledger.transaction.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.pay.ledger.transaction.search.model.TransactionView;
+import uk.gov.pay.ledger.util.serialiser.ResponseMappers;
+
+import javax.ws.rs.core.MediaType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionList;
+
+/**
+ * Compares writing a 500 row {@link TransactionSearchResponse} as JSON, CBOR and Smile with the mappers responses are
+ * written with. The size of each payload is printed before the benchmark runs. Run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -DmainClass=uk.gov.pay.ledger.transaction.model.TransactionSearchResponseFormatBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionSearchResponseFormatBenchmark {
+
+    private static final int ROWS = 500;
+
+    @Param({MediaType.APPLICATION_JSON, ResponseMappers.APPLICATION_CBOR, ResponseMappers.APPLICATION_SMILE})
+    public String mediaType;
+
+    private ObjectMapper objectMapper;
+    private TransactionSearchResponse response;
+
+    @Setup
+    public void setUp() {
+        objectMapper = mapperFor(mediaType);
+        response = aResponse();
+    }
+
+    @Benchmark
+    public byte[] serialise() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    private static ObjectMapper mapperFor(String mediaType) {
+        ObjectMapper jsonMapper = Jackson.newObjectMapper();
+        jsonMapper.findAndRegisterModules();
+        return new ResponseMappers(jsonMapper).forMediaType(MediaType.valueOf(mediaType));
+    }
+
+    private static TransactionSearchResponse aResponse() {
+        TransactionFactory transactionFactory = new TransactionFactory(Jackson.newObjectMapper());
+        List<TransactionView> views = aTransactionList("1", ROWS).stream()
+                .map(entity -> TransactionView.from(transactionFactory.createTransactionEntity(entity), 2))
+                .collect(Collectors.toList());
+        return new TransactionSearchResponse((long) ROWS, (long) ROWS, 1L, views);
+    }
+
+    public static void main(String[] args) throws RunnerException, JsonProcessingException {
+        TransactionSearchResponse response = aResponse();
+        for (String mediaType : List.of(MediaType.APPLICATION_JSON, ResponseMappers.APPLICATION_CBOR,
+                ResponseMappers.APPLICATION_SMILE)) {
+            System.out.printf("%s: %d bytes%n", mediaType, mapperFor(mediaType).writeValueAsBytes(response).length);
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(TransactionSearchResponseFormatBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -71,6 +71,26 @@ public class TransactionResourceIT {
                 .body("gateway_payout_id", is(gatewayPayoutId));
     }
 
+    @Test
+    public void shouldGetOnlyTheFieldsAskedForOfATransaction() {
+        transactionFixture = aTransactionFixture()
+                .withDefaultCardDetails()
+                .withDefaultTransactionDetails();
+        transactionFixture.insert(rule.getJdbi());
+
+        given().port(port)
+                .contentType(JSON)
+                .get("/v1/transaction/" + transactionFixture.getExternalId() +
+                        "?account_id=" + transactionFixture.getGatewayAccountId() +
+                        "&fields=transaction_id,amount")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .contentType(JSON)
+                .body("size()", is(2))
+                .body("transaction_id", is(transactionFixture.getExternalId()))
+                .body("amount", is(transactionFixture.getAmount().intValue()));
+    }
+
     @Test
     public void shouldReturn404ForNonExistentTransaction() {
         transactionFixture = aTransactionFixture();
@@ -136,6 +156,31 @@ public class TransactionResourceIT {
                 .body("results[1].transaction_id", is(cancelledTransaction1.getExternalId()));
     }
 
+    @Test
+    public void shouldSearchForOnlyTheFieldsAskedFor() {
+        TransactionFixture transaction = aTransactionFixture()
+                .withGatewayAccountId("123")
+                .withDefaultCardDetails()
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi());
+
+        given().port(port)
+                .contentType(JSON)
+                .accept(JSON)
+                .get("/v1/transaction" +
+                        "?account_id=123" +
+                        "&fields=transaction_id,state,created_date"
+                )
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .contentType(JSON)
+                .body("count", is(1))
+                .body("results[0].size()", is(3))
+                .body("results[0].transaction_id", is(transaction.getExternalId()))
+                .body("results[0]", not(hasKey("card_details")))
+                .body("_links.self.href", Matchers.containsString("fields=created_date%2Cstate%2Ctransaction_id"));
+    }
+
     @Test
     public void shouldGetRefundTransaction() {
         var now = ZonedDateTime.parse("2019-07-31T14:52:07.073Z");
@@ -223,6 +268,46 @@ public class TransactionResourceIT {
                 .body("events[0].data.event_data", is("event data"));
     }
 
+    @Test
+    public void shouldReturnTransactionDetailWithRefundsAndEvents() {
+        transactionFixture = aTransactionFixture()
+                .withTransactionType("PAYMENT")
+                .withDefaultCardDetails()
+                .withDefaultTransactionDetails();
+        transactionFixture.insert(rule.getJdbi());
+        TransactionEntity refund = aTransactionFixture()
+                .withTransactionType("REFUND")
+                .withGatewayAccountId(transactionFixture.getGatewayAccountId())
+                .withParentExternalId(transactionFixture.getExternalId())
+                .withDefaultTransactionDetails()
+                .insert(rule.getJdbi())
+                .toEntity();
+        EventFixture.anEventFixture()
+                .withResourceExternalId(transactionFixture.getExternalId())
+                .withEventDate(ZonedDateTime.parse("2019-07-31T09:52:43.451Z"))
+                .insert(rule.getJdbi());
+
+        String entityTag = given().port(port)
+                .contentType(JSON)
+                .get("/v1/transaction/" + transactionFixture.getExternalId() + "/detail?gateway_account_id=" + transactionFixture.getGatewayAccountId())
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .contentType(JSON)
+                .body("transaction.transaction_id", is(transactionFixture.getExternalId()))
+                .body("transactions", Matchers.hasSize(1))
+                .body("transactions[0].transaction_id", is(refund.getExternalId()))
+                .body("events", Matchers.hasSize(1))
+                .body("events[0].timestamp", is("2019-07-31T09:52:43.451Z"))
+                .extract().header("ETag");
+
+        given().port(port)
+                .contentType(JSON)
+                .header("If-None-Match", entityTag)
+                .get("/v1/transaction/" + transactionFixture.getExternalId() + "/detail?gateway_account_id=" + transactionFixture.getGatewayAccountId())
+                .then()
+                .statusCode(Response.Status.NOT_MODIFIED.getStatusCode());
+    }
+
     @Test
     public void shouldReturnBadRequestStatusIfNoTransactionEventsFound() {
         given().port(port)
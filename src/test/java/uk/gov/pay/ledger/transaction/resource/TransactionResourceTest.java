@@ -1,24 +1,48 @@
 package uk.gov.pay.ledger.transaction.resource;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.jaxrs.cbor.JacksonCBORProvider;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import io.dropwizard.testing.junit5.ResourceExtension;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.pay.ledger.app.LedgerConfig;
 import uk.gov.pay.ledger.exception.BadRequestExceptionMapper;
+import uk.gov.pay.ledger.transaction.model.GatewayTransactionBatchRequest;
+import uk.gov.pay.ledger.transaction.model.GatewayTransactionBatchResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregate;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregateResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionBatchRequest;
+import uk.gov.pay.ledger.transaction.model.TransactionDetailResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionFactory;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchJob;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
+import uk.gov.pay.ledger.transaction.search.common.AggregateGroupBy;
+import uk.gov.pay.ledger.transaction.search.common.TransactionFields;
 import uk.gov.pay.ledger.transaction.search.model.TransactionView;
 import uk.gov.pay.ledger.transaction.service.CsvService;
+import uk.gov.pay.ledger.transaction.service.TransactionSearchJobService;
 import uk.gov.pay.ledger.transaction.service.TransactionService;
+import uk.gov.pay.ledger.util.serialiser.MappedStreamingOutput;
+import uk.gov.pay.ledger.util.serialiser.MappedStreamingOutputWriter;
+import uk.gov.pay.ledger.util.serialiser.ResponseMappers;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static org.hamcrest.CoreMatchers.is;
@@ -27,9 +51,14 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
 
 @ExtendWith(DropwizardExtensionsSupport.class)
 @ExtendWith(MockitoExtension.class)
@@ -37,10 +66,14 @@ public class TransactionResourceTest {
     private static final TransactionService mockTransactionService = mock(TransactionService.class);
     private static final CsvService mockCsvService = mock(CsvService.class);
     private static final LedgerConfig mockConfig = mock(LedgerConfig.class);
+    private static final TransactionSearchJobService mockSearchJobService = mock(TransactionSearchJobService.class);
+    private static final ResponseMappers responseMappers = new ResponseMappers(new ObjectMapper());
 
     public static final ResourceExtension resources = ResourceExtension.builder()
-            .addResource(new TransactionResource(mockTransactionService, mockCsvService, mockConfig))
+            .addResource(new TransactionResource(mockTransactionService, mockCsvService, mockConfig, mockSearchJobService))
             .addProvider(BadRequestExceptionMapper.class)
+            .addProvider(new JacksonCBORProvider(responseMappers.getCborMapper()))
+            .addProvider(new MappedStreamingOutputWriter(responseMappers))
             .build();
 
     @Test
@@ -55,7 +88,12 @@ public class TransactionResourceTest {
 
     @Test
     public void shouldReturn200IfTransactionGatewayAccountIdIsNotProvidedButNotRequiredFlag() {
-        when(mockTransactionService.getTransaction(eq("some-external-id"), anyInt())).thenReturn(Optional.of(new TransactionView()));
+        when(mockTransactionService.getTransactionVersion(eq("some-external-id"), isNull(), isNull(), isNull(), anyInt()))
+                .thenReturn(Optional.of("version-1"));
+        when(mockTransactionService.getTransaction(eq("some-external-id"), anyInt(), eq(TransactionFields.ALL)))
+                .thenReturn(Optional.of(new TransactionView()));
+        when(mockTransactionService.getSerialisedTransaction(eq("some-external-id"), eq("version-1"), eq(TransactionFields.ALL), any()))
+                .thenAnswer(TransactionResourceTest::serialiseSuppliedView);
 
         Response response = resources
                 .target("/v1/transaction/some-external-id")
@@ -66,6 +104,30 @@ public class TransactionResourceTest {
         assertThat(response.getStatus(), is(200));
     }
 
+    @Test
+    public void shouldReturnTransactionAsCbor_whenCborIsAccepted() throws Exception {
+        TransactionView view = TransactionView.from(new TransactionFactory(new ObjectMapper())
+                .createTransactionEntity(aTransactionFixture().withExternalId("cbor-transaction-id").toEntity()), 2);
+        when(mockTransactionService.getTransactionVersion("cbor-transaction-id", "1", null, null, 2))
+                .thenReturn(Optional.of("version-1"));
+        when(mockTransactionService.getTransactionForGatewayAccount("1", "cbor-transaction-id", null, null, 2,
+                TransactionFields.ALL))
+                .thenReturn(Optional.of(view));
+
+        Response response = resources
+                .target("/v1/transaction/cbor-transaction-id")
+                .queryParam("account_id", 1)
+                .request(ResponseMappers.APPLICATION_CBOR)
+                .get();
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getMediaType().toString(), is(ResponseMappers.APPLICATION_CBOR));
+        assertThat(response.getEntityTag().getValue(), is("version-1/cbor"));
+        JsonNode body = responseMappers.getCborMapper().readTree(response.readEntity(byte[].class));
+        assertThat(body.get("transaction_id").asText(), is("cbor-transaction-id"));
+        verify(mockTransactionService, never()).getSerialisedTransaction(eq("cbor-transaction-id"), any(), any(), any());
+    }
+
     @Test
     public void shouldReturn404IfTransactionDoesNotExist() {
         Response response = resources
@@ -91,6 +153,140 @@ public class TransactionResourceTest {
         assertThat(response.getStatus(), is(404));
     }
 
+    @Test
+    public void getById_ShouldReturnTheTransactionTaggedWithItsVersion() {
+        when(mockTransactionService.getTransactionVersion("tagged-transaction-id", "1", null, null, 2))
+                .thenReturn(Optional.of("version-1"));
+        when(mockTransactionService.getTransactionForGatewayAccount("1", "tagged-transaction-id", null, null, 2,
+                TransactionFields.ALL))
+                .thenReturn(Optional.of(new TransactionView()));
+        when(mockTransactionService.getSerialisedTransaction(eq("tagged-transaction-id"), eq("version-1"), eq(TransactionFields.ALL), any()))
+                .thenAnswer(TransactionResourceTest::serialiseSuppliedView);
+
+        Response response = resources
+                .target("/v1/transaction/tagged-transaction-id")
+                .queryParam("account_id", 1)
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getEntityTag().getValue(), is("version-1"));
+    }
+
+    @Test
+    public void getById_ShouldReturn304WithoutReadingTheTransactionIfTheVersionHasNotChanged() {
+        when(mockTransactionService.getTransactionVersion("unchanged-transaction-id", "1", null, null, 2))
+                .thenReturn(Optional.of("version-1"));
+
+        Response response = resources
+                .target("/v1/transaction/unchanged-transaction-id")
+                .queryParam("account_id", 1)
+                .request()
+                .header("If-None-Match", "\"version-1\"")
+                .get();
+
+        assertThat(response.getStatus(), is(304));
+        assertThat(response.getEntityTag().getValue(), is("version-1"));
+        verify(mockTransactionService, never()).getSerialisedTransaction(eq("unchanged-transaction-id"), any(), any(), any());
+    }
+
+    @Test
+    public void getById_ShouldTagTheTransactionWithTheFieldsAskedFor() {
+        when(mockTransactionService.getTransactionVersion("fields-transaction-id", "1", null, null, 2))
+                .thenReturn(Optional.of("version-1"));
+        when(mockTransactionService.getTransactionForGatewayAccount(eq("1"), eq("fields-transaction-id"), isNull(),
+                isNull(), eq(2), argThat(fields -> !fields.isAll() && fields.includes("amount"))))
+                .thenReturn(Optional.of(new TransactionView()));
+        when(mockTransactionService.getSerialisedTransaction(eq("fields-transaction-id"), eq("version-1"),
+                argThat(fields -> fields.getRawString().equals("amount,state")), any()))
+                .thenAnswer(TransactionResourceTest::serialiseSuppliedView);
+
+        Response response = resources
+                .target("/v1/transaction/fields-transaction-id")
+                .queryParam("account_id", 1)
+                .queryParam("fields", "state,amount")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getEntityTag().getValue(), is("version-1/amount,state"));
+    }
+
+    @Test
+    public void getById_ShouldReturn400IfAnUnknownFieldIsAskedFor() {
+        Response response = resources
+                .target("/v1/transaction/some-external-id")
+                .queryParam("account_id", 1)
+                .queryParam("fields", "amount,card_number")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(400));
+        verify(mockTransactionService, never()).getTransactionVersion(eq("some-external-id"), eq("1"), any(), any(),
+                anyInt());
+    }
+
+    @Test
+    public void events_ShouldReturn304WithoutReadingTheEventsIfTheVersionHasNotChanged() {
+        when(mockTransactionService.getTransactionVersionWithChildren("unchanged-transaction-id", "1", 2))
+                .thenReturn(Optional.of("version-1"));
+
+        Response response = resources
+                .target("/v1/transaction/unchanged-transaction-id/event")
+                .queryParam("gateway_account_id", 1)
+                .request()
+                .header("If-None-Match", "\"version-1\"")
+                .get();
+
+        assertThat(response.getStatus(), is(304));
+        verify(mockTransactionService, never()).findTransactionEvents(eq("unchanged-transaction-id"), any(),
+                anyBoolean(), anyInt());
+    }
+
+    @Test
+    public void detail_ShouldReturnTheResponseTaggedWithItsVersion() {
+        when(mockTransactionService.getTransactionVersionWithChildren("a-transaction-id", "1", 2))
+                .thenReturn(Optional.of("version-1"));
+        when(mockTransactionService.getTransactionDetail("a-transaction-id", "1", 2))
+                .thenReturn(TransactionDetailResponse.of(null, List.of(), List.of()));
+
+        Response response = resources
+                .target("/v1/transaction/a-transaction-id/detail")
+                .queryParam("gateway_account_id", 1)
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getEntityTag().getValue(), is("version-1"));
+    }
+
+    @Test
+    public void detail_ShouldReturn304IfTheVersionHasNotChanged() {
+        when(mockTransactionService.getTransactionVersionWithChildren("unchanged-transaction-id", "1", 2))
+                .thenReturn(Optional.of("version-1"));
+
+        Response response = resources
+                .target("/v1/transaction/unchanged-transaction-id/detail")
+                .queryParam("gateway_account_id", 1)
+                .request()
+                .header("If-None-Match", "\"version-1\"")
+                .get();
+
+        assertThat(response.getStatus(), is(304));
+        assertThat(response.getEntityTag().getValue(), is("version-1"));
+        verify(mockTransactionService, never()).getTransactionDetail(eq("unchanged-transaction-id"), any(), anyInt());
+    }
+
+    @Test
+    public void detail_ShouldReturn400IfGatewayAccountIdIsNotProvided() {
+        Response response = resources
+                .target("/v1/transaction/a-transaction-id/detail")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(400));
+    }
+
     @Test
     public void shouldReturn400IfTransactionGatewayAccountIdIsNotProvidedForSearch() {
         Response response = resources.target("/v1/transaction/")
@@ -116,6 +312,133 @@ public class TransactionResourceTest {
         assertThat(responseMessage.get("message"), is("query param transaction_type must be one of [PAYMENT, REFUND]"));
     }
 
+    @Test
+    public void shouldReturn400IfAnUnknownFieldIsAskedForInSearch() {
+        Response response = resources
+                .target("/v1/transaction")
+                .queryParam("account_id", "666")
+                .queryParam("fields", "amount,card_number")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(400));
+        verify(mockTransactionService, never()).searchTransactions(eq(List.of("666")), any(), any(UriInfo.class));
+    }
+
+    @Test
+    public void aggregate_ShouldReturnTotalsGroupedAsAskedFor() {
+        when(mockTransactionService.aggregateTransactions(eq(List.of("666")), any(), eq(AggregateGroupBy.CARD_BRAND)))
+                .thenReturn(TransactionAggregateResponse.of(AggregateGroupBy.CARD_BRAND,
+                        List.of(new TransactionAggregate("visa", 2L, 1500L, 0L, 0L, 0L))));
+
+        Response response = resources
+                .target("/v1/transaction/aggregate")
+                .queryParam("account_id", "666")
+                .queryParam("group_by", "card_brand")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> body = response.readEntity(new GenericType<>() {});
+        assertThat(body.get("group_by"), is("card_brand"));
+        assertThat(((Map<?, ?>) body.get("totals")).get("gross_amount"), is(1500));
+        assertThat(((List<?>) body.get("groups")).size(), is(1));
+    }
+
+    @Test
+    public void aggregate_ShouldReturn400_whenGroupByIsUnknown() {
+        Response response = resources
+                .target("/v1/transaction/aggregate")
+                .queryParam("account_id", "667")
+                .queryParam("group_by", "reference")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(400));
+        verify(mockTransactionService, never()).aggregateTransactions(eq(List.of("667")), any(), any());
+    }
+
+    @Test
+    public void aggregate_ShouldReturn400IfGatewayAccountIdIsNotProvided() {
+        Response response = resources
+                .target("/v1/transaction/aggregate")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(400));
+    }
+
+    @Test
+    public void search_ShouldReturn202WithTheJob_whenTheSearchIsExpensive() {
+        TransactionSearchJob job = new TransactionSearchJob("a-job-id", List.of("668"), ZonedDateTime.now(ZoneOffset.UTC));
+        when(mockSearchJobService.shouldRunAsJob(eq(List.of("668")), any())).thenReturn(true);
+        when(mockSearchJobService.submit(eq(List.of("668")), any(), any())).thenReturn(job);
+
+        Response response = resources
+                .target("/v1/transaction")
+                .queryParam("account_id", "668")
+                .queryParam("email", "someone")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(202));
+        assertThat(response.getLocation().getPath(), is("/v1/transaction/search-job/a-job-id"));
+        assertThat(response.getLocation().getQuery(), is("account_id=668"));
+        Map<String, Object> body = response.readEntity(new GenericType<>() {});
+        assertThat(body.get("job_id"), is("a-job-id"));
+        assertThat(body.get("status"), is("pending"));
+        verify(mockTransactionService, never()).searchTransactions(eq(List.of("668")), any(), any(UriInfo.class));
+    }
+
+    @Test
+    public void getSearchJob_ShouldReturn202_whileTheJobIsRunning() {
+        TransactionSearchJob job = new TransactionSearchJob("running-job-id", List.of("668"),
+                TransactionSearchJob.Status.RUNNING, null, null, ZonedDateTime.now(ZoneOffset.UTC));
+        when(mockSearchJobService.getJob("running-job-id", List.of("668"))).thenReturn(Optional.of(job));
+
+        Response response = resources
+                .target("/v1/transaction/search-job/running-job-id")
+                .queryParam("account_id", "668")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(202));
+        Map<String, Object> body = response.readEntity(new GenericType<>() {});
+        assertThat(body.get("status"), is("running"));
+    }
+
+    @Test
+    public void getSearchJob_ShouldReturnTheSearchResponse_whenTheJobHasCompleted() {
+        JsonNode result = new ObjectMapper().valueToTree(new TransactionSearchResponse(0L, 0L, 1L, List.of()));
+        TransactionSearchJob job = new TransactionSearchJob("completed-job-id", List.of("668"),
+                TransactionSearchJob.Status.COMPLETED, result, null, ZonedDateTime.now(ZoneOffset.UTC));
+        when(mockSearchJobService.getJob("completed-job-id", List.of("668"))).thenReturn(Optional.of(job));
+
+        Response response = resources
+                .target("/v1/transaction/search-job/completed-job-id")
+                .queryParam("account_id", "668")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> body = response.readEntity(new GenericType<>() {});
+        assertThat(body.get("total"), is(0));
+        assertThat(((List<?>) body.get("results")).size(), is(0));
+    }
+
+    @Test
+    public void getSearchJob_ShouldReturn404_whenTheJobIsNotFoundForTheAccounts() {
+        when(mockSearchJobService.getJob("other-job-id", List.of("669"))).thenReturn(Optional.empty());
+
+        Response response = resources
+                .target("/v1/transaction/search-job/other-job-id")
+                .queryParam("account_id", "669")
+                .request()
+                .get();
+
+        assertThat(response.getStatus(), is(404));
+    }
+
     @Test
     public void findTransactionsForTransactionShouldReturn400IfGatewayAccountIdIsNotProvided() {
         Response response = resources
@@ -161,6 +484,78 @@ public class TransactionResourceTest {
         assertThat(errors.get(0), is("query param payment_provider must not be empty"));
     }
 
+    @Test
+    public void getByIds_ShouldReturn400IfGatewayAccountIdIsNotProvided() {
+        Response response = resources
+                .target("/v1/transaction/batch")
+                .request()
+                .post(Entity.json(new TransactionBatchRequest(List.of("id-1"))));
+
+        assertThat(response.getStatus(), is(400));
+    }
+
+    @Test
+    public void getByIds_ShouldStreamTransactionsForGatewayAccount() {
+        when(mockTransactionService.streamTransactionsByExternalIds(List.of("id-1", "id-2"), "1", 2))
+                .thenReturn(new MappedStreamingOutput(null,
+                        (outputStream, mapper) -> outputStream.write("{\"transactions\":[]}".getBytes())));
+
+        Response response = resources
+                .target("/v1/transaction/batch")
+                .queryParam("account_id", "1")
+                .request()
+                .post(Entity.json(new TransactionBatchRequest(List.of("id-1", "id-2"))));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.readEntity(String.class), is("{\"transactions\":[]}"));
+    }
+
+    @Test
+    public void getByIds_ShouldStreamTransactionsAsCbor_whenCborIsAccepted() throws Exception {
+        when(mockTransactionService.streamTransactionsByExternalIds(List.of("id-1"), "1", 2))
+                .thenReturn(new MappedStreamingOutput(null,
+                        (outputStream, mapper) -> mapper.writeValue(outputStream, Map.of("transactions", List.of()))));
+
+        Response response = resources
+                .target("/v1/transaction/batch")
+                .queryParam("account_id", "1")
+                .request(ResponseMappers.APPLICATION_CBOR)
+                .post(Entity.json(new TransactionBatchRequest(List.of("id-1"))));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getMediaType().toString(), is(ResponseMappers.APPLICATION_CBOR));
+        JsonNode body = responseMappers.getCborMapper().readTree(response.readEntity(byte[].class));
+        assertThat(body.get("transactions").size(), is(0));
+    }
+
+    @Test
+    public void findByGatewayTransactionIds_ShouldReturnTransactionsFound() {
+        when(mockTransactionService.findByGatewayTransactionIds(any(GatewayTransactionBatchRequest.class)))
+                .thenReturn(GatewayTransactionBatchResponse.of("sandbox", List.of(new TransactionView())));
+
+        Response response = resources
+                .target("/v1/transaction/gateway-transaction/batch")
+                .request()
+                .post(Entity.json(new GatewayTransactionBatchRequest("sandbox", List.of("id-1", "id-2"))));
+
+        Map responseMessage = response.readEntity(new GenericType<HashMap>() {
+        });
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(responseMessage.get("payment_provider"), is("sandbox"));
+        assertThat(((List) responseMessage.get("transactions")).size(), is(1));
+    }
+
+    @Test
+    public void findByGatewayTransactionIds_ShouldReturn422IfNoGatewayTransactionIdsAreGiven() {
+        Response response = resources
+                .target("/v1/transaction/gateway-transaction/batch")
+                .request()
+                .post(Entity.json(new GatewayTransactionBatchRequest("sandbox", List.of())));
+
+        assertThat(response.getStatus(), is(422));
+    }
+
     @Test
     public void searchTransactionForCsvShouldReturn400IfGatewayAccountIdIsNotAvailable() {
         Response response = resources
@@ -176,4 +571,9 @@ public class TransactionResourceTest {
         assertThat((List<String>) responseMessage.get("message"),
                 Matchers.containsInAnyOrder("gateway_account_id is mandatory to search transactions for CSV"));
     }
+
+    private static Optional<byte[]> serialiseSuppliedView(InvocationOnMock invocation) {
+        Supplier<Optional<TransactionView>> transactionView = invocation.getArgument(3);
+        return transactionView.get().map(view -> "{}".getBytes());
+    }
 }
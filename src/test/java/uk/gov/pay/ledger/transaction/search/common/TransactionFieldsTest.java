@@ -0,0 +1,92 @@
+package uk.gov.pay.ledger.transaction.search.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.transaction.dao.mapper.TransactionListMapper;
+import uk.gov.pay.ledger.transaction.model.TransactionFactory;
+import uk.gov.pay.ledger.transaction.search.model.TransactionView;
+import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+public class TransactionFieldsTest {
+
+    private static final String QUERY = "SELECT " + TransactionListMapper.COLUMNS +
+            ", po.paid_out_date AS paid_out_date FROM transaction t";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper fieldsMapper = objectMapper.copy()
+            .addMixIn(TransactionView.class, TransactionFields.FilteredView.class);
+
+    @Test
+    public void shouldSelectAllColumns_whenNoFieldsAreAskedFor() {
+        TransactionFields fields = TransactionFields.from(new CommaDelimitedSetParameter(""));
+
+        assertThat(fields.isAll(), is(true));
+        assertThat(fields.select(QUERY), is(QUERY));
+    }
+
+    @Test
+    public void shouldSelectOnlyTheColumnsTheFieldsAreBuiltFrom() {
+        String query = TransactionFields.from(new CommaDelimitedSetParameter("amount,metadata")).select(QUERY);
+
+        assertThat(query, containsString("t.id, t.gateway_account_id, t.external_id, NULL AS parent_external_id, t.amount"));
+        assertThat(query, containsString("t.transaction_details->'external_metadata' AS td_external_metadata"));
+        assertThat(query, containsString("NULL AS td_address_line1"));
+        assertThat(query, containsString("NULL AS paid_out_date"));
+        assertThat(query, not(containsString("t.transaction_details->>")));
+    }
+
+    @Test
+    public void shouldSelectPaidOutDate_whenSettlementSummaryIsAskedFor() {
+        String query = TransactionFields.from(new CommaDelimitedSetParameter("settlement_summary")).select(QUERY);
+
+        assertThat(query, containsString("t.gateway_payout_id"));
+        assertThat(query, containsString("po.paid_out_date AS paid_out_date"));
+    }
+
+    @Test
+    public void shouldThrowValidationException_whenAnUnknownFieldIsAskedFor() {
+        ValidationException exception = assertThrows(ValidationException.class,
+                () -> TransactionFields.from(new CommaDelimitedSetParameter("amount,card_number")));
+
+        assertThat(exception.getMessage(), containsString("fields contains unknown fields [card_number]"));
+    }
+
+    @Test
+    public void shouldWriteOnlyTheFieldsAskedFor() throws Exception {
+        TransactionView view = TransactionView.from(new TransactionFactory(objectMapper)
+                .createTransactionEntity(aTransactionFixture().toEntity()), 2);
+        TransactionFields fields = TransactionFields.from(new CommaDelimitedSetParameter("transaction_id,state"));
+
+        JsonNode json = objectMapper.readTree(fieldsMapper.writer(fields.filterProvider()).writeValueAsBytes(view));
+
+        assertThat(json.size(), is(2));
+        assertThat(json.get("transaction_id").asText(), is(view.getTransactionId()));
+        assertThat(json.has("state"), is(true));
+    }
+
+    @Test
+    public void shouldWritePaymentDetailsOfARefundWhole() throws Exception {
+        TransactionView view = TransactionView.from(new TransactionFactory(objectMapper)
+                .createTransactionEntity(aTransactionFixture()
+                        .withTransactionType("REFUND")
+                        .withReference("a-reference")
+                        .withTransactionDetails("{\"payment_details\": {\"card_type\": \"CREDIT\"}}")
+                        .toEntity()), 2);
+        TransactionFields fields = TransactionFields.from(new CommaDelimitedSetParameter("payment_details"));
+
+        JsonNode json = objectMapper.readTree(fieldsMapper.writer(fields.filterProvider()).writeValueAsBytes(view));
+
+        assertThat(json.size(), is(1));
+        assertThat(json.get("payment_details").get("reference").asText(), is("a-reference"));
+        assertThat(json.get("payment_details").has("card_details"), is(true));
+    }
+}
@@ -0,0 +1,43 @@
+package uk.gov.pay.ledger.transaction.search.common;
+
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.exception.ValidationException;
+import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
+
+import java.time.ZonedDateTime;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+public class TransactionSearchCursorTest {
+
+    @Test
+    public void shouldDecodeEncodedCursorToSamePositionWithMicrosecondPrecision() {
+        TransactionEntity transaction = aTransactionFixture()
+                .withId(1234L)
+                .withCreatedDate(ZonedDateTime.parse("2020-03-01T10:15:30.123456Z"))
+                .toEntity();
+
+        TransactionSearchCursor cursor = TransactionSearchCursor.decode(TransactionSearchCursor.before(transaction).encode());
+
+        assertThat(cursor.getDirection(), is(TransactionSearchCursor.Direction.BEFORE));
+        assertThat(cursor.getId(), is(1234L));
+        assertThat(cursor.getCreatedDate().isEqual(ZonedDateTime.parse("2020-03-01T10:15:30.123456Z")), is(true));
+    }
+
+    @Test
+    public void shouldEncodeCursorAsUrlSafeToken() {
+        TransactionEntity transaction = aTransactionFixture().withId(Long.MAX_VALUE).toEntity();
+
+        String token = TransactionSearchCursor.after(transaction).encode();
+
+        assertThat(token.matches("[A-Za-z0-9_-]+"), is(true));
+    }
+
+    @Test
+    public void shouldThrowValidationException_whenCursorHasBeenTamperedWith() {
+        assertThrows(ValidationException.class, () -> TransactionSearchCursor.decode("YXwyMDIwfGFiYw"));
+    }
+}
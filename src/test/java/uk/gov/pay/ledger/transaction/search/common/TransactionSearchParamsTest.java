@@ -3,9 +3,12 @@ package uk.gov.pay.ledger.transaction.search.common;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
+
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -148,6 +151,12 @@ public class TransactionSearchParamsTest {
         assertThat(transactionSearchParams.buildQueryParamString(1L), containsString("to_date=2018-09-22T10:14:16.067Z"));
     }
 
+    @Test
+    public void getsQueryParamStringWithFieldsInAStableOrder() {
+        transactionSearchParams.setFields(new CommaDelimitedSetParameter("state,amount"));
+        assertThat(transactionSearchParams.buildQueryParamString(1L), containsString("fields=amount,state"));
+    }
+
     @Test
     public void getLimitTotalSizeShouldReturnDefaultValueIfBelowDisplaySize() {
         transactionSearchParams.setDisplaySize(100L);
@@ -155,4 +164,46 @@ public class TransactionSearchParamsTest {
 
         assertThat(transactionSearchParams.getLimitTotalSize(), is(10000L));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getsArrayFilterTemplatesForListValuedFilters() {
+        transactionSearchParams.setAccountIds(List.of("1", "2"));
+        transactionSearchParams.setCardBrands(new CommaDelimitedSetParameter("visa,master-card"));
+        assertThat(transactionSearchParams.getFilterTemplates(), contains(
+                " t.gateway_account_id = ANY(:account_id)",
+                " t.card_brand = ANY(:card_brand)"));
+    }
+
+    @Test
+    public void getsSameFilterShapeWhateverTheNumberOfValuesInListFilters() {
+        transactionSearchParams.setAccountIds(List.of("1"));
+        transactionSearchParams.setCardBrands(new CommaDelimitedSetParameter("visa"));
+
+        TransactionSearchParams otherSearchParams = new TransactionSearchParams();
+        otherSearchParams.setAccountIds(List.of("1", "2", "3"));
+        otherSearchParams.setCardBrands(new CommaDelimitedSetParameter("visa,master-card"));
+
+        assertThat(transactionSearchParams.getFilterShape(), is(otherSearchParams.getFilterShape()));
+    }
+
+    @Test
+    public void getsDifferentFilterShapesForDifferentFilters() {
+        assertThat(transactionSearchParams.getFilterShape(), is(0L));
+
+        transactionSearchParams.setReference("test-reference");
+        long likeReferenceShape = transactionSearchParams.getFilterShape();
+        transactionSearchParams.setExactReferenceMatch(true);
+
+        assertThat(transactionSearchParams.getFilterShape(), is(not(likeReferenceShape)));
+        assertThat(transactionSearchParams.getFilterShape(), is(not(0L)));
+    }
+
+    @Test
+    public void getsCombinedStateFilterWhenPaymentAndRefundStatesSet() {
+        transactionSearchParams.setPaymentStates(new CommaDelimitedSetParameter("success"));
+        transactionSearchParams.setRefundStates(new CommaDelimitedSetParameter("success"));
+        assertThat(transactionSearchParams.getFilterTemplates(), contains(
+                "( (t.state = ANY(:payment_states) AND t.type =  'PAYMENT'::transaction_type) OR" +
+                        " (t.state = ANY(:refund_states) AND t.type =  'REFUND'::transaction_type))"));
+    }
+}
@@ -29,6 +29,22 @@ public class TransactionSearchParamsValidatorTest {
         assertThat(unparsableDateException.getMessage(), is("Input from_date (wrong-date) is wrong format"));
     }
 
+    @Test
+    public void shouldThrowException_whenCursorCannotBeDecoded() {
+        searchParams.setCursor("not-a-cursor");
+        ValidationException validationException = assertThrows(ValidationException.class,
+                () -> TransactionSearchParamsValidator.validateSearchParams(searchParams, null));
+        assertThat(validationException.getMessage(), is("Invalid cursor: not-a-cursor"));
+    }
+
+    @Test
+    public void shouldThrowException_whenTotalModeIsNotRecognised() {
+        searchParams.setTotal("approximately");
+        ValidationException validationException = assertThrows(ValidationException.class,
+                () -> TransactionSearchParamsValidator.validateSearchParams(searchParams, null));
+        assertThat(validationException.getMessage(), is("total must be one of none, estimate, exact"));
+    }
+
     @Test
     public void shouldThrowException_whenInvalidToDate() {
         searchParams.setToDate("wrong-date");
@@ -0,0 +1,103 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionSearchCostEstimatorTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2020-07-31T00:00:00Z"), ZoneOffset.UTC);
+
+    @Mock
+    private TransactionDao mockTransactionDao;
+
+    private TransactionSearchCostEstimator costEstimator;
+    private TransactionSearchParams searchParams;
+
+    @BeforeEach
+    public void setUp() {
+        costEstimator = new TransactionSearchCostEstimator(mockTransactionDao, 1000d, Duration.ofDays(31), CLOCK);
+        searchParams = new TransactionSearchParams();
+        searchParams.setAccountIds(List.of("1"));
+    }
+
+    @Test
+    public void shouldBeCheapWithoutExplaining_whenNoFilterIsKnownToBeSlow() {
+        searchParams.setFromDate("2020-07-01T00:00:00Z");
+        searchParams.setReference("a-reference");
+        searchParams.setExactReferenceMatch(true);
+
+        assertThat(costEstimator.riskFactors(searchParams).isEmpty(), is(true));
+        assertThat(costEstimator.isExpensive(searchParams), is(false));
+        verify(mockTransactionDao, never()).getEstimatedCostForSearch(any());
+    }
+
+    @Test
+    public void shouldListEveryFilterKnownToBeSlow() {
+        searchParams.setAccountIds(List.of());
+        searchParams.setEmail("someone");
+        searchParams.setFromDate("2020-01-01T00:00:00Z");
+
+        assertThat(costEstimator.riskFactors(searchParams),
+                is(List.of("all_accounts", "leading_wildcard", "wide_date_range")));
+    }
+
+    @Test
+    public void shouldTreatADateRangeOpenAtItsStartAsWide() {
+        searchParams.setToDate("2020-07-01T00:00:00Z");
+
+        assertThat(costEstimator.riskFactors(searchParams), is(List.of("wide_date_range")));
+    }
+
+    @Test
+    public void shouldTreatASearchWithoutADateRangeAsWide() {
+        searchParams.setReference("a-reference");
+        searchParams.setExactReferenceMatch(true);
+
+        assertThat(costEstimator.riskFactors(searchParams), is(List.of("wide_date_range")));
+    }
+
+    @Test
+    public void shouldBeExpensive_whenThePlannedCostIsOverTheThreshold() {
+        searchParams.setReference("a-reference");
+        when(mockTransactionDao.getEstimatedCostForSearch(searchParams)).thenReturn(1000.5d);
+
+        assertThat(costEstimator.isExpensive(searchParams), is(true));
+    }
+
+    @Test
+    public void shouldBeCheap_whenThePlannedCostIsWithinTheThreshold() {
+        searchParams.setReference("a-reference");
+        when(mockTransactionDao.getEstimatedCostForSearch(searchParams)).thenReturn(999d);
+
+        assertThat(costEstimator.isExpensive(searchParams), is(false));
+    }
+
+    @Test
+    public void shouldTreatEverySearchAsCheap_whenTheThresholdIsZero() {
+        TransactionSearchCostEstimator disabledEstimator = new TransactionSearchCostEstimator(mockTransactionDao, 0d,
+                Duration.ofDays(31), CLOCK);
+        searchParams.setAccountIds(List.of());
+
+        assertThat(disabledEstimator.isExpensive(searchParams), is(false));
+        verify(mockTransactionDao, never()).getEstimatedCostForSearch(any());
+    }
+}
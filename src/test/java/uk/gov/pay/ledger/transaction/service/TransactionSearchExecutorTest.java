@@ -0,0 +1,78 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TransactionSearchExecutorTest {
+
+    private ExecutorService executorService;
+    private MetricRegistry metricRegistry;
+    private TransactionSearchExecutor searchExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(2);
+        metricRegistry = new MetricRegistry();
+        searchExecutor = new TransactionSearchExecutor(executorService, Duration.ofSeconds(1), Duration.ofMillis(50),
+                metricRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldCancelQueryAndReturnEmpty_whenDeadlinePasses() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<Long> query = searchExecutor.submit(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 1L;
+        });
+
+        Optional<Long> result = searchExecutor.await("count", query, System.nanoTime() + Duration.ofMillis(50).toNanos());
+
+        assertThat(result.isPresent(), is(false));
+        assertThat(query.isCancelled(), is(true));
+        assertThat(interrupted.await(1, TimeUnit.SECONDS), is(true));
+        assertThat(metricRegistry.counter("transaction-search.count-query-timeouts").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldReturnResult_whenQueryFinishesBeforeDeadline() {
+        Future<Long> query = searchExecutor.submit(() -> 42L);
+
+        Optional<Long> result = searchExecutor.await("count", query, System.nanoTime() + Duration.ofSeconds(1).toNanos());
+
+        assertThat(result.get(), is(42L));
+    }
+
+    @Test
+    public void shouldRethrowQueryFailure() {
+        Future<Long> query = searchExecutor.submit(() -> {
+            throw new IllegalArgumentException("bad query");
+        });
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> searchExecutor.await("page", query, System.nanoTime() + Duration.ofSeconds(1).toNanos()));
+        assertThat(exception.getMessage(), is("bad query"));
+    }
+}
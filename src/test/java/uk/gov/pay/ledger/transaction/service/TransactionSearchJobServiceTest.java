@@ -0,0 +1,142 @@
+package uk.gov.pay.ledger.transaction.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchJobDao;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchJob;
+import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.util.pagination.SearchLinkBuilder;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionSearchJobServiceTest {
+
+    @Mock
+    private TransactionService mockTransactionService;
+    @Mock
+    private TransactionSearchJobDao mockJobDao;
+    @Mock
+    private TransactionSearchCostEstimator mockCostEstimator;
+    @Mock
+    private UriInfo mockUriInfo;
+
+    private MetricRegistry metricRegistry;
+    private TransactionSearchJobService searchJobService;
+    private TransactionSearchParams searchParams;
+
+    @BeforeEach
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        searchJobService = new TransactionSearchJobService(mockTransactionService, mockJobDao, mockCostEstimator,
+                MoreExecutors.newDirectExecutorService(), Duration.ofMinutes(10), metricRegistry);
+        searchParams = new TransactionSearchParams();
+        lenient().when(mockUriInfo.getBaseUri()).thenReturn(URI.create("http://app.com/"));
+        lenient().when(mockUriInfo.getRequestUri()).thenReturn(URI.create("http://app.com/v1/transaction?account_id=1"));
+        lenient().when(mockTransactionService.writerFor(any())).thenReturn(new ObjectMapper().writer());
+    }
+
+    @Test
+    public void shouldRunTheSearchAndKeepItsResponse() {
+        TransactionSearchResponse response = new TransactionSearchResponse(0L, 0L, 1L, List.of());
+        when(mockTransactionService.searchTransactions(eq(List.of("1")), eq(searchParams), any(SearchLinkBuilder.class)))
+                .thenReturn(response);
+
+        TransactionSearchJob job = searchJobService.submit(List.of("1"), searchParams, mockUriInfo);
+
+        ArgumentCaptor<String> result = ArgumentCaptor.forClass(String.class);
+        verify(mockJobDao).deleteJobsCreatedBefore(any(ZonedDateTime.class));
+        verify(mockJobDao).insert(job);
+        verify(mockJobDao).markRunning(job.getJobId());
+        verify(mockJobDao).complete(eq(job.getJobId()), result.capture());
+        assertThat(result.getValue(), containsString("\"total\":0"));
+        assertThat(metricRegistry.counter("transaction-search-jobs.submitted").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldBuildLinksFromACopyOfTheRequestUri() {
+        when(mockTransactionService.searchTransactions(any(), any(), any(SearchLinkBuilder.class))).thenAnswer(invocation -> {
+            SearchLinkBuilder searchLinkBuilder = invocation.getArgument(2);
+            assertThat(searchLinkBuilder.getPath(), is("v1/transaction"));
+            assertThat(searchLinkBuilder.getBaseUri(), is(URI.create("http://app.com/")));
+            return new TransactionSearchResponse(0L, 0L, 1L, List.of());
+        });
+
+        TransactionSearchJob job = searchJobService.submit(List.of("1"), searchParams, mockUriInfo);
+
+        verify(mockJobDao).complete(eq(job.getJobId()), anyString());
+        verify(mockJobDao, never()).fail(any(), any());
+    }
+
+    @Test
+    public void shouldOnlyLetTheJobBeReadForTheAccountsItSearched() {
+        ZonedDateTime createdDate = ZonedDateTime.parse("2020-09-01T10:00:00Z");
+        when(mockJobDao.findJob(eq("account-job"), any(ZonedDateTime.class)))
+                .thenReturn(Optional.of(new TransactionSearchJob("account-job", List.of("1", "2"), createdDate)));
+        when(mockJobDao.findJob(eq("all-accounts-job"), any(ZonedDateTime.class)))
+                .thenReturn(Optional.of(new TransactionSearchJob("all-accounts-job", List.of(), createdDate)));
+
+        assertThat(searchJobService.getJob("account-job", List.of("2", "1")).isPresent(), is(true));
+        assertThat(searchJobService.getJob("account-job", List.of("1")).isPresent(), is(false));
+        assertThat(searchJobService.getJob("all-accounts-job", List.of("1")).isPresent(), is(false));
+        assertThat(searchJobService.getJob("all-accounts-job").isPresent(), is(true));
+    }
+
+    @Test
+    public void shouldMarkTheJobFailed_whenTheSearchFails() {
+        when(mockTransactionService.searchTransactions(any(), any(), any(SearchLinkBuilder.class)))
+                .thenThrow(new IllegalStateException("connection refused"));
+
+        TransactionSearchJob job = searchJobService.submit(List.of("1"), searchParams, mockUriInfo);
+
+        verify(mockJobDao).fail(job.getJobId(), "The transaction search failed");
+        verify(mockJobDao, never()).complete(any(), any());
+        assertThat(metricRegistry.counter("transaction-search-jobs.failed").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldAnswer503AndDropTheJob_whenTheQueueIsFull() {
+        ExecutorService fullExecutor = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(fullExecutor).execute(any());
+        TransactionSearchJobService fullSearchJobService = new TransactionSearchJobService(mockTransactionService,
+                mockJobDao, mockCostEstimator, fullExecutor, Duration.ofMinutes(10), new MetricRegistry());
+
+        WebApplicationException exception = assertThrows(WebApplicationException.class,
+                () -> fullSearchJobService.submit(List.of("1"), searchParams, mockUriInfo));
+
+        ArgumentCaptor<TransactionSearchJob> job = ArgumentCaptor.forClass(TransactionSearchJob.class);
+        verify(mockJobDao).insert(job.capture());
+        verify(mockJobDao).delete(job.getValue().getJobId());
+        assertThat(exception.getResponse().getStatus(), is(503));
+    }
+}
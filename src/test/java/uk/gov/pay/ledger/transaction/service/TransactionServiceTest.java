@@ -1,7 +1,12 @@
 package uk.gov.pay.ledger.transaction.service;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.dropwizard.jackson.Jackson;
+import org.jdbi.v3.core.result.ResultIterator;
+import org.jdbi.v3.core.statement.StatementContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,39 +17,69 @@ import uk.gov.pay.ledger.event.model.Event;
 import uk.gov.pay.ledger.event.model.ResourceType;
 import uk.gov.pay.ledger.event.model.SalientEventType;
 import uk.gov.pay.ledger.event.model.TransactionEntityFactory;
+import uk.gov.pay.ledger.event.service.EventService;
+import uk.gov.pay.ledger.payout.dao.PayoutDao;
+import uk.gov.pay.ledger.payout.model.PayoutEntityFactory;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
+import uk.gov.pay.ledger.projection.service.ReprojectionService;
+import uk.gov.pay.ledger.projection.service.TransactionProjector;
+import uk.gov.pay.ledger.transaction.cache.TransactionSearchCache;
+import uk.gov.pay.ledger.transaction.cache.TransactionViewCache;
 import uk.gov.pay.ledger.transaction.dao.TransactionDao;
+import uk.gov.pay.ledger.transaction.dao.TransactionSearchVersionDao;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.model.CsvTransactionFactory;
+import uk.gov.pay.ledger.transaction.model.GatewayTransactionBatchRequest;
+import uk.gov.pay.ledger.transaction.model.GatewayTransactionBatchResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionDetailResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionEvent;
 import uk.gov.pay.ledger.transaction.model.TransactionEventResponse;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregate;
+import uk.gov.pay.ledger.transaction.model.TransactionAggregateResponse;
 import uk.gov.pay.ledger.transaction.model.TransactionFactory;
 import uk.gov.pay.ledger.transaction.model.TransactionSearchResponse;
+import uk.gov.pay.ledger.transaction.search.common.TransactionFields;
+import uk.gov.pay.ledger.transaction.search.common.TransactionSearchCursor;
+import uk.gov.pay.ledger.transaction.search.common.AggregateGroupBy;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
+import uk.gov.pay.ledger.transaction.search.model.RefundSummary;
 import uk.gov.pay.ledger.transaction.search.model.TransactionView;
 import uk.gov.pay.ledger.transaction.state.TransactionState;
 import uk.gov.pay.ledger.util.CommaDelimitedSetParameter;
 import uk.gov.pay.ledger.util.fixture.EventFixture;
 import uk.gov.pay.ledger.util.fixture.TransactionFixture;
+import uk.gov.pay.ledger.util.serialiser.MappedStreamingOutput;
 import uk.gov.pay.ledger.util.pagination.PaginationBuilder;
 
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
@@ -58,7 +93,16 @@ public class TransactionServiceTest {
     private EventDao mockEventDao;
     @Mock
     private UriInfo mockUriInfo;
+    @Mock
+    private TransactionProjector mockTransactionProjector;
+    @Mock
+    private EventService mockEventService;
+    @Mock
+    private PayoutDao mockPayoutDao;
+    @Mock
+    private TransactionSearchVersionDao mockSearchVersionDao;
     private TransactionService transactionService;
+    private ReprojectionService reprojectionService;
     private String gatewayAccountId = "gateway_account_id";
     private TransactionSearchParams searchParams;
     private ObjectMapper objectMapper = new ObjectMapper();
@@ -69,13 +113,18 @@ public class TransactionServiceTest {
         TransactionEntityFactory transactionEntityFactory = new TransactionEntityFactory(objectMapper);
         TransactionFactory transactionFactory = new TransactionFactory(objectMapper);
         CsvTransactionFactory csvTransactionFactory = new CsvTransactionFactory(objectMapper);
+        reprojectionService = new ReprojectionService(mockTransactionProjector, mockTransactionDao,
+                mockEventService, new PayoutEntityFactory(objectMapper), mockPayoutDao, new MetricRegistry());
+        TransactionSearchExecutor searchExecutor = new TransactionSearchExecutor(MoreExecutors.newDirectExecutorService(),
+                Duration.ofSeconds(30), Duration.ofSeconds(5), new MetricRegistry());
         transactionService = new TransactionService(mockTransactionDao, mockEventDao, transactionEntityFactory,
-                transactionFactory, csvTransactionFactory, objectMapper);
+                transactionFactory, csvTransactionFactory, objectMapper, reprojectionService, searchExecutor,
+                TransactionSearchCache.disabled(), TransactionViewCache.disabled());
         searchParams = new TransactionSearchParams();
         searchParams.setAccountIds(List.of(gatewayAccountId));
 
-        lenient().when(mockUriInfo.getBaseUriBuilder()).thenReturn(UriBuilder.fromUri("http://app.com"));
-        lenient().when(mockUriInfo.getPath()).thenReturn("/v1/transaction");
+        lenient().when(mockUriInfo.getBaseUri()).thenReturn(URI.create("http://app.com/"));
+        lenient().when(mockUriInfo.getRequestUri()).thenReturn(URI.create("http://app.com/v1/transaction"));
     }
 
     @Test
@@ -100,13 +149,44 @@ public class TransactionServiceTest {
         assertThat(transactionView.get().getState().getStatus(), is("failed"));
     }
 
+    @Test
+    public void shouldReprojectAndWriteBackTransactionWithStaleProjectionVersion() {
+        TransactionEntity staleTransaction = aTransactionFixture()
+                .withExternalId("external_id")
+                .withState(TransactionState.SUBMITTED)
+                .withProjectionVersion(ProjectionVersion.TRANSACTION - 1)
+                .toEntity();
+        TransactionEntity reprojectedTransaction = aTransactionFixture()
+                .withExternalId("external_id")
+                .withState(TransactionState.SUCCESS)
+                .toEntity();
+        when(mockTransactionDao.findTransactionByExternalId("external_id")).thenReturn(Optional.of(staleTransaction));
+        when(mockTransactionProjector.project("external_id")).thenReturn(Optional.of(reprojectedTransaction));
+
+        Optional<TransactionView> transactionView = transactionService.getTransaction("external_id", 2);
+
+        verify(mockTransactionDao).upsert(reprojectedTransaction);
+        assertThat(transactionView.get().getState().getStatus(), is("success"));
+    }
+
+    @Test
+    public void shouldNotReprojectTransactionWithCurrentProjectionVersion() {
+        TransactionEntity transaction = aTransactionFixture().withExternalId("external_id").toEntity();
+        when(mockTransactionDao.findTransactionByExternalId("external_id")).thenReturn(Optional.of(transaction));
+
+        transactionService.getTransaction("external_id", 2);
+
+        verify(mockTransactionProjector, never()).project(anyString());
+        verify(mockTransactionDao, never()).upsert(any());
+    }
+
     @Test
     public void shouldReturnAListOfTransactionsWithStatusVersion2() {
         searchParams.setStatusVersion(2);
         List<TransactionEntity> transactionViewList = TransactionFixture.aTransactionList(gatewayAccountId, 4);
         transactionViewList.add(aTransactionFixture().withState(TransactionState.FAILED_REJECTED).toEntity());
         when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionViewList);
-        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(5L);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(5L));
         TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
         assertThat(transactionSearchResponse.getPage(), is(1L));
         assertThat(transactionSearchResponse.getCount(), is(5L));
@@ -121,7 +201,7 @@ public class TransactionServiceTest {
         List<TransactionEntity> transactionViewList = TransactionFixture.aTransactionList(gatewayAccountId, 4);
         transactionViewList.add(aTransactionFixture().withState(TransactionState.FAILED_REJECTED).toEntity());
         when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionViewList);
-        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(5L);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(5L));
         TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
         assertThat(transactionSearchResponse.getTransactionViewList().get(4).getState().getStatus(), is("failed"));
     }
@@ -133,7 +213,7 @@ public class TransactionServiceTest {
         searchParams.setPageNumber(3L);
         searchParams.setDisplaySize(10L);
         when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionViewList);
-        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(100L);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(100L));
 
         TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(List.of(gatewayAccountId), searchParams, mockUriInfo);
         PaginationBuilder paginationBuilder = transactionSearchResponse.getPaginationBuilder();
@@ -149,14 +229,14 @@ public class TransactionServiceTest {
     public void shouldListTransactionsWithCorrectQueryParamsForPaginationLinks() {
         List<TransactionEntity> transactionViewList = TransactionFixture.aTransactionList(gatewayAccountId, 10);
         when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionViewList);
-        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(10L);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(10L));
 
         setAllSearchParams();
 
         TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
 
         verify(mockTransactionDao).searchTransactions(searchParams);
-        verify(mockTransactionDao).getTotalForSearch(searchParams);
+        verify(mockTransactionDao).getTotalForSearch(eq(searchParams), any(Duration.class));
         assertCorrectPaginationQueryParams(transactionSearchResponse);
     }
 
@@ -164,7 +244,7 @@ public class TransactionServiceTest {
     public void searchTransactions_shouldThrowNotFoundException_forInvalidPaginationParams() {
         List<TransactionEntity> transactionViewList = TransactionFixture.aTransactionList(gatewayAccountId, 10);
         when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionViewList);
-        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class))).thenReturn(10L);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(10L));
 
         searchParams.setPageNumber(2L);
 
@@ -173,14 +253,14 @@ public class TransactionServiceTest {
         assertThat(webApplicationException.getMessage(), is("the requested page not found"));
 
         verify(mockTransactionDao).searchTransactions(searchParams);
-        verify(mockTransactionDao).getTotalForSearch(searchParams);
+        verify(mockTransactionDao).getTotalForSearch(eq(searchParams), any(Duration.class));
     }
 
     @Test
     public void shouldListTransactionsWithCorrectQueryParamsAndPaginationLinks_WhenLimitTotalParamIsSet() {
         List<TransactionEntity> transactionViewList = TransactionFixture.aTransactionList(gatewayAccountId, 10);
         when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionViewList);
-        when(mockTransactionDao.getTotalWithLimitForSearch(any(TransactionSearchParams.class))).thenReturn(10L);
+        when(mockTransactionDao.getTotalWithLimitForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(10L));
 
         setAllSearchParams();
         searchParams.setLimitTotal(true);
@@ -188,7 +268,7 @@ public class TransactionServiceTest {
         TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
 
         verify(mockTransactionDao).searchTransactions(searchParams);
-        verify(mockTransactionDao).getTotalWithLimitForSearch(searchParams);
+        verify(mockTransactionDao).getTotalWithLimitForSearch(eq(searchParams), any(Duration.class));
         assertThat(transactionSearchResponse.getTotal(), is(10L));
 
         PaginationBuilder paginationBuilder = transactionSearchResponse.getPaginationBuilder();
@@ -198,6 +278,529 @@ public class TransactionServiceTest {
         assertCorrectPaginationQueryParams(transactionSearchResponse);
     }
 
+    @Test
+    public void searchTransactions_shouldServeRepeatedSearchFromCacheUntilAccountIsWritten() {
+        TransactionService cachingTransactionService = cachingTransactionService();
+        when(mockSearchVersionDao.findVersions(List.of(gatewayAccountId)))
+                .thenReturn(Map.of(), Map.of(), Map.of(gatewayAccountId, 1L));
+        when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class)))
+                .thenReturn(TransactionFixture.aTransactionList(gatewayAccountId, 2));
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(2L));
+
+        TransactionSearchResponse firstResponse = cachingTransactionService.searchTransactions(List.of(gatewayAccountId), searchParams, mockUriInfo);
+        TransactionSearchResponse secondResponse = cachingTransactionService.searchTransactions(List.of(gatewayAccountId), searchParams, mockUriInfo);
+        cachingTransactionService.searchTransactions(List.of(gatewayAccountId), searchParams, mockUriInfo);
+
+        assertThat(secondResponse, is(firstResponse));
+        verify(mockTransactionDao, times(2)).searchTransactions(any(TransactionSearchParams.class));
+    }
+
+    @Test
+    public void searchTransactions_shouldNotCacheResponse_whenCountFellBackToCappedTotal() {
+        TransactionService cachingTransactionService = cachingTransactionService();
+        when(mockSearchVersionDao.findVersions(List.of(gatewayAccountId))).thenReturn(Map.of());
+        when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class)))
+                .thenReturn(TransactionFixture.aTransactionList(gatewayAccountId, 2));
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class)))
+                .thenReturn(Optional.empty(), Optional.of(2L));
+        when(mockTransactionDao.getTotalWithLimitForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(2L));
+
+        cachingTransactionService.searchTransactions(List.of(gatewayAccountId), searchParams, mockUriInfo);
+        TransactionSearchParams repeatedSearchParams = new TransactionSearchParams();
+        TransactionSearchResponse repeatedResponse = cachingTransactionService.searchTransactions(
+                List.of(gatewayAccountId), repeatedSearchParams, mockUriInfo);
+
+        assertThat(repeatedResponse.getTotal(), is(2L));
+        verify(mockTransactionDao, times(2)).searchTransactions(any(TransactionSearchParams.class));
+    }
+
+    @Test
+    public void searchTransactions_shouldFallBackToCappedTotal_whenCountIsCancelled() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 10);
+        searchParams.setPageNumber(2L);
+        searchParams.setDisplaySize(10L);
+        when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionEntityList);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.empty());
+        when(mockTransactionDao.getTotalWithLimitForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(10000L));
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        assertThat(transactionSearchResponse.getTotal(), is(10000L));
+        PaginationBuilder paginationBuilder = transactionSearchResponse.getPaginationBuilder();
+        assertThat(paginationBuilder.getLastLink(), is(nullValue()));
+        assertThat(paginationBuilder.getNextLink().getHref(), containsString("page=3&display_size=10"));
+    }
+
+    @Test
+    public void searchTransactions_shouldReturnServiceUnavailable_whenTheCappedCountAlsoTimesOut() {
+        when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class)))
+                .thenReturn(TransactionFixture.aTransactionList(gatewayAccountId, 10));
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.empty());
+        when(mockTransactionDao.getTotalWithLimitForSearch(any(TransactionSearchParams.class), eq(Duration.ofSeconds(5))))
+                .thenReturn(Optional.empty());
+
+        WebApplicationException webApplicationException = assertThrows(WebApplicationException.class,
+                () -> transactionService.searchTransactions(searchParams, mockUriInfo));
+
+        assertThat(webApplicationException.getResponse().getStatus(), is(503));
+    }
+
+    @Test
+    public void searchTransactions_shouldReturnCursorsForAdjacentPages_whenPagingByOffset() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 10);
+        when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionEntityList);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(30L));
+        searchParams.setPageNumber(2L);
+        searchParams.setDisplaySize(10L);
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        TransactionSearchCursor nextCursor = TransactionSearchCursor.decode(transactionSearchResponse.getNextCursor());
+        TransactionSearchCursor prevCursor = TransactionSearchCursor.decode(transactionSearchResponse.getPrevCursor());
+        assertThat(nextCursor.getDirection(), is(TransactionSearchCursor.Direction.AFTER));
+        assertThat(nextCursor.getId(), is(transactionEntityList.get(9).getId()));
+        assertThat(prevCursor.getDirection(), is(TransactionSearchCursor.Direction.BEFORE));
+        assertThat(prevCursor.getId(), is(transactionEntityList.get(0).getId()));
+        assertThat(transactionSearchResponse.getPaginationBuilder().getNextLink().getHref(), containsString("page=3"));
+    }
+
+    @Test
+    public void searchTransactions_shouldReadPageAfterCursorWithKeysetAndLinkByCursor() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 11);
+        TransactionEntity cursorEntity = aTransactionFixture().withId(99L).toEntity();
+        String cursor = TransactionSearchCursor.after(cursorEntity).encode();
+        searchParams.setDisplaySize(10L);
+        searchParams.setCursor(cursor);
+        when(mockTransactionDao.cursorTransactionSearch(searchParams, cursorEntity.getCreatedDate(), 99L, 11L))
+                .thenReturn(transactionEntityList);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(100L));
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        verify(mockTransactionDao, never()).searchTransactions(any());
+        assertThat(transactionSearchResponse.getCount(), is(10L));
+        assertThat(transactionSearchResponse.getPage(), is(nullValue()));
+        assertThat(TransactionSearchCursor.decode(transactionSearchResponse.getNextCursor()).getId(),
+                is(transactionEntityList.get(9).getId()));
+        assertThat(TransactionSearchCursor.decode(transactionSearchResponse.getPrevCursor()).getId(),
+                is(transactionEntityList.get(0).getId()));
+
+        PaginationBuilder paginationBuilder = transactionSearchResponse.getPaginationBuilder();
+        assertThat(paginationBuilder.getSelfLink().getHref(), containsString("cursor=" + cursor));
+        assertThat(paginationBuilder.getNextLink().getHref(),
+                containsString("cursor=" + transactionSearchResponse.getNextCursor()));
+        assertThat(paginationBuilder.getPrevLink().getHref(),
+                containsString("cursor=" + transactionSearchResponse.getPrevCursor()));
+        assertThat(paginationBuilder.getFirstLink().getHref(), containsString("page=1"));
+        assertThat(paginationBuilder.getLastLink(), is(nullValue()));
+    }
+
+    @Test
+    public void searchTransactions_shouldNotReturnNextCursor_whenLastPageIsReadFromCursor() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 4);
+        TransactionEntity cursorEntity = aTransactionFixture().withId(99L).toEntity();
+        searchParams.setDisplaySize(10L);
+        searchParams.setCursor(TransactionSearchCursor.after(cursorEntity).encode());
+        when(mockTransactionDao.cursorTransactionSearch(searchParams, cursorEntity.getCreatedDate(), 99L, 11L))
+                .thenReturn(transactionEntityList);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(14L));
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        assertThat(transactionSearchResponse.getCount(), is(4L));
+        assertThat(transactionSearchResponse.getNextCursor(), is(nullValue()));
+        assertThat(transactionSearchResponse.getPaginationBuilder().getNextLink(), is(nullValue()));
+    }
+
+    @Test
+    public void searchTransactions_shouldReadPageBeforeCursorAndDropTheExtraRow() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 11);
+        TransactionEntity cursorEntity = aTransactionFixture().withId(99L).toEntity();
+        searchParams.setDisplaySize(10L);
+        searchParams.setCursor(TransactionSearchCursor.before(cursorEntity).encode());
+        when(mockTransactionDao.cursorTransactionSearchBefore(searchParams, cursorEntity.getCreatedDate(), 99L, 11L))
+                .thenReturn(transactionEntityList);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(100L));
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        assertThat(transactionSearchResponse.getCount(), is(10L));
+        assertThat(transactionSearchResponse.getTransactionViewList().get(0).getTransactionId(),
+                is(transactionEntityList.get(1).getExternalId()));
+        assertThat(TransactionSearchCursor.decode(transactionSearchResponse.getPrevCursor()).getId(),
+                is(transactionEntityList.get(1).getId()));
+        assertThat(TransactionSearchCursor.decode(transactionSearchResponse.getNextCursor()).getId(),
+                is(transactionEntityList.get(10).getId()));
+    }
+
+    @Test
+    public void searchTransactions_shouldNotCountAndShouldReadOneExtraRow_whenTotalIsNone() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 11);
+        searchParams.setDisplaySize(10L);
+        searchParams.setTotal("none");
+        when(mockTransactionDao.searchTransactions(searchParams, 11L)).thenReturn(transactionEntityList);
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        verify(mockTransactionDao, never()).getTotalForSearch(any(), any());
+        verify(mockTransactionDao, never()).getEstimatedTotalForSearch(any());
+        assertThat(transactionSearchResponse.getTotal(), is(nullValue()));
+        assertThat(transactionSearchResponse.getCount(), is(10L));
+        assertThat(transactionSearchResponse.getHasNext(), is(true));
+
+        PaginationBuilder paginationBuilder = transactionSearchResponse.getPaginationBuilder();
+        assertThat(paginationBuilder.getLastLink(), is(nullValue()));
+        assertThat(paginationBuilder.getNextLink().getHref(), containsString("total=none&page=2&display_size=10"));
+    }
+
+    @Test
+    public void searchTransactions_shouldNotReturnNextPage_whenTotalIsNoneAndNoExtraRowIsRead() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 10);
+        searchParams.setDisplaySize(10L);
+        searchParams.setTotal("none");
+        when(mockTransactionDao.searchTransactions(searchParams, 11L)).thenReturn(transactionEntityList);
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        assertThat(transactionSearchResponse.getHasNext(), is(false));
+        assertThat(transactionSearchResponse.getPaginationBuilder().getNextLink(), is(nullValue()));
+    }
+
+    @Test
+    public void searchTransactions_shouldReturnPlannerEstimateNoLowerThanRowsRead_whenTotalIsEstimate() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 11);
+        searchParams.setDisplaySize(10L);
+        searchParams.setPageNumber(3L);
+        searchParams.setTotal("estimate");
+        when(mockTransactionDao.searchTransactions(searchParams, 11L)).thenReturn(transactionEntityList);
+        when(mockTransactionDao.getEstimatedTotalForSearch(searchParams)).thenReturn(5L);
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        verify(mockTransactionDao, never()).getTotalForSearch(any(), any());
+        assertThat(transactionSearchResponse.getTotal(), is(31L));
+        assertThat(transactionSearchResponse.getPaginationBuilder().getLastLink(), is(nullValue()));
+    }
+
+    @Test
+    public void searchTransactions_shouldReturnExactTotalWithoutEstimating_whenTotalIsEstimateAndLastPageIsRead() {
+        List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 4);
+        searchParams.setDisplaySize(10L);
+        searchParams.setPageNumber(3L);
+        searchParams.setTotal("estimate");
+        when(mockTransactionDao.searchTransactions(searchParams, 11L)).thenReturn(transactionEntityList);
+
+        TransactionSearchResponse transactionSearchResponse = transactionService.searchTransactions(searchParams, mockUriInfo);
+
+        verify(mockTransactionDao, never()).getEstimatedTotalForSearch(any());
+        assertThat(transactionSearchResponse.getTotal(), is(24L));
+    }
+
+    @Test
+    public void streamTransactions_shouldWriteResultsBeforePaginationAndCloseRows() throws IOException {
+        ClosableRows rows = new ClosableRows(TransactionFixture.aTransactionList(gatewayAccountId, 11));
+        searchParams.setDisplaySize(10L);
+        when(mockTransactionDao.streamTransactions(searchParams, 11L)).thenReturn(rows);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(25L));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        transactionService.streamTransactions(List.of(), searchParams, mockUriInfo).write(outputStream);
+
+        String body = outputStream.toString(StandardCharsets.UTF_8);
+        JsonNode response = objectMapper.readTree(body);
+        assertThat(body.indexOf("\"results\""), is(lessThan(body.indexOf("\"total\""))));
+        assertThat(response.get("results").size(), is(10));
+        assertThat(response.get("count").asLong(), is(10L));
+        assertThat(response.get("total").asLong(), is(25L));
+        assertThat(response.get("_links").get("next_page").get("href").asText(), containsString("page=2&display_size=10"));
+        assertThat(response.has("next_cursor"), is(true));
+        assertThat(rows.closed, is(true));
+    }
+
+    @Test
+    public void streamTransactions_shouldReprojectStaleRowsOnceRowsAreClosedAndKeepTheirOrder() throws IOException {
+        List<TransactionEntity> transactions = TransactionFixture.aTransactionList(gatewayAccountId, 3);
+        TransactionEntity staleTransaction = transactions.get(1);
+        staleTransaction.setProjectionVersion(ProjectionVersion.TRANSACTION - 1);
+        TransactionEntity reprojectedTransaction = aTransactionFixture()
+                .withExternalId(staleTransaction.getExternalId())
+                .withState(TransactionState.SUCCESS)
+                .toEntity();
+        ClosableRows rows = new ClosableRows(transactions);
+        searchParams.setDisplaySize(10L);
+        when(mockTransactionDao.streamTransactions(searchParams, 11L)).thenReturn(rows);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(3L));
+        when(mockTransactionProjector.project(staleTransaction.getExternalId())).thenAnswer(invocation -> {
+            assertThat(rows.closed, is(true));
+            return Optional.of(reprojectedTransaction);
+        });
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        transactionService.streamTransactions(List.of(), searchParams, mockUriInfo).write(outputStream);
+
+        JsonNode results = objectMapper.readTree(outputStream.toByteArray()).get("results");
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).get("transaction_id").asText(), is(transactions.get(0).getExternalId()));
+        assertThat(results.get(1).get("transaction_id").asText(), is(staleTransaction.getExternalId()));
+        assertThat(results.get(1).get("state").get("status").asText(), is("success"));
+        assertThat(results.get(2).get("transaction_id").asText(), is(transactions.get(2).getExternalId()));
+        verify(mockTransactionDao).upsert(reprojectedTransaction);
+    }
+
+    @Test
+    public void streamTransactions_shouldThrowNotFoundBeforeWriting_whenPageIsBeyondLastPage() {
+        ClosableRows rows = new ClosableRows(List.of());
+        searchParams.setDisplaySize(10L);
+        searchParams.setPageNumber(3L);
+        when(mockTransactionDao.streamTransactions(searchParams, 11L)).thenReturn(rows);
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(10L));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        MappedStreamingOutput output = transactionService.streamTransactions(List.of(), searchParams, mockUriInfo);
+        WebApplicationException webApplicationException = assertThrows(WebApplicationException.class,
+                () -> output.write(outputStream));
+
+        assertThat(webApplicationException.getMessage(), is("the requested page not found"));
+        assertThat(outputStream.size(), is(0));
+        assertThat(rows.closed, is(true));
+    }
+
+    @Test
+    public void streamTransactions_shouldNotQueryUntilTheResponseIsWritten() {
+        searchParams.setDisplaySize(10L);
+
+        transactionService.streamTransactions(List.of(), searchParams, mockUriInfo);
+
+        verify(mockTransactionDao, never()).streamTransactions(any(), anyLong());
+        verify(mockTransactionDao, never()).getTotalForSearch(any(), any());
+    }
+
+    @Test
+    public void streamTransactions_shouldCacheTheStreamedPageAndServeRepeatedSearchesFromIt() throws IOException {
+        TransactionService cachingTransactionService = cachingTransactionService();
+        searchParams.setDisplaySize(10L);
+        when(mockSearchVersionDao.findVersions(List.of(gatewayAccountId))).thenReturn(Map.of());
+        when(mockTransactionDao.streamTransactions(searchParams, 11L))
+                .thenReturn(new ClosableRows(TransactionFixture.aTransactionList(gatewayAccountId, 3)));
+        when(mockTransactionDao.getTotalForSearch(any(TransactionSearchParams.class), any(Duration.class))).thenReturn(Optional.of(3L));
+
+        ByteArrayOutputStream streamedOutput = new ByteArrayOutputStream();
+        cachingTransactionService.streamTransactions(List.of(gatewayAccountId), searchParams, mockUriInfo).write(streamedOutput);
+        ByteArrayOutputStream cachedOutput = new ByteArrayOutputStream();
+        cachingTransactionService.streamTransactions(List.of(gatewayAccountId), searchParams, mockUriInfo).write(cachedOutput);
+
+        JsonNode streamedResponse = objectMapper.readTree(streamedOutput.toByteArray());
+        JsonNode cachedResponse = objectMapper.readTree(cachedOutput.toByteArray());
+        assertThat(cachedResponse.get("results").size(), is(3));
+        assertThat(cachedResponse.get("results").get(0).get("transaction_id"), is(streamedResponse.get("results").get(0).get("transaction_id")));
+        assertThat(cachedResponse.get("total").asLong(), is(3L));
+        verify(mockTransactionDao, times(1)).streamTransactions(searchParams, 11L);
+    }
+
+    @Test
+    public void streamTransactionsForParentTransaction_shouldWriteChildTransactions() throws IOException {
+        TransactionEntity parent = aTransactionFixture().withExternalId("parent-id").withGatewayAccountId(gatewayAccountId).toEntity();
+        ClosableRows rows = new ClosableRows(TransactionFixture.aTransactionList(gatewayAccountId, 2));
+        when(mockTransactionDao.findTransactionByExternalIdAndGatewayAccountId("parent-id", gatewayAccountId)).thenReturn(Optional.of(parent));
+        when(mockTransactionDao.streamTransactionsByParentIdAndGatewayAccountId("parent-id", gatewayAccountId)).thenReturn(rows);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        transactionService.streamTransactionsForParentTransaction("parent-id", gatewayAccountId).write(outputStream);
+
+        JsonNode response = objectMapper.readTree(outputStream.toByteArray());
+        assertThat(response.get("parent_transaction_id").asText(), is("parent-id"));
+        assertThat(response.get("transactions").size(), is(2));
+        assertThat(rows.closed, is(true));
+    }
+
+    @Test
+    public void streamTransactionsByExternalIds_shouldLookUpEachIdOnceAndWriteTransactions() throws IOException {
+        List<TransactionEntity> transactions = TransactionFixture.aTransactionList(gatewayAccountId, 2);
+        ClosableRows rows = new ClosableRows(transactions);
+        List<String> externalIds = transactions.stream().map(TransactionEntity::getExternalId).collect(Collectors.toList());
+        when(mockTransactionDao.streamTransactionsByExternalIds(externalIds, gatewayAccountId)).thenReturn(rows);
+
+        List<String> requestedIds = new ArrayList<>(externalIds);
+        requestedIds.add(externalIds.get(0));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        transactionService.streamTransactionsByExternalIds(requestedIds, gatewayAccountId, 2).write(outputStream);
+
+        JsonNode response = objectMapper.readTree(outputStream.toByteArray());
+        assertThat(response.get("transactions").size(), is(2));
+        assertThat(response.get("transactions").get(0).get("transaction_id").asText(), is(externalIds.get(0)));
+        assertThat(rows.closed, is(true));
+    }
+
+    @Test
+    public void getTransactionDetail_shouldReturnTheTransactionWithItsRefundsAndDeduplicatedEvents() {
+        TransactionEntity payment = TransactionFixture.aTransactionFixture()
+                .withGatewayAccountId(gatewayAccountId)
+                .withEventCount(2)
+                .withDefaultTransactionDetails()
+                .toEntity();
+        TransactionEntity laterRefund = TransactionFixture.aTransactionFixture()
+                .withGatewayAccountId(gatewayAccountId)
+                .withParentExternalId(payment.getExternalId())
+                .withTransactionType("REFUND")
+                .withCreatedDate(ZonedDateTime.now().minusHours(1))
+                .toEntity();
+        TransactionEntity refund = TransactionFixture.aTransactionFixture()
+                .withGatewayAccountId(gatewayAccountId)
+                .withParentExternalId(payment.getExternalId())
+                .withTransactionType("REFUND")
+                .withCreatedDate(ZonedDateTime.now().minusHours(2))
+                .toEntity();
+        when(mockTransactionDao.findTransactionByExternalOrParentIdAndGatewayAccountId(payment.getExternalId(), gatewayAccountId))
+                .thenReturn(List.of(laterRefund, payment, refund));
+
+        Event event = EventFixture.anEventFixture().withEventType(SalientEventType.AUTHORISATION_CANCELLED.toString())
+                .withResourceExternalId(payment.getExternalId()).toEntity();
+        Event duplicateEvent = EventFixture.anEventFixture().withEventType(SalientEventType.AUTHORISATION_CANCELLED.toString())
+                .withResourceExternalId(payment.getExternalId())
+                .withEventDate(event.getEventDate().plusMinutes(1)).toEntity();
+        when(mockEventDao.findEventsForExternalIds(any())).thenReturn(List.of(event, duplicateEvent));
+
+        TransactionDetailResponse response = transactionService.getTransactionDetail(payment.getExternalId(), gatewayAccountId, 2);
+
+        assertThat(response.getTransaction().getTransactionId(), is(payment.getExternalId()));
+        assertThat(response.getTransactions().size(), is(2));
+        assertThat(response.getTransactions().get(0).getTransactionId(), is(refund.getExternalId()));
+        assertThat(response.getTransactions().get(1).getTransactionId(), is(laterRefund.getExternalId()));
+        assertThat(response.getEvents().size(), is(1));
+        assertTransactionEvent(event, response.getEvents().get(0), payment.getAmount(), "declined");
+    }
+
+    @Test
+    public void getSerialisedTransaction_shouldServeFinishedTransactionFromCacheUntilItsVersionChanges() throws IOException {
+        TransactionService cachingTransactionService = transactionServiceWithViewCache();
+        TransactionView view = TransactionView.from(new TransactionFactory(objectMapper).createTransactionEntity(
+                aTransactionFixture().withState(TransactionState.SUCCESS).withRefundSummary(new RefundSummary("full", 0L, 1000L)).toEntity()), 2);
+        List<String> reads = new ArrayList<>();
+
+        byte[] firstView = cachingTransactionService.getSerialisedTransaction(view.getTransactionId(), "version-1",
+                () -> readView(reads, view)).get();
+        byte[] cachedView = cachingTransactionService.getSerialisedTransaction(view.getTransactionId(), "version-1",
+                () -> readView(reads, view)).get();
+        cachingTransactionService.getSerialisedTransaction(view.getTransactionId(), "version-2",
+                () -> readView(reads, view));
+
+        assertThat(objectMapper.readTree(firstView).get("transaction_id").asText(), is(view.getTransactionId()));
+        assertThat(cachedView, is(firstView));
+        assertThat(reads.size(), is(2));
+    }
+
+    @Test
+    public void getSerialisedTransaction_shouldNotCacheTransactionsThatMayStillChange() {
+        TransactionService cachingTransactionService = transactionServiceWithViewCache();
+        TransactionView inProgress = TransactionView.from(new TransactionFactory(objectMapper).createTransactionEntity(
+                aTransactionFixture().withState(TransactionState.SUBMITTED).toEntity()), 2);
+        TransactionView refundable = TransactionView.from(new TransactionFactory(objectMapper).createTransactionEntity(
+                aTransactionFixture().withState(TransactionState.SUCCESS).withRefundSummary(new RefundSummary("available", 1000L, 0L)).toEntity()), 2);
+        List<String> reads = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            cachingTransactionService.getSerialisedTransaction(inProgress.getTransactionId(), "version-1",
+                    () -> readView(reads, inProgress));
+            cachingTransactionService.getSerialisedTransaction(refundable.getTransactionId(), "version-1",
+                    () -> readView(reads, refundable));
+        }
+
+        assertThat(reads.size(), is(4));
+    }
+
+    @Test
+    public void getSerialisedTransaction_shouldWriteOnlyTheFieldsAskedForWithoutCachingThem() throws IOException {
+        TransactionService cachingTransactionService = transactionServiceWithViewCache();
+        TransactionView view = TransactionView.from(new TransactionFactory(objectMapper).createTransactionEntity(
+                aTransactionFixture().withState(TransactionState.SUCCESS).withRefundSummary(new RefundSummary("full", 0L, 1000L)).toEntity()), 2);
+        TransactionFields fields = TransactionFields.from(new CommaDelimitedSetParameter("transaction_id,amount"));
+        List<String> reads = new ArrayList<>();
+
+        byte[] partialView = cachingTransactionService.getSerialisedTransaction(view.getTransactionId(), "version-1",
+                fields, () -> readView(reads, view)).get();
+        byte[] wholeView = cachingTransactionService.getSerialisedTransaction(view.getTransactionId(), "version-1",
+                () -> readView(reads, view)).get();
+
+        JsonNode partialJson = objectMapper.readTree(partialView);
+        assertThat(partialJson.size(), is(2));
+        assertThat(partialJson.get("transaction_id").asText(), is(view.getTransactionId()));
+        assertThat(partialJson.get("amount").asLong(), is(view.getAmount()));
+        assertThat(objectMapper.readTree(wholeView).has("reference"), is(true));
+        assertThat(reads.size(), is(2));
+    }
+
+    @Test
+    public void getTransactionForGatewayAccount_shouldReadOnlyTheColumnsOfTheFieldsAskedFor() {
+        TransactionEntity transaction = aTransactionFixture().toEntity();
+        TransactionFields fields = TransactionFields.from(new CommaDelimitedSetParameter("amount"));
+        when(mockTransactionDao.findTransaction(transaction.getExternalId(), gatewayAccountId, null, null, fields))
+                .thenReturn(Optional.of(transaction));
+
+        Optional<TransactionView> view = transactionService.getTransactionForGatewayAccount(gatewayAccountId,
+                transaction.getExternalId(), null, null, 2, fields);
+
+        assertThat(view.get().getAmount(), is(transaction.getAmount()));
+        verify(mockTransactionDao, never()).findTransaction(transaction.getExternalId(), gatewayAccountId, null, null);
+    }
+
+    @Test
+    public void getTransactionVersion_shouldChangeWithTheEventCountAndProjectionVersion() {
+        TransactionEntity transaction = TransactionFixture.aTransactionFixture().withEventCount(2).toEntity();
+        when(mockTransactionDao.findTransactionVersion(transaction.getExternalId(), gatewayAccountId, null, null))
+                .thenReturn(Optional.of(transaction));
+
+        String version = transactionService.getTransactionVersion(transaction.getExternalId(), gatewayAccountId, null, null, 2).get();
+        assertThat(transactionService.getTransactionVersion(transaction.getExternalId(), gatewayAccountId, null, null, 2).get(),
+                is(version));
+        assertThat(transactionService.getTransactionVersion(transaction.getExternalId(), gatewayAccountId, null, null, 1).get(),
+                is(not(version)));
+
+        transaction.setEventCount(3);
+        String laterVersion = transactionService.getTransactionVersion(transaction.getExternalId(), gatewayAccountId, null, null, 2).get();
+        assertThat(laterVersion, is(not(version)));
+
+        transaction.setProjectionVersion(transaction.getProjectionVersion() + 1);
+        assertThat(transactionService.getTransactionVersion(transaction.getExternalId(), gatewayAccountId, null, null, 2).get(),
+                is(not(laterVersion)));
+    }
+
+    @Test
+    public void getTransactionVersionWithChildren_shouldChangeWhenAChildTransactionChanges() {
+        TransactionEntity payment = TransactionFixture.aTransactionFixture().withEventCount(2).toEntity();
+        TransactionEntity refund = TransactionFixture.aTransactionFixture()
+                .withParentExternalId(payment.getExternalId())
+                .withEventCount(1)
+                .toEntity();
+        when(mockTransactionDao.findTransactionVersionsByExternalOrParentIdAndGatewayAccountId(payment.getExternalId(), gatewayAccountId))
+                .thenReturn(List.of(payment, refund));
+
+        String version = transactionService.getTransactionVersionWithChildren(payment.getExternalId(), gatewayAccountId, 2).get();
+        refund.setEventCount(2);
+
+        assertThat(transactionService.getTransactionVersionWithChildren(payment.getExternalId(), gatewayAccountId, 2).get(),
+                is(not(version)));
+    }
+
+    @Test
+    public void getTransactionVersionWithChildren_shouldBeEmptyIfTransactionDoesNotExist() {
+        when(mockTransactionDao.findTransactionVersionsByExternalOrParentIdAndGatewayAccountId("external-id", gatewayAccountId))
+                .thenReturn(List.of());
+
+        assertThat(transactionService.getTransactionVersionWithChildren("external-id", gatewayAccountId, 2).isPresent(),
+                is(false));
+    }
+
+    @Test
+    public void getTransactionDetail_shouldThrowNotFoundIfTransactionDoesNotExist() {
+        when(mockTransactionDao.findTransactionByExternalOrParentIdAndGatewayAccountId("external-id", gatewayAccountId))
+                .thenReturn(List.of());
+
+        WebApplicationException exception = assertThrows(WebApplicationException.class,
+                () -> transactionService.getTransactionDetail("external-id", gatewayAccountId, 2));
+
+        assertThat(exception.getResponse().getStatus(), is(404));
+    }
+
     @Test
     public void findTransactionEvents_shouldReturnTransactionEventsCorrectlyForStatusVersion1() {
         List<TransactionEntity> transactionEntityList = TransactionFixture.aTransactionList(gatewayAccountId, 1);
@@ -354,22 +957,35 @@ public class TransactionServiceTest {
                 .withGatewayTransactionId(gatewayTransactionId)
                 .withDefaultTransactionDetails()
                 .toEntity();
-        TransactionEntity transactionEntityWorldPay = aTransactionFixture().withPaymentProvider("worldpay")
-                .withGatewayTransactionId(gatewayTransactionId)
-                .withDefaultTransactionDetails()
-                .toEntity();
 
-        List<TransactionEntity> transactionViewList = List.of(transactionEntitySandbox, transactionEntityWorldPay);
-        when(mockTransactionDao.searchTransactions(any(TransactionSearchParams.class))).thenReturn(transactionViewList);
+        when(mockTransactionDao.findPaymentByGatewayTransactionIdAndPaymentProvider(gatewayTransactionId, "sandbox"))
+                .thenReturn(Optional.of(transactionEntitySandbox));
 
         Optional<TransactionView> mayBeTransactionView = transactionService.
                 findByGatewayTransactionId(gatewayTransactionId, "sandbox");
 
-        verify(mockTransactionDao).searchTransactions(any());
         assertThat(mayBeTransactionView.isPresent(), is(true));
         assertThat(mayBeTransactionView.get().getPaymentProvider(), is("sandbox"));
     }
 
+    @Test
+    public void findByGatewayTransactionIds_shouldLookUpEachIdOnceInASingleQuery() {
+        TransactionEntity transactionEntity = aTransactionFixture().withPaymentProvider("sandbox")
+                .withGatewayTransactionId("id-1")
+                .withDefaultTransactionDetails()
+                .toEntity();
+
+        when(mockTransactionDao.findPaymentsByGatewayTransactionIdsAndPaymentProvider(List.of("id-1", "id-2"), "sandbox"))
+                .thenReturn(List.of(transactionEntity));
+
+        GatewayTransactionBatchResponse response = transactionService.findByGatewayTransactionIds(
+                new GatewayTransactionBatchRequest("sandbox", List.of("id-1", "id-2", "id-1")));
+
+        assertThat(response.getPaymentProvider(), is("sandbox"));
+        assertThat(response.getTransactions().size(), is(1));
+        assertThat(response.getTransactions().get(0).getGatewayTransactionId(), is("id-1"));
+    }
+
     private void assertTransactionEvent(Event event, TransactionEvent transactionEvent, Long amount, String state) {
         try {
             assertThat(transactionEvent.getState() == null ? null : transactionEvent.getState().getStatus(), is(state));
@@ -413,4 +1029,101 @@ public class TransactionServiceTest {
         assertThat(selfLink, containsString("to_date=2019-06-01T10%3A15%3A30Z"));
         assertThat(selfLink, containsString("gateway_payout_id=test-gateway-payout-id"));
     }
-}
\ No newline at end of file
+
+    private static class ClosableRows implements ResultIterator<TransactionEntity> {
+        private final Iterator<TransactionEntity> iterator;
+        private boolean closed;
+
+        ClosableRows(List<TransactionEntity> transactionEntities) {
+            this.iterator = transactionEntities.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !closed && iterator.hasNext();
+        }
+
+        @Override
+        public TransactionEntity next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public StatementContext getContext() {
+            return null;
+        }
+    }
+
+    private TransactionService transactionServiceWithViewCache() {
+        return new TransactionService(mockTransactionDao, mockEventDao, new TransactionEntityFactory(objectMapper),
+                new TransactionFactory(objectMapper), new CsvTransactionFactory(objectMapper), objectMapper, reprojectionService,
+                new TransactionSearchExecutor(MoreExecutors.newDirectExecutorService(), Duration.ofSeconds(30),
+                        Duration.ofSeconds(5), new MetricRegistry()),
+                TransactionSearchCache.disabled(), new TransactionViewCache(1024, new MetricRegistry()));
+    }
+
+    private static Optional<TransactionView> readView(List<String> reads, TransactionView view) {
+        reads.add(view.getTransactionId());
+        return Optional.of(view);
+    }
+
+    @Test
+    public void aggregateTransactions_shouldReturnZeroTotals_whenNoTransactionsMatch() {
+        when(mockTransactionDao.aggregateForSearch(searchParams, null, Duration.ofSeconds(30)))
+                .thenReturn(Optional.of(List.of()));
+
+        TransactionAggregateResponse response = transactionService.aggregateTransactions(List.of(gatewayAccountId),
+                searchParams, null);
+
+        assertThat(response.getGroupBy(), is(nullValue()));
+        assertThat(response.getGroups(), is(nullValue()));
+        assertThat(response.getTotals().getCount(), is(0L));
+        assertThat(response.getTotals().getGrossAmount(), is(0L));
+    }
+
+    @Test
+    public void aggregateTransactions_shouldTotalTheGroups_whenGrouped() {
+        when(mockTransactionDao.aggregateForSearch(searchParams, AggregateGroupBy.STATE, Duration.ofSeconds(30)))
+                .thenReturn(Optional.of(List.of(
+                        new TransactionAggregate("SUCCESS", 2L, 1500L, 50L, 1450L, 0L),
+                        new TransactionAggregate("FAILED_REJECTED", 1L, 200L, 0L, 0L, 100L))));
+
+        TransactionAggregateResponse response = transactionService.aggregateTransactions(List.of(gatewayAccountId),
+                searchParams, AggregateGroupBy.STATE);
+
+        assertThat(response.getGroupBy(), is("state"));
+        assertThat(response.getGroups().size(), is(2));
+        assertThat(response.getTotals().getGroup(), is(nullValue()));
+        assertThat(response.getTotals().getCount(), is(3L));
+        assertThat(response.getTotals().getGrossAmount(), is(1700L));
+        assertThat(response.getTotals().getFee(), is(50L));
+        assertThat(response.getTotals().getNetAmount(), is(1450L));
+        assertThat(response.getTotals().getRefundedAmount(), is(100L));
+    }
+
+    @Test
+    public void aggregateTransactions_shouldReturnServiceUnavailable_whenTheQueryTimesOut() {
+        when(mockTransactionDao.aggregateForSearch(searchParams, null, Duration.ofSeconds(30)))
+                .thenReturn(Optional.empty());
+
+        WebApplicationException exception = assertThrows(WebApplicationException.class,
+                () -> transactionService.aggregateTransactions(List.of(gatewayAccountId), searchParams, null));
+
+        assertThat(exception.getResponse().getStatus(), is(503));
+    }
+
+    private TransactionService cachingTransactionService() {
+        return new TransactionService(mockTransactionDao, mockEventDao,
+                new TransactionEntityFactory(objectMapper), new TransactionFactory(objectMapper),
+                new CsvTransactionFactory(objectMapper), objectMapper, reprojectionService,
+                new TransactionSearchExecutor(MoreExecutors.newDirectExecutorService(), Duration.ofSeconds(30),
+                        Duration.ofSeconds(5), new MetricRegistry()),
+                new TransactionSearchCache(1024, Duration.ofMinutes(1), mockSearchVersionDao, new MetricRegistry()),
+                TransactionViewCache.disabled());
+    }
+}
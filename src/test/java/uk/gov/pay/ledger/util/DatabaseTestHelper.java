@@ -34,7 +34,8 @@ public class DatabaseTestHelper {
     public void truncateAllData() {
         jdbi.withHandle(h -> h.createScript(
                 "TRUNCATE TABLE event CASCADE; " +
-                        "TRUNCATE TABLE transaction CASCADE"
+                        "TRUNCATE TABLE transaction CASCADE; " +
+                        "TRUNCATE TABLE transaction_search"
         ).execute());
     }
 
@@ -59,6 +60,21 @@ public class DatabaseTestHelper {
                         .list());
     }
 
+    public int getTransactionSearchRowsCount() {
+        return jdbi.withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM transaction_search")
+                        .mapTo(Integer.class)
+                        .one());
+    }
+
+    public Map<String, Object> getTransactionSearchRow(Long transactionId) {
+        return jdbi.withHandle(handle ->
+                handle.createQuery("SELECT * FROM transaction_search WHERE id = :id")
+                        .bind("id", transactionId)
+                        .mapToMap()
+                        .one());
+    }
+
     public List<Map<String, Object>> getMetadataKey(String key) {
         return jdbi.withHandle(handle ->
                 handle.createQuery("SELECT * FROM metadata_key where key = :key")
@@ -10,6 +10,7 @@ import org.apache.commons.lang3.RandomUtils;
 import org.jdbi.v3.core.Jdbi;
 import org.jetbrains.annotations.NotNull;
 import uk.gov.pay.commons.model.Source;
+import uk.gov.pay.ledger.projection.model.ProjectionVersion;
 import uk.gov.pay.ledger.transaction.entity.TransactionEntity;
 import uk.gov.pay.ledger.transaction.model.Address;
 import uk.gov.pay.ledger.transaction.model.CardDetails;
@@ -71,6 +72,7 @@ public class TransactionFixture implements DbFixture<TransactionFixture, Transac
     private String refundedByUserEmail;
     private String source;
     private String gatewayPayoutId;
+    private Integer projectionVersion = ProjectionVersion.TRANSACTION;
 
     private TransactionFixture() {
     }
@@ -310,6 +312,11 @@ public class TransactionFixture implements DbFixture<TransactionFixture, Transac
         return this;
     }
 
+    public TransactionFixture withProjectionVersion(Integer projectionVersion) {
+        this.projectionVersion = projectionVersion;
+        return this;
+    }
+
     @Override
     public TransactionFixture insert(Jdbi jdbi) {
         jdbi.withHandle(h ->
@@ -343,9 +350,10 @@ public class TransactionFixture implements DbFixture<TransactionFixture, Transac
                                 "        moto,\n" +
                                 "        gateway_transaction_id,\n" +
                                 "        source,\n" +
-                                "        gateway_payout_id\n" +
+                                "        gateway_payout_id,\n" +
+                                "        projection_version\n" +
                                 "    )\n" +
-                                "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? as jsonb), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?::transaction_type, ?, ?, ?, ?::source, ?)\n",
+                                "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? as jsonb), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?::transaction_type, ?, ?, ?, ?::source, ?, ?)\n",
                         id,
                         externalId,
                         parentExternalId,
@@ -373,7 +381,8 @@ public class TransactionFixture implements DbFixture<TransactionFixture, Transac
                         moto,
                         gatewayTransactionId,
                         source,
-                        gatewayPayoutId
+                        gatewayPayoutId,
+                        projectionVersion
                 )
         );
         return this;
@@ -462,7 +471,8 @@ public class TransactionFixture implements DbFixture<TransactionFixture, Transac
                 .withLive(live)
                 .withMoto(moto)
                 .withGatewayTransactionId(gatewayTransactionId)
-                .withGatewayPayoutId(gatewayPayoutId);
+                .withGatewayPayoutId(gatewayPayoutId)
+                .withProjectionVersion(projectionVersion);
         Source.from(source).ifPresent(builder::withSource);
         return builder.build();
     }
@@ -9,7 +9,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.pay.ledger.payout.search.PayoutSearchParams;
 import uk.gov.pay.ledger.transaction.search.common.TransactionSearchParams;
 
-import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -30,9 +29,8 @@ public class PaginationBuilderTest {
 
     @BeforeEach
     public void setUp() throws URISyntaxException {
-        URI uri = new URI("http://example.org");
-        Mockito.when(mockedUriInfo.getBaseUriBuilder()).thenReturn(UriBuilder.fromUri(uri), UriBuilder.fromUri(uri));
-        Mockito.when(mockedUriInfo.getPath()).thenReturn("/transaction");
+        Mockito.when(mockedUriInfo.getBaseUri()).thenReturn(new URI("http://example.org/"));
+        Mockito.when(mockedUriInfo.getRequestUri()).thenReturn(new URI("http://example.org/transaction"));
 
         transactionSearchParams = new TransactionSearchParams();
         payoutSearchParams = new PayoutSearchParams();
@@ -138,4 +136,33 @@ public class PaginationBuilderTest {
         builder = builder.buildResponse();
         assertThat(builder.getNextLink(), is(nullValue()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldBuildPrevAndNextLinksFromCursorsWithoutLastLink_whenPagingByCursor() {
+        transactionSearchParams.setDisplaySize(10L);
+        transactionSearchParams.setCursor("self-cursor");
+        PaginationBuilder builder = new PaginationBuilder(transactionSearchParams, mockedUriInfo)
+                .withTotalCount(120L)
+                .withCount(10L)
+                .withCursors(transactionSearchParams, "prev-cursor", "next-cursor");
+        builder = builder.buildResponse();
+        assertThat(builder.getSelfLink().getHref().contains("cursor=self-cursor&display_size=10"), is(true));
+        assertThat(builder.getFirstLink().getHref().contains("page=1&display_size=10"), is(true));
+        assertThat(builder.getPrevLink().getHref().contains("cursor=prev-cursor&display_size=10"), is(true));
+        assertThat(builder.getNextLink().getHref().contains("cursor=next-cursor&display_size=10"), is(true));
+        assertThat(builder.getLastLink(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldBuildNextLinkFromHasNextPageWithoutLastLink_whenTotalIsNotKnown() {
+        transactionSearchParams.setPageNumber(2L);
+        transactionSearchParams.setDisplaySize(10L);
+        PaginationBuilder builder = new PaginationBuilder(transactionSearchParams, mockedUriInfo)
+                .withCount(10L)
+                .withHasNextPage(true);
+        builder = builder.buildResponse();
+        assertThat(builder.getLastLink(), is(nullValue()));
+        assertThat(builder.getPrevLink().getHref().contains("page=1&display_size=10"), is(true));
+        assertThat(builder.getNextLink().getHref().contains("page=3&display_size=10"), is(true));
+    }
+}
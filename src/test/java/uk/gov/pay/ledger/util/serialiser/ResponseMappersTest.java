@@ -0,0 +1,66 @@
+package uk.gov.pay.ledger.util.serialiser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import uk.gov.pay.ledger.transaction.model.TransactionFactory;
+import uk.gov.pay.ledger.transaction.search.model.TransactionView;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Variant;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.ledger.util.fixture.TransactionFixture.aTransactionFixture;
+
+public class ResponseMappersTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ResponseMappers responseMappers = new ResponseMappers(objectMapper);
+
+    @Test
+    public void shouldChooseTheMapperForTheMediaType() {
+        assertThat(responseMappers.forMediaType(MediaType.APPLICATION_JSON_TYPE), is(sameInstance(objectMapper)));
+        assertThat(responseMappers.forMediaType(ResponseMappers.APPLICATION_CBOR_TYPE),
+                is(sameInstance(responseMappers.getCborMapper())));
+        assertThat(responseMappers.forMediaType(MediaType.valueOf("application/x-jackson-smile; qs=.9")),
+                is(sameInstance(responseMappers.getSmileMapper())));
+        assertThat(responseMappers.forMediaType(MediaType.WILDCARD_TYPE), is(sameInstance(objectMapper)));
+    }
+
+    @Test
+    public void shouldNegotiateJson_whenTheClientAcceptsNoneOfTheMediaTypes() {
+        Request request = mock(Request.class);
+        when(request.selectVariant(anyList())).thenReturn(null);
+
+        assertThat(ResponseMappers.negotiate(request), is(MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Test
+    public void shouldNegotiateTheMediaTypeTheClientPrefers() {
+        Request request = mock(Request.class);
+        when(request.selectVariant(anyList())).thenReturn(new Variant(ResponseMappers.APPLICATION_SMILE_TYPE, (String) null, null));
+
+        assertThat(ResponseMappers.negotiate(request), is(ResponseMappers.APPLICATION_SMILE_TYPE));
+    }
+
+    @Test
+    public void shouldWriteTheSameFieldsInEveryFormat() throws Exception {
+        TransactionView view = TransactionView.from(new TransactionFactory(objectMapper)
+                .createTransactionEntity(aTransactionFixture().toEntity()), 2);
+
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsBytes(view));
+        JsonNode cbor = responseMappers.getCborMapper().readTree(responseMappers.getCborMapper().writeValueAsBytes(view));
+        JsonNode smile = responseMappers.getSmileMapper().readTree(responseMappers.getSmileMapper().writeValueAsBytes(view));
+
+        assertThat(cbor.get("transaction_id"), is(json.get("transaction_id")));
+        assertThat(cbor.get("amount"), is(json.get("amount")));
+        assertThat(smile.get("transaction_id"), is(json.get("transaction_id")));
+        assertThat(smile.get("amount"), is(json.get("amount")));
+    }
+}